@@ -52,9 +52,12 @@ public class GraphTraversalTools {
     public static final String NAME = "name";
     public static final String STATUS = "status";
     public static final String ROI_INFO = "roiInfo";
+    public static final String ROI_INFO_BINARY = "roiInfoBinary";
+    public static final String ROI_DICTIONARY = "roiDictionary";
     public static final String RADIUS = "radius";
     public static final String ROW_NUMBER = "rowNumber";
     public static final String TIME_STAMP = "timeStamp";
+    public static final String LAST_DATABASE_EDIT = "lastDatabaseEdit";
     public static final String TOTAL_PRE_COUNT = "totalPreCount";
     public static final String TOTAL_POST_COUNT = "totalPostCount";
     public static final String TYPE = "type";
@@ -248,19 +251,37 @@ public class GraphTraversalTools {
         return connectedSegment;
     }
 
+    /**
+     * Iterates the property keys of the synapse without reading any property values. See
+     * {@link MetaNodeSnapshot#getRois(Node)} for ROIs as a bitset.
+     *
+     * @param synapse        Synapse node
+     * @param metaNodeRoiSet ROIs of the dataset
+     * @return ROIs of the synapse
+     */
     public static Set<String> getSynapseRois(final Node synapse, final Set<String> metaNodeRoiSet) {
-        Map<String, Object> synapseNodeProperties = synapse.getAllProperties();
-        return synapseNodeProperties.keySet().stream()
-                .filter(metaNodeRoiSet::contains)
-                .collect(Collectors.toSet());
+        return getRoiPropertyKeys(synapse, metaNodeRoiSet);
     }
 
+    /**
+     * Iterates the property keys of the segment without reading any property values.
+     *
+     * @param segment        Segment node
+     * @param metaNodeRoiSet ROIs of the dataset
+     * @return ROIs of the segment
+     */
     public static Set<String> getSegmentRois(final Node segment, final Set<String> metaNodeRoiSet) {
-        Map<String, Object> segmentNodeProperties = segment.getAllProperties();
-        return segmentNodeProperties.keySet().stream()
-                .filter(metaNodeRoiSet::contains)
-                .collect(Collectors.toSet());
+        return getRoiPropertyKeys(segment, metaNodeRoiSet);
+    }
 
+    private static Set<String> getRoiPropertyKeys(final Node node, final Set<String> metaNodeRoiSet) {
+        final Set<String> rois = new HashSet<>();
+        for (final String propertyKey : node.getPropertyKeys()) {
+            if (metaNodeRoiSet.contains(propertyKey)) {
+                rois.add(propertyKey);
+            }
+        }
+        return rois;
     }
 
     public static Point getLocationAs3dCartesianPoint(final GraphDatabaseService dbService, Double x, Double y, Double z) {
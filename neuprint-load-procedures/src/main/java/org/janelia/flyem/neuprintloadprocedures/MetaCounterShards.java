@@ -0,0 +1,322 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import com.google.gson.Gson;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.ResourceIterator;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.logging.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_POST_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_PRE_COUNT;
+
+/**
+ * Changes to the totalPreCount, totalPostCount, roiInfo, latestMutationId and uuid properties of a dataset's Meta node.
+ * <p>
+ * Write procedures collect their changes in an instance of this class and {@link #apply} them once at the end of the
+ * procedure. If the Meta node has a counterShardCount property, the changes are added to one of that many
+ * MetaCounterShard nodes, chosen at random, instead of to the Meta node, so that concurrent writers do not all wait
+ * on the Meta node's write lock. {@link #foldShards} adds the shards to the Meta node and resets them. The Meta node
+ * is only up to date after a fold; the transaction event handler folds after each commit that changes the dataset,
+ * and loader.foldMetaCounterShards folds on request.
+ * <p>
+ * Datasets without a counterShardCount property are updated directly on the Meta node, as before.
+ */
+public class MetaCounterShards {
+
+    public static final String META_COUNTER_SHARD = "MetaCounterShard";
+    public static final String COUNTER_SHARD_COUNT = "counterShardCount";
+    public static final String SHARD = "shard";
+    public static final String LATEST_MUTATION_ID = "latestMutationId";
+    public static final String UUID = "uuid";
+
+    private static final Gson GSON = new Gson();
+
+    private long preCountChange = 0;
+    private long postCountChange = 0;
+    private final Map<String, SynapseCounter> roiInfoChange = new TreeMap<>();
+    private Long latestMutationId;
+    private String uuid;
+
+    /**
+     * Adds (delta = 1) or removes (delta = -1) a synapse from totalPreCount or totalPostCount.
+     *
+     * @param synapseType pre or post
+     * @param delta       change in count
+     */
+    public void addToTotalCount(String synapseType, long delta) {
+        if (synapseType.equals(PRE)) {
+            this.preCountChange += delta;
+        } else if (synapseType.equals(POST)) {
+            this.postCountChange += delta;
+        }
+    }
+
+    /**
+     * Adds (delta = 1) or removes (delta = -1) a synapse from the pre or post count of an ROI in roiInfo.
+     *
+     * @param roi         ROI name
+     * @param synapseType pre or post
+     * @param delta       change in count
+     */
+    public void addToRoi(String roi, String synapseType, long delta) {
+        SynapseCounter current = this.roiInfoChange.getOrDefault(roi, new SynapseCounter());
+        if (synapseType.equals(PRE)) {
+            this.roiInfoChange.put(roi, new SynapseCounter(current.getPre() + delta, current.getPost()));
+        } else if (synapseType.equals(POST)) {
+            this.roiInfoChange.put(roi, new SynapseCounter(current.getPre(), current.getPost() + delta));
+        }
+    }
+
+    /**
+     * @param mutationId   mutation id, kept if it is the highest mutation id applied
+     * @param mutationUuid uuid of the mutation
+     */
+    public void setLatestMutation(Long mutationId, String mutationUuid) {
+        if (mutationId != null && (this.latestMutationId == null || mutationId > this.latestMutationId)) {
+            this.latestMutationId = mutationId;
+            this.uuid = mutationUuid;
+        }
+    }
+
+    /**
+     * @return true if there are no changes to apply
+     */
+    public boolean isEmpty() {
+        return this.preCountChange == 0 && this.postCountChange == 0 && this.roiInfoChange.isEmpty() && this.latestMutationId == null;
+    }
+
+    /**
+     * @param metaNode Meta node for dataset (may be null)
+     * @return number of counter shards for the dataset, or 0 if Meta node changes are not sharded
+     */
+    public static int getShardCount(Node metaNode) {
+        if (metaNode == null) {
+            return 0;
+        }
+        return ((Number) metaNode.getProperty(COUNTER_SHARD_COUNT, 0)).intValue();
+    }
+
+    /**
+     * @param metaNode Meta node for dataset (may be null)
+     * @return true if changes to the Meta node are written to counter shards
+     */
+    public static boolean isSharded(Node metaNode) {
+        return getShardCount(metaNode) > 0;
+    }
+
+    /**
+     * Applies the changes to a random counter shard if the dataset is sharded, or directly to the Meta node otherwise.
+     *
+     * @param dbService database service
+     * @param metaNode  Meta node for dataset (nothing is applied if null)
+     * @param log       log for missing Meta node properties
+     */
+    public void apply(GraphDatabaseService dbService, Node metaNode, Log log) {
+        if (metaNode == null) {
+            log.warn("No Meta node found. Meta node counts will not be updated.");
+            return;
+        }
+        if (isEmpty()) {
+            return;
+        }
+
+        int shardCount = getShardCount(metaNode);
+        Node shard = null;
+        if (shardCount > 0) {
+            String dataset = (String) metaNode.getProperty(DATASET);
+            shard = dbService.findNode(Label.label(dataset + "-" + META_COUNTER_SHARD), SHARD, ThreadLocalRandom.current().nextInt(shardCount));
+            if (shard == null) {
+                log.warn("Counter shard not found for dataset " + dataset + ". Meta node will be updated directly.");
+            }
+        }
+
+        if (shard != null) {
+            acquireWriteLock(dbService, shard);
+            addToShard(shard);
+        } else {
+            addToMetaNode(metaNode, log);
+        }
+    }
+
+    /**
+     * Adds the changes held by all of a dataset's counter shards to its Meta node and resets the shards. The caller
+     * should hold the Meta node's write lock.
+     *
+     * @param dbService database service
+     * @param metaNode  Meta node for dataset
+     * @param log       log for missing Meta node properties
+     */
+    public static void foldShards(GraphDatabaseService dbService, Node metaNode, Log log) {
+        MetaCounterShards folded = new MetaCounterShards();
+        for (Node shard : getShards(dbService, (String) metaNode.getProperty(DATASET))) {
+            // empty shards are not locked; changes written to them after this check are folded next time
+            if (hasChanges(shard)) {
+                acquireWriteLock(dbService, shard);
+                folded.addFromShard(shard);
+                resetShard(shard);
+            }
+        }
+        folded.addToMetaNode(metaNode, log);
+    }
+
+    /**
+     * Resets all of a dataset's counter shards without applying them, for use after the Meta node counts have been
+     * recomputed from the synapses.
+     *
+     * @param dbService database service
+     * @param dataset   dataset name
+     */
+    public static void resetShards(GraphDatabaseService dbService, String dataset) {
+        for (Node shard : getShards(dbService, dataset)) {
+            resetShard(shard);
+        }
+    }
+
+    /**
+     * Folds any existing counter shards into the Meta node, then replaces them with the given number of empty shards.
+     * A shard count of 0 removes the shards and the counterShardCount property so that the Meta node is updated
+     * directly.
+     *
+     * @param dbService  database service
+     * @param metaNode   Meta node for dataset
+     * @param shardCount number of counter shards
+     * @param log        log for missing Meta node properties
+     */
+    public static void setShardCount(GraphDatabaseService dbService, Node metaNode, int shardCount, Log log) {
+        foldShards(dbService, metaNode, log);
+
+        String dataset = (String) metaNode.getProperty(DATASET);
+        for (Node shard : getShards(dbService, dataset)) {
+            shard.delete();
+        }
+
+        if (shardCount > 0) {
+            for (int i = 0; i < shardCount; i++) {
+                Node shard = dbService.createNode(Label.label(META_COUNTER_SHARD), Label.label(dataset + "-" + META_COUNTER_SHARD));
+                shard.setProperty(DATASET, dataset);
+                shard.setProperty(SHARD, i);
+            }
+            metaNode.setProperty(COUNTER_SHARD_COUNT, shardCount);
+        } else {
+            metaNode.removeProperty(COUNTER_SHARD_COUNT);
+        }
+    }
+
+    private static List<Node> getShards(GraphDatabaseService dbService, String dataset) {
+        List<Node> shards = new ArrayList<>();
+        try (ResourceIterator<Node> shardIterator = dbService.findNodes(Label.label(dataset + "-" + META_COUNTER_SHARD))) {
+            shardIterator.forEachRemaining(shards::add);
+        }
+        return shards;
+    }
+
+    private static boolean hasChanges(Node shard) {
+        return shard.hasProperty(TOTAL_PRE_COUNT) || shard.hasProperty(ROI_INFO) || shard.hasProperty(LATEST_MUTATION_ID);
+    }
+
+    private static void acquireWriteLock(GraphDatabaseService dbService, Node node) {
+        // the shard is read after it is locked so that concurrent changes to it are not lost
+        try (Transaction tx = dbService.beginTx()) {
+            tx.acquireWriteLock(node);
+            tx.success();
+        }
+    }
+
+    private static void resetShard(Node shard) {
+        shard.removeProperty(TOTAL_PRE_COUNT);
+        shard.removeProperty(TOTAL_POST_COUNT);
+        shard.removeProperty(ROI_INFO);
+        shard.removeProperty(LATEST_MUTATION_ID);
+        shard.removeProperty(UUID);
+    }
+
+    private void addFromShard(Node shard) {
+        this.preCountChange += (long) shard.getProperty(TOTAL_PRE_COUNT, 0L);
+        this.postCountChange += (long) shard.getProperty(TOTAL_POST_COUNT, 0L);
+        for (Map.Entry<String, SynapseCounter> roiChange : getRoiInfoMap((String) shard.getProperty(ROI_INFO, "{}")).entrySet()) {
+            addToRoi(roiChange.getKey(), PRE, roiChange.getValue().getPre());
+            addToRoi(roiChange.getKey(), POST, roiChange.getValue().getPost());
+        }
+        setLatestMutation((Long) shard.getProperty(LATEST_MUTATION_ID, null), (String) shard.getProperty(UUID, null));
+    }
+
+    private void addToShard(Node shard) {
+        // the shard holds the sum of the changes applied to it since the last fold
+        MetaCounterShards shardChanges = new MetaCounterShards();
+        shardChanges.addFromShard(shard);
+        shardChanges.preCountChange += this.preCountChange;
+        shardChanges.postCountChange += this.postCountChange;
+        for (Map.Entry<String, SynapseCounter> roiChange : this.roiInfoChange.entrySet()) {
+            shardChanges.addToRoi(roiChange.getKey(), PRE, roiChange.getValue().getPre());
+            shardChanges.addToRoi(roiChange.getKey(), POST, roiChange.getValue().getPost());
+        }
+        shardChanges.setLatestMutation(this.latestMutationId, this.uuid);
+
+        shard.setProperty(TOTAL_PRE_COUNT, shardChanges.preCountChange);
+        shard.setProperty(TOTAL_POST_COUNT, shardChanges.postCountChange);
+        shard.setProperty(ROI_INFO, GSON.toJson(shardChanges.roiInfoChange));
+        if (shardChanges.latestMutationId != null) {
+            shard.setProperty(LATEST_MUTATION_ID, shardChanges.latestMutationId);
+            shard.setProperty(UUID, shardChanges.uuid);
+        }
+    }
+
+    private void addToMetaNode(Node metaNode, Log log) {
+        if (this.preCountChange != 0) {
+            if (metaNode.hasProperty(TOTAL_PRE_COUNT)) {
+                metaNode.setProperty(TOTAL_PRE_COUNT, (Long) metaNode.getProperty(TOTAL_PRE_COUNT) + this.preCountChange);
+            } else {
+                log.warn("No totalPreCount property found on Meta node. This property will not be updated.");
+            }
+        }
+        if (this.postCountChange != 0) {
+            if (metaNode.hasProperty(TOTAL_POST_COUNT)) {
+                metaNode.setProperty(TOTAL_POST_COUNT, (Long) metaNode.getProperty(TOTAL_POST_COUNT) + this.postCountChange);
+            } else {
+                log.warn("No totalPostCount property found on Meta node. This property will not be updated.");
+            }
+        }
+        if (!this.roiInfoChange.isEmpty()) {
+            if (metaNode.hasProperty(ROI_INFO)) {
+                Map<String, SynapseCounter> roiInfoMap = getRoiInfoMap((String) metaNode.getProperty(ROI_INFO));
+                for (Map.Entry<String, SynapseCounter> roiChange : this.roiInfoChange.entrySet()) {
+                    SynapseCounter current = roiInfoMap.getOrDefault(roiChange.getKey(), new SynapseCounter());
+                    // counts do not go below 0, and an ROI without synapses is removed, as when decrementing roiInfo
+                    long pre = Math.max(0, current.getPre() + roiChange.getValue().getPre());
+                    long post = Math.max(0, current.getPost() + roiChange.getValue().getPost());
+                    if (pre + post > 0) {
+                        roiInfoMap.put(roiChange.getKey(), new SynapseCounter(pre, post));
+                    } else {
+                        roiInfoMap.remove(roiChange.getKey());
+                    }
+                }
+                metaNode.setProperty(ROI_INFO, new RoiInfo(roiInfoMap).getAsJsonString());
+            } else {
+                log.warn("No roiInfo property found on Meta node. roiInfo will not be updated.");
+            }
+        }
+        if (this.latestMutationId != null) {
+            metaNode.setProperty(LATEST_MUTATION_ID, this.latestMutationId);
+            metaNode.setProperty(UUID, this.uuid);
+        }
+    }
+
+    private static Map<String, SynapseCounter> getRoiInfoMap(String roiInfoString) {
+        Map<String, SynapseCounter> roiInfoMap = GSON.fromJson(roiInfoString, RoiInfo.ROI_INFO_TYPE);
+        return roiInfoMap == null ? new TreeMap<>() : new TreeMap<>(roiInfoMap);
+    }
+}
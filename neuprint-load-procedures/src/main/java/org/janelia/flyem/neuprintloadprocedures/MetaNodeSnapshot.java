@@ -0,0 +1,223 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.event.PropertyEntry;
+import org.neo4j.graphdb.event.TransactionData;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_HP_THRESHOLD;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_HP_THRESHOLD;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SUPER_LEVEL_ROIS;
+
+/**
+ * An immutable snapshot of the parts of a dataset's Meta node that procedures read on every call: the set of ROIs in
+ * roiInfo, the high-precision thresholds, and the superLevelRois.
+ * <p>
+ * The snapshot also assigns ids to the ROIs (in name order) so that the ROIs of a synapse or segment can be read with
+ * {@link #getRois(Node)} as a {@link RoiSet} bitset, by looking up only the property keys present on the node.
+ * <p>
+ * Snapshots are cached per dataset while the transaction event handler is running ({@link #enableCache}). The handler
+ * calls {@link #invalidate(TransactionData)} after each commit, which drops the snapshot of any Meta node whose
+ * dataset, roiInfo, preHPThreshold, postHPThreshold or superLevelRois property changed. A snapshot reflects committed
+ * data, so a procedure that changes these properties should not read them back through a snapshot in the same
+ * transaction. Without the event handler (e.g. when only the loading procedures are installed) a new snapshot is read
+ * on every call.
+ */
+public class MetaNodeSnapshot {
+
+    private static final Set<String> SNAPSHOT_PROPERTIES = new HashSet<>(Arrays.asList(DATASET, ROI_INFO, PRE_HP_THRESHOLD, POST_HP_THRESHOLD, SUPER_LEVEL_ROIS));
+
+    private static final Map<String, MetaNodeSnapshot> snapshotCache = new ConcurrentHashMap<>();
+    private static final Map<String, Long> generations = new ConcurrentHashMap<>();
+    private static final Map<Long, String> datasetByMetaNodeId = new ConcurrentHashMap<>();
+    private static volatile boolean cacheEnabled = false;
+
+    private final long metaNodeId;
+    private final long generation;
+    private final String roiInfoString;
+    private final Set<String> roiSet;
+    // ROI name to id table for the ROIs in roiSet; never modified after construction
+    private final RoiDictionary roiDictionary;
+    private final Map<String, Double> thresholdMap;
+    private final Set<String> superLevelRois;
+
+    private MetaNodeSnapshot(Node metaNode, long generation, MetaNodeSnapshot previous) {
+        this.metaNodeId = metaNode.getId();
+        this.generation = generation;
+
+        this.roiInfoString = (String) metaNode.getProperty(ROI_INFO, null);
+        if (this.roiInfoString == null) {
+            this.roiSet = Collections.emptySet();
+            this.roiDictionary = new RoiDictionary();
+        } else if (previous != null && this.roiInfoString.equals(previous.roiInfoString)) {
+            this.roiSet = previous.roiSet;
+            this.roiDictionary = previous.roiDictionary;
+        } else {
+            // getSetOfRois is sorted, so ids follow name order
+            Set<String> rois = RoiInfoWithHighPrecisionCounts.getRoiInfoHPFromString(this.roiInfoString).getSetOfRois();
+            this.roiSet = Collections.unmodifiableSet(new HashSet<>(rois));
+            this.roiDictionary = new RoiDictionary(rois.toArray(new String[0]));
+        }
+
+        Map<String, Double> thresholdMap = new HashMap<>();
+        thresholdMap.put(PRE_HP_THRESHOLD, (Double) metaNode.getProperty(PRE_HP_THRESHOLD, 0.0));
+        thresholdMap.put(POST_HP_THRESHOLD, (Double) metaNode.getProperty(POST_HP_THRESHOLD, 0.0));
+        this.thresholdMap = Collections.unmodifiableMap(thresholdMap);
+
+        if (metaNode.hasProperty(SUPER_LEVEL_ROIS)) {
+            this.superLevelRois = Collections.unmodifiableSet(new HashSet<>(Arrays.asList((String[]) metaNode.getProperty(SUPER_LEVEL_ROIS))));
+        } else {
+            this.superLevelRois = null;
+        }
+    }
+
+    /**
+     * @param metaNode Meta node for dataset
+     * @return the cached snapshot of the Meta node, read from the node if it is not cached or has been invalidated
+     */
+    public static MetaNodeSnapshot get(Node metaNode) {
+        String dataset = (String) metaNode.getProperty(DATASET, null);
+        if (!cacheEnabled || dataset == null) {
+            return new MetaNodeSnapshot(metaNode, 0, null);
+        }
+
+        long generation = generations.getOrDefault(dataset, 0L);
+        MetaNodeSnapshot cached = snapshotCache.get(dataset);
+        if (cached != null && cached.generation == generation && cached.metaNodeId == metaNode.getId()) {
+            return cached;
+        }
+
+        // the Meta node is registered and the generation read before the node's properties, so a snapshot read while
+        // the Meta node is being changed is never returned from the cache after the change has been invalidated
+        datasetByMetaNodeId.put(metaNode.getId(), dataset);
+        generation = generations.getOrDefault(dataset, 0L);
+        MetaNodeSnapshot snapshot = new MetaNodeSnapshot(metaNode, generation, cached);
+        snapshotCache.put(dataset, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Invalidates the cached snapshots of Meta nodes that were deleted or had a snapshot property changed in a
+     * committed transaction.
+     *
+     * @param transactionData data for the committed transaction
+     */
+    public static void invalidate(TransactionData transactionData) {
+        if (datasetByMetaNodeId.isEmpty()) {
+            return;
+        }
+        for (PropertyEntry<Node> propertyEntry : transactionData.assignedNodeProperties()) {
+            if (SNAPSHOT_PROPERTIES.contains(propertyEntry.key())) {
+                invalidateMetaNode(propertyEntry.entity().getId(), false);
+            }
+        }
+        for (PropertyEntry<Node> propertyEntry : transactionData.removedNodeProperties()) {
+            if (SNAPSHOT_PROPERTIES.contains(propertyEntry.key())) {
+                invalidateMetaNode(propertyEntry.entity().getId(), false);
+            }
+        }
+        for (Node node : transactionData.deletedNodes()) {
+            // node ids are reused, so forget deleted Meta nodes
+            invalidateMetaNode(node.getId(), true);
+        }
+    }
+
+    /**
+     * Invalidates the cached snapshot for a dataset.
+     *
+     * @param dataset dataset name
+     */
+    public static void invalidate(String dataset) {
+        generations.merge(dataset, 1L, Long::sum);
+    }
+
+    private static void invalidateMetaNode(long nodeId, boolean deleted) {
+        String dataset = deleted ? datasetByMetaNodeId.remove(nodeId) : datasetByMetaNodeId.get(nodeId);
+        if (dataset != null) {
+            invalidate(dataset);
+        }
+    }
+
+    /**
+     * Turns on caching. Should only be called by the transaction event handler, which invalidates the cache.
+     */
+    public static void enableCache() {
+        clearCache();
+        cacheEnabled = true;
+    }
+
+    /**
+     * Turns off caching and clears the cache.
+     */
+    public static void disableCache() {
+        cacheEnabled = false;
+        clearCache();
+    }
+
+    private static void clearCache() {
+        snapshotCache.clear();
+        datasetByMetaNodeId.clear();
+        generations.clear();
+    }
+
+    /**
+     * @return unmodifiable set of the ROIs in the Meta node's roiInfo
+     */
+    public Set<String> getRoiSet() {
+        return this.roiSet;
+    }
+
+    /**
+     * Reads the ROIs of a synapse or segment by iterating only the property keys on the node, rather than checking
+     * every ROI of the dataset or reading property values.
+     *
+     * @param node Synapse or Segment node
+     * @return {@link RoiSet} of the node's ROIs, with ids from {@link #getRoiDictionary()}
+     */
+    public RoiSet getRois(Node node) {
+        return this.roiDictionary.getRoiSetOfKnownRois(node.getPropertyKeys());
+    }
+
+    /**
+     * @return dictionary of the ids used by {@link #getRois(Node)}; shared between threads, so it must not be modified
+     */
+    public RoiDictionary getRoiDictionary() {
+        return this.roiDictionary;
+    }
+
+    /**
+     * @return unmodifiable map of {@link GraphTraversalTools#PRE_HP_THRESHOLD} and
+     * {@link GraphTraversalTools#POST_HP_THRESHOLD} to the Meta node's thresholds (0.0 if not set)
+     */
+    public Map<String, Double> getThresholdMap() {
+        return this.thresholdMap;
+    }
+
+    public double getPreHPThreshold() {
+        return this.thresholdMap.get(PRE_HP_THRESHOLD);
+    }
+
+    public double getPostHPThreshold() {
+        return this.thresholdMap.get(POST_HP_THRESHOLD);
+    }
+
+    /**
+     * @return unmodifiable set of the Meta node's superLevelRois, or null if it does not have them
+     */
+    public Set<String> getSuperLevelRois() {
+        return this.superLevelRois;
+    }
+
+}
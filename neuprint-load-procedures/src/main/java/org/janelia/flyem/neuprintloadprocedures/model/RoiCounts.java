@@ -0,0 +1,176 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import java.util.Arrays;
+
+/**
+ * Counts presynaptic and postsynaptic densities (and optionally high-precision densities) per ROI in long arrays
+ * indexed by {@link RoiDictionary} id. Used in place of {@link RoiInfo} and {@link RoiInfoWithHighPrecisionCounts}
+ * while accumulating counts; ROI names are only looked up when the counts are converted with {@link #toRoiInfo} or
+ * {@link #toRoiInfoWithHighPrecisionCounts}.
+ * <p>
+ * The ids of ROIs that have been counted are tracked so that conversion and {@link #clear()} only visit those ROIs,
+ * which allows one instance to be reused for many segments or ConnectionSets. Not thread-safe.
+ */
+public class RoiCounts {
+
+    private long[] pre = new long[0];
+    private long[] post = new long[0];
+    private long[] preHP = new long[0];
+    private long[] postHP = new long[0];
+    private boolean[] counted = new boolean[0];
+    private int[] countedRoiIds = new int[16];
+    private int countedRoiCount;
+
+    public void incrementPre(final RoiSet rois) {
+        for (int i = 0; i < rois.size(); i++) {
+            final int roiId = count(rois.getRoiId(i));
+            pre[roiId]++;
+        }
+    }
+
+    public void incrementPost(final RoiSet rois) {
+        for (int i = 0; i < rois.size(); i++) {
+            final int roiId = count(rois.getRoiId(i));
+            post[roiId]++;
+        }
+    }
+
+    /**
+     * Increments the presynaptic density count, and the high-precision count if highPrecision is true, for each ROI.
+     *
+     * @param rois          ROIs of synapse
+     * @param highPrecision true if the synapse is high-precision
+     */
+    public void incrementPre(final RoiSet rois, final boolean highPrecision) {
+        for (int i = 0; i < rois.size(); i++) {
+            final int roiId = count(rois.getRoiId(i));
+            pre[roiId]++;
+            if (highPrecision) {
+                preHP[roiId]++;
+            }
+        }
+    }
+
+    /**
+     * Increments the postsynaptic density count, and the high-precision count if highPrecision is true, for each ROI.
+     *
+     * @param rois          ROIs of synapse
+     * @param highPrecision true if the synapse is high-precision
+     */
+    public void incrementPost(final RoiSet rois, final boolean highPrecision) {
+        for (int i = 0; i < rois.size(); i++) {
+            final int roiId = count(rois.getRoiId(i));
+            post[roiId]++;
+            if (highPrecision) {
+                postHP[roiId]++;
+            }
+        }
+    }
+
+    public long getPre(final int roiId) {
+        return roiId < pre.length ? pre[roiId] : 0;
+    }
+
+    public long getPost(final int roiId) {
+        return roiId < post.length ? post[roiId] : 0;
+    }
+
+    public long getPreHP(final int roiId) {
+        return roiId < preHP.length ? preHP[roiId] : 0;
+    }
+
+    public long getPostHP(final int roiId) {
+        return roiId < postHP.length ? postHP[roiId] : 0;
+    }
+
+    /**
+     * @return ids of ROIs that have been counted, in the order they were first counted
+     */
+    public int[] getRoiIds() {
+        return Arrays.copyOf(countedRoiIds, countedRoiCount);
+    }
+
+    /**
+     * Resets all counts to 0.
+     */
+    public void clear() {
+        for (int i = 0; i < countedRoiCount; i++) {
+            final int roiId = countedRoiIds[i];
+            pre[roiId] = 0;
+            post[roiId] = 0;
+            preHP[roiId] = 0;
+            postHP[roiId] = 0;
+            counted[roiId] = false;
+        }
+        countedRoiCount = 0;
+    }
+
+    /**
+     * @param dictionary dictionary for ROI ids
+     * @return {@link RoiInfo} with the pre and post counts
+     */
+    public RoiInfo toRoiInfo(final RoiDictionary dictionary) {
+        final RoiInfo roiInfo = new RoiInfo();
+        addTo(roiInfo, dictionary);
+        return roiInfo;
+    }
+
+    /**
+     * Adds the pre and post counts to an existing {@link RoiInfo}.
+     *
+     * @param roiInfo    RoiInfo to update
+     * @param dictionary dictionary for ROI ids
+     */
+    public void addTo(final RoiInfo roiInfo, final RoiDictionary dictionary) {
+        for (int i = 0; i < countedRoiCount; i++) {
+            final int roiId = countedRoiIds[i];
+            final String roi = dictionary.getName(roiId);
+            final SynapseCounter synapseCounter = roiInfo.get(roi);
+            if (synapseCounter == null) {
+                roiInfo.addSynapseCountsForRoi(roi, pre[roiId], post[roiId]);
+            } else {
+                roiInfo.addSynapseCountsForRoi(roi, synapseCounter.getPre() + pre[roiId], synapseCounter.getPost() + post[roiId]);
+            }
+        }
+    }
+
+    /**
+     * @param dictionary dictionary for ROI ids
+     * @return {@link RoiInfoWithHighPrecisionCounts} with the pre, post and high-precision counts
+     */
+    public RoiInfoWithHighPrecisionCounts toRoiInfoWithHighPrecisionCounts(final RoiDictionary dictionary) {
+        final RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        for (int i = 0; i < countedRoiCount; i++) {
+            final int roiId = countedRoiIds[i];
+            roiInfo.addSynapseCountsForRoi(dictionary.getName(roiId), (int) pre[roiId], (int) post[roiId], (int) preHP[roiId], (int) postHP[roiId]);
+        }
+        return roiInfo;
+    }
+
+    /**
+     * Ensures the arrays can hold roiId and records it as counted. Must be called before the arrays are indexed
+     * since it may replace them.
+     *
+     * @param roiId ROI id
+     * @return roiId
+     */
+    private int count(final int roiId) {
+        if (roiId >= counted.length) {
+            final int capacity = Math.max(roiId + 1, 2 * counted.length);
+            pre = Arrays.copyOf(pre, capacity);
+            post = Arrays.copyOf(post, capacity);
+            preHP = Arrays.copyOf(preHP, capacity);
+            postHP = Arrays.copyOf(postHP, capacity);
+            counted = Arrays.copyOf(counted, capacity);
+        }
+        if (!counted[roiId]) {
+            counted[roiId] = true;
+            if (countedRoiCount == countedRoiIds.length) {
+                countedRoiIds = Arrays.copyOf(countedRoiIds, 2 * countedRoiIds.length);
+            }
+            countedRoiIds[countedRoiCount++] = roiId;
+        }
+        return roiId;
+    }
+
+}
@@ -0,0 +1,148 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assigns dense integer ids (0, 1, 2, ...) to the ROI names of a dataset, and interns {@link RoiSet}s so that
+ * synapses or neurons with the same ROIs share one instance. A dataset has a few hundred distinct ROIs, so ids can
+ * index arrays (see {@link RoiCounts}) and ROI membership can be stored as a bitset. ROI names only need to be
+ * looked up again when results are written.
+ * <p>
+ * Not thread-safe while ids are being added; lookups may be made from several threads once all ROIs have been added.
+ */
+public class RoiDictionary {
+
+    private final Map<String, Integer> idByName = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+    private final Map<RoiSet, RoiSet> roiSets = new HashMap<>();
+
+    /**
+     * Class constructor for an empty dictionary.
+     */
+    public RoiDictionary() {
+    }
+
+    /**
+     * Class constructor for a dictionary that was previously saved with {@link #getNames()}. Each ROI keeps its id.
+     *
+     * @param names ROI names in id order (may be null)
+     */
+    public RoiDictionary(final String[] names) {
+        if (names != null) {
+            for (final String roi : names) {
+                getOrAddId(roi);
+            }
+        }
+    }
+
+    /**
+     * @param roi ROI name
+     * @return id of ROI, adding it to the dictionary if necessary
+     */
+    public int getOrAddId(final String roi) {
+        Integer id = idByName.get(roi);
+        if (id == null) {
+            id = names.size();
+            idByName.put(roi, id);
+            names.add(roi);
+        }
+        return id;
+    }
+
+    /**
+     * @param roi ROI name
+     * @return id of ROI or -1 if the ROI is not in the dictionary
+     */
+    public int getId(final String roi) {
+        final Integer id = idByName.get(roi);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param id ROI id
+     * @return ROI name
+     */
+    public String getName(final int id) {
+        return names.get(id);
+    }
+
+    /**
+     * @return number of ROIs in the dictionary
+     */
+    public int size() {
+        return names.size();
+    }
+
+    /**
+     * @return ROI names in id order, e.g. for storing the dictionary as a node property
+     */
+    public String[] getNames() {
+        return names.toArray(new String[0]);
+    }
+
+    /**
+     * Returns the shared {@link RoiSet} for the provided ROIs. The first ROI is the super-level ROI.
+     *
+     * @param rois ROI names, in input order (may be null)
+     * @return interned {@link RoiSet}
+     */
+    public RoiSet getRoiSet(final Iterable<String> rois) {
+        final RoiSet.Builder builder = new RoiSet.Builder();
+        if (rois != null) {
+            for (final String roi : rois) {
+                builder.add(getOrAddId(roi));
+            }
+        }
+        return intern(builder.build());
+    }
+
+    /**
+     * Returns the shared {@link RoiSet} for the provided ROIs. The first ROI is the super-level ROI.
+     *
+     * @param rois     array of ROI names, in input order
+     * @param roiCount number of ROI names in the array
+     * @return interned {@link RoiSet}
+     */
+    public RoiSet getRoiSet(final String[] rois, final int roiCount) {
+        final RoiSet.Builder builder = new RoiSet.Builder();
+        for (int i = 0; i < roiCount; i++) {
+            builder.add(getOrAddId(rois[i]));
+        }
+        return intern(builder.build());
+    }
+
+    /**
+     * Returns a {@link RoiSet} of the provided names that are ROIs in this dictionary, e.g. the property keys of a
+     * synapse; other names are skipped. ROIs are not added and the set is not interned, so this may be called from
+     * several threads once all ROIs have been added.
+     *
+     * @param names names to look up
+     * @return {@link RoiSet} of the names that are ROIs in this dictionary
+     */
+    public RoiSet getRoiSetOfKnownRois(final Iterable<String> names) {
+        final RoiSet.Builder builder = new RoiSet.Builder();
+        for (final String name : names) {
+            final Integer id = idByName.get(name);
+            if (id != null) {
+                builder.add(id);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * @return number of distinct {@link RoiSet}s interned by this dictionary
+     */
+    public int getRoiSetCount() {
+        return roiSets.size();
+    }
+
+    private RoiSet intern(final RoiSet roiSet) {
+        final RoiSet internedRoiSet = roiSets.putIfAbsent(roiSet, roiSet);
+        return internedRoiSet == null ? roiSet : internedRoiSet;
+    }
+
+}
@@ -0,0 +1,435 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Map;
+
+/**
+ * Encodes roiInfo as a compact byte array (the roiInfoBinary property) keyed by the ids of a dataset's
+ * {@link RoiDictionary}, which is stored on the Meta node.
+ * <p>
+ * The first byte holds the format version and a flag that is set if high-precision counts are included. It is followed
+ * by one entry per ROI in ascending id order: the difference from the previous ROI id, pre, post and, if the flag is
+ * set, preHP and postHP, each as an unsigned LEB128 varint. A typical entry takes 3-6 bytes, compared to 25-50 characters
+ * of JSON, and single ROIs can be read or updated by scanning the array without building a map or parsing JSON.
+ * <p>
+ * {@link #toJsonString} produces exactly the JSON that {@link RoiInfo#getAsJsonString()} or
+ * {@link RoiInfoWithHighPrecisionCounts#getAsJsonString()} would produce for the same counts.
+ */
+public class RoiInfoCodec {
+
+    private static final int FORMAT_VERSION = 1;
+    private static final int HIGH_PRECISION_FLAG = 1;
+
+    /**
+     * Index of pre count in arrays filled by {@link #getCountsForRoi}.
+     */
+    public static final int PRE = 0;
+    /**
+     * Index of post count in arrays filled by {@link #getCountsForRoi}.
+     */
+    public static final int POST = 1;
+    /**
+     * Index of high-precision pre count in arrays filled by {@link #getCountsForRoi}.
+     */
+    public static final int PRE_HP = 2;
+    /**
+     * Index of high-precision post count in arrays filled by {@link #getCountsForRoi}.
+     */
+    public static final int POST_HP = 3;
+
+    /**
+     * @param roiInfo    roiInfo to encode
+     * @param dictionary dataset dictionary (ROIs not yet in the dictionary are added)
+     * @return encoded roiInfo without high-precision counts
+     */
+    public static byte[] encode(final RoiInfo roiInfo, final RoiDictionary dictionary) {
+        final Map<String, SynapseCounter> synapseCountsPerRoi = roiInfo.getSynapseCountsPerRoi();
+        final int[] roiIds = new int[synapseCountsPerRoi.size()];
+        final long[][] counts = new long[roiIds.length][];
+        int i = 0;
+        for (final Map.Entry<String, SynapseCounter> entry : synapseCountsPerRoi.entrySet()) {
+            roiIds[i] = dictionary.getOrAddId(entry.getKey());
+            counts[i++] = new long[]{entry.getValue().getPre(), entry.getValue().getPost()};
+        }
+        return encode(roiIds, counts, false);
+    }
+
+    /**
+     * @param roiInfo    roiInfo to encode
+     * @param dictionary dataset dictionary (ROIs not yet in the dictionary are added)
+     * @return encoded roiInfo with high-precision counts
+     */
+    public static byte[] encode(final RoiInfoWithHighPrecisionCounts roiInfo, final RoiDictionary dictionary) {
+        final Map<String, SynapseCounterWithHighPrecisionCounts> synapseCountsPerRoi = roiInfo.getSynapseCountsPerRoi();
+        final int[] roiIds = new int[synapseCountsPerRoi.size()];
+        final long[][] counts = new long[roiIds.length][];
+        int i = 0;
+        for (final Map.Entry<String, SynapseCounterWithHighPrecisionCounts> entry : synapseCountsPerRoi.entrySet()) {
+            final SynapseCounterWithHighPrecisionCounts counter = entry.getValue();
+            roiIds[i] = dictionary.getOrAddId(entry.getKey());
+            counts[i++] = new long[]{counter.getPre(), counter.getPost(), counter.getPreHP(), counter.getPostHP()};
+        }
+        return encode(roiIds, counts, true);
+    }
+
+    /**
+     * @param roiCounts                  counts indexed by the ids of the dataset dictionary
+     * @param includeHighPrecisionCounts true to include preHP and postHP
+     * @return encoded roiInfo
+     */
+    public static byte[] encode(final RoiCounts roiCounts, final boolean includeHighPrecisionCounts) {
+        final int[] roiIds = roiCounts.getRoiIds();
+        final long[][] counts = new long[roiIds.length][];
+        for (int i = 0; i < roiIds.length; i++) {
+            final int roiId = roiIds[i];
+            counts[i] = new long[]{roiCounts.getPre(roiId), roiCounts.getPost(roiId), roiCounts.getPreHP(roiId), roiCounts.getPostHP(roiId)};
+        }
+        return encode(roiIds, counts, includeHighPrecisionCounts);
+    }
+
+    /**
+     * @param encoded encoded roiInfo
+     * @return true if the encoded roiInfo includes high-precision counts
+     */
+    public static boolean hasHighPrecisionCounts(final byte[] encoded) {
+        return (readHeader(encoded) & HIGH_PRECISION_FLAG) != 0;
+    }
+
+    /**
+     * Reads the counts for a single ROI without decoding the other entries into objects.
+     *
+     * @param encoded encoded roiInfo
+     * @param roiId   ROI id
+     * @param counts  array of length at least 4 that is filled with pre, post, preHP and postHP (see {@link #PRE},
+     *                {@link #POST}, {@link #PRE_HP} and {@link #POST_HP}); high-precision counts are 0 if not encoded
+     * @return true if the ROI is present
+     */
+    public static boolean getCountsForRoi(final byte[] encoded, final int roiId, final long[] counts) {
+        final Cursor cursor = new Cursor(encoded);
+        while (cursor.next()) {
+            if (cursor.roiId == roiId) {
+                System.arraycopy(cursor.counts, 0, counts, 0, 4);
+                return true;
+            } else if (cursor.roiId > roiId) {
+                break;
+            }
+        }
+        Arrays.fill(counts, 0, 4, 0L);
+        return false;
+    }
+
+    /**
+     * @param encoded    encoded roiInfo
+     * @param roi        ROI name
+     * @param dictionary dataset dictionary
+     * @return {@link SynapseCounter} (or {@link SynapseCounterWithHighPrecisionCounts} if high-precision counts are
+     * encoded) for the ROI, or null if the ROI is not present
+     */
+    public static SynapseCounter getSynapseCounterForRoi(final byte[] encoded, final String roi, final RoiDictionary dictionary) {
+        final int roiId = dictionary.getId(roi);
+        final long[] counts = new long[4];
+        if (roiId < 0 || !getCountsForRoi(encoded, roiId, counts)) {
+            return null;
+        }
+        return hasHighPrecisionCounts(encoded) ?
+                new SynapseCounterWithHighPrecisionCounts(counts[PRE], counts[POST], counts[PRE_HP], counts[POST_HP]) :
+                new SynapseCounter(counts[PRE], counts[POST]);
+    }
+
+    /**
+     * Returns the ROI with the most presynaptic (or postsynaptic) densities, breaking ties by name. Matches the first
+     * entry of Neo4jImporter.sortRoisByPreCount / sortRoisByPostCount.
+     *
+     * @param encoded    encoded roiInfo
+     * @param dictionary dataset dictionary
+     * @param countIndex {@link #PRE} or {@link #POST}
+     * @return ROI name or null if the roiInfo is empty
+     */
+    public static String getRoiWithMaxCount(final byte[] encoded, final RoiDictionary dictionary, final int countIndex) {
+        String maxRoi = null;
+        long maxCount = -1;
+        final Cursor cursor = new Cursor(encoded);
+        while (cursor.next()) {
+            final long count = cursor.counts[countIndex];
+            final String roi = dictionary.getName(cursor.roiId);
+            if (count > maxCount || (count == maxCount && roi.compareTo(maxRoi) < 0)) {
+                maxCount = count;
+                maxRoi = roi;
+            }
+        }
+        return maxRoi;
+    }
+
+    /**
+     * Adds to the counts of a single ROI, adding the ROI if needed. Counts do not go below 0, and the ROI is removed if
+     * its pre and post counts are both 0 afterwards, as with the decrement methods of {@link RoiInfo} and
+     * {@link RoiInfoWithHighPrecisionCounts}. High-precision deltas are ignored if the encoded roiInfo does not
+     * include high-precision counts.
+     *
+     * @param encoded     encoded roiInfo
+     * @param roiId       ROI id
+     * @param preDelta    change in pre count
+     * @param postDelta   change in post count
+     * @param preHPDelta  change in high-precision pre count
+     * @param postHPDelta change in high-precision post count
+     * @return updated encoded roiInfo
+     */
+    public static byte[] addToRoi(final byte[] encoded, final int roiId, final long preDelta, final long postDelta, final long preHPDelta, final long postHPDelta) {
+        final boolean highPrecision = hasHighPrecisionCounts(encoded);
+        final Cursor cursor = new Cursor(encoded);
+        int entryStart = cursor.position;
+        int previousRoiId = 0;
+        long[] counts = null;
+        while (cursor.next()) {
+            if (cursor.roiId >= roiId) {
+                if (cursor.roiId == roiId) {
+                    counts = cursor.counts.clone();
+                }
+                break;
+            }
+            previousRoiId = cursor.roiId;
+            entryStart = cursor.position;
+        }
+        final boolean present = counts != null;
+        final int entryEnd = present ? cursor.position : entryStart;
+        if (!present) {
+            if (preDelta <= 0 && postDelta <= 0) {
+                // nothing to decrement
+                return encoded;
+            }
+            counts = new long[4];
+        }
+        counts[PRE] = Math.max(0, counts[PRE] + preDelta);
+        counts[POST] = Math.max(0, counts[POST] + postDelta);
+        counts[PRE_HP] = Math.max(0, counts[PRE_HP] + preHPDelta);
+        counts[POST_HP] = Math.max(0, counts[POST_HP] + postHPDelta);
+        final boolean remove = counts[PRE] + counts[POST] == 0;
+
+        // the following entry is re-coded relative to whatever now precedes it
+        final Cursor following = new Cursor(encoded, entryEnd, present ? roiId : previousRoiId, highPrecision);
+        final boolean hasFollowing = following.next();
+
+        final ByteWriter writer = new ByteWriter(encoded.length + 16);
+        writer.write(encoded, 0, entryStart);
+        int lastRoiId = previousRoiId;
+        if (!remove) {
+            writeEntry(writer, roiId - previousRoiId, counts, highPrecision);
+            lastRoiId = roiId;
+        }
+        if (hasFollowing) {
+            writeEntry(writer, following.roiId - lastRoiId, following.counts, highPrecision);
+            writer.write(encoded, following.position, encoded.length - following.position);
+        }
+        return writer.toByteArray();
+    }
+
+    /**
+     * @param encoded    encoded roiInfo
+     * @param dictionary dataset dictionary
+     * @return decoded {@link RoiInfo} (high-precision counts are dropped)
+     */
+    public static RoiInfo toRoiInfo(final byte[] encoded, final RoiDictionary dictionary) {
+        final RoiInfo roiInfo = new RoiInfo();
+        final Cursor cursor = new Cursor(encoded);
+        while (cursor.next()) {
+            roiInfo.addSynapseCountsForRoi(dictionary.getName(cursor.roiId), cursor.counts[PRE], cursor.counts[POST]);
+        }
+        return roiInfo;
+    }
+
+    /**
+     * @param encoded    encoded roiInfo
+     * @param dictionary dataset dictionary
+     * @return decoded {@link RoiInfoWithHighPrecisionCounts} (high-precision counts are 0 if not encoded)
+     */
+    public static RoiInfoWithHighPrecisionCounts toRoiInfoWithHighPrecisionCounts(final byte[] encoded, final RoiDictionary dictionary) {
+        final RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        final Cursor cursor = new Cursor(encoded);
+        while (cursor.next()) {
+            final long[] counts = cursor.counts;
+            roiInfo.addSynapseCountsForRoi(dictionary.getName(cursor.roiId), (int) counts[PRE], (int) counts[POST], (int) counts[PRE_HP], (int) counts[POST_HP]);
+        }
+        return roiInfo;
+    }
+
+    /**
+     * Renders the encoded roiInfo as the JSON string that is stored in the roiInfo property. ROIs are written in name
+     * order, with preHP and postHP first if high-precision counts are encoded, as Gson writes them.
+     *
+     * @param encoded    encoded roiInfo
+     * @param dictionary dataset dictionary
+     * @return roiInfo JSON
+     */
+    public static String toJsonString(final byte[] encoded, final RoiDictionary dictionary) {
+        final boolean highPrecision = hasHighPrecisionCounts(encoded);
+        final Cursor cursor = new Cursor(encoded);
+        String[] rois = new String[16];
+        long[][] counts = new long[16][];
+        int roiCount = 0;
+        while (cursor.next()) {
+            if (roiCount == rois.length) {
+                rois = Arrays.copyOf(rois, 2 * roiCount);
+                counts = Arrays.copyOf(counts, 2 * roiCount);
+            }
+            rois[roiCount] = dictionary.getName(cursor.roiId);
+            counts[roiCount++] = cursor.counts.clone();
+        }
+        final Integer[] order = new Integer[roiCount];
+        for (int i = 0; i < roiCount; i++) {
+            order[i] = i;
+        }
+        final String[] sortRois = rois;
+        Arrays.sort(order, Comparator.comparing(i -> sortRois[i]));
+
+        final StringWriter stringWriter = new StringWriter();
+        try (final JsonWriter jsonWriter = new JsonWriter(stringWriter)) {
+            // Gson.toJson escapes HTML characters and quotes by default
+            jsonWriter.setHtmlSafe(true);
+            jsonWriter.beginObject();
+            for (final int i : order) {
+                jsonWriter.name(rois[i]).beginObject();
+                if (highPrecision) {
+                    jsonWriter.name("preHP").value(counts[i][PRE_HP]);
+                    jsonWriter.name("postHP").value(counts[i][POST_HP]);
+                }
+                jsonWriter.name("pre").value(counts[i][PRE]);
+                jsonWriter.name("post").value(counts[i][POST]);
+                jsonWriter.endObject();
+            }
+            jsonWriter.endObject();
+        } catch (IOException e) {
+            // not thrown by StringWriter
+            throw new IllegalStateException(e);
+        }
+        return stringWriter.toString();
+    }
+
+    private static byte[] encode(final int[] roiIds, final long[][] counts, final boolean highPrecision) {
+        final Integer[] order = new Integer[roiIds.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt(i -> roiIds[i]));
+
+        final ByteWriter writer = new ByteWriter(1 + 4 * roiIds.length);
+        writer.write((FORMAT_VERSION << 1) | (highPrecision ? HIGH_PRECISION_FLAG : 0));
+        int previousRoiId = 0;
+        for (final int i : order) {
+            writeEntry(writer, roiIds[i] - previousRoiId, counts[i], highPrecision);
+            previousRoiId = roiIds[i];
+        }
+        return writer.toByteArray();
+    }
+
+    private static void writeEntry(final ByteWriter writer, final int roiIdDelta, final long[] counts, final boolean highPrecision) {
+        writer.writeVarLong(roiIdDelta);
+        writer.writeVarLong(counts[PRE]);
+        writer.writeVarLong(counts[POST]);
+        if (highPrecision) {
+            writer.writeVarLong(counts[PRE_HP]);
+            writer.writeVarLong(counts[POST_HP]);
+        }
+    }
+
+    private static int readHeader(final byte[] encoded) {
+        if (encoded.length == 0 || (encoded[0] >>> 1) != FORMAT_VERSION) {
+            throw new IllegalArgumentException("Unsupported roiInfoBinary format.");
+        }
+        return encoded[0];
+    }
+
+    /**
+     * Iterates over the entries of an encoded roiInfo.
+     */
+    private static class Cursor {
+
+        private final byte[] encoded;
+        private final boolean highPrecision;
+        private int position;
+        private int roiId;
+        private final long[] counts = new long[4];
+
+        private Cursor(final byte[] encoded) {
+            this(encoded, 1, 0, hasHighPrecisionCounts(encoded));
+        }
+
+        private Cursor(final byte[] encoded, final int position, final int previousRoiId, final boolean highPrecision) {
+            this.encoded = encoded;
+            this.position = position;
+            this.roiId = previousRoiId;
+            this.highPrecision = highPrecision;
+        }
+
+        private boolean next() {
+            if (position >= encoded.length) {
+                return false;
+            }
+            roiId += (int) readVarLong();
+            counts[PRE] = readVarLong();
+            counts[POST] = readVarLong();
+            if (highPrecision) {
+                counts[PRE_HP] = readVarLong();
+                counts[POST_HP] = readVarLong();
+            }
+            return true;
+        }
+
+        private long readVarLong() {
+            long value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                if (position >= encoded.length) {
+                    throw new IllegalArgumentException("Truncated roiInfoBinary.");
+                }
+                b = encoded[position++];
+                value |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+    }
+
+    private static class ByteWriter {
+
+        private byte[] bytes;
+        private int size;
+
+        private ByteWriter(final int initialCapacity) {
+            this.bytes = new byte[Math.max(initialCapacity, 8)];
+        }
+
+        private void write(final int b) {
+            if (size == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * size);
+            }
+            bytes[size++] = (byte) b;
+        }
+
+        private void write(final byte[] source, final int offset, final int length) {
+            if (size + length > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(size + length, 2 * bytes.length));
+            }
+            System.arraycopy(source, offset, bytes, size, length);
+            size += length;
+        }
+
+        private void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                write((int) ((value & 0x7F) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+
+}
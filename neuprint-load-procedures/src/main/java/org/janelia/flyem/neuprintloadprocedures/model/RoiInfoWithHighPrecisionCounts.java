@@ -178,6 +178,27 @@ public class RoiInfoWithHighPrecisionCounts {
         }
     }
 
+    /**
+     * Adds the pre, post, preHP, and postHP counts of every ROI in the provided roiInfo to this roiInfo.
+     *
+     * @param roiInfo roiInfo with counts to add
+     */
+    public void addRoiInfo(RoiInfoWithHighPrecisionCounts roiInfo) {
+        for (Map.Entry<String, SynapseCounterWithHighPrecisionCounts> entry : roiInfo.synapseCountsPerRoi.entrySet()) {
+            SynapseCounterWithHighPrecisionCounts toAdd = entry.getValue();
+            SynapseCounterWithHighPrecisionCounts current = this.synapseCountsPerRoi.get(entry.getKey());
+            if (current == null) {
+                this.synapseCountsPerRoi.put(entry.getKey(), new SynapseCounterWithHighPrecisionCounts(toAdd.getPre(), toAdd.getPost(), toAdd.getPreHP(), toAdd.getPostHP()));
+            } else {
+                this.synapseCountsPerRoi.put(entry.getKey(), new SynapseCounterWithHighPrecisionCounts(
+                        current.getPre() + toAdd.getPre(),
+                        current.getPost() + toAdd.getPost(),
+                        current.getPreHP() + toAdd.getPreHP(),
+                        current.getPostHP() + toAdd.getPostHP()));
+            }
+        }
+    }
+
     /**
      * @return JSON of org.janelia.flyem.neuprintloadprocedures.procedures.model.RoiInfoWithHighPrecisionCounts to be added as an roiInfo property
      * on a node
@@ -0,0 +1,148 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * An immutable set of ROI ids from a {@link RoiDictionary}, stored as a bitset, together with the id of the first
+ * listed (super-level) ROI. Instances should be obtained from {@link RoiDictionary#getRoiSet} so that equal sets are
+ * shared.
+ */
+public final class RoiSet {
+
+    /**
+     * The empty ROI set.
+     */
+    public static final RoiSet EMPTY = new RoiSet(new long[0], -1, 0);
+
+    private final long[] words;
+    private final int superLevelRoiId;
+    // ids in ascending order (sets are shared, so this is computed once rather than on every iteration)
+    private final int[] roiIds;
+
+    private RoiSet(final long[] words, final int superLevelRoiId, final int size) {
+        this.words = words;
+        this.superLevelRoiId = superLevelRoiId;
+        this.roiIds = new int[size];
+        int i = 0;
+        for (int word = 0; word < words.length; word++) {
+            long bits = words[word];
+            while (bits != 0) {
+                roiIds[i++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+            }
+        }
+    }
+
+    /**
+     * @return id of the first listed ROI or -1 if the set is empty
+     */
+    public int getSuperLevelRoiId() {
+        return superLevelRoiId;
+    }
+
+    /**
+     * @return number of ROIs in the set
+     */
+    public int size() {
+        return roiIds.length;
+    }
+
+    public boolean isEmpty() {
+        return roiIds.length == 0;
+    }
+
+    /**
+     * @param index index from 0 to size() - 1
+     * @return the index-th smallest ROI id in the set
+     */
+    public int getRoiId(final int index) {
+        return roiIds[index];
+    }
+
+    /**
+     * @param roiId ROI id
+     * @return true if the ROI is in the set
+     */
+    public boolean contains(final int roiId) {
+        final int word = roiId >>> 6;
+        return word < words.length && (words[word] & (1L << roiId)) != 0;
+    }
+
+    /**
+     * @return ROI ids in ascending order
+     */
+    public int[] getRoiIds() {
+        return roiIds.clone();
+    }
+
+    /**
+     * @param dictionary dictionary used to create this set
+     * @return ROI names with the super-level ROI first
+     */
+    public Set<String> getRoiNames(final RoiDictionary dictionary) {
+        final Set<String> roiNames = new LinkedHashSet<>();
+        if (superLevelRoiId >= 0) {
+            roiNames.add(dictionary.getName(superLevelRoiId));
+        }
+        for (final int roiId : roiIds) {
+            roiNames.add(dictionary.getName(roiId));
+        }
+        return roiNames;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        } else if (o instanceof RoiSet) {
+            final RoiSet that = (RoiSet) o;
+            return this.superLevelRoiId == that.superLevelRoiId && Arrays.equals(this.words, that.words);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(words) + superLevelRoiId;
+    }
+
+    @Override
+    public String toString() {
+        return "RoiSet" + Arrays.toString(roiIds) + " super=" + superLevelRoiId;
+    }
+
+    static class Builder {
+
+        private long[] words = new long[4];
+        private int superLevelRoiId = -1;
+        private int size;
+
+        void add(final int roiId) {
+            if (superLevelRoiId < 0) {
+                superLevelRoiId = roiId;
+            }
+            final int word = roiId >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, Math.max(word + 1, 2 * words.length));
+            }
+            if ((words[word] & (1L << roiId)) == 0) {
+                words[word] |= 1L << roiId;
+                size++;
+            }
+        }
+
+        RoiSet build() {
+            if (size == 0) {
+                return EMPTY;
+            }
+            int wordCount = words.length;
+            while (words[wordCount - 1] == 0) {
+                wordCount--;
+            }
+            return new RoiSet(Arrays.copyOf(words, wordCount), superLevelRoiId, size);
+        }
+    }
+
+}
@@ -3,8 +3,14 @@ package org.janelia.flyem.neuprintloadprocedures.procedures;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
+import org.janelia.flyem.neuprintloadprocedures.MetaCounterShards;
+import org.janelia.flyem.neuprintloadprocedures.MetaNodeSnapshot;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiCounts;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoWithHighPrecisionCounts;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -12,6 +18,7 @@ import org.neo4j.graphdb.Label;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Relationship;
 import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.graphdb.ResourceIterator;
 import org.neo4j.graphdb.Transaction;
 import org.neo4j.logging.Log;
 import org.neo4j.procedure.Context;
@@ -22,11 +29,15 @@ import org.neo4j.procedure.Procedure;
 
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
-import java.util.Arrays;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.BODY_ID;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONFIDENCE;
@@ -35,17 +46,23 @@ import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONNE
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONTAINS;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.DATASET_BODY_IDs;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.FROM;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LAST_DATABASE_EDIT;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LINKS_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.NEURON;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_HP_THRESHOLD;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_HP_THRESHOLD;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_DICTIONARY;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO_BINARY;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SUPER_LEVEL_ROIS;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSES_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TIME_STAMP;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_POST_COUNT;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TOTAL_PRE_COUNT;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.TYPE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.WEIGHT;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.WEIGHT_HP;
@@ -102,7 +119,7 @@ public class LoadingProcedures {
                 log.error("Meta node not found for dataset: " + datasetLabel);
                 throw new RuntimeException("Meta node not found for dataset: " + datasetLabel);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
 
             int[] results = setConnectionSetRoiInfoAndGetWeightAndWeightHP(synapsesForConnectionSet, connectionSet, preHPThreshold, postHPThreshold, metaNodeRoiSet);
@@ -150,7 +167,7 @@ public class LoadingProcedures {
             Set<Node> synapseNodes = getSynapseNodesFromSynapseSet(synapseSet);
             Long preCount = 0L;
             Long postCount = 0L;
-            RoiInfo roiInfo = new RoiInfo();
+            RoiCounts roiCounts = new RoiCounts();
 
             final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
 
@@ -160,30 +177,26 @@ public class LoadingProcedures {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
-            Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
+            MetaNodeSnapshot metaNodeSnapshot = MetaNodeSnapshot.get(metaNode);
+            Set<String> metaNodeRoiSet = metaNodeSnapshot.getRoiSet();
+
+            // counts of the synapses newly added to each ConnectionSet, added to its stored values once all synapses are linked
+            final Map<Node, ConnectionSetCounts> connectionSetCountsMap = new LinkedHashMap<>();
 
             for (Node synapse : synapseNodes) {
 
                 acquireWriteLockForNode(synapse);
 
-                String synapseType;
-                if (synapse.hasProperty(TYPE)) {
-                    synapseType = (String) synapse.getProperty(TYPE);
-                } else {
-                    log.error(String.format("Synapse does not have type property: %s", synapse.getAllProperties()));
-                    throw new RuntimeException(String.format("Synapse does not have type property: %s", synapse.getAllProperties()));
-                }
-                if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
-                    log.error(String.format("Synapse does not have type property equal to pre or post: %s", synapse.getAllProperties()));
-                    throw new RuntimeException(String.format("Synapse does not have type property equal to pre or post: %s", synapse.getAllProperties()));
-                }
+                String synapseType = getSynapseType(synapse);
 
                 // for each synapse that the synapse SynapsesTo, create or add to a ConnectionSet and ConnectsTo
                 for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
                     Node otherSynapse = synapsesToRel.getOtherNode(synapse);
                     Node otherSegment = getSegmentThatContainsSynapse(otherSynapse);
                     Node connectionSet;
+                    Node preSynapse;
+                    Node postSynapse;
                     if (otherSegment == null) {
                         log.warn("Synapse does not belong to segment: " + otherSynapse.getAllProperties());
                     } else {
@@ -196,40 +209,48 @@ public class LoadingProcedures {
                         }
                         if (synapseType.equals(PRE)) {
                             // look for connection set from original segment to other segment (create ConnectsTo and ConnectionSet if doesn't exist)
-                            connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(bodyId, otherBodyId, segment, otherSegment, synapse, otherSynapse, dataset, timeStamp);
+                            connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRel(bodyId, otherBodyId, segment, otherSegment, dataset, timeStamp);
+                            preSynapse = synapse;
+                            postSynapse = otherSynapse;
                         } else {
                             // look for connection set from other segment to original segment (create ConnectsTo and ConnectionSet if doesn't exist)
-                            connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(otherBodyId, bodyId, otherSegment, segment, otherSynapse, synapse, dataset, timeStamp);
+                            connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRel(otherBodyId, bodyId, otherSegment, segment, dataset, timeStamp);
+                            preSynapse = otherSynapse;
+                            postSynapse = synapse;
                         }
 
-                        Set<Node> synapseForConnectionSet = getSynapsesForConnectionSet(connectionSet);
-                        // recompute roiInfo on connection sets and set weight and weightHP
-                        if (addCSRoiInfoAndWeightHP) {
-                            setConnectionSetRoiInfoWeightAndWeightHP(synapseForConnectionSet, connectionSet, preHPThreshold, postHPThreshold, metaNodeRoiSet);
-                        } else {
-                            addWeightToConnectsTo(synapseForConnectionSet, connectionSet, metaNodeRoiSet);
+                        // only synapses that are new to the connection set change its roiInfo, weight and weightHP
+                        ConnectionSetCounts connectionSetCounts = connectionSetCountsMap.computeIfAbsent(connectionSet, k -> new ConnectionSetCounts());
+                        if (addSynapseToConnectionSet(connectionSet, preSynapse)) {
+                            connectionSetCounts.addSynapse(preSynapse, preHPThreshold, postHPThreshold, metaNodeRoiSet);
+                        }
+                        if (addSynapseToConnectionSet(connectionSet, postSynapse)) {
+                            connectionSetCounts.addSynapse(postSynapse, preHPThreshold, postHPThreshold, metaNodeRoiSet);
                         }
                     }
                 }
 
                 // get synapse rois for adding to the body and roiInfo
-                final Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+                final RoiSet synapseRois = metaNodeSnapshot.getRois(synapse);
 
                 if (synapseType.equals(PRE)) {
-                    for (String roi : synapseRois) {
-                        roiInfo.incrementPreForRoi(roi);
-                    }
+                    roiCounts.incrementPre(synapseRois);
                     preCount++;
                 } else {
-                    for (String roi : synapseRois) {
-                        roiInfo.incrementPostForRoi(roi);
-                    }
+                    roiCounts.incrementPost(synapseRois);
                     postCount++;
                 }
             }
+            RoiInfo roiInfo = roiCounts.toRoiInfo(metaNodeSnapshot.getRoiDictionary());
+
+            // add the new synapses to roiInfo on connection sets and to weight and weightHP on ConnectsTo
+            for (Map.Entry<Node, ConnectionSetCounts> connectionSetCountsEntry : connectionSetCountsMap.entrySet()) {
+                addCountsToConnectionSet(connectionSetCountsEntry.getKey(), connectionSetCountsEntry.getValue(), addCSRoiInfoAndWeightHP);
+            }
+
             // update neuron pre/post, roiInfo, rois
             // recompute information on containing segment
-            recomputeSegmentPropertiesFollowingSynapsesAddition(preCount, postCount, roiInfo, segment, metaNode, dataset, neuronThreshold);
+            recomputeSegmentPropertiesFollowingSynapsesAddition(preCount, postCount, roiInfo, segment, dataset, neuronThreshold, metaNodeSnapshot.getSuperLevelRois());
 
         } catch (Exception e) {
             log.error("Error running loader.addPropsAndConnectionInfoToSegment: " + e);
@@ -240,14 +261,411 @@ public class LoadingProcedures {
 
     }
 
-    public static Set<String> getMetaNodeRoiSet(final Node metaNode) {
-        Set<String> metaNodeRoiSet = new HashSet<>();
-        if (metaNode.hasProperty(ROI_INFO)) {
-            String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO);
-            RoiInfoWithHighPrecisionCounts metaRoiInfo = RoiInfoWithHighPrecisionCounts.getRoiInfoHPFromString(metaRoiInfoString);
-            metaNodeRoiSet = metaRoiInfo.getSetOfRois();
+    @Procedure(value = "loader.addPropsAndConnectionInfoToSegments", mode = Mode.WRITE)
+    @Description("loader.addPropsAndConnectionInfoToSegments(bodyIds, dataset, preHPThreshold, postHPThreshold, neuronThreshold, addCSRoiInfoAndWeightHP) : " +
+            "Same as loader.addPropsAndConnectionInfoToSegment for every segment in bodyIds that has a SynapseSet, reading the Meta node once and writing each ConnectionSet once. " +
+            "Returns bodyId, pre, post and neuron for each segment.")
+    public Stream<SegmentConnectionInfoResult> addPropsAndConnectionInfoToSegments(@Name("bodyIds") final List<Long> bodyIds,
+                                                                                    @Name("dataset") final String dataset,
+                                                                                    @Name("preHPThreshold") final Double preHPThreshold,
+                                                                                    @Name("postHPThreshold") final Double postHPThreshold,
+                                                                                    @Name("neuronThreshold") final Long neuronThreshold,
+                                                                                    @Name("addCSRoiInfoAndWeightHP") final boolean addCSRoiInfoAndWeightHP) {
+
+        log.info("loader.addPropsAndConnectionInfoToSegments: entry");
+
+        final List<SegmentConnectionInfoResult> results = new ArrayList<>();
+
+        try {
+            if (bodyIds == null || dataset == null || preHPThreshold == null || postHPThreshold == null) {
+                log.error("loader.addPropsAndConnectionInfoToSegments: Missing input arguments.");
+                throw new RuntimeException("loader.addPropsAndConnectionInfoToSegments: Missing input arguments.");
+            }
+
+            final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+            // Meta node state is the same for every segment in the call
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForMetaNode(metaNode);
+            final MetaNodeSnapshot metaNodeSnapshot = MetaNodeSnapshot.get(metaNode);
+            final Set<String> metaNodeRoiSet = metaNodeSnapshot.getRoiSet();
+            final Set<String> metaNodeSuperLevelRois = metaNodeSnapshot.getSuperLevelRois();
+            // reused for each segment
+            final RoiCounts roiCounts = new RoiCounts();
+
+            // synapses of each ConnectionSet touched by the segments, keyed by pre and post body id
+            final Map<String, ConnectionSetMembers> connectionSetMembersMap = new LinkedHashMap<>();
+
+            for (final Long bodyId : bodyIds) {
+                final Node segment = GraphTraversalTools.getSegment(dbService, bodyId, dataset);
+                if (segment == null) {
+                    log.warn("loader.addPropsAndConnectionInfoToSegments: Segment not found: " + bodyId);
+                    continue;
+                }
+                final Node synapseSet = GraphTraversalTools.getSynapseSetForNeuron(segment);
+                if (synapseSet == null) {
+                    continue;
+                }
+
+                acquireWriteLockForSegmentSubgraph(segment);
+
+                long preCount = 0L;
+                long postCount = 0L;
+                roiCounts.clear();
+
+                for (Node synapse : getSynapseNodesFromSynapseSet(synapseSet)) {
+
+                    acquireWriteLockForNode(synapse);
+
+                    String synapseType = getSynapseType(synapse);
+
+                    for (Relationship synapsesToRel : synapse.getRelationships(RelationshipType.withName(SYNAPSES_TO))) {
+                        Node otherSynapse = synapsesToRel.getOtherNode(synapse);
+                        Node otherSegment = getSegmentThatContainsSynapse(otherSynapse);
+                        if (otherSegment == null) {
+                            log.warn("Synapse does not belong to segment: " + otherSynapse.getAllProperties());
+                        } else {
+                            if (!otherSegment.hasProperty(BODY_ID)) {
+                                log.error("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
+                                throw new RuntimeException("Segment node is missing a bodyId. Neo4j ID is: " + otherSegment.getId());
+                            }
+                            Long otherBodyId = (Long) otherSegment.getProperty(BODY_ID);
+                            if (synapseType.equals(PRE)) {
+                                connectionSetMembersMap.computeIfAbsent(bodyId + ":" + otherBodyId, k -> new ConnectionSetMembers(bodyId, otherBodyId, segment, otherSegment))
+                                        .addSynapses(synapse, otherSynapse);
+                            } else {
+                                connectionSetMembersMap.computeIfAbsent(otherBodyId + ":" + bodyId, k -> new ConnectionSetMembers(otherBodyId, bodyId, otherSegment, segment))
+                                        .addSynapses(otherSynapse, synapse);
+                            }
+                        }
+                    }
+
+                    // get synapse rois for adding to the body and roiInfo
+                    final RoiSet synapseRois = metaNodeSnapshot.getRois(synapse);
+
+                    if (synapseType.equals(PRE)) {
+                        roiCounts.incrementPre(synapseRois);
+                        preCount++;
+                    } else {
+                        roiCounts.incrementPost(synapseRois);
+                        postCount++;
+                    }
+                }
+                RoiInfo roiInfo = roiCounts.toRoiInfo(metaNodeSnapshot.getRoiDictionary());
+
+                recomputeSegmentPropertiesFollowingSynapsesAddition(preCount, postCount, roiInfo, segment, dataset, neuronThreshold, metaNodeSuperLevelRois);
+
+                results.add(new SegmentConnectionInfoResult(bodyId, preCount, postCount, segment.hasLabel(Label.label(NEURON))));
+            }
+
+            // write each ConnectionSet once, with the synapses contributed by every segment in the call
+            for (final ConnectionSetMembers members : connectionSetMembersMap.values()) {
+                Node connectionSet = getConnectionSetOrCreateConnectionSetAndConnectsToRel(members.preBodyId, members.postBodyId, members.preSegment, members.postSegment, dataset, timeStamp);
+
+                ConnectionSetCounts connectionSetCounts = new ConnectionSetCounts();
+                for (final Node synapse : members.synapses) {
+                    if (addSynapseToConnectionSet(connectionSet, synapse)) {
+                        connectionSetCounts.addSynapse(synapse, preHPThreshold, postHPThreshold, metaNodeRoiSet);
+                    }
+                }
+
+                addCountsToConnectionSet(connectionSet, connectionSetCounts, addCSRoiInfoAndWeightHP);
+            }
+
+            log.info(String.format("loader.addPropsAndConnectionInfoToSegments: added connection info to %d segments and %d connection sets", results.size(), connectionSetMembersMap.size()));
+
+        } catch (Exception e) {
+            log.error("Error running loader.addPropsAndConnectionInfoToSegments: " + e);
+            throw new RuntimeException("Error running loader.addPropsAndConnectionInfoToSegments: " + e);
+        }
+
+        log.info("loader.addPropsAndConnectionInfoToSegments: exit");
+
+        return results.stream();
+    }
+
+    @Procedure(value = "loader.recomputeMetaNodeSynapseCounts", mode = Mode.WRITE)
+    @Description("loader.recomputeMetaNodeSynapseCounts(dataset) : Recompute totalPreCount, totalPostCount, and roiInfo on the Meta node with a single pass over all synapses in the dataset.")
+    public void recomputeMetaNodeSynapseCounts(@Name("dataset") final String dataset) {
+
+        log.info("loader.recomputeMetaNodeSynapseCounts: entry");
+
+        try {
+            if (dataset == null) {
+                log.error("loader.recomputeMetaNodeSynapseCounts: Missing input arguments.");
+                throw new RuntimeException("loader.recomputeMetaNodeSynapseCounts: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForNode(metaNode);
+
+            long totalPreCount = 0;
+            long totalPostCount = 0;
+            // only the ROIs of the Meta node are counted, read from property keys as bitsets
+            MetaNodeSnapshot metaNodeSnapshot = MetaNodeSnapshot.get(metaNode);
+            RoiCounts roiCounts = new RoiCounts();
+
+            ResourceIterator<Node> synapses = dbService.findNodes(Label.label(dataset + "-" + SYNAPSE));
+            while (synapses.hasNext()) {
+                Node synapse = synapses.next();
+                Object synapseType = synapse.getProperty(TYPE, null);
+                if (PRE.equals(synapseType)) {
+                    totalPreCount++;
+                    roiCounts.incrementPre(metaNodeSnapshot.getRois(synapse));
+                } else if (POST.equals(synapseType)) {
+                    totalPostCount++;
+                    roiCounts.incrementPost(metaNodeSnapshot.getRois(synapse));
+                } else {
+                    log.warn(String.format("loader.recomputeMetaNodeSynapseCounts: Synapse does not have type property equal to pre or post: %s", synapse.getAllProperties()));
+                }
+            }
+            synapses.close();
+            RoiInfo roiInfo = roiCounts.toRoiInfo(metaNodeSnapshot.getRoiDictionary());
+
+            metaNode.setProperty(TOTAL_PRE_COUNT, totalPreCount);
+            metaNode.setProperty(TOTAL_POST_COUNT, totalPostCount);
+            metaNode.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+            metaNode.setProperty(LAST_DATABASE_EDIT, LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS));
+            // changes waiting in counter shards are already included in the recomputed counts
+            MetaCounterShards.resetShards(dbService, dataset);
+
+        } catch (Exception e) {
+            log.error("Error running loader.recomputeMetaNodeSynapseCounts: " + e);
+            throw new RuntimeException("Error running loader.recomputeMetaNodeSynapseCounts: " + e);
         }
-        return metaNodeRoiSet;
+
+        log.info("loader.recomputeMetaNodeSynapseCounts: exit");
+
+    }
+
+    @Procedure(value = "loader.setMetaCounterShards", mode = Mode.WRITE)
+    @Description("loader.setMetaCounterShards(dataset, shardCount) : Write changes to the Meta node's synapse counts, roiInfo and latest mutation to shardCount MetaCounterShard nodes " +
+            "so that concurrent write procedures do not wait on the Meta node's lock. Existing shards are folded into the Meta node first. A shardCount of 0 turns sharding off.")
+    public void setMetaCounterShards(@Name("dataset") final String dataset,
+                                     @Name("shardCount") final Long shardCount) {
+
+        log.info("loader.setMetaCounterShards: entry");
+
+        try {
+            if (dataset == null || shardCount == null || shardCount < 0) {
+                log.error("loader.setMetaCounterShards: Missing input arguments.");
+                throw new RuntimeException("loader.setMetaCounterShards: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForNode(metaNode);
+
+            MetaCounterShards.setShardCount(dbService, metaNode, shardCount.intValue(), log);
+
+        } catch (Exception e) {
+            log.error("Error running loader.setMetaCounterShards: " + e);
+            throw new RuntimeException("Error running loader.setMetaCounterShards: " + e);
+        }
+
+        log.info("loader.setMetaCounterShards: exit");
+
+    }
+
+    @Procedure(value = "loader.foldMetaCounterShards", mode = Mode.WRITE)
+    @Description("loader.foldMetaCounterShards(dataset) : Add the changes held by the dataset's MetaCounterShard nodes to the Meta node and reset the shards.")
+    public void foldMetaCounterShards(@Name("dataset") final String dataset) {
+
+        log.info("loader.foldMetaCounterShards: entry");
+
+        try {
+            if (dataset == null) {
+                log.error("loader.foldMetaCounterShards: Missing input arguments.");
+                throw new RuntimeException("loader.foldMetaCounterShards: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            acquireWriteLockForNode(metaNode);
+
+            MetaCounterShards.foldShards(dbService, metaNode, log);
+
+        } catch (Exception e) {
+            log.error("Error running loader.foldMetaCounterShards: " + e);
+            throw new RuntimeException("Error running loader.foldMetaCounterShards: " + e);
+        }
+
+        log.info("loader.foldMetaCounterShards: exit");
+
+    }
+
+    @Procedure(value = "loader.verifyConnectionSets", mode = Mode.READ)
+    @Description("loader.verifyConnectionSets(dataset) : Recompute roiInfo on every ConnectionSet and weight and weightHP on its ConnectsTo from all of the ConnectionSet's synapses " +
+            "and compare them to the incrementally maintained values. Returns the ConnectionSets that differ, which can be passed to loader.repairConnectionSets.")
+    public Stream<ConnectionSetVerificationResult> verifyConnectionSets(@Name("dataset") final String dataset) {
+
+        log.info("loader.verifyConnectionSets: entry");
+
+        final Set<String> metaNodeRoiSet;
+        final Map<String, Double> thresholdMap;
+        try {
+            if (dataset == null) {
+                log.error("loader.verifyConnectionSets: Missing input arguments.");
+                throw new RuntimeException("loader.verifyConnectionSets: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+        } catch (Exception e) {
+            log.error("Error running loader.verifyConnectionSets: " + e);
+            throw new RuntimeException("Error running loader.verifyConnectionSets: " + e);
+        }
+
+        // differences are streamed as the ConnectionSets are read rather than collected first
+        return dbService.findNodes(Label.label(dataset + "-" + CONNECTION_SET)).stream()
+                .map(connectionSet -> verifyConnectionSet(connectionSet, metaNodeRoiSet, thresholdMap, false))
+                .filter(Objects::nonNull)
+                .onClose(() -> log.info("loader.verifyConnectionSets: exit"));
+    }
+
+    @Procedure(value = "loader.repairConnectionSets", mode = Mode.WRITE)
+    @Description("loader.repairConnectionSets(datasetBodyIds, dataset) : Overwrite roiInfo on the given ConnectionSets (datasetBodyIds as returned by loader.verifyConnectionSets) and weight and weightHP " +
+            "on their ConnectsTo with the values recomputed from all of each ConnectionSet's synapses. Each call is committed in one transaction, so large numbers of ConnectionSets should be passed in batches. " +
+            "Returns the ConnectionSets that differed and were repaired.")
+    public Stream<ConnectionSetVerificationResult> repairConnectionSets(@Name("datasetBodyIds") final List<String> datasetBodyIdsList,
+                                                                        @Name("dataset") final String dataset) {
+
+        log.info("loader.repairConnectionSets: entry");
+
+        final List<ConnectionSetVerificationResult> results = new ArrayList<>();
+
+        try {
+            if (datasetBodyIdsList == null || dataset == null) {
+                log.error("loader.repairConnectionSets: Missing input arguments.");
+                throw new RuntimeException("loader.repairConnectionSets: Missing input arguments.");
+            }
+
+            Node metaNode = getMetaNode(dbService, dataset);
+            if (metaNode == null) {
+                log.error("Meta node not found for dataset: " + dataset);
+                throw new RuntimeException("Meta node not found for dataset: " + dataset);
+            }
+            final Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
+            final Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+
+            for (final String datasetBodyIds : datasetBodyIdsList) {
+                Node connectionSet = dbService.findNode(Label.label(dataset + "-" + CONNECTION_SET), DATASET_BODY_IDs, datasetBodyIds);
+                if (connectionSet == null) {
+                    log.warn("loader.repairConnectionSets: ConnectionSet not found: " + datasetBodyIds);
+                    continue;
+                }
+                ConnectionSetVerificationResult result = verifyConnectionSet(connectionSet, metaNodeRoiSet, thresholdMap, true);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+
+            log.info(String.format("loader.repairConnectionSets: repaired %d of %d connection sets in %s", results.size(), datasetBodyIdsList.size(), dataset));
+
+        } catch (Exception e) {
+            log.error("Error running loader.repairConnectionSets: " + e);
+            throw new RuntimeException("Error running loader.repairConnectionSets: " + e);
+        }
+
+        log.info("loader.repairConnectionSets: exit");
+
+        return results.stream();
+    }
+
+    /**
+     * Recomputes roiInfo, weight and weightHP of a ConnectionSet from all of its synapses and compares them to the stored values.
+     *
+     * @param connectionSet  ConnectionSet node
+     * @param metaNodeRoiSet ROIs of the Meta node
+     * @param thresholdMap   pre and post high-precision thresholds of the Meta node
+     * @param repair         if true, a ConnectionSet that differs is overwritten with the recomputed values
+     * @return stored and recomputed values, or null if they match
+     */
+    private ConnectionSetVerificationResult verifyConnectionSet(final Node connectionSet,
+                                                                final Set<String> metaNodeRoiSet,
+                                                                final Map<String, Double> thresholdMap,
+                                                                final boolean repair) {
+        final double preHPThreshold = thresholdMap.get(PRE_HP_THRESHOLD);
+        final double postHPThreshold = thresholdMap.get(POST_HP_THRESHOLD);
+
+        Set<Node> synapsesForConnectionSet = getSynapsesForConnectionSet(connectionSet);
+        Object[] roiInfoPostHPAndPost = getRoiInfoForConnectionSet(synapsesForConnectionSet, preHPThreshold, postHPThreshold, metaNodeRoiSet);
+        long computedWeightHP = (int) roiInfoPostHPAndPost[1];
+        long computedWeight = (int) roiInfoPostHPAndPost[2];
+
+        Relationship connectsToRel = getConnectsToForConnectionSet(connectionSet);
+        Long storedWeight = connectsToRel == null ? null : ((Number) connectsToRel.getProperty(WEIGHT, 0)).longValue();
+        boolean matches = (storedWeight == null ? 0L : storedWeight) == computedWeight;
+
+        // roiInfo and weightHP are only maintained if the ConnectionSet was loaded with addCSRoiInfoAndWeightHP
+        final boolean hasRoiInfo = connectionSet.hasProperty(ROI_INFO);
+        Long storedWeightHP = null;
+        String storedRoiInfo = null;
+        String computedRoiInfo = null;
+        if (hasRoiInfo) {
+            storedWeightHP = connectsToRel == null ? null : ((Number) connectsToRel.getProperty(WEIGHT_HP, 0)).longValue();
+            // normalize the stored JSON so that ROI order and formatting do not count as differences
+            storedRoiInfo = getRoiInfoHPFromString((String) connectionSet.getProperty(ROI_INFO)).getAsJsonString();
+            computedRoiInfo = ((RoiInfoWithHighPrecisionCounts) roiInfoPostHPAndPost[0]).getAsJsonString();
+            matches = matches && (storedWeightHP == null ? 0L : storedWeightHP) == computedWeightHP && storedRoiInfo.equals(computedRoiInfo);
+        }
+
+        if (matches) {
+            return null;
+        }
+
+        if (repair) {
+            acquireWriteLockForNode(connectionSet);
+            if (connectsToRel == null && computedWeight > 0) {
+                addConnectsToRelationship(
+                        connectionSet.getSingleRelationship(RelationshipType.withName(FROM), Direction.OUTGOING).getEndNode(),
+                        connectionSet.getSingleRelationship(RelationshipType.withName(TO), Direction.OUTGOING).getEndNode(),
+                        computedWeight);
+            }
+            if (hasRoiInfo) {
+                setConnectionSetRoiInfoWeightAndWeightHP(synapsesForConnectionSet, connectionSet, preHPThreshold, postHPThreshold, metaNodeRoiSet);
+            } else {
+                addWeightToConnectsTo(synapsesForConnectionSet, connectionSet, metaNodeRoiSet);
+            }
+        }
+        return new ConnectionSetVerificationResult((String) connectionSet.getProperty(DATASET_BODY_IDs, null),
+                storedWeight, computedWeight, storedWeightHP, hasRoiInfo ? computedWeightHP : null, storedRoiInfo, computedRoiInfo, repair);
+    }
+
+    /**
+     * @param metaNode Meta node for dataset
+     * @return unmodifiable superLevelRois of the Meta node, or null if it does not have them (see {@link MetaNodeSnapshot})
+     */
+    public static Set<String> getMetaNodeSuperLevelRois(final Node metaNode) {
+        return MetaNodeSnapshot.get(metaNode).getSuperLevelRois();
+    }
+
+    /**
+     * @param metaNode Meta node for dataset
+     * @return unmodifiable set of the ROIs in the Meta node's roiInfo (see {@link MetaNodeSnapshot})
+     */
+    public static Set<String> getMetaNodeRoiSet(final Node metaNode) {
+        return MetaNodeSnapshot.get(metaNode).getRoiSet();
     }
 
     public static void incrementSegmentPreCount(Node segment) {
@@ -287,19 +705,19 @@ public class LoadingProcedures {
         }.getType());
     }
 
-    private void recomputeSegmentPropertiesFollowingSynapsesAddition(Long preCount, Long postCount, RoiInfo roiInfo, Node containingSegment, Node metaNode, String dataset, Long neuronThreshold) {
+    private void recomputeSegmentPropertiesFollowingSynapsesAddition(Long preCount, Long postCount, RoiInfo roiInfo, Node containingSegment, String dataset, Long neuronThreshold, Set<String> metaNodeSuperLevelRois) {
         // set pre and post count, rois, roiInfo
         if (preCount > 0 || postCount > 0) {
             containingSegment.setProperty(PRE, preCount);
             containingSegment.setProperty(POST, postCount);
-            containingSegment.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+            setRoiInfoProperty(containingSegment, roiInfo.getAsJsonString());
             for (String roi : roiInfo.getSetOfRois()) {
                 containingSegment.setProperty(roi, true);
             }
         }
 
         if (shouldBeLabeledNeuron(containingSegment, neuronThreshold)) {
-            convertSegmentToNeuron(containingSegment, dataset, metaNode);
+            convertSegmentToNeuron(containingSegment, dataset, metaNodeSuperLevelRois);
         }
 
     }
@@ -320,6 +738,17 @@ public class LoadingProcedures {
     }
 
     public static void convertSegmentToNeuron(final Node segment, final String datasetLabel, final Node metaNode) {
+        convertSegmentToNeuron(segment, datasetLabel, metaNode == null ? null : getMetaNodeSuperLevelRois(metaNode));
+    }
+
+    /**
+     * Adds the Neuron labels to a segment and sets its clusterName (if it has roiInfo and pre and post counts).
+     *
+     * @param segment                segment node
+     * @param datasetLabel           dataset name
+     * @param metaNodeSuperLevelRois superLevelRois of the dataset Meta node (see {@link #getMetaNodeSuperLevelRois})
+     */
+    public static void convertSegmentToNeuron(final Node segment, final String datasetLabel, final Set<String> metaNodeSuperLevelRois) {
 
         segment.addLabel(Label.label(NEURON));
         segment.addLabel(Label.label(datasetLabel + "-" + NEURON));
@@ -348,18 +777,10 @@ public class LoadingProcedures {
         }
 
         if (setClusterName) {
-            if (metaNode != null) {
-                String[] metaNodeSuperLevelRois;
-                try {
-                    metaNodeSuperLevelRois = (String[]) metaNode.getProperty(SUPER_LEVEL_ROIS);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error retrieving " + SUPER_LEVEL_ROIS + " from Meta node for " + datasetLabel + ":" + e);
-                }
-                final Set<String> roiSet = new HashSet<>(Arrays.asList(metaNodeSuperLevelRois));
-                segment.setProperty("clusterName", generateClusterName(roiInfoObject, totalPre, totalPost, 0.10, roiSet));
-            } else {
-                throw new RuntimeException("Meta node is null.");
+            if (metaNodeSuperLevelRois == null) {
+                throw new RuntimeException("Error retrieving " + SUPER_LEVEL_ROIS + " from Meta node for " + datasetLabel);
             }
+            segment.setProperty("clusterName", generateClusterName(roiInfoObject, totalPre, totalPost, 0.10, metaNodeSuperLevelRois));
         }
 
     }
@@ -437,7 +858,7 @@ public class LoadingProcedures {
         int post = (int) roiInfoPostHPAndPost[2];
 
         // add to connection set node
-        connectionSet.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+        setRoiInfoProperty(connectionSet, roiInfo.getAsJsonString());
 
         return new int[]{post, postHP};
 
@@ -456,61 +877,15 @@ public class LoadingProcedures {
 
     private static Object[] getRoiInfoForConnectionSet(Set<Node> synapsesForConnectionSet, Double preHPThreshold, Double postHPThreshold, Set<String> metaNodeRoiSet) {
 
-        // for each pre/post add to count and check confidence to add to hp count
-        RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
-
-        // total postHP count for weightHP on ConnectsTo
-        int postHP = 0;
-        // total post count for weight on ConnectsTo
-        int post = 0;
+        ConnectionSetCounts connectionSetCounts = new ConnectionSetCounts();
 
         for (Node synapse : synapsesForConnectionSet) {
-            String type;
-            Double confidence;
-            if (synapse.hasProperty(TYPE)) {
-                type = (String) synapse.getProperty(TYPE);
-            } else {
+            if (!connectionSetCounts.addSynapse(synapse, preHPThreshold, postHPThreshold, metaNodeRoiSet)) {
                 break;
             }
-            if (synapse.hasProperty(CONFIDENCE)) {
-                try {
-                    confidence = (Double) synapse.getProperty(CONFIDENCE);
-                } catch (ClassCastException cce) {
-                    float floatConfidence = (Float) synapse.getProperty(CONFIDENCE);
-                    confidence = (double) floatConfidence;
-                    // fix the issue
-                    synapse.setProperty(CONFIDENCE, confidence);
-                }
-            } else {
-                confidence = null;
-            }
-
-            Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
-            if (type.equals(PRE) && confidence != null && confidence > preHPThreshold) {
-                for (String roi : synapseRois) {
-                    roiInfo.incrementPreForRoi(roi);
-                    roiInfo.incrementPreHPForRoi(roi);
-                }
-            } else if (type.equals(PRE)) {
-                for (String roi : synapseRois) {
-                    roiInfo.incrementPreForRoi(roi);
-                }
-            } else if (type.equals(POST) && confidence != null && confidence > postHPThreshold) {
-                postHP++;
-                post++;
-                for (String roi : synapseRois) {
-                    roiInfo.incrementPostForRoi(roi);
-                    roiInfo.incrementPostHPForRoi(roi);
-                }
-            } else if (type.equals(POST)) {
-                post++;
-                for (String roi : synapseRois) {
-                    roiInfo.incrementPostForRoi(roi);
-                }
-            }
         }
 
-        return new Object[]{roiInfo, postHP, post};
+        return new Object[]{connectionSetCounts.roiInfo, connectionSetCounts.postHP, connectionSetCounts.post};
     }
 
     public static String addSynapseToRoiInfoWithHP(String roiInfoString, String roi, String synapseType, Double synapseConfidence, Double preHPThreshold, Double postHPThreshold) {
@@ -551,38 +926,143 @@ public class LoadingProcedures {
 
     }
 
-    private Node getConnectionSetOrCreateConnectionSetAndConnectsToRelFromSynapses(Long preBodyId, Long postBodyId, Node preBody, Node postBody, Node preSynapse, Node postSynapse, String dataset, LocalDateTime timeStamp) {
+    /**
+     * Sets the roiInfo JSON on a Segment or ConnectionSet node and removes any roiInfoBinary property, which would
+     * otherwise be out of date. Use {@link #updateRoiInfoBinary} to keep both properties.
+     *
+     * @param node        Segment or ConnectionSet node
+     * @param roiInfoJson roiInfo JSON string
+     */
+    public static void setRoiInfoProperty(Node node, String roiInfoJson) {
+        node.setProperty(ROI_INFO, roiInfoJson);
+        if (node.hasProperty(ROI_INFO_BINARY)) {
+            node.removeProperty(ROI_INFO_BINARY);
+        }
+    }
+
+    /**
+     * @param metaNode Meta node for dataset
+     * @return the dataset's {@link RoiDictionary} (empty if the dataset has no roiInfoBinary properties)
+     */
+    public static RoiDictionary getRoiDictionaryFromMetaNode(Node metaNode) {
+        return new RoiDictionary((String[]) metaNode.getProperty(ROI_DICTIONARY, null));
+    }
+
+    /**
+     * Stores the dictionary on the Meta node if ROIs have been added to it since it was read.
+     *
+     * @param metaNode      Meta node for dataset
+     * @param roiDictionary dictionary read with {@link #getRoiDictionaryFromMetaNode}
+     */
+    public static void saveRoiDictionaryToMetaNode(Node metaNode, RoiDictionary roiDictionary) {
+        String[] storedNames = (String[]) metaNode.getProperty(ROI_DICTIONARY, new String[0]);
+        if (storedNames.length != roiDictionary.size()) {
+            metaNode.setProperty(ROI_DICTIONARY, roiDictionary.getNames());
+        }
+    }
+
+    /**
+     * Adds a synapse to (delta = 1) or removes a synapse from (delta = -1) the roiInfoBinary property of a node, and
+     * rewrites the roiInfo JSON from the result, without parsing the existing JSON. High-precision counts are
+     * updated if the roiInfoBinary includes them. Does nothing if the node does not have a roiInfoBinary property.
+     *
+     * @param node              Segment or ConnectionSet node
+     * @param roiDictionary     dataset dictionary (the ROI is added if needed; save it with {@link #saveRoiDictionaryToMetaNode})
+     * @param roi               ROI name
+     * @param synapseType       pre or post
+     * @param synapseConfidence synapse confidence
+     * @param preHPThreshold    high-precision threshold for presynaptic densities (null for Segment nodes)
+     * @param postHPThreshold   high-precision threshold for postsynaptic densities (null for Segment nodes)
+     * @param delta             1 to add the synapse or -1 to remove it
+     * @return the updated roiInfoBinary, or null if the node does not have one
+     */
+    public static byte[] updateRoiInfoBinary(Node node, RoiDictionary roiDictionary, String roi, String synapseType, Double synapseConfidence, Double preHPThreshold, Double postHPThreshold, int delta) {
+        byte[] roiInfoBinary = (byte[]) node.getProperty(ROI_INFO_BINARY, null);
+        if (roiInfoBinary == null) {
+            return null;
+        }
+
+        int roiId = roiDictionary.getOrAddId(roi);
+        if (synapseType.equals(PRE)) {
+            boolean highPrecision = preHPThreshold != null && synapseConfidence != null && synapseConfidence > preHPThreshold;
+            roiInfoBinary = RoiInfoCodec.addToRoi(roiInfoBinary, roiId, delta, 0, highPrecision ? delta : 0, 0);
+        } else if (synapseType.equals(POST)) {
+            boolean highPrecision = postHPThreshold != null && synapseConfidence != null && synapseConfidence > postHPThreshold;
+            roiInfoBinary = RoiInfoCodec.addToRoi(roiInfoBinary, roiId, 0, delta, 0, highPrecision ? delta : 0);
+        }
+
+        node.setProperty(ROI_INFO_BINARY, roiInfoBinary);
+        node.setProperty(ROI_INFO, RoiInfoCodec.toJsonString(roiInfoBinary, roiDictionary));
+        return roiInfoBinary;
+    }
+
+    private Node getConnectionSetOrCreateConnectionSetAndConnectsToRel(Long preBodyId, Long postBodyId, Node preBody, Node postBody, String dataset, LocalDateTime timeStamp) {
         // look for connection set from original segment to other segment
         Node connectionSet = getConnectionSetNode(dbService, preBodyId, postBodyId, dataset);
         if (connectionSet == null) {
             // create connection set if it doesn't exist
             connectionSet = createConnectionSetNode(dataset, preBody, postBody, timeStamp);
             // create connects to between neurons
-            addConnectsToRelationship(preBody, postBody, 1); // 1 since there is one known post for this connection
+            addConnectsToRelationship(preBody, postBody, 0); // 0 since the synapses are counted as they are added
         }
-        // add synapses to connection set
-        boolean hasPreRel = false;
-        boolean hasPostRel = false;
-        long preId = preSynapse.getId();
-        long postId = postSynapse.getId();
+        return connectionSet;
+    }
 
-        for (Relationship containsRel : connectionSet.getRelationships(RelationshipType.withName(CONTAINS), Direction.OUTGOING)) {
-            Node containedSynapse = containsRel.getEndNode();
-            if (containedSynapse.getId() == preId) {
-                hasPreRel = true;
-            } else if (containedSynapse.getId() == postId) {
-                hasPostRel = true;
+    /**
+     * Adds a Contains relationship from the ConnectionSet to the synapse if there isn't one already. Checks the
+     * synapse's incoming Contains relationships (its SynapseSet and ConnectionSets), not the ConnectionSet's, so
+     * the cost does not grow with the number of synapses in the ConnectionSet.
+     *
+     * @param connectionSet ConnectionSet node
+     * @param synapse       Synapse node
+     * @return true if the synapse was added to the ConnectionSet
+     */
+    public static boolean addSynapseToConnectionSet(Node connectionSet, Node synapse) {
+        long connectionSetId = connectionSet.getId();
+        for (Relationship containsRel : synapse.getRelationships(RelationshipType.withName(CONTAINS), Direction.INCOMING)) {
+            if (containsRel.getStartNodeId() == connectionSetId) {
+                return false;
             }
         }
+        connectionSet.createRelationshipTo(synapse, RelationshipType.withName(CONTAINS));
+        return true;
+    }
 
-        if (!hasPreRel) {
-            connectionSet.createRelationshipTo(preSynapse, RelationshipType.withName(CONTAINS));
+    /**
+     * Adds counts for synapses newly added to a ConnectionSet to its roiInfo and to the weight and weightHP of the
+     * corresponding ConnectsTo relationship. Use {@link #setConnectionSetRoiInfoWeightAndWeightHP} (or
+     * loader.repairConnectionSets) to recompute the values from all synapses in the ConnectionSet instead.
+     *
+     * @param connectionSet           ConnectionSet node
+     * @param connectionSetCounts     counts for the added synapses
+     * @param addCSRoiInfoAndWeightHP true to update roiInfo and weightHP as well as weight
+     */
+    private static void addCountsToConnectionSet(Node connectionSet, ConnectionSetCounts connectionSetCounts, boolean addCSRoiInfoAndWeightHP) {
+        if (addCSRoiInfoAndWeightHP) {
+            RoiInfoWithHighPrecisionCounts roiInfo = getRoiInfoHPFromString((String) connectionSet.getProperty(ROI_INFO, "{}"));
+            roiInfo.addRoiInfo(connectionSetCounts.roiInfo);
+            setRoiInfoProperty(connectionSet, roiInfo.getAsJsonString());
         }
-        if (!hasPostRel) {
-            connectionSet.createRelationshipTo(postSynapse, RelationshipType.withName(CONTAINS));
+
+        Relationship connectsToRel = getConnectsToForConnectionSet(connectionSet);
+        if (connectsToRel != null) {
+            connectsToRel.setProperty(WEIGHT, ((Number) connectsToRel.getProperty(WEIGHT, 0)).intValue() + connectionSetCounts.post);
+            if (addCSRoiInfoAndWeightHP) {
+                connectsToRel.setProperty(WEIGHT_HP, ((Number) connectsToRel.getProperty(WEIGHT_HP, 0)).intValue() + connectionSetCounts.postHP);
+            }
         }
+    }
 
-        return connectionSet;
+    private static Relationship getConnectsToForConnectionSet(Node connectionSet) {
+        Node preSynapticNode = connectionSet.getSingleRelationship(RelationshipType.withName(FROM), Direction.OUTGOING).getEndNode();
+        long postSynapticNodeId = connectionSet.getSingleRelationship(RelationshipType.withName(TO), Direction.OUTGOING).getEndNodeId();
+
+        for (Relationship connectsToRel : preSynapticNode.getRelationships(RelationshipType.withName(CONNECTS_TO), Direction.OUTGOING)) {
+            if (connectsToRel.getEndNodeId() == postSynapticNodeId) {
+                return connectsToRel;
+            }
+        }
+        return null;
     }
 
     private Node createConnectionSetNode(String datasetLabel, Node startSegment, Node endSegment, LocalDateTime timeStamp) {
@@ -624,20 +1104,34 @@ public class LoadingProcedures {
         synapseSet.createRelationshipTo(synapse, RelationshipType.withName(CONTAINS));
     }
 
+    /**
+     * @param metaNode Meta node for dataset (may be null)
+     * @return unmodifiable map of {@link GraphTraversalTools#PRE_HP_THRESHOLD} and {@link GraphTraversalTools#POST_HP_THRESHOLD}
+     * to the Meta node's thresholds, which are 0.0 if not set (see {@link MetaNodeSnapshot})
+     */
     public static Map<String, Double> getPreAndPostHPThresholdFromMetaNode(Node metaNode) {
-        Map<String, Double> thresholdMap = new HashMap<>();
-        if (metaNode != null && metaNode.hasProperty(PRE_HP_THRESHOLD)) {
-            thresholdMap.put(PRE_HP_THRESHOLD, (Double) metaNode.getProperty(PRE_HP_THRESHOLD));
-        } else {
+        if (metaNode == null) {
+            Map<String, Double> thresholdMap = new HashMap<>();
             thresholdMap.put(PRE_HP_THRESHOLD, 0.0);
-        }
-        if (metaNode != null && metaNode.hasProperty(POST_HP_THRESHOLD)) {
-            thresholdMap.put(POST_HP_THRESHOLD, (Double) metaNode.getProperty(POST_HP_THRESHOLD));
-        } else {
             thresholdMap.put(POST_HP_THRESHOLD, 0.0);
+            return thresholdMap;
         }
+        return MetaNodeSnapshot.get(metaNode).getThresholdMap();
+    }
 
-        return thresholdMap;
+    private String getSynapseType(Node synapse) {
+        String synapseType;
+        if (synapse.hasProperty(TYPE)) {
+            synapseType = (String) synapse.getProperty(TYPE);
+        } else {
+            log.error(String.format("Synapse does not have type property: %s", synapse.getAllProperties()));
+            throw new RuntimeException(String.format("Synapse does not have type property: %s", synapse.getAllProperties()));
+        }
+        if (!synapseType.equals(PRE) && !synapseType.equals(POST)) {
+            log.error(String.format("Synapse does not have type property equal to pre or post: %s", synapse.getAllProperties()));
+            throw new RuntimeException(String.format("Synapse does not have type property equal to pre or post: %s", synapse.getAllProperties()));
+        }
+        return synapseType;
     }
 
     private void acquireWriteLockForSegmentSubgraph(Node segment) {
@@ -687,6 +1181,13 @@ public class LoadingProcedures {
         }
     }
 
+    private void acquireWriteLockForMetaNode(Node metaNode) {
+        // sharded datasets apply Meta node changes to counter shards instead of the Meta node
+        if (!MetaCounterShards.isSharded(metaNode)) {
+            acquireWriteLockForNode(metaNode);
+        }
+    }
+
     private void acquireWriteLockForNode(Node node) {
         if (node != null) {
             try (Transaction tx = dbService.beginTx()) {
@@ -705,4 +1206,119 @@ public class LoadingProcedures {
         }
     }
 
+    /**
+     * Synapses that belong in the ConnectionSet from one segment to another.
+     */
+    private static class ConnectionSetMembers {
+        private final long preBodyId;
+        private final long postBodyId;
+        private final Node preSegment;
+        private final Node postSegment;
+        private final Set<Node> synapses = new HashSet<>();
+
+        private ConnectionSetMembers(long preBodyId, long postBodyId, Node preSegment, Node postSegment) {
+            this.preBodyId = preBodyId;
+            this.postBodyId = postBodyId;
+            this.preSegment = preSegment;
+            this.postSegment = postSegment;
+        }
+
+        private void addSynapses(Node preSynapse, Node postSynapse) {
+            synapses.add(preSynapse);
+            synapses.add(postSynapse);
+        }
+    }
+
+    private static class ConnectionSetCounts {
+        private final RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        // total postHP count for weightHP on ConnectsTo
+        private int postHP = 0;
+        // total post count for weight on ConnectsTo
+        private int post = 0;
+
+        private boolean addSynapse(Node synapse, Double preHPThreshold, Double postHPThreshold, Set<String> metaNodeRoiSet) {
+            String type;
+            Double confidence;
+            if (synapse.hasProperty(TYPE)) {
+                type = (String) synapse.getProperty(TYPE);
+            } else {
+                return false;
+            }
+            if (synapse.hasProperty(CONFIDENCE)) {
+                try {
+                    confidence = (Double) synapse.getProperty(CONFIDENCE);
+                } catch (ClassCastException cce) {
+                    float floatConfidence = (Float) synapse.getProperty(CONFIDENCE);
+                    confidence = (double) floatConfidence;
+                    // fix the issue
+                    synapse.setProperty(CONFIDENCE, confidence);
+                }
+            } else {
+                confidence = null;
+            }
+
+            // for each pre/post add to count and check confidence to add to hp count
+            Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
+            if (type.equals(PRE) && confidence != null && confidence > preHPThreshold) {
+                for (String roi : synapseRois) {
+                    roiInfo.incrementPreForRoi(roi);
+                    roiInfo.incrementPreHPForRoi(roi);
+                }
+            } else if (type.equals(PRE)) {
+                for (String roi : synapseRois) {
+                    roiInfo.incrementPreForRoi(roi);
+                }
+            } else if (type.equals(POST) && confidence != null && confidence > postHPThreshold) {
+                postHP++;
+                post++;
+                for (String roi : synapseRois) {
+                    roiInfo.incrementPostForRoi(roi);
+                    roiInfo.incrementPostHPForRoi(roi);
+                }
+            } else if (type.equals(POST)) {
+                post++;
+                for (String roi : synapseRois) {
+                    roiInfo.incrementPostForRoi(roi);
+                }
+            }
+            return true;
+        }
+    }
+
+    public static class ConnectionSetVerificationResult {
+        public String datasetBodyIds;
+        public Long storedWeight;
+        public Long computedWeight;
+        public Long storedWeightHP;
+        public Long computedWeightHP;
+        public String storedRoiInfo;
+        public String computedRoiInfo;
+        public Boolean repaired;
+
+        public ConnectionSetVerificationResult(String datasetBodyIds, Long storedWeight, Long computedWeight, Long storedWeightHP, Long computedWeightHP, String storedRoiInfo, String computedRoiInfo, Boolean repaired) {
+            this.datasetBodyIds = datasetBodyIds;
+            this.storedWeight = storedWeight;
+            this.computedWeight = computedWeight;
+            this.storedWeightHP = storedWeightHP;
+            this.computedWeightHP = computedWeightHP;
+            this.storedRoiInfo = storedRoiInfo;
+            this.computedRoiInfo = computedRoiInfo;
+            this.repaired = repaired;
+        }
+    }
+
+    public static class SegmentConnectionInfoResult {
+        public Long bodyId;
+        public Long pre;
+        public Long post;
+        public Boolean neuron;
+
+        public SegmentConnectionInfoResult(Long bodyId, Long pre, Long post, Boolean neuron) {
+            this.bodyId = bodyId;
+            this.pre = pre;
+            this.post = post;
+            this.neuron = neuron;
+        }
+    }
+
 }
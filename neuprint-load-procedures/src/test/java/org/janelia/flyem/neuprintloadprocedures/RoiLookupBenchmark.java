@@ -0,0 +1,117 @@
+package org.janelia.flyem.neuprintloadprocedures;
+
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.spatial.Point;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Times reading the ROIs of synapses by checking every ROI of the dataset with hasProperty, by reading all
+ * properties, by iterating property keys ({@link GraphTraversalTools#getSynapseRois}), and as a bitset from a
+ * {@link MetaNodeSnapshot}, against an embedded database with a dataset of 300 ROIs. {@link RoiLookupTest} checks
+ * that the lookups agree. Not part of the regular test run; remove the {@link Ignore} annotation and run it with
+ * mvn test -Dtest=RoiLookupBenchmark.
+ */
+@Ignore("benchmark")
+public class RoiLookupBenchmark {
+
+    @ClassRule
+    public static Neo4jRule neo4j = new Neo4jRule();
+    private static GraphDatabaseService dbService;
+
+    private static final int ROI_COUNT = 300;
+    private static final int SYNAPSE_COUNT = 20000;
+    private static final int ROUNDS = 5;
+
+    @BeforeClass
+    public static void before() {
+        dbService = neo4j.getGraphDatabaseService();
+
+        StringBuilder roiInfo = new StringBuilder("{");
+        for (int roi = 0; roi < ROI_COUNT; roi++) {
+            roiInfo.append(roi == 0 ? "" : ",").append(String.format("\"roi%d\":{\"pre\":1,\"post\":1}", roi));
+        }
+        roiInfo.append("}");
+        dbService.execute("CREATE (n:Meta{dataset:'test'}) SET n.roiInfo=$roiInfo", Collections.singletonMap("roiInfo", roiInfo.toString())).close();
+
+        Point location = (Point) dbService.execute("RETURN point({x:1, y:2, z:3}) AS location").next().get("location");
+        try (Transaction tx = dbService.beginTx()) {
+            for (int i = 0; i < SYNAPSE_COUNT; i++) {
+                Node synapse = dbService.createNode(Label.label("Synapse"), Label.label("test-Synapse"));
+                synapse.setProperty("type", i % 2 == 0 ? "pre" : "post");
+                synapse.setProperty("confidence", .9);
+                synapse.setProperty("location", location);
+                synapse.setProperty("timeStamp", "2019-01-01T00:00:00");
+                // a super-level ROI and two nested ROIs, as in typical datasets
+                synapse.setProperty("roi" + (i % 10), true);
+                synapse.setProperty("roi" + (10 + i % 90), true);
+                synapse.setProperty("roi" + (100 + i % 200), true);
+            }
+            tx.success();
+        }
+    }
+
+    @Test
+    public void reportRoiLookupTimes() {
+
+        try (Transaction tx = dbService.beginTx()) {
+            Node metaNode = dbService.findNode(Label.label("Meta"), "dataset", "test");
+            MetaNodeSnapshot metaNodeSnapshot = MetaNodeSnapshot.get(metaNode);
+            Set<String> metaNodeRoiSet = metaNodeSnapshot.getRoiSet();
+            Assert.assertEquals(ROI_COUNT, metaNodeRoiSet.size());
+
+            List<Node> synapses = dbService.findNodes(Label.label("test-Synapse")).stream().collect(Collectors.toList());
+
+            Function<Node, Set<String>> hasPropertyLookup = synapse -> metaNodeRoiSet.stream().filter(synapse::hasProperty).collect(Collectors.toSet());
+            Function<Node, Set<String>> allPropertiesLookup = synapse -> {
+                Map<String, Object> properties = synapse.getAllProperties();
+                return properties.keySet().stream().filter(metaNodeRoiSet::contains).collect(Collectors.toSet());
+            };
+            Function<Node, Set<String>> propertyKeyLookup = synapse -> GraphTraversalTools.getSynapseRois(synapse, metaNodeRoiSet);
+            Function<Node, RoiSet> bitsetLookup = metaNodeSnapshot::getRois;
+
+            List<String> report = new ArrayList<>();
+            report.add(String.format("best of %d rounds over %d synapses, %d ROIs (ms):", ROUNDS, SYNAPSE_COUNT, ROI_COUNT));
+            report.add(String.format("hasProperty per ROI: %.1f", time(synapses, hasPropertyLookup)));
+            report.add(String.format("getAllProperties: %.1f", time(synapses, allPropertiesLookup)));
+            report.add(String.format("property keys: %.1f", time(synapses, propertyKeyLookup)));
+            report.add(String.format("bitset from snapshot: %.1f", time(synapses, bitsetLookup)));
+            System.out.println(String.join("\n", report));
+
+            tx.success();
+        }
+    }
+
+    private static double time(List<Node> synapses, Function<Node, ?> lookup) {
+        long best = Long.MAX_VALUE;
+        int found = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (Node synapse : synapses) {
+                if (lookup.apply(synapse) != null) {
+                    found++;
+                }
+            }
+            best = Math.min(best, System.nanoTime() - start);
+        }
+        Assert.assertEquals(ROUNDS * synapses.size(), found);
+        return best / 1e6;
+    }
+
+}
@@ -0,0 +1,156 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+
+/**
+ * Tests the {@link RoiDictionary}, {@link RoiSet} and {@link RoiCounts} classes.
+ */
+public class RoiCountsTest {
+
+    @Test
+    public void shouldAssignDenseIdsAndInternRoiSets() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+
+        RoiSet roiSet1 = dictionary.getRoiSet(Arrays.asList("roiB", "roiA"));
+        RoiSet roiSet2 = dictionary.getRoiSet(new String[]{"roiB", "roiA", "roiB"}, 3);
+        RoiSet roiSet3 = dictionary.getRoiSet(Arrays.asList("roiA", "roiB"));
+
+        Assert.assertEquals(0, dictionary.getId("roiB"));
+        Assert.assertEquals(1, dictionary.getId("roiA"));
+        Assert.assertEquals(-1, dictionary.getId("roiC"));
+        Assert.assertEquals("roiA", dictionary.getName(1));
+
+        // same rois with the same first listed roi share an instance
+        Assert.assertSame(roiSet1, roiSet2);
+        Assert.assertNotSame(roiSet1, roiSet3);
+        Assert.assertEquals(2, dictionary.getRoiSetCount());
+
+        Assert.assertEquals(2, roiSet1.size());
+        Assert.assertEquals(0, roiSet1.getSuperLevelRoiId());
+        Assert.assertEquals(1, roiSet3.getSuperLevelRoiId());
+        Assert.assertTrue(roiSet1.contains(1));
+        Assert.assertFalse(roiSet1.contains(2));
+        Assert.assertEquals(new LinkedHashSet<>(Arrays.asList("roiA", "roiB")), roiSet3.getRoiNames(dictionary));
+        Assert.assertEquals("roiA", roiSet3.getRoiNames(dictionary).iterator().next());
+
+        Assert.assertSame(RoiSet.EMPTY, dictionary.getRoiSet(Collections.emptyList()));
+        Assert.assertSame(RoiSet.EMPTY, dictionary.getRoiSet(null));
+        Assert.assertEquals(-1, RoiSet.EMPTY.getSuperLevelRoiId());
+
+    }
+
+    @Test
+    public void shouldHandleMoreThanSixtyFourRois() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        for (int i = 0; i < 200; i++) {
+            dictionary.getOrAddId("roi" + i);
+        }
+        RoiSet roiSet = dictionary.getRoiSet(Arrays.asList("roi150", "roi3", "roi64"));
+
+        Assert.assertArrayEquals(new int[]{3, 64, 150}, roiSet.getRoiIds());
+        Assert.assertEquals(150, roiSet.getSuperLevelRoiId());
+        Assert.assertFalse(roiSet.contains(199));
+
+    }
+
+    @Test
+    public void shouldProduceSameRoiInfoAsStringKeyedCounters() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        RoiCounts roiCounts = new RoiCounts();
+        RoiInfo roiInfo = new RoiInfo();
+        RoiInfoWithHighPrecisionCounts roiInfoWithHighPrecisionCounts = new RoiInfoWithHighPrecisionCounts();
+
+        List<List<String>> synapseRois = Arrays.asList(
+                Arrays.asList("roiA", "roiB"),
+                Collections.singletonList("roiC"),
+                Arrays.asList("roiB", "roi'C"),
+                Collections.emptyList(),
+                Arrays.asList("roiA", "roiC"));
+
+        for (int i = 0; i < 20; i++) {
+            List<String> rois = synapseRois.get(i % synapseRois.size());
+            boolean pre = i % 3 == 0;
+            boolean highPrecision = i % 4 != 0;
+            RoiSet roiSet = dictionary.getRoiSet(rois);
+            if (pre) {
+                roiCounts.incrementPre(roiSet, highPrecision);
+            } else {
+                roiCounts.incrementPost(roiSet, highPrecision);
+            }
+            for (String roi : rois) {
+                if (pre) {
+                    roiInfo.incrementPreForRoi(roi);
+                    roiInfoWithHighPrecisionCounts.incrementPreForRoi(roi);
+                    if (highPrecision) {
+                        roiInfoWithHighPrecisionCounts.incrementPreHPForRoi(roi);
+                    }
+                } else {
+                    roiInfo.incrementPostForRoi(roi);
+                    roiInfoWithHighPrecisionCounts.incrementPostForRoi(roi);
+                    if (highPrecision) {
+                        roiInfoWithHighPrecisionCounts.incrementPostHPForRoi(roi);
+                    }
+                }
+            }
+        }
+
+        Assert.assertEquals(roiInfo.getAsJsonString(), roiCounts.toRoiInfo(dictionary).getAsJsonString());
+        Assert.assertEquals(roiInfoWithHighPrecisionCounts.getAsJsonString(), roiCounts.toRoiInfoWithHighPrecisionCounts(dictionary).getAsJsonString());
+
+        // adding to an existing roiInfo sums the counts
+        RoiInfo existingRoiInfo = new RoiInfo();
+        existingRoiInfo.addSynapseCountsForRoi("roiA", 10, 20);
+        existingRoiInfo.addSynapseCountsForRoi("roiZ", 1, 2);
+        roiCounts.addTo(existingRoiInfo, dictionary);
+        Assert.assertEquals(roiInfo.get("roiA").getPre() + 10, existingRoiInfo.get("roiA").getPre());
+        Assert.assertEquals(roiInfo.get("roiA").getPost() + 20, existingRoiInfo.get("roiA").getPost());
+        Assert.assertEquals(1, existingRoiInfo.get("roiZ").getPre());
+        Assert.assertEquals(roiInfo.get("roiC").getPost(), existingRoiInfo.get("roiC").getPost());
+
+    }
+
+    @Test
+    public void shouldLookUpKnownRoisWithoutAddingOrInterning() {
+
+        RoiDictionary dictionary = new RoiDictionary(new String[]{"roiA", "roiB", "roiC"});
+
+        RoiSet roiSet = dictionary.getRoiSetOfKnownRois(Arrays.asList("type", "roiC", "location", "roiA"));
+
+        Assert.assertArrayEquals(new int[]{0, 2}, roiSet.getRoiIds());
+        Assert.assertEquals(3, dictionary.size());
+        Assert.assertEquals(0, dictionary.getRoiSetCount());
+        Assert.assertSame(RoiSet.EMPTY, dictionary.getRoiSetOfKnownRois(Arrays.asList("type", "confidence")));
+
+    }
+
+    @Test
+    public void shouldResetCountsOnClear() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        RoiCounts roiCounts = new RoiCounts();
+
+        roiCounts.incrementPre(dictionary.getRoiSet(Arrays.asList("roiA", "roiB")), true);
+        roiCounts.clear();
+
+        Assert.assertEquals(0, roiCounts.getRoiIds().length);
+        Assert.assertEquals(0, roiCounts.getPre(0));
+        Assert.assertEquals(0, roiCounts.getPreHP(1));
+        Assert.assertEquals("{}", roiCounts.toRoiInfo(dictionary).getAsJsonString());
+
+        roiCounts.incrementPost(dictionary.getRoiSet(Collections.singletonList("roiB")));
+        Assert.assertArrayEquals(new int[]{1}, roiCounts.getRoiIds());
+        Assert.assertEquals(1, roiCounts.getPost(1));
+        Assert.assertEquals(0, roiCounts.getPostHP(1));
+
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.janelia.flyem.neuprintloadprocedures.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+/**
+ * Tests the {@link RoiInfoCodec} class.
+ */
+public class RoiInfoCodecTest {
+
+    @Test
+    public void shouldRenderSameJsonAsRoiInfo() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        // ids are assigned in a different order than names sort
+        for (int i = 300; i > 0; i--) {
+            dictionary.getOrAddId("roi" + i);
+        }
+
+        RoiInfo roiInfo = new RoiInfo();
+        roiInfo.addSynapseCountsForRoi("roi1", 5, 0);
+        roiInfo.addSynapseCountsForRoi("roi250", 0, 123456789012L);
+        roiInfo.addSynapseCountsForRoi("roi'C", 1, 2);
+        roiInfo.addSynapseCountsForRoi("roi<&>", 3, 4);
+
+        byte[] encoded = RoiInfoCodec.encode(roiInfo, dictionary);
+
+        Assert.assertFalse(RoiInfoCodec.hasHighPrecisionCounts(encoded));
+        Assert.assertEquals(roiInfo.getAsJsonString(), RoiInfoCodec.toJsonString(encoded, dictionary));
+        Assert.assertEquals(roiInfo.getAsJsonString(), RoiInfoCodec.toRoiInfo(encoded, dictionary).getAsJsonString());
+        Assert.assertTrue(encoded.length < roiInfo.getAsJsonString().length() / 2);
+
+        Assert.assertEquals("{}", RoiInfoCodec.toJsonString(RoiInfoCodec.encode(new RoiInfo(), dictionary), dictionary));
+
+    }
+
+    @Test
+    public void shouldRenderSameJsonAsRoiInfoWithHighPrecisionCounts() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        roiInfo.addSynapseCountsForRoi("roiB", 5, 6, 1, 2);
+        roiInfo.addSynapseCountsForRoi("roiA", 0, 200, 0, 150);
+
+        byte[] encoded = RoiInfoCodec.encode(roiInfo, dictionary);
+
+        Assert.assertTrue(RoiInfoCodec.hasHighPrecisionCounts(encoded));
+        Assert.assertEquals(roiInfo.getAsJsonString(), RoiInfoCodec.toJsonString(encoded, dictionary));
+        Assert.assertEquals(roiInfo.getAsJsonString(), RoiInfoCodec.toRoiInfoWithHighPrecisionCounts(encoded, dictionary).getAsJsonString());
+
+        // same encoding from RoiCounts with the same dictionary
+        RoiCounts roiCounts = new RoiCounts();
+        RoiSet roiA = dictionary.getRoiSet(new String[]{"roiA"}, 1);
+        RoiSet roiB = dictionary.getRoiSet(new String[]{"roiB"}, 1);
+        for (int i = 0; i < 200; i++) {
+            roiCounts.incrementPost(roiA, i < 150);
+        }
+        for (int i = 0; i < 5; i++) {
+            roiCounts.incrementPre(roiB, i < 1);
+        }
+        for (int i = 0; i < 6; i++) {
+            roiCounts.incrementPost(roiB, i < 2);
+        }
+        Assert.assertArrayEquals(encoded, RoiInfoCodec.encode(roiCounts, true));
+
+    }
+
+    @Test
+    public void shouldReadSingleRoiCounts() {
+
+        RoiDictionary dictionary = new RoiDictionary();
+        RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        roiInfo.addSynapseCountsForRoi("roiA", 1, 2, 0, 1);
+        roiInfo.addSynapseCountsForRoi("roiB", 7, 8, 6, 5);
+        dictionary.getOrAddId("roiC");
+        byte[] encoded = RoiInfoCodec.encode(roiInfo, dictionary);
+
+        long[] counts = new long[4];
+        Assert.assertTrue(RoiInfoCodec.getCountsForRoi(encoded, dictionary.getId("roiB"), counts));
+        Assert.assertArrayEquals(new long[]{7, 8, 6, 5}, counts);
+        Assert.assertFalse(RoiInfoCodec.getCountsForRoi(encoded, dictionary.getId("roiC"), counts));
+        Assert.assertArrayEquals(new long[]{0, 0, 0, 0}, counts);
+
+        SynapseCounterWithHighPrecisionCounts counter = (SynapseCounterWithHighPrecisionCounts) RoiInfoCodec.getSynapseCounterForRoi(encoded, "roiA", dictionary);
+        Assert.assertEquals(2, counter.getPost());
+        Assert.assertEquals(1, counter.getPostHP());
+        Assert.assertNull(RoiInfoCodec.getSynapseCounterForRoi(encoded, "notInDictionary", dictionary));
+
+        Assert.assertEquals("roiB", RoiInfoCodec.getRoiWithMaxCount(encoded, dictionary, RoiInfoCodec.PRE));
+        Assert.assertNull(RoiInfoCodec.getRoiWithMaxCount(RoiInfoCodec.encode(new RoiInfo(), dictionary), dictionary, RoiInfoCodec.PRE));
+
+    }
+
+    @Test
+    public void addToRoiShouldMatchIncrementAndDecrement() {
+
+        Random random = new Random(14);
+        RoiDictionary dictionary = new RoiDictionary();
+        String[] rois = new String[200];
+        for (int i = 0; i < rois.length; i++) {
+            rois[i] = "roi" + i;
+            dictionary.getOrAddId(rois[i]);
+        }
+
+        RoiInfoWithHighPrecisionCounts expected = new RoiInfoWithHighPrecisionCounts();
+        byte[] encoded = RoiInfoCodec.encode(expected, dictionary);
+
+        for (int i = 0; i < 5000; i++) {
+            // use few ROIs so that entries are added and removed often
+            String roi = rois[random.nextInt(8) * 25];
+            int roiId = dictionary.getId(roi);
+            boolean pre = random.nextBoolean();
+            boolean highPrecision = random.nextBoolean();
+            // bias towards increments so that counts grow
+            int delta = random.nextInt(5) < 3 ? 1 : -1;
+            if (delta > 0) {
+                if (pre) {
+                    expected.incrementPreForRoi(roi);
+                    if (highPrecision) {
+                        expected.incrementPreHPForRoi(roi);
+                    }
+                } else {
+                    expected.incrementPostForRoi(roi);
+                    if (highPrecision) {
+                        expected.incrementPostHPForRoi(roi);
+                    }
+                }
+            } else {
+                if (pre) {
+                    expected.decrementPreForRoi(roi);
+                    if (highPrecision) {
+                        expected.decrementPreHPForRoi(roi);
+                    }
+                } else {
+                    expected.decrementPostForRoi(roi);
+                    if (highPrecision) {
+                        expected.decrementPostHPForRoi(roi);
+                    }
+                }
+            }
+            int hpDelta = highPrecision ? delta : 0;
+            encoded = pre ?
+                    RoiInfoCodec.addToRoi(encoded, roiId, delta, 0, hpDelta, 0) :
+                    RoiInfoCodec.addToRoi(encoded, roiId, 0, delta, 0, hpDelta);
+
+            Assert.assertEquals(expected.getAsJsonString(), RoiInfoCodec.toJsonString(encoded, dictionary));
+        }
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldErrorOnUnknownFormat() {
+        RoiInfoCodec.toJsonString(new byte[]{(byte) 0x7F, 1, 1, 1}, new RoiDictionary());
+    }
+
+}
@@ -97,6 +97,25 @@ public class RoiInfoWithHighPrecisionCountsTest {
         Assert.assertEquals("{\"testRoi\":{\"preHP\":1,\"postHP\":1,\"pre\":1,\"post\":1}}", synapseCountsPerRoiJson);
     }
 
+    @Test
+    public void shouldAddCountsFromAnotherRoiInfo() {
+
+        RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
+        roiInfo.incrementPreForRoi("roiA");
+        roiInfo.incrementPreHPForRoi("roiA");
+
+        RoiInfoWithHighPrecisionCounts toAdd = new RoiInfoWithHighPrecisionCounts();
+        toAdd.incrementPreForRoi("roiA");
+        toAdd.incrementPostForRoi("roiB");
+        toAdd.incrementPostHPForRoi("roiB");
+
+        roiInfo.addRoiInfo(toAdd);
+
+        Assert.assertEquals("{\"roiA\":{\"preHP\":1,\"postHP\":0,\"pre\":2,\"post\":0},\"roiB\":{\"preHP\":0,\"postHP\":1,\"pre\":0,\"post\":1}}", roiInfo.getAsJsonString());
+        // the added roiInfo is unchanged
+        Assert.assertEquals("{\"roiA\":{\"preHP\":0,\"postHP\":0,\"pre\":1,\"post\":0},\"roiB\":{\"preHP\":0,\"postHP\":1,\"pre\":0,\"post\":1}}", toAdd.getAsJsonString());
+    }
+
     @Test
     public void shouldStoreRoisInLexicographicOrder() {
 
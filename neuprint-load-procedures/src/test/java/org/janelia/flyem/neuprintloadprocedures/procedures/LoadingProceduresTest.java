@@ -12,9 +12,12 @@ import org.junit.Test;
 import org.neo4j.driver.v1.Config;
 import org.neo4j.driver.v1.Driver;
 import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.harness.junit.Neo4jRule;
 
+import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.addSynapseToRoiInfoWithHP;
@@ -85,6 +88,77 @@ public class LoadingProceduresTest {
         }
     }
 
+    @Test
+    public void shouldAddConnectionInfoToManySegmentsLikeSingleSegmentCalls() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+            Session session = driver.session();
+
+            // the same segments in two datasets: one loaded segment by segment, the other in a single call
+            for (String dataset : new String[]{"single", "bulk"}) {
+                createSegmentsWithSynapses(session, dataset);
+            }
+
+            for (long bodyId = 1; bodyId <= 3; bodyId++) {
+                final long segmentBodyId = bodyId;
+                session.writeTransaction(tx -> tx.run("MATCH (n:`single-Segment`{bodyId:$bodyId})-[:Contains]->(ss:SynapseSet) " +
+                                "CALL loader.addPropsAndConnectionInfoToSegment(n, ss, 'single', .5, .5, 1, true) RETURN n.bodyId",
+                        parameters("bodyId", segmentBodyId)));
+            }
+
+            List<Record> results = session.writeTransaction(tx -> tx.run("CALL loader.addPropsAndConnectionInfoToSegments([1, 2, 3, 4], 'bulk', .5, .5, 1, true) " +
+                    "YIELD bodyId, pre, post, neuron RETURN bodyId, pre, post, neuron ORDER BY bodyId").list());
+
+            // body 4 does not exist
+            Assert.assertEquals(3, results.size());
+            Assert.assertEquals(1L, results.get(0).get("pre").asLong());
+            Assert.assertEquals(0L, results.get(0).get("post").asLong());
+            Assert.assertEquals(2L, results.get(2).get("post").asLong());
+            Assert.assertTrue(results.get(2).get("neuron").asBoolean());
+
+            for (String query : new String[]{
+                    "MATCH (a:`%s-Segment`)-[r:ConnectsTo]->(b) RETURN a.bodyId + '>' + b.bodyId + ':' + r.weight + ':' + r.weightHP AS value ORDER BY value",
+                    "MATCH (cs:ConnectionSet:`%1$s-ConnectionSet`)-[:Contains]->(s) RETURN substring(cs.datasetBodyIds, size('%1$s')) + ':' + cs.roiInfo + ':' + count(s) AS value ORDER BY value",
+                    "MATCH (n:`%s-Segment`) RETURN n.bodyId + ':' + n.pre + ':' + n.post + ':' + n.roiInfo + ':' + coalesce(n.clusterName, '') + ':' + size(labels(n)) AS value ORDER BY value"}) {
+                List<String> single = session.readTransaction(tx -> tx.run(String.format(query, "single")).list(record -> record.get("value").asString()));
+                List<String> bulk = session.readTransaction(tx -> tx.run(String.format(query, "bulk")).list(record -> record.get("value").asString()));
+                Assert.assertFalse(single.isEmpty());
+                Assert.assertEquals(single, bulk);
+            }
+        }
+    }
+
+    @Test
+    public void shouldRecomputeMetaNodeSynapseCounts() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+            Session session = driver.session();
+
+            session.writeTransaction(tx -> tx.run("CREATE (n:test:Meta{dataset:'test'}) SET n.roiInfo='{\"roiA\":{\"pre\":10,\"post\":10},\"roiB\":{\"pre\":10,\"post\":10}}', n.totalPreCount=10, n.totalPostCount=10"));
+
+            // boolean properties that are not ROIs of the Meta node are not counted
+
+            session.writeTransaction(tx -> tx.run(
+                    "CREATE (s1:`test-Synapse`{location:$location1, type:\"pre\", confidence:0.6, roiA:true, roiB:true}) \n" +
+                            "CREATE (s2:`test-Synapse`{location:$location2, type:\"pre\", confidence:1.0, roiA:true}) \n" +
+                            "CREATE (s3:`test-Synapse`{location:$location3, type:\"post\", confidence:0.7, roiB:true}) \n" +
+                            "CREATE (s4:`test-Synapse`{location:$location4, type:\"post\", confidence:1.0, reviewed:true}) \n",
+                    parameters(
+                            "location1", point(9157, 2, 3, 1),
+                            "location2", point(9157, 4, 1, 1),
+                            "location3", point(9157, 7, 8, 1),
+                            "location4", point(9157, 2, 3, 2))));
+
+            session.writeTransaction(tx -> tx.run("CALL loader.recomputeMetaNodeSynapseCounts($dataset)", parameters("dataset", "test")));
+
+            Map<String, Object> metaNode = session.readTransaction(tx -> tx.run("MATCH (m:Meta{dataset:'test'}) RETURN m")).single().get(0).asNode().asMap();
+
+            Assert.assertEquals(2L, metaNode.get("totalPreCount"));
+            Assert.assertEquals(2L, metaNode.get("totalPostCount"));
+            Assert.assertEquals("{\"roiA\":{\"pre\":2,\"post\":0},\"roiB\":{\"pre\":1,\"post\":1}}", metaNode.get("roiInfo"));
+        }
+    }
+
     @Test
     public void shouldAddSynapseToRoiInfoWithHP() {
         RoiInfoWithHighPrecisionCounts roiInfo = new RoiInfoWithHighPrecisionCounts();
@@ -103,4 +177,63 @@ public class LoadingProceduresTest {
         Assert.assertEquals("{\"roiA\":{\"preHP\":1,\"postHP\":0,\"pre\":1,\"post\":1},\"roiB\":{\"preHP\":1,\"postHP\":1,\"pre\":1,\"post\":1}}",newRoiInfoString2);
 
     }
+
+    private static void createSegmentsWithSynapses(Session session, String dataset) {
+        session.writeTransaction(tx -> tx.run("CREATE (n:Meta{dataset:$dataset}) SET n.roiInfo='{\"roiA\":{\"pre\":0,\"post\":0}}', n.superLevelRois=['roiA']",
+                parameters("dataset", dataset)));
+        session.writeTransaction(tx -> tx.run(String.format("CREATE " +
+                        "(a:Segment:`%1$s-Segment`{bodyId:1})-[:Contains]->(as:SynapseSet:`%1$s-SynapseSet`), " +
+                        "(b:Segment:`%1$s-Segment`{bodyId:2})-[:Contains]->(bs:SynapseSet:`%1$s-SynapseSet`), " +
+                        "(c:Segment:`%1$s-Segment`{bodyId:3})-[:Contains]->(cs:SynapseSet:`%1$s-SynapseSet`), " +
+                        "(as)-[:Contains]->(a1:Synapse:`%1$s-Synapse`{type:'pre', confidence:0.9, roiA:true, location:$l1})-[:SynapsesTo]->(b1:Synapse:`%1$s-Synapse`{type:'post', confidence:0.9, roiA:true, location:$l2})<-[:Contains]-(bs), " +
+                        "(a1)-[:SynapsesTo]->(c1:Synapse:`%1$s-Synapse`{type:'post', confidence:0.1, location:$l3})<-[:Contains]-(cs), " +
+                        "(bs)-[:Contains]->(b2:Synapse:`%1$s-Synapse`{type:'pre', confidence:0.9, location:$l4})-[:SynapsesTo]->(c2:Synapse:`%1$s-Synapse`{type:'post', confidence:0.9, location:$l5})<-[:Contains]-(cs)", dataset),
+                parameters("l1", point(9157, 1, 1, 1), "l2", point(9157, 2, 2, 2), "l3", point(9157, 3, 3, 3),
+                        "l4", point(9157, 4, 4, 4), "l5", point(9157, 5, 5, 5))));
+    }
+
+    @Test
+    public void shouldVerifyAndRepairIncrementallyMaintainedConnectionSets() {
+
+        try (Driver driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig())) {
+            Session session = driver.session();
+
+            createSegmentsWithSynapses(session, "verify");
+            session.writeTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'verify'}) SET n.preHPThreshold=.5, n.postHPThreshold=.5"));
+            session.writeTransaction(tx -> tx.run("CALL loader.addPropsAndConnectionInfoToSegments([1, 2, 3], 'verify', .5, .5, 1, true) YIELD bodyId RETURN count(bodyId)"));
+
+            // incremental values match the values recomputed from all synapses
+            Assert.assertEquals(0, session.readTransaction(tx -> tx.run("CALL loader.verifyConnectionSets('verify') YIELD datasetBodyIds RETURN datasetBodyIds").list()).size());
+
+            session.writeTransaction(tx -> tx.run("MATCH (:`verify-Segment`{bodyId:1})-[r:ConnectsTo]->(:`verify-Segment`{bodyId:2}) SET r.weight=7"));
+            session.writeTransaction(tx -> tx.run("MATCH (cs:`verify-ConnectionSet`{datasetBodyIds:'verify:1:3'}) SET cs.roiInfo='{}'"));
+
+            List<Record> differences = session.readTransaction(tx -> tx.run("CALL loader.verifyConnectionSets('verify') " +
+                    "YIELD datasetBodyIds, storedWeight, computedWeight, storedRoiInfo, computedRoiInfo, repaired " +
+                    "RETURN datasetBodyIds, storedWeight, computedWeight, storedRoiInfo, computedRoiInfo, repaired ORDER BY datasetBodyIds").list());
+
+            Assert.assertEquals(2, differences.size());
+            Assert.assertEquals("verify:1:2", differences.get(0).get("datasetBodyIds").asString());
+            Assert.assertEquals(7L, differences.get(0).get("storedWeight").asLong());
+            Assert.assertEquals(1L, differences.get(0).get("computedWeight").asLong());
+            Assert.assertEquals("verify:1:3", differences.get(1).get("datasetBodyIds").asString());
+            Assert.assertEquals("{}", differences.get(1).get("storedRoiInfo").asString());
+            Assert.assertEquals("{\"roiA\":{\"preHP\":1,\"postHP\":0,\"pre\":1,\"post\":0}}", differences.get(1).get("computedRoiInfo").asString());
+            Assert.assertFalse(differences.get(1).get("repaired").asBoolean());
+
+            // repair in batches of one ConnectionSet, each committed in its own transaction; ConnectionSets that already match are skipped
+            for (Record difference : differences) {
+                List<Record> repaired = session.writeTransaction(tx -> tx.run("CALL loader.repairConnectionSets($datasetBodyIds, 'verify') YIELD datasetBodyIds, repaired RETURN datasetBodyIds, repaired",
+                        parameters("datasetBodyIds", Arrays.asList(difference.get("datasetBodyIds").asString(), "verify:2:3"))).list());
+                Assert.assertEquals(1, repaired.size());
+                Assert.assertEquals(difference.get("datasetBodyIds").asString(), repaired.get(0).get("datasetBodyIds").asString());
+                Assert.assertTrue(repaired.get(0).get("repaired").asBoolean());
+            }
+
+            // repaired
+            Assert.assertEquals(0, session.readTransaction(tx -> tx.run("CALL loader.verifyConnectionSets('verify') YIELD datasetBodyIds RETURN datasetBodyIds").list()).size());
+            Assert.assertEquals(1, session.readTransaction(tx -> tx.run("MATCH (:`verify-Segment`{bodyId:1})-[r:ConnectsTo]->(:`verify-Segment`{bodyId:2}) RETURN r.weight")).single().get(0).asInt());
+        }
+    }
+
 }
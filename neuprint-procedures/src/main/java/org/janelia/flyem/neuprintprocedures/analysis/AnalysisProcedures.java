@@ -11,6 +11,9 @@ import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.janelia.flyem.neuprint.model.SkelNode;
 import org.janelia.flyem.neuprintloadprocedures.Location;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.graphalgo.GraphAlgoFactory;
 import org.neo4j.graphalgo.PathFinder;
@@ -49,6 +52,8 @@ import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.CONTA
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.LOCATION;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_SYN;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_SYN;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO_BINARY;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SEGMENT;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKELETON;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_NODE;
@@ -56,6 +61,9 @@ import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SKEL_
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSE;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSES_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSE_SET;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getMetaNode;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getMetaNodeRoiSet;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiDictionaryFromMetaNode;
 
 public class AnalysisProcedures {
 
@@ -489,10 +497,7 @@ public class AnalysisProcedures {
 
         Node metaNode = dbService.findNode(Label.label("Meta"), "dataset", datasetLabel);
 
-        String roiInfo = (String) metaNode.getProperty("roiInfo");
-        Gson gson = new Gson();
-        Map<String, SynapseCounter> roiInfoMap = gson.fromJson(roiInfo, new TypeToken<Map<String, SynapseCounter>>() {
-        }.getType());
+        Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
 
         //        String getRoiFromMeta = "MATCH (n:Meta{dataset:\"" + datasetLabel + "\"}) RETURN keys(apoc.convert.fromJsonMap(n.roiInfo)) AS rois";
 //
@@ -512,7 +517,7 @@ public class AnalysisProcedures {
 //            log.error("getRoiListForDataset: Error getting roi list from " + datasetLabel + ".");
 //            e.printStackTrace();
 //        }
-        return roiInfoMap.keySet().stream().filter(l -> (!l.equals("seven_column_roi") && !l.equals("kc_alpha_roi"))).collect(Collectors.toList());
+        return metaNodeRoiSet.stream().filter(l -> (!l.equals("seven_column_roi") && !l.equals("kc_alpha_roi"))).collect(Collectors.toList());
     }
 
     private Set<NeuronWithRoiInfoMap> getNeuronSetFromRoi(String roi, Long roiSynapseThreshold, String datasetLabel, Long synapseThreshold) {
@@ -647,14 +652,29 @@ public class AnalysisProcedures {
         ResourceIterator<Node> nodes = dbService.findNodes(Label.label(datasetLabel + "-Neuron"));
         Set<NeuronWithRoiInfoMap> relevantNeuronNodes = new HashSet<>();
         Gson gson = new Gson();
+        RoiDictionary roiDictionary = null;
         while (nodes.hasNext()) {
             Node currentNode = nodes.next();
-            Map<String, Object> properties = currentNode.getProperties("pre", "post", "roiInfo", "bodyId");
-            Map<String, SynapseCounter> roiInfo = gson.fromJson((String) properties.get("roiInfo"), new TypeToken<Map<String, SynapseCounter>>() {
-            }.getType());
+            Map<String, Object> properties = currentNode.getProperties("pre", "post", "bodyId");
             long pre = (long) properties.get("pre");
             long post = (long) properties.get("post");
             if ((pre + post) > synapseThreshold) {
+                // only decode roiInfo for neurons above the threshold, from roiInfoBinary if present
+                Map<String, SynapseCounter> roiInfo;
+                byte[] roiInfoBinary = (byte[]) currentNode.getProperty(ROI_INFO_BINARY, null);
+                if (roiInfoBinary != null) {
+                    if (roiDictionary == null) {
+                        roiDictionary = getRoiDictionaryFromMetaNode(getMetaNode(dbService, datasetLabel));
+                    }
+                    roiInfo = new HashMap<>();
+                    RoiInfo decodedRoiInfo = RoiInfoCodec.toRoiInfo(roiInfoBinary, roiDictionary);
+                    for (String roi : decodedRoiInfo.getSetOfRois()) {
+                        roiInfo.put(roi, decodedRoiInfo.get(roi));
+                    }
+                } else {
+                    roiInfo = gson.fromJson((String) currentNode.getProperty(ROI_INFO, null), new TypeToken<Map<String, SynapseCounter>>() {
+                    }.getType());
+                }
                 relevantNeuronNodes.add(new NeuronWithRoiInfoMap(currentNode, (long) properties.get("bodyId"), roiInfo, pre, post));
             }
         }
@@ -5,7 +5,9 @@ import com.google.gson.reflect.TypeToken;
 import org.janelia.flyem.neuprint.Neo4jImporter;
 import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.janelia.flyem.neuprintloadprocedures.Location;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -21,6 +23,7 @@ import org.neo4j.procedure.Name;
 import org.neo4j.procedure.UserFunction;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.List;
@@ -35,6 +38,7 @@ import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.NEURO
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.POST_SYN;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.PRE_SYN;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO;
+import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.ROI_INFO_BINARY;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSES_TO;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.SYNAPSE_SET;
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getLocationAs3dCartesianPoint;
@@ -45,6 +49,7 @@ import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getSy
 import static org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools.getSynapseSetForNeuron;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.generateClusterName;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getMetaNodeRoiSet;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiDictionaryFromMetaNode;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiInfoAsMap;
 
 public class NeuPrintUserFunctions {
@@ -117,6 +122,47 @@ public class NeuPrintUserFunctions {
 
     }
 
+    @UserFunction("neuprint.roiInfoBinaryAsJson")
+    @Description("neuprint.roiInfoBinaryAsJson(roiInfoBinary, dataset) : returns the roiInfo JSON string for a roiInfoBinary property, e.g. neuprint.roiInfoBinaryAsJson(n.roiInfoBinary, \"hemibrain\"). Returns null if roiInfoBinary is null.")
+    public String roiInfoBinaryAsJson(@Name("roiInfoBinary") byte[] roiInfoBinary, @Name("dataset") String dataset) {
+        if (dataset == null) {
+            throw new RuntimeException("Must provide dataset.");
+        }
+        if (roiInfoBinary == null) {
+            return null;
+        }
+
+        Node metaNode = getMetaNode(dbService, dataset);
+        if (metaNode == null) {
+            throw new RuntimeException("Meta node not found for dataset " + dataset + ".");
+        }
+
+        return RoiInfoCodec.toJsonString(roiInfoBinary, getRoiDictionaryFromMetaNode(metaNode));
+    }
+
+    @UserFunction("neuprint.roiCountsFromRoiInfoBinary")
+    @Description("neuprint.roiCountsFromRoiInfoBinary(roiInfoBinary, roi, dataset) : returns [pre, post, preHP, postHP] for a single ROI of a roiInfoBinary property without decoding the other ROIs. Returns null if the ROI is not present.")
+    public List<Long> roiCountsFromRoiInfoBinary(@Name("roiInfoBinary") byte[] roiInfoBinary, @Name("roi") String roi, @Name("dataset") String dataset) {
+        if (roi == null || dataset == null) {
+            throw new RuntimeException("Must provide roi and dataset.");
+        }
+        if (roiInfoBinary == null) {
+            return null;
+        }
+
+        Node metaNode = getMetaNode(dbService, dataset);
+        if (metaNode == null) {
+            throw new RuntimeException("Meta node not found for dataset " + dataset + ".");
+        }
+
+        int roiId = getRoiDictionaryFromMetaNode(metaNode).getId(roi);
+        long[] counts = new long[4];
+        if (roiId < 0 || !RoiInfoCodec.getCountsForRoi(roiInfoBinary, roiId, counts)) {
+            return null;
+        }
+        return Arrays.asList(counts[RoiInfoCodec.PRE], counts[RoiInfoCodec.POST], counts[RoiInfoCodec.PRE_HP], counts[RoiInfoCodec.POST_HP]);
+    }
+
     @UserFunction("neuprint.roiInfoAsNameUsingSubRois")
     @Description("neuprint.roiInfoAsNameUsingSubRois(roiInfo, totalPre, totalPost, threshold, superRois, allRois) ")
     public String roiInfoAsNameUsingSubRois(@Name("roiInfo") String roiInfo, @Name("totalPre") Long totalPre, @Name("totalPost") Long totalPost, @Name("threshold") Double threshold, @Name("superRois") List<String> superRois, @Name("superRois") List<String> allRois) {
@@ -169,6 +215,7 @@ public class NeuPrintUserFunctions {
         // get synapse set
         Node synapseSet = getSynapseSetForNeuron(neuron);
         Gson gson = new Gson();
+        RoiDictionary roiDictionary = null;
 
         Map<String, SynapseCounter> categoryCounts = new TreeMap<>();
 
@@ -185,22 +232,33 @@ public class NeuPrintUserFunctions {
                                 Node otherSegment = otherSynapseSetContainsRel.getStartNode();
                                 if (otherSegment.hasLabel(Label.label(NEURON))) {
 
-                                    // get roi info from other neuron
-                                    String roiInfo = (String) otherSegment.getProperty(ROI_INFO);
-                                    if (roiInfo == null) {
-                                        roiInfo = "{}";
-                                    }
+                                    // get roi info from other neuron, using roiInfoBinary if present to avoid parsing JSON
+                                    byte[] roiInfoBinary = (byte[]) otherSegment.getProperty(ROI_INFO_BINARY, null);
+                                    Map<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter> roiInfoObject = null;
+                                    if (roiInfoBinary != null) {
+                                        if (roiDictionary == null) {
+                                            roiDictionary = getRoiDictionaryFromMetaNode(getMetaNode(dbService, dataset));
+                                        }
+                                    } else {
+                                        String roiInfo = (String) otherSegment.getProperty(ROI_INFO);
+                                        if (roiInfo == null) {
+                                            roiInfo = "{}";
+                                        }
 
-                                    Map<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter> roiInfoObject = gson.fromJson(roiInfo, new TypeToken<Map<String, SynapseCounter>>() {
-                                    }.getType());
+                                        roiInfoObject = gson.fromJson(roiInfo, new TypeToken<Map<String, SynapseCounter>>() {
+                                        }.getType());
+                                    }
 
                                     if (synapseNode.hasLabel(Label.label(PRE_SYN))) {
                                         // if a synapse is pre, get top output ROI for connected neuron
-                                        SortedSet<Map.Entry<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter>> sortedRois = Neo4jImporter.sortRoisByPreCount(roiInfoObject);
                                         String topOutputRoi;
-                                        if (!sortedRois.isEmpty()) {
-                                            topOutputRoi = sortedRois.first().getKey();
+                                        if (roiInfoBinary != null) {
+                                            topOutputRoi = RoiInfoCodec.getRoiWithMaxCount(roiInfoBinary, roiDictionary, RoiInfoCodec.PRE);
                                         } else {
+                                            SortedSet<Map.Entry<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter>> sortedRois = Neo4jImporter.sortRoisByPreCount(roiInfoObject);
+                                            topOutputRoi = sortedRois.isEmpty() ? null : sortedRois.first().getKey();
+                                        }
+                                        if (topOutputRoi == null) {
                                             topOutputRoi = "None";
                                         }
                                         if (!categoryCounts.containsKey(topOutputRoi)) {
@@ -210,11 +268,14 @@ public class NeuPrintUserFunctions {
 
                                     } else if (synapseNode.hasLabel(Label.label(POST_SYN))) {
                                         // if a synapse is post get top input ROI for connected neuron
-                                        SortedSet<Map.Entry<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter>> sortedRois = Neo4jImporter.sortRoisByPostCount(roiInfoObject);
                                         String topInputRoi;
-                                        if (!sortedRois.isEmpty()) {
-                                            topInputRoi = sortedRois.first().getKey();
+                                        if (roiInfoBinary != null) {
+                                            topInputRoi = RoiInfoCodec.getRoiWithMaxCount(roiInfoBinary, roiDictionary, RoiInfoCodec.POST);
                                         } else {
+                                            SortedSet<Map.Entry<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter>> sortedRois = Neo4jImporter.sortRoisByPostCount(roiInfoObject);
+                                            topInputRoi = sortedRois.isEmpty() ? null : sortedRois.first().getKey();
+                                        }
+                                        if (topInputRoi == null) {
                                             topInputRoi = "None";
                                         }
                                         if (!categoryCounts.containsKey(topInputRoi)) {
@@ -3,12 +3,15 @@ package org.janelia.flyem.neuprintprocedures.proofreading;
 import com.google.common.base.Stopwatch;
 import org.janelia.flyem.neuprint.json.JsonUtils;
 import org.janelia.flyem.neuprint.model.Neuron;
-import org.janelia.flyem.neuprint.model.SkelNode;
 import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SkeletonColumns;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprintloadprocedures.GraphTraversalTools;
 import org.janelia.flyem.neuprintloadprocedures.Location;
+import org.janelia.flyem.neuprintloadprocedures.MetaCounterShards;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.graphdb.Direction;
 import org.neo4j.graphdb.GraphDatabaseService;
@@ -25,9 +28,8 @@ import org.neo4j.procedure.Mode;
 import org.neo4j.procedure.Name;
 import org.neo4j.procedure.Procedure;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.HashSet;
@@ -46,12 +48,16 @@ import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedu
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.convertSegmentToNeuron;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getMetaNodeRoiSet;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getPreAndPostHPThresholdFromMetaNode;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiDictionaryFromMetaNode;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.getRoiInfoAsMap;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.incrementSegmentPostCount;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.incrementSegmentPreCount;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.removeSynapseFromRoiInfoWithHP;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.saveRoiDictionaryToMetaNode;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.setConnectionSetRoiInfoAndGetWeightAndWeightHP;
 import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.setConnectionSetRoiInfoWeightAndWeightHP;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.setRoiInfoProperty;
+import static org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures.updateRoiInfoBinary;
 
 public class ProofreaderProcedures {
 
@@ -82,7 +88,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + datasetLabel);
                 throw new RuntimeException("Meta node not found for dataset: " + datasetLabel);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
 
             if (neuronNode == null) {
                 log.warn("Neuron with id " + neuron.getId() + " not found in database. Aborting update.");
@@ -699,7 +705,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + datasetLabel);
                 throw new RuntimeException("Meta node not found for dataset: " + datasetLabel);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
 
             final Node newSynapseSet = createSynapseSetForSegment(newNeuron, datasetLabel);
@@ -809,7 +815,7 @@ public class ProofreaderProcedures {
 
                 // add roi boolean properties and roi info
                 addRoiPropertiesToSegmentGivenSynapseCountsPerRoi(newNeuron, roiInfo);
-                newNeuron.setProperty(ROI_INFO, roiInfo.getAsJsonString());
+                setRoiInfoProperty(newNeuron, roiInfo.getAsJsonString());
                 log.info("Completed updating roi information.");
 
             }
@@ -882,8 +888,9 @@ public class ProofreaderProcedures {
             }
 
             // update meta node
-            metaNode.setProperty("latestMutationId", neuronAddition.getMutationId());
-            metaNode.setProperty("uuid", neuronAddition.getMutationUuid());
+            MetaCounterShards metaNodeChanges = new MetaCounterShards();
+            metaNodeChanges.setLatestMutation(neuronAddition.getMutationId(), neuronAddition.getMutationUuid());
+            metaNodeChanges.apply(dbService, metaNode, log);
 
 //            add skeleton?
 
@@ -968,8 +975,8 @@ public class ProofreaderProcedures {
             timer.reset();
 
             timer.start();
-            try (BufferedReader reader = new BufferedReader(new InputStreamReader(fileUrl.openStream()))) {
-                skeleton.fromSwc(reader, bodyId, uuid.orElse("none"));
+            try (InputStream inputStream = fileUrl.openStream()) {
+                skeleton.fromSwc(inputStream, bodyId, uuid.orElse("none"));
             } catch (IOException e) {
                 log.error(String.format("proofreader.addSkeleton: IOException: %s", e.getMessage()));
                 throw new RuntimeException(String.format("IOException: %s", e.getMessage()));
@@ -1077,7 +1084,7 @@ public class ProofreaderProcedures {
             }
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+                acquireWriteLockForMetaNode(metaNode);
             }
 
             if (synapse == null) {
@@ -1122,12 +1129,16 @@ public class ProofreaderProcedures {
                 // get the connection sets that it's part of
                 List<Node> connectionSetList = getConnectionSetsForSynapse(synapse);
                 Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+                RoiDictionary roiDictionary = getRoiDictionaryForRoiUpdate(metaNode, roiName);
                 // change roiInfo for each connection set
                 for (Node connectionSetNode : connectionSetList) {
 
-                    String roiInfoString = (String) connectionSetNode.getProperty(ROI_INFO, "{}");
-                    String roiInfoJsonString = addSynapseToRoiInfoWithHP(roiInfoString, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD));
-                    connectionSetNode.setProperty(ROI_INFO, roiInfoJsonString);
+                    // nodes with roiInfoBinary are updated without parsing the roiInfo JSON
+                    if (updateRoiInfoBinary(connectionSetNode, roiDictionary, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD), 1) == null) {
+                        String roiInfoString = (String) connectionSetNode.getProperty(ROI_INFO, "{}");
+                        String roiInfoJsonString = addSynapseToRoiInfoWithHP(roiInfoString, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD));
+                        connectionSetNode.setProperty(ROI_INFO, roiInfoJsonString);
+                    }
 
                 }
 
@@ -1137,16 +1148,21 @@ public class ProofreaderProcedures {
                     neuron.setProperty(roiName, true);
 
                     // update roi info
-                    String roiInfoString = (String) neuron.getProperty(ROI_INFO, "{}");
-                    String roiInfoJsonString = addSynapseToRoiInfo(roiInfoString, roiName, synapseType);
-                    neuron.setProperty(ROI_INFO, roiInfoJsonString);
+                    if (updateRoiInfoBinary(neuron, roiDictionary, roiName, synapseType, synapseConfidence, null, null, 1) == null) {
+                        String roiInfoString = (String) neuron.getProperty(ROI_INFO, "{}");
+                        String roiInfoJsonString = addSynapseToRoiInfo(roiInfoString, roiName, synapseType);
+                        neuron.setProperty(ROI_INFO, roiInfoJsonString);
+                    }
 
                 } else {
                     log.warn("proofreader.addRoiToSynapse: Synapse not connected to neuron: " + synapse.getAllProperties());
                 }
+                saveRoiDictionaryToMetaNode(metaNode, roiDictionary);
 
                 // update meta node
-                addSynapseToMetaRoiInfo(metaNode, roiName, synapseType);
+                MetaCounterShards metaNodeChanges = new MetaCounterShards();
+                metaNodeChanges.addToRoi(roiName, synapseType, 1);
+                metaNodeChanges.apply(dbService, metaNode, log);
 
             } else {
                 log.warn("proofreader.addRoiToSynapse: roi already present on synapse. Ignoring update request: " + synapse.getAllProperties());
@@ -1182,7 +1198,7 @@ public class ProofreaderProcedures {
             }
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+                acquireWriteLockForMetaNode(metaNode);
             }
 
             if (synapse == null) {
@@ -1227,12 +1243,16 @@ public class ProofreaderProcedures {
                 // get the connection sets that it's part of
                 List<Node> connectionSetList = getConnectionSetsForSynapse(synapse);
                 Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
+                RoiDictionary roiDictionary = getRoiDictionaryForRoiUpdate(metaNode, roiName);
                 // change roiInfo for each connection set
                 for (Node connectionSetNode : connectionSetList) {
 
-                    String roiInfoString = (String) connectionSetNode.getProperty(ROI_INFO, "{}");
-                    String roiInfoJsonString = removeSynapseFromRoiInfoWithHP(roiInfoString, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD));
-                    connectionSetNode.setProperty(ROI_INFO, roiInfoJsonString);
+                    // nodes with roiInfoBinary are updated without parsing the roiInfo JSON
+                    if (updateRoiInfoBinary(connectionSetNode, roiDictionary, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD), -1) == null) {
+                        String roiInfoString = (String) connectionSetNode.getProperty(ROI_INFO, "{}");
+                        String roiInfoJsonString = removeSynapseFromRoiInfoWithHP(roiInfoString, roiName, synapseType, synapseConfidence, thresholdMap.get(PRE_HP_THRESHOLD), thresholdMap.get(POST_HP_THRESHOLD));
+                        connectionSetNode.setProperty(ROI_INFO, roiInfoJsonString);
+                    }
 
                 }
 
@@ -1240,24 +1260,32 @@ public class ProofreaderProcedures {
                 if (neuron != null) {
 
                     // update roi info
-                    String roiInfoString = (String) neuron.getProperty(ROI_INFO, "{}");
+                    boolean roiStillOnNeuron;
+                    byte[] roiInfoBinary = updateRoiInfoBinary(neuron, roiDictionary, roiName, synapseType, synapseConfidence, null, null, -1);
+                    if (roiInfoBinary != null) {
+                        roiStillOnNeuron = RoiInfoCodec.getCountsForRoi(roiInfoBinary, roiDictionary.getId(roiName), new long[4]);
+                    } else {
+                        String roiInfoString = (String) neuron.getProperty(ROI_INFO, "{}");
 
-                    String roiInfoJsonString = removeSynapseFromRoiInfo(roiInfoString, roiName, synapseType);
-                    neuron.setProperty(ROI_INFO, roiInfoJsonString);
+                        String roiInfoJsonString = removeSynapseFromRoiInfo(roiInfoString, roiName, synapseType);
+                        neuron.setProperty(ROI_INFO, roiInfoJsonString);
+                        roiStillOnNeuron = roiInfoContainsRoi(roiInfoJsonString, roiName);
+                    }
 
                     // remove boolean property if no longer present on neuron
-                    if (!roiInfoContainsRoi(roiInfoJsonString, roiName)) {
+                    if (!roiStillOnNeuron) {
                         neuron.removeProperty(roiName);
                     }
 
                 } else {
                     log.warn("proofreader.removeRoiFromSynapse: Synapse not connected to neuron: " + synapse.getAllProperties());
                 }
+                saveRoiDictionaryToMetaNode(metaNode, roiDictionary);
 
                 // update meta node
-                String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO, "{}");
-                String roiInfoJsonString = removeSynapseFromRoiInfo(metaRoiInfoString, roiName, synapseType);
-                metaNode.setProperty(ROI_INFO, roiInfoJsonString);
+                MetaCounterShards metaNodeChanges = new MetaCounterShards();
+                metaNodeChanges.addToRoi(roiName, synapseType, -1);
+                metaNodeChanges.apply(dbService, metaNode, log);
 
             } else {
                 log.warn("proofreader.removeRoiFromSynapse: roi not present on synapse. Ignoring update request: " + synapse.getAllProperties());
@@ -1288,10 +1316,11 @@ public class ProofreaderProcedures {
             // get the meta node for updating
             Node metaNode = getMetaNode(dbService, dataset);
             if (metaNode != null) {
-                acquireWriteLockForNode(metaNode);
+                acquireWriteLockForMetaNode(metaNode);
             }
 
             Synapse synapse = JsonUtils.GSON.fromJson(synapseJson, Synapse.class);
+            MetaCounterShards metaNodeChanges = new MetaCounterShards();
 
             // add basic synapse labels
             final Node newSynapseNode = dbService.createNode(
@@ -1321,12 +1350,12 @@ public class ProofreaderProcedures {
                 newSynapseNode.addLabel(Label.label(POST_SYN));
                 newSynapseNode.addLabel(Label.label(dataset + "-" + POST_SYN));
                 newSynapseNode.setProperty(TYPE, synapse.getType());
-                incrementMetaNodeTotalPostCount(metaNode);
+                metaNodeChanges.addToTotalCount(POST, 1);
             } else if (synapse.getType().equals(PRE)) {
                 newSynapseNode.addLabel(Label.label(PRE_SYN));
                 newSynapseNode.addLabel(Label.label(dataset + "-" + PRE_SYN));
                 newSynapseNode.setProperty(TYPE, synapse.getType());
-                incrementMetaNodeTotalPreCount(metaNode);
+                metaNodeChanges.addToTotalCount(PRE, 1);
             } else {
                 log.error("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
                 throw new RuntimeException("Synapse type must be either 'pre' or 'post'. Was " + synapse.getType() + ". Aborting synapse addition.");
@@ -1338,8 +1367,9 @@ public class ProofreaderProcedures {
             // add rois and update roiInfo on Meta node
             for (String roi : synapse.getRois()) {
                 newSynapseNode.setProperty(roi, true);
-                addSynapseToMetaRoiInfo(metaNode, roi, synapse.getType());
+                metaNodeChanges.addToRoi(roi, synapse.getType(), 1);
             }
+            metaNodeChanges.apply(dbService, metaNode, log);
 
         } catch (Exception e) {
             log.error("Error running proofreader.addSynapse: " + e);
@@ -1459,7 +1489,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
@@ -1536,7 +1566,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
@@ -1573,15 +1603,12 @@ public class ProofreaderProcedures {
 
                 // remove from meta node counts and roiInfo
                 Set<String> synapseRois = getSynapseRois(synapse, metaNodeRoiSet);
-                if (synapseType.equals(PRE)) {
-                    decrementMetaNodeTotalPreCount(metaNode);
-                } else {
-                    decrementMetaNodeTotalPostCount(metaNode);
-                }
-
+                MetaCounterShards metaNodeChanges = new MetaCounterShards();
+                metaNodeChanges.addToTotalCount(synapseType, -1);
                 for (String roi : synapseRois) {
-                    removeSynapseFromMetaRoiInfo(metaNode, roi, synapseType);
+                    metaNodeChanges.addToRoi(roi, synapseType, -1);
                 }
+                metaNodeChanges.apply(dbService, metaNode, log);
 
                 // delete synapse node
                 synapse.delete();
@@ -1624,7 +1651,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + dataset);
                 throw new RuntimeException("Meta node not found for dataset: " + dataset);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
@@ -1734,7 +1761,7 @@ public class ProofreaderProcedures {
                 log.error("Meta node not found for dataset: " + datasetLabel);
                 throw new RuntimeException("Meta node not found for dataset: " + datasetLabel);
             }
-            acquireWriteLockForNode(metaNode);
+            acquireWriteLockForMetaNode(metaNode);
             Set<String> metaNodeRoiSet = getMetaNodeRoiSet(metaNode);
             Map<String, Double> thresholdMap = getPreAndPostHPThresholdFromMetaNode(metaNode);
 
@@ -1793,7 +1820,7 @@ public class ProofreaderProcedures {
             roiInfoString = removeSynapseFromRoiInfo(roiInfoString, roi, synapseType);
         }
 
-        containingSegment.setProperty(ROI_INFO, roiInfoString);
+        setRoiInfoProperty(containingSegment, roiInfoString);
 
         // set rois by comparing keys in roiInfo to rois on segment
         Map<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter> roiInfoMap = getRoiInfoAsMap(roiInfoString);
@@ -1835,7 +1862,7 @@ public class ProofreaderProcedures {
             }
         }
 
-        containingSegment.setProperty(ROI_INFO, roiInfoString);
+        setRoiInfoProperty(containingSegment, roiInfoString);
 
         // check if should be a neuron
         if (!shouldNotBeLabeledNeuron(containingSegment)) {
@@ -1981,32 +2008,6 @@ public class ProofreaderProcedures {
 
     }
 
-    private void incrementMetaNodeTotalPreCount(Node metaNode) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(TOTAL_PRE_COUNT)) {
-                Long currentTotalPreCount = (Long) metaNode.getProperty(TOTAL_PRE_COUNT);
-                metaNode.setProperty(TOTAL_PRE_COUNT, ++currentTotalPreCount);
-            } else {
-                log.warn("No totalPreCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPreCount will not be updated.");
-        }
-    }
-
-    private void decrementMetaNodeTotalPreCount(Node metaNode) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(TOTAL_PRE_COUNT)) {
-                Long currentTotalPreCount = (Long) metaNode.getProperty(TOTAL_PRE_COUNT);
-                metaNode.setProperty(TOTAL_PRE_COUNT, --currentTotalPreCount);
-            } else {
-                log.warn("No totalPreCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPreCount will not be updated.");
-        }
-    }
-
     private void decrementConnectsToWeight(Relationship connectsToRel) {
         Long currentWeight;
         if (connectsToRel.hasProperty(WEIGHT)) {
@@ -2029,34 +2030,6 @@ public class ProofreaderProcedures {
         connectsToRel.setProperty(WEIGHT_HP, --currentWeightHP);
     }
 
-    private void incrementMetaNodeTotalPostCount(Node metaNode) {
-        if (metaNode != null) {
-            Long currentTotalPostCount;
-            if (metaNode.hasProperty(TOTAL_POST_COUNT)) {
-                currentTotalPostCount = (Long) metaNode.getProperty(TOTAL_POST_COUNT);
-                metaNode.setProperty(TOTAL_POST_COUNT, ++currentTotalPostCount);
-            } else {
-                log.warn("No totalPostCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPostCount will not be updated.");
-        }
-    }
-
-    private void decrementMetaNodeTotalPostCount(Node metaNode) {
-        if (metaNode != null) {
-            Long currentTotalPostCount;
-            if (metaNode.hasProperty(TOTAL_POST_COUNT)) {
-                currentTotalPostCount = (Long) metaNode.getProperty(TOTAL_POST_COUNT);
-                metaNode.setProperty(TOTAL_POST_COUNT, --currentTotalPostCount);
-            } else {
-                log.warn("No totalPostCount property found on Meta node. This property will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. totalPostCount will not be updated.");
-        }
-    }
-
     private void decrementSegmentPreCount(Node segment) {
         if (segment.hasProperty(PRE)) {
             Long currentTotalPreCount = (Long) segment.getProperty(PRE);
@@ -2077,20 +2050,6 @@ public class ProofreaderProcedures {
         }
     }
 
-    private void addSynapseToMetaRoiInfo(Node metaNode, String roiName, String synapseType) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(ROI_INFO)) {
-                String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO);
-                String roiInfoJsonString = addSynapseToRoiInfo(metaRoiInfoString, roiName, synapseType);
-                metaNode.setProperty(ROI_INFO, roiInfoJsonString);
-            } else {
-                log.warn("No roiInfo property found on Meta node. roiInfo will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. roiInfo will not be updated.");
-        }
-    }
-
     private String removeSynapseFromRoiInfo(String roiInfoString, String roiName, String synapseType) {
         Map<String, SynapseCounter> roiInfoMap = getRoiInfoAsMap(roiInfoString);
         RoiInfo roiInfo = new RoiInfo(roiInfoMap);
@@ -2105,20 +2064,6 @@ public class ProofreaderProcedures {
 
     }
 
-    private void removeSynapseFromMetaRoiInfo(Node metaNode, String roiName, String synapseType) {
-        if (metaNode != null) {
-            if (metaNode.hasProperty(ROI_INFO)) {
-                String metaRoiInfoString = (String) metaNode.getProperty(ROI_INFO);
-                String roiInfoJsonString = removeSynapseFromRoiInfo(metaRoiInfoString, roiName, synapseType);
-                metaNode.setProperty(ROI_INFO, roiInfoJsonString);
-            } else {
-                log.warn("No roiInfo property found on Meta node. roiInfo will not be updated.");
-            }
-        } else {
-            log.warn("No Meta node found. roiInfo will not be updated.");
-        }
-    }
-
     private boolean roiInfoContainsRoi(String roiInfoString, String queriedRoi) {
         Map<String, org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter> roiInfoMap = getRoiInfoAsMap(roiInfoString);
         return roiInfoMap.containsKey(queriedRoi);
@@ -2321,53 +2266,46 @@ public class ProofreaderProcedures {
         segmentNode.createRelationshipTo(skeletonNode, RelationshipType.withName(CONTAINS));
 
         //add root nodes / other nodes to skeleton node
-        List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
+        SkeletonColumns skelNodes = skeleton.getSkeletonColumns();
+        Node[] skelNodeNodes = new Node[skelNodes.size()];
 
-        for (SkelNode skelNode : skelNodeList) {
+        for (int i = 0; i < skelNodes.size(); i++) {
 
             // create skelnode with id
             //try to get the node first, if it doesn't exist create it
-            String skelNodeId = skelNode.getSkelNodeId(dataset);
+            String skelNodeId = skelNodes.getSkelNodeId(dataset, skeleton.getAssociatedBodyId(), i);
             Node skelNodeNode = GraphTraversalTools.getSkelNode(dbService, skelNodeId, dataset);
 
             if (skelNodeNode == null) {
-                skelNodeNode = createSkelNode(skelNodeId, dataset, skelNode);
+                skelNodeNode = createSkelNode(skelNodeId, dataset, skelNodes, i);
             }
+            skelNodeNodes[i] = skelNodeNode;
 
             //connect the skelnode to the skeleton
             skeletonNode.createRelationshipTo(skelNodeNode, RelationshipType.withName(CONTAINS));
 
-            // add the children
-            for (SkelNode childSkelNode : skelNode.getChildren()) {
-
-                String childNodeId = childSkelNode.getSkelNodeId(dataset);
-                Node childSkelNodeNode = dbService.findNode(Label.label(dataset + "-" + SKEL_NODE), SKEL_NODE_ID, childNodeId);
-                if (childSkelNodeNode == null) {
-                    childSkelNodeNode = createSkelNode(childNodeId, dataset, childSkelNode);
-                }
-
-                // add a link to the parent
-                skelNodeNode.createRelationshipTo(childSkelNodeNode, RelationshipType.withName(LINKS_TO));
-
+            // add a link from the parent, which precedes its children in the swc file
+            int parent = skelNodes.getParent(i);
+            if (parent != -1) {
+                skelNodeNodes[parent].createRelationshipTo(skelNodeNode, RelationshipType.withName(LINKS_TO));
             }
         }
 
         return skeletonNode;
     }
 
-    private Node createSkelNode(String skelNodeId, String dataset, SkelNode skelNode) {
+    private Node createSkelNode(String skelNodeId, String dataset, SkeletonColumns skelNodes, int i) {
         Node skelNodeNode = dbService.createNode(Label.label(SKEL_NODE), Label.label(dataset + "-" + SKEL_NODE), Label.label(dataset));
         skelNodeNode.setProperty(SKEL_NODE_ID, skelNodeId);
 
         //set location
-        List<Integer> skelNodeLocation = skelNode.getLocation();
-        Point skelNodeLocationPoint = new Location((long) skelNodeLocation.get(0), (long) skelNodeLocation.get(1), (long) skelNodeLocation.get(2));
+        Point skelNodeLocationPoint = new Location((long) skelNodes.getX(i), (long) skelNodes.getY(i), (long) skelNodes.getZ(i));
         skelNodeNode.setProperty(LOCATION, skelNodeLocationPoint);
 
         //set radius, row number, type
-        skelNodeNode.setProperty(RADIUS, skelNode.getRadius());
-        skelNodeNode.setProperty(ROW_NUMBER, skelNode.getRowNumber());
-        skelNodeNode.setProperty(TYPE, skelNode.getType());
+        skelNodeNode.setProperty(RADIUS, skelNodes.getRadius(i));
+        skelNodeNode.setProperty(ROW_NUMBER, skelNodes.getRowNumber(i));
+        skelNodeNode.setProperty(TYPE, skelNodes.getType(i));
 
         return skelNodeNode;
     }
@@ -2444,6 +2382,24 @@ public class ProofreaderProcedures {
         }
     }
 
+    private void acquireWriteLockForMetaNode(Node metaNode) {
+        // sharded datasets apply Meta node changes to counter shards instead of the Meta node
+        if (!MetaCounterShards.isSharded(metaNode)) {
+            acquireWriteLockForNode(metaNode);
+        }
+    }
+
+    private RoiDictionary getRoiDictionaryForRoiUpdate(Node metaNode, String roiName) {
+        RoiDictionary roiDictionary = getRoiDictionaryFromMetaNode(metaNode);
+        if (roiDictionary.getId(roiName) < 0) {
+            // the ROI may be added to the dictionary, so it must be read and saved under the Meta node lock (which
+            // acquireWriteLockForMetaNode skips on sharded datasets)
+            acquireWriteLockForNode(metaNode);
+            roiDictionary = getRoiDictionaryFromMetaNode(metaNode);
+        }
+        return roiDictionary;
+    }
+
     private void acquireWriteLockForNode(Node node) {
         if (node != null) {
             try (Transaction tx = dbService.beginTx()) {
@@ -1,5 +1,6 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
+import org.janelia.flyem.neuprintloadprocedures.MetaCounterShards;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.Node;
 import org.neo4j.graphdb.Result;
@@ -26,6 +27,9 @@ class MetaNodeUpdater {
 
                 metaNode.setProperty("totalPreCount", preCount);
                 metaNode.setProperty("totalPostCount", postCount);
+            } else if (MetaCounterShards.isSharded(metaNode)) {
+                // bring the Meta node up to date with the changes written to its counter shards
+                MetaCounterShards.foldShards(dbService, metaNode, log);
             }
 
         } catch (Exception e) {
@@ -1,5 +1,6 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
+import org.janelia.flyem.neuprintloadprocedures.MetaNodeSnapshot;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.graphdb.event.TransactionData;
 import org.neo4j.graphdb.event.TransactionEventHandler;
@@ -26,6 +27,8 @@ public class NeuPrintTransactionEventHandler implements TransactionEventHandler
 
     @Override
     public void afterCommit(TransactionData transactionData, Object o) {
+        // invalidate before returning so that later transactions do not read a stale Meta node snapshot
+        MetaNodeSnapshot.invalidate(transactionData);
         TriggersRunnable triggersRunnable = new TriggersRunnable(transactionData, dbService, log);
         executorService.submit(triggersRunnable);
     }
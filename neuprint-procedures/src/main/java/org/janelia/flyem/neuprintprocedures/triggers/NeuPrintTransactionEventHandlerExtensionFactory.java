@@ -1,5 +1,6 @@
 package org.janelia.flyem.neuprintprocedures.triggers;
 
+import org.janelia.flyem.neuprintloadprocedures.MetaNodeSnapshot;
 import org.neo4j.graphdb.GraphDatabaseService;
 import org.neo4j.kernel.extension.ExtensionType;
 import org.neo4j.kernel.extension.KernelExtensionFactory;
@@ -28,10 +29,12 @@ public class NeuPrintTransactionEventHandlerExtensionFactory extends KernelExten
                 userLog = dependencies.log().getUserLog(NeuPrintTransactionEventHandlerExtensionFactory.class);
                 handler = new NeuPrintTransactionEventHandler(dependencies.getGraphDatabaseService(), executor, userLog);
                 dependencies.getGraphDatabaseService().registerTransactionEventHandler(handler);
+                MetaNodeSnapshot.enableCache();
             }
 
             @Override
             public void shutdown() {
+                MetaNodeSnapshot.disableCache();
                 executor.shutdown();
                 dependencies.getGraphDatabaseService().unregisterTransactionEventHandler(handler);
             }
@@ -16,6 +16,7 @@ class TransactionDataHandler {
     private static final String DATA_MODEL = "DataModel";
     private static final String NEURON = "Neuron";
     private static final String META = "Meta";
+    private static final String META_COUNTER_SHARD = "MetaCounterShard";
     private static final String SKELETON = "Skeleton";
     private static final String SKEL_NODE = "SkelNode";
     private static final String SYNAPSE = "Synapse";
@@ -105,7 +106,7 @@ class TransactionDataHandler {
     }
 
     private void addNodeForTimeStamping(Node node, Set<String> existingDatasets) {
-        if (!node.hasLabel(Label.label(META)) && !transactionData.isDeleted(node)) {
+        if (!node.hasLabel(Label.label(META)) && !node.hasLabel(Label.label(META_COUNTER_SHARD)) && !transactionData.isDeleted(node)) {
             this.nodesForTimeStamping.add(node);
             for (String dataset : existingDatasets) {
                 if (node.hasLabel(Label.label(dataset))) {
@@ -0,0 +1,111 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Ignore;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+/**
+ * Compares proofreader.addSynapse throughput with and without Meta node counter shards as the number of client
+ * threads grows. Not part of the regular test run; remove the {@link Ignore} annotation and run it with
+ * mvn test -Dtest=MetaCounterShardsBenchmark.
+ */
+@Ignore("benchmark")
+public class MetaCounterShardsBenchmark {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final int SYNAPSES_PER_THREAD = 50;
+    private static final AtomicInteger nextLocation = new AtomicInteger(1);
+
+    static {
+        neo4j = new Neo4jRule()
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().withMaxConnectionPoolSize(64).toConfig());
+
+        Session session = driver.session();
+        for (String dataset : new String[]{"benchmarkSharded", "benchmarkUnsharded"}) {
+            session.writeTransaction(tx -> tx.run("CREATE (n:Meta{dataset:$dataset}) SET n.totalPreCount=0, n.totalPostCount=0, n.roiInfo='{\"roiA\":{\"pre\":0,\"post\":0}}'",
+                    parameters("dataset", dataset)));
+        }
+        session.writeTransaction(tx -> tx.run("CALL loader.setMetaCounterShards('benchmarkSharded', 16)"));
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void reportProofreadingThroughputForIncreasingClientThreads() throws Exception {
+
+        StringBuilder report = new StringBuilder("addSynapse calls per second (threads: unsharded, sharded)\n");
+        long expectedPreCount = 0;
+        for (int threads : new int[]{1, 2, 4, 8}) {
+            double unsharded = addSynapsesConcurrently("benchmarkUnsharded", threads);
+            double sharded = addSynapsesConcurrently("benchmarkSharded", threads);
+            report.append(String.format("%d: %.0f, %.0f%n", threads, unsharded, sharded));
+            expectedPreCount += threads * SYNAPSES_PER_THREAD / 2;
+        }
+        System.out.print(report);
+
+        Session session = driver.session();
+        session.writeTransaction(tx -> tx.run("CALL loader.foldMetaCounterShards('benchmarkSharded')"));
+        for (String dataset : new String[]{"benchmarkSharded", "benchmarkUnsharded"}) {
+            Assert.assertEquals(expectedPreCount, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:$dataset}) RETURN n.totalPreCount", parameters("dataset", dataset))).single().get(0).asLong());
+        }
+    }
+
+    /**
+     * Adds SYNAPSES_PER_THREAD synapses (half pre, half post, all in roiA) per thread, each with its own session.
+     *
+     * @return addSynapse calls per second
+     */
+    private static double addSynapsesConcurrently(String dataset, int threads) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executorService.submit(() -> {
+                try (Session session = driver.session()) {
+                    for (int i = 0; i < SYNAPSES_PER_THREAD; i++) {
+                        String synapseJson = String.format("{ \"type\": \"%s\", \"location\": [ %d,1,1 ], \"confidence\": .88, \"rois\": [ \"roiA\" ] }",
+                                i % 2 == 0 ? "pre" : "post", nextLocation.getAndIncrement());
+                        session.writeTransaction(tx -> tx.run("CALL proofreader.addSynapse($synapseJson,$dataset)", parameters("synapseJson", synapseJson, "dataset", dataset)));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        executorService.shutdown();
+        return threads * SYNAPSES_PER_THREAD / seconds;
+    }
+
+}
@@ -0,0 +1,201 @@
+package org.janelia.flyem.neuprintprocedures.proofreading;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.janelia.flyem.neuprintprocedures.functions.NeuPrintUserFunctions;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+/**
+ * Tests proofreading with Meta node changes written to counter shards. See {@link MetaCounterShardsBenchmark} for
+ * throughput with and without counter shards.
+ */
+public class MetaCounterShardsTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    private static final int SYNAPSES_PER_THREAD = 50;
+    private static final int ROI_DICTIONARY_THREADS = 8;
+    private static final AtomicInteger nextLocation = new AtomicInteger(1);
+
+    static {
+        neo4j = new Neo4jRule()
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(ProofreaderProcedures.class)
+                .withFunction(NeuPrintUserFunctions.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().withMaxConnectionPoolSize(64).toConfig());
+
+        Session session = driver.session();
+        for (String dataset : new String[]{"sharded", "unsharded", "shardedRoiDictionary"}) {
+            session.writeTransaction(tx -> tx.run("CREATE (n:Meta{dataset:$dataset}) SET n.totalPreCount=0, n.totalPostCount=0, n.roiInfo='{\"roiA\":{\"pre\":0,\"post\":0}}'",
+                    parameters("dataset", dataset)));
+        }
+        session.writeTransaction(tx -> tx.run("CALL loader.setMetaCounterShards('sharded', 4)"));
+        session.writeTransaction(tx -> tx.run("CALL loader.setMetaCounterShards('shardedRoiDictionary', 4)"));
+
+        // one segment with a roiInfoBinary property and one pre synapse per thread of the ROI dictionary test
+        byte[] emptyRoiInfoBinary = RoiInfoCodec.encode(new RoiInfo(), new RoiDictionary());
+        for (int i = 0; i < ROI_DICTIONARY_THREADS; i++) {
+            final int x = i;
+            session.writeTransaction(tx -> tx.run("CREATE (n:Segment:`shardedRoiDictionary-Segment`{bodyId:$bodyId, roiInfo:'{}', roiInfoBinary:$roiInfoBinary})" +
+                            "-[:Contains]->(ss:SynapseSet:`shardedRoiDictionary-SynapseSet`)" +
+                            "-[:Contains]->(s:Synapse:`shardedRoiDictionary-Synapse`:PreSyn:`shardedRoiDictionary-PreSyn`{type:'pre', confidence:.9, location:point({x:$x, y:2.0, z:2.0})})",
+                    parameters("bodyId", 100 + x, "x", (double) x, "roiInfoBinary", emptyRoiInfoBinary)));
+        }
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldFoldConcurrentChangesIntoMetaNode() throws Exception {
+
+        addSynapsesConcurrently("sharded", 4);
+
+        Session session = driver.session();
+
+        // delete a pre synapse with roiA
+        session.writeTransaction(tx -> tx.run("MATCH (s:`sharded-PreSyn`) WITH s LIMIT 1 " +
+                "CALL proofreader.deleteSynapse(s.location.x, s.location.y, s.location.z, 'sharded') RETURN count(*)"));
+
+        session.writeTransaction(tx -> tx.run("CALL loader.foldMetaCounterShards('sharded')"));
+
+        Map<String, Object> metaNode = session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'sharded'}) RETURN n.totalPreCount, n.totalPostCount, n.roiInfo")).single().asMap();
+        long preCount = session.readTransaction(tx -> tx.run("MATCH (n:`sharded-PreSyn`) RETURN count(n)")).single().get(0).asLong();
+        long postCount = session.readTransaction(tx -> tx.run("MATCH (n:`sharded-PostSyn`) RETURN count(n)")).single().get(0).asLong();
+
+        Assert.assertEquals(4 * SYNAPSES_PER_THREAD / 2 - 1, preCount);
+        Assert.assertEquals(preCount, metaNode.get("n.totalPreCount"));
+        Assert.assertEquals(postCount, metaNode.get("n.totalPostCount"));
+
+        Map<String, SynapseCounter> roiInfo = new Gson().fromJson((String) metaNode.get("n.roiInfo"), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Assert.assertEquals(preCount, roiInfo.get("roiA").getPre());
+        Assert.assertEquals(postCount, roiInfo.get("roiA").getPost());
+
+        // shards are empty after folding
+        long shardsWithChanges = session.readTransaction(tx -> tx.run("MATCH (n:`sharded-MetaCounterShard`) WHERE exists(n.totalPreCount) RETURN count(n)")).single().get(0).asLong();
+        Assert.assertEquals(0, shardsWithChanges);
+    }
+
+    @Test
+    public void shouldUpdateMetaNodeDirectlyWithoutShardsAndWhenShardingIsTurnedOff() throws Exception {
+
+        addSynapsesConcurrently("unsharded", 2);
+
+        Session session = driver.session();
+
+        Assert.assertEquals(SYNAPSES_PER_THREAD, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'unsharded'}) RETURN n.totalPreCount")).single().get(0).asLong());
+        Assert.assertEquals(0, session.readTransaction(tx -> tx.run("MATCH (n:`unsharded-MetaCounterShard`) RETURN count(n)")).single().get(0).asLong());
+
+        session.writeTransaction(tx -> tx.run("CALL loader.setMetaCounterShards('unsharded', 2)"));
+        addSynapsesConcurrently("unsharded", 2);
+        // turning sharding off folds the shards
+        session.writeTransaction(tx -> tx.run("CALL loader.setMetaCounterShards('unsharded', 0)"));
+
+        Assert.assertEquals(2 * SYNAPSES_PER_THREAD, session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'unsharded'}) RETURN n.totalPreCount")).single().get(0).asLong());
+        Assert.assertEquals(0, session.readTransaction(tx -> tx.run("MATCH (n:`unsharded-MetaCounterShard`) RETURN count(n)")).single().get(0).asLong());
+        Assert.assertFalse(session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'unsharded'}) RETURN exists(n.counterShardCount)")).single().get(0).asBoolean());
+    }
+
+    @Test
+    public void shouldNotLoseRoiDictionaryEntriesAddedConcurrentlyOnShardedDataset() throws Exception {
+
+        // each thread adds a different new ROI to its own segment's roiInfoBinary, which adds it to the ROI dictionary
+        ExecutorService executorService = Executors.newFixedThreadPool(ROI_DICTIONARY_THREADS);
+        CountDownLatch startLatch = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < ROI_DICTIONARY_THREADS; t++) {
+            final int x = t;
+            futures.add(executorService.submit(() -> {
+                startLatch.await();
+                try (Session session = driver.session()) {
+                    session.writeTransaction(tx -> tx.run("CALL proofreader.addRoiToSynapse($x,2.0,2.0,$roi,'shardedRoiDictionary')",
+                            parameters("x", (double) x, "roi", "newRoi" + x)));
+                }
+                return null;
+            }));
+        }
+        startLatch.countDown();
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+
+        Session session = driver.session();
+
+        List<Object> roiDictionary = session.readTransaction(tx -> tx.run("MATCH (n:Meta{dataset:'shardedRoiDictionary'}) RETURN n.roiDictionary")).single().get(0).asList();
+        Set<Object> expectedRois = new HashSet<>();
+        for (int t = 0; t < ROI_DICTIONARY_THREADS; t++) {
+            expectedRois.add("newRoi" + t);
+        }
+        Assert.assertEquals(ROI_DICTIONARY_THREADS, roiDictionary.size());
+        Assert.assertEquals(expectedRois, new HashSet<>(roiDictionary));
+
+        // every roiInfoBinary decodes to the ROI that was added to it
+        for (int t = 0; t < ROI_DICTIONARY_THREADS; t++) {
+            final int x = t;
+            String roiInfo = session.readTransaction(tx -> tx.run("MATCH (n:`shardedRoiDictionary-Segment`{bodyId:$bodyId}) RETURN neuprint.roiInfoBinaryAsJson(n.roiInfoBinary, 'shardedRoiDictionary')",
+                    parameters("bodyId", 100 + x))).single().get(0).asString();
+            Assert.assertEquals("{\"newRoi" + x + "\":{\"pre\":1,\"post\":0}}", roiInfo);
+        }
+    }
+
+    /**
+     * Adds SYNAPSES_PER_THREAD synapses (half pre, half post, all in roiA) per thread, each with its own session.
+     */
+    private static void addSynapsesConcurrently(String dataset, int threads) throws Exception {
+        ExecutorService executorService = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executorService.submit(() -> {
+                try (Session session = driver.session()) {
+                    for (int i = 0; i < SYNAPSES_PER_THREAD; i++) {
+                        String synapseJson = String.format("{ \"type\": \"%s\", \"location\": [ %d,1,1 ], \"confidence\": .88, \"rois\": [ \"roiA\" ] }",
+                                i % 2 == 0 ? "pre" : "post", nextLocation.getAndIncrement());
+                        session.writeTransaction(tx -> tx.run("CALL proofreader.addSynapse($synapseJson,$dataset)", parameters("synapseJson", synapseJson, "dataset", dataset)));
+                    }
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executorService.shutdown();
+    }
+
+}
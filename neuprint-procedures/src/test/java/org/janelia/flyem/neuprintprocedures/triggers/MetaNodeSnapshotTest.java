@@ -0,0 +1,78 @@
+package org.janelia.flyem.neuprintprocedures.triggers;
+
+import org.janelia.flyem.neuprintloadprocedures.MetaNodeSnapshot;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.util.Arrays;
+import java.util.HashSet;
+
+/**
+ * Tests that {@link MetaNodeSnapshot}s are cached and are invalidated by the transaction event handler when the Meta
+ * node changes.
+ */
+public class MetaNodeSnapshotTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j = new Neo4jRule();
+    private static GraphDatabaseService dbService;
+
+    @BeforeClass
+    public static void before() {
+        dbService = neo4j.getGraphDatabaseService();
+        dbService.execute("CREATE (n:Meta{dataset:'test'}) SET n.roiInfo='{\"roiA\":{\"pre\":1,\"post\":1}}', n.preHPThreshold=.5, n.postHPThreshold=.6, n.superLevelRois=['roiA']").close();
+    }
+
+    private static MetaNodeSnapshot getSnapshot() {
+        try (Transaction tx = dbService.beginTx()) {
+            Node metaNode = dbService.findNode(Label.label("Meta"), "dataset", "test");
+            MetaNodeSnapshot snapshot = MetaNodeSnapshot.get(metaNode);
+            tx.success();
+            return snapshot;
+        }
+    }
+
+    @Test
+    public void shouldCacheSnapshotUntilMetaNodeChanges() {
+
+        MetaNodeSnapshot snapshot = getSnapshot();
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("roiA")), snapshot.getRoiSet());
+        Assert.assertEquals(.5, snapshot.getPreHPThreshold(), .0001);
+        Assert.assertEquals(.6, snapshot.getPostHPThreshold(), .0001);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("roiA")), snapshot.getSuperLevelRois());
+        Assert.assertSame(snapshot, getSnapshot());
+
+        // changes to other nodes do not invalidate the snapshot
+        dbService.execute("CREATE (n:Segment{bodyId:1}) SET n.roiInfo='{\"roiB\":{\"pre\":1,\"post\":1}}'").close();
+        Assert.assertSame(snapshot, getSnapshot());
+
+        // changing only a threshold produces a new snapshot that reuses the parsed ROI set
+        dbService.execute("MATCH (n:Meta{dataset:'test'}) SET n.postHPThreshold=.8").close();
+        MetaNodeSnapshot thresholdChangedSnapshot = getSnapshot();
+        Assert.assertNotSame(snapshot, thresholdChangedSnapshot);
+        Assert.assertEquals(.8, thresholdChangedSnapshot.getPostHPThreshold(), .0001);
+        Assert.assertSame(snapshot.getRoiSet(), thresholdChangedSnapshot.getRoiSet());
+
+        dbService.execute("MATCH (n:Meta{dataset:'test'}) SET n.roiInfo='{\"roiA\":{\"pre\":2,\"post\":1}}'").close();
+        MetaNodeSnapshot countsChangedSnapshot = getSnapshot();
+        Assert.assertNotSame(thresholdChangedSnapshot, countsChangedSnapshot);
+        Assert.assertEquals(snapshot.getRoiSet(), countsChangedSnapshot.getRoiSet());
+
+        dbService.execute("MATCH (n:Meta{dataset:'test'}) SET n.roiInfo='{\"roiA\":{\"pre\":2,\"post\":1},\"roiB\":{\"pre\":1,\"post\":0}}', n.preHPThreshold=.7").close();
+        MetaNodeSnapshot roisChangedSnapshot = getSnapshot();
+        Assert.assertEquals(new HashSet<>(Arrays.asList("roiA", "roiB")), roisChangedSnapshot.getRoiSet());
+        Assert.assertEquals(.7, roisChangedSnapshot.getPreHPThreshold(), .0001);
+
+        dbService.execute("MATCH (n:Meta{dataset:'test'}) REMOVE n.superLevelRois").close();
+        Assert.assertNull(getSnapshot().getSuperLevelRois());
+    }
+
+}
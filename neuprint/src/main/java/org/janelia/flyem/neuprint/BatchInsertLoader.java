@@ -0,0 +1,456 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.io.CompressedInput;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.SkeletonColumns;
+import org.neo4j.graphdb.Label;
+import org.neo4j.graphdb.RelationshipType;
+import org.neo4j.unsafe.batchinsert.BatchInserter;
+import org.neo4j.unsafe.batchinsert.BatchInserters;
+import org.neo4j.values.storable.CoordinateReferenceSystem;
+import org.neo4j.values.storable.PointValue;
+import org.neo4j.values.storable.Values;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * Writes an initial load directly to a new, offline neo4j store with the embedded batch inserter, as an alternative to
+ * loading through Bolt with {@link Neo4jImporter}. Nothing goes through Cypher or transactions: nodes and relationships
+ * are appended to the store files and the constraints and indexes are populated once when the store is shut down.
+ * The store has the same nodes, relationships, properties, labels, constraints and indexes as a Bolt load followed by
+ * loader.addPropsAndConnectionInfoToSegment on every segment (see {@link Neo4jAdminCsvExporter}, which writes the same
+ * graph as CSV files).
+ * <p>
+ * Input JSON files are streamed into a {@link ConnectionInfoBuilder}; neuron JSON is read a second time when writing
+ * Segments. The batch inserter is single threaded, so only swc parsing is done in parallel. The store directory must not
+ * exist or be empty, and no neo4j server may be using it while loading.
+ */
+public class BatchInsertLoader {
+
+    private static final int SWC_FILES_PER_THREAD_PER_CHUNK = 16;
+    private static final long PROGRESS_LOG_INTERVAL = 1000000;
+
+    private static final RelationshipType IS = RelationshipType.withName("Is");
+    private static final RelationshipType SYNAPSES_TO = RelationshipType.withName("SynapsesTo");
+    private static final RelationshipType CONTAINS = RelationshipType.withName("Contains");
+    private static final RelationshipType CONNECTS_TO = RelationshipType.withName("ConnectsTo");
+    private static final RelationshipType FROM = RelationshipType.withName("From");
+    private static final RelationshipType TO = RelationshipType.withName("To");
+    private static final RelationshipType LINKS_TO = RelationshipType.withName("LinksTo");
+
+    private final String dataset;
+    private final File storeDirectory;
+    private final Map<String, String> storeConfig;
+    private final float dataModelVersion;
+    private final double preHPThreshold;
+    private final double postHPThreshold;
+    private final boolean addConnectionSetRoiInfoAndWeightHP;
+    private final int threads;
+    private final LocalDateTime timeStamp;
+    private final ConnectionInfoBuilder connectionInfoBuilder;
+
+    private final Label[] preSynLabels;
+    private final Label[] postSynLabels;
+    private final Label[] segmentLabels;
+    private final Label[] neuronLabels;
+    private final Label[] synapseSetLabels;
+    private final Label[] connectionSetLabels;
+    private final Label[] skeletonLabels;
+    private final Label[] skelNodeLabels;
+
+    private BatchInserter inserter;
+    private long[] synapseNodeIds;
+    private final Map<Long, Long> segmentNodeIds = new HashMap<>();
+    private boolean hasClusterNames;
+
+    /**
+     * Class constructor.
+     *
+     * @param dataset                            dataset name
+     * @param storeDirectory                     neo4j database directory (e.g. data/databases/graph.db) to create
+     * @param storeConfig                        neo4j settings used while inserting (e.g. dbms.pagecache.memory)
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param threads                            number of threads used to parse swc files
+     * @param timeStamp                          time stamp for load
+     */
+    public BatchInsertLoader(final String dataset,
+                             final File storeDirectory,
+                             final Map<String, String> storeConfig,
+                             final float dataModelVersion,
+                             final double preHPThreshold,
+                             final double postHPThreshold,
+                             final long neuronThreshold,
+                             final boolean addConnectionSetRoiInfoAndWeightHP,
+                             final int threads,
+                             final LocalDateTime timeStamp) {
+        this.dataset = dataset;
+        this.storeDirectory = storeDirectory;
+        this.storeConfig = storeConfig;
+        this.dataModelVersion = dataModelVersion;
+        this.preHPThreshold = preHPThreshold;
+        this.postHPThreshold = postHPThreshold;
+        this.addConnectionSetRoiInfoAndWeightHP = addConnectionSetRoiInfoAndWeightHP;
+        this.threads = Math.max(1, threads);
+        this.timeStamp = timeStamp;
+        this.connectionInfoBuilder = new ConnectionInfoBuilder(preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP);
+
+        this.preSynLabels = labels("Synapse", "PreSyn", dataset, dataset + "-Synapse", dataset + "-PreSyn");
+        this.postSynLabels = labels("Synapse", "PostSyn", dataset, dataset + "-Synapse", dataset + "-PostSyn");
+        this.segmentLabels = labels("Segment", dataset, dataset + "-Segment");
+        this.neuronLabels = labels("Segment", dataset, dataset + "-Segment", "Neuron", dataset + "-Neuron");
+        this.synapseSetLabels = labels("SynapseSet", dataset, dataset + "-SynapseSet");
+        this.connectionSetLabels = labels("ConnectionSet", dataset, dataset + "-ConnectionSet");
+        this.skeletonLabels = labels("Skeleton", dataset, dataset + "-Skeleton");
+        this.skelNodeLabels = labels("SkelNode", dataset, dataset + "-SkelNode");
+    }
+
+    /**
+     * Reads the input files and writes all nodes, relationships, constraints and indexes to the store. Any input may be null.
+     *
+     * @param synapseJson    path to synapses JSON file
+     * @param connectionJson path to connections JSON file
+     * @param neuronJson     path to neurons JSON file
+     * @param swcFiles       swc files (file name is the bodyId)
+     * @param metaInfo       {@link MetaInfo} for the dataset
+     * @throws IOException if an input file cannot be read, or the store directory is not empty or cannot be written
+     */
+    public void load(final String synapseJson,
+                     final String connectionJson,
+                     final String neuronJson,
+                     final File[] swcFiles,
+                     final MetaInfo metaInfo) throws IOException {
+
+        LOG.info("load: entry");
+
+        final String[] existingFiles = storeDirectory.list();
+        if (existingFiles != null && existingFiles.length > 0) {
+            throw new IOException("store directory " + storeDirectory + " is not empty");
+        }
+
+        if (synapseJson != null) {
+            Neo4jAdminCsvExporter.readJsonInBatches(synapseJson, "readSynapses", new StreamingJsonDecoder()::nextSynapse,
+                    synapseList -> synapseList.forEach(connectionInfoBuilder::addSynapse));
+        }
+
+        if (connectionJson != null) {
+            Neo4jAdminCsvExporter.readJsonInBatches(connectionJson, "readConnections", new StreamingJsonDecoder()::nextSynapticConnection,
+                    connectionList -> connectionList.forEach(connectionInfoBuilder::addSynapticConnection));
+        }
+
+        // first pass over neurons assigns synapses to bodies and collects segment ROIs
+        final Set<Long> segmentBodyIds = new HashSet<>();
+        final Set<String> segmentRois = new TreeSet<>(connectionInfoBuilder.getDatasetRoiInfo().getSetOfRois());
+        if (neuronJson != null) {
+            Neo4jAdminCsvExporter.readJsonInBatches(neuronJson, "readNeurons", new StreamingJsonDecoder()::nextNeuron,
+                    neuronList -> {
+                        for (final Neuron neuron : neuronList) {
+                            connectionInfoBuilder.addSegmentSynapses(neuron.getId(), neuron.getSynapseLocationSet());
+                            segmentBodyIds.add(neuron.getId());
+                            segmentRois.addAll(neuron.getRois());
+                        }
+                    });
+        }
+
+        connectionInfoBuilder.build();
+
+        final File[] swcFileArray = swcFiles == null ? new File[0] : swcFiles;
+        final List<Long> skeletonOnlyBodyIds = new ArrayList<>();
+        for (final File swcFile : swcFileArray) {
+            final Long bodyId = NeuPrintMain.setSkeletonAssociatedBodyId(swcFile.getAbsolutePath());
+            if (!segmentBodyIds.contains(bodyId)) {
+                skeletonOnlyBodyIds.add(bodyId);
+            }
+        }
+
+        inserter = BatchInserters.inserter(storeDirectory, storeConfig);
+        try {
+            insertMetaAndDataModel(metaInfo);
+            insertSynapses();
+            insertSegments(neuronJson, skeletonOnlyBodyIds);
+            insertConnectionSets();
+            insertSkeletons(swcFileArray);
+            createSchema(segmentRois);
+        } catch (final UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            // constraints and indexes are populated on shutdown
+            final long shutdownStart = System.currentTimeMillis();
+            inserter.shutdown();
+            inserter = null;
+            LOG.info("load: shut down store and populated indexes in {} ms", System.currentTimeMillis() - shutdownStart);
+        }
+
+        LOG.info("load: wrote store to {}", storeDirectory);
+        LOG.info("load: exit");
+    }
+
+    private void insertMetaAndDataModel(final MetaInfo metaInfo) {
+        final Map<String, Object> metaProperties = properties(
+                "dataset", dataset,
+                "roiInfo", connectionInfoBuilder.getDatasetRoiInfo().getAsJsonString(),
+                "superLevelRois", connectionInfoBuilder.getSuperLevelRois().toArray(new String[0]),
+                "totalPreCount", connectionInfoBuilder.getTotalPreCount(),
+                "totalPostCount", connectionInfoBuilder.getTotalPostCount(),
+                "preHPThreshold", addConnectionSetRoiInfoAndWeightHP ? preHPThreshold : null,
+                "postHPThreshold", addConnectionSetRoiInfoAndWeightHP ? postHPThreshold : null,
+                "lastDatabaseEdit", timeStamp);
+        if (metaInfo != null) {
+            metaProperties.putAll(properties(
+                    "neuroglancerInfo", metaInfo.getNeuroglancerInfo(),
+                    "uuid", metaInfo.getUuid(),
+                    "dvidServer", metaInfo.getDvidServer(),
+                    "statusDefinitions", metaInfo.getStatusDefinitions(),
+                    "meshHost", metaInfo.getMeshHost(),
+                    "info", metaInfo.getInfo()));
+        }
+        final long metaNodeId = inserter.createNode(metaProperties, labels("Meta", dataset));
+        // Bolt sends floats as 64-bit values
+        final long dataModelNodeId = inserter.createNode(properties(
+                "dataModelVersion", (double) dataModelVersion,
+                "timeStamp", timeStamp), labels("DataModel"));
+        inserter.createRelationship(metaNodeId, dataModelNodeId, IS, null);
+    }
+
+    private void insertSynapses() {
+
+        LOG.info("insertSynapses: entry");
+
+        synapseNodeIds = new long[connectionInfoBuilder.getSynapseCount()];
+        for (int synapseId = 0; synapseId < synapseNodeIds.length; synapseId++) {
+            final String type = connectionInfoBuilder.getSynapseType(synapseId);
+            final Map<String, Object> synapseProperties = properties(
+                    "type", type,
+                    "confidence", connectionInfoBuilder.getSynapseConfidence(synapseId),
+                    "location", toPoint(connectionInfoBuilder.getSynapseLocation(synapseId)),
+                    "timeStamp", timeStamp);
+            for (final String roi : connectionInfoBuilder.getSynapseRois(synapseId)) {
+                synapseProperties.put(roi, true);
+            }
+            synapseNodeIds[synapseId] = inserter.createNode(synapseProperties, type.equals("pre") ? preSynLabels : postSynLabels);
+            logProgress("insertSynapses", "synapses", synapseId + 1);
+        }
+
+        for (int i = 0; i < connectionInfoBuilder.getConnectionCount(); i++) {
+            inserter.createRelationship(synapseNodeIds[connectionInfoBuilder.getPreSynapseId(i)], synapseNodeIds[connectionInfoBuilder.getPostSynapseId(i)], SYNAPSES_TO, null);
+        }
+
+        LOG.info("insertSynapses: exit, inserted {} synapses and {} SynapsesTo relationships", synapseNodeIds.length, connectionInfoBuilder.getConnectionCount());
+    }
+
+    private void insertSegments(final String neuronJson, final List<Long> skeletonOnlyBodyIds) throws IOException {
+
+        LOG.info("insertSegments: entry");
+
+        if (neuronJson != null) {
+            Neo4jAdminCsvExporter.readJsonInBatches(neuronJson, "insertSegments", new StreamingJsonDecoder()::nextNeuron, neuronList -> {
+                for (final Neuron neuron : neuronList) {
+                    final ConnectionInfoBuilder.SegmentInfo segmentInfo = connectionInfoBuilder.getSegmentInfo(neuron.getId(), neuron.getSynapseLocationSet());
+
+                    final Map<String, Object> segmentProperties = properties(
+                            "bodyId", neuron.getId(),
+                            "name", neuron.getName(),
+                            "type", neuron.getType(),
+                            "instance", neuron.getInstance(),
+                            "primaryNeurite", neuron.getPrimaryNeurite(),
+                            "majorInput", neuron.getMajorInput(),
+                            "majorOutput", neuron.getMajorOutput(),
+                            "clonalUnit", neuron.getClonalUnit(),
+                            "neurotransmitter", neuron.getNeurotransmitter(),
+                            "property", neuron.getProperty(),
+                            "status", neuron.getStatus(),
+                            "size", neuron.getSize(),
+                            "somaLocation", neuron.getSoma() == null ? null : toPoint(neuron.getSoma().getLocation()),
+                            "somaRadius", neuron.getSomaRadius(),
+                            "clusterName", segmentInfo.getClusterName(),
+                            "timeStamp", timeStamp);
+                    if (segmentInfo.hasSynapses()) {
+                        segmentProperties.put("pre", segmentInfo.getPre());
+                        segmentProperties.put("post", segmentInfo.getPost());
+                        segmentProperties.put("roiInfo", segmentInfo.getRoiInfo().getAsJsonString());
+                    }
+                    for (final String roi : neuron.getRois()) {
+                        segmentProperties.put(roi, true);
+                    }
+                    for (final String roi : segmentInfo.getRoiInfo().getSetOfRois()) {
+                        segmentProperties.put(roi, true);
+                    }
+                    hasClusterNames |= segmentInfo.getClusterName() != null;
+
+                    final long segmentNodeId = inserter.createNode(segmentProperties, segmentInfo.isNeuron() ? neuronLabels : segmentLabels);
+                    segmentNodeIds.put(neuron.getId(), segmentNodeId);
+
+                    if (neuron.getSynapseLocationSet().size() > 0) {
+                        final long synapseSetNodeId = inserter.createNode(properties(
+                                "datasetBodyId", dataset + ":" + neuron.getId(),
+                                "timeStamp", timeStamp), synapseSetLabels);
+                        inserter.createRelationship(segmentNodeId, synapseSetNodeId, CONTAINS, null);
+                        for (final Location location : neuron.getSynapseLocationSet()) {
+                            for (final int synapseId : connectionInfoBuilder.getSynapseIds(location)) {
+                                inserter.createRelationship(synapseSetNodeId, synapseNodeIds[synapseId], CONTAINS, null);
+                            }
+                        }
+                    }
+                    logProgress("insertSegments", "segments", segmentNodeIds.size());
+                }
+            });
+        }
+
+        // segments that only have a skeleton
+        for (final Long bodyId : skeletonOnlyBodyIds) {
+            segmentNodeIds.put(bodyId, inserter.createNode(properties(
+                    "bodyId", bodyId,
+                    "timeStamp", timeStamp), segmentLabels));
+        }
+
+        LOG.info("insertSegments: exit, inserted {} segments", segmentNodeIds.size());
+    }
+
+    private void insertConnectionSets() {
+
+        LOG.info("insertConnectionSets: entry");
+
+        long connectionSetCount = 0;
+        for (final ConnectionInfoBuilder.ConnectionSetInfo connectionSet : connectionInfoBuilder.getConnectionSets()) {
+            final long preNodeId = segmentNodeIds.get(connectionSet.getPreBodyId());
+            final long postNodeId = segmentNodeIds.get(connectionSet.getPostBodyId());
+
+            final long connectionSetNodeId = inserter.createNode(properties(
+                    "datasetBodyIds", dataset + ":" + connectionSet.getPreBodyId() + ":" + connectionSet.getPostBodyId(),
+                    "roiInfo", connectionSet.getRoiInfo(),
+                    "timeStamp", timeStamp), connectionSetLabels);
+            inserter.createRelationship(preNodeId, postNodeId, CONNECTS_TO, properties(
+                    "weight", (long) connectionSet.getWeight(),
+                    "weightHP", connectionSet.getWeightHP() == null ? null : connectionSet.getWeightHP().longValue()));
+            inserter.createRelationship(connectionSetNodeId, preNodeId, FROM, null);
+            inserter.createRelationship(connectionSetNodeId, postNodeId, TO, null);
+            for (final int synapseId : connectionSet.getSynapseIds()) {
+                inserter.createRelationship(connectionSetNodeId, synapseNodeIds[synapseId], CONTAINS, null);
+            }
+            logProgress("insertConnectionSets", "connection sets", ++connectionSetCount);
+        }
+
+        LOG.info("insertConnectionSets: exit, inserted {} connection sets", connectionSetCount);
+    }
+
+    private void insertSkeletons(final File[] swcFiles) {
+
+        LOG.info("insertSkeletons: entry");
+
+        // parse a bounded number of swc files at a time in parallel, then insert them on this thread
+        final int chunkSize = threads * SWC_FILES_PER_THREAD_PER_CHUNK;
+        for (int start = 0; start < swcFiles.length; start += chunkSize) {
+            final List<File> chunk = Arrays.asList(swcFiles).subList(start, Math.min(start + chunkSize, swcFiles.length));
+            final List<SkeletonColumns> skeletons = chunk.parallelStream().map(swcFile -> {
+                try (InputStream inputStream = CompressedInput.open(swcFile, 1)) {
+                    return SkeletonColumns.fromSwc(inputStream);
+                } catch (final IOException e) {
+                    throw new UncheckedIOException("Error reading skeleton file " + swcFile + ": " + e, e);
+                }
+            }).collect(Collectors.toList());
+
+            for (int i = 0; i < chunk.size(); i++) {
+                insertSkeleton(NeuPrintMain.setSkeletonAssociatedBodyId(chunk.get(i).getAbsolutePath()), skeletons.get(i));
+            }
+        }
+
+        LOG.info("insertSkeletons: exit, inserted {} skeletons", swcFiles.length);
+    }
+
+    private void insertSkeleton(final Long bodyId, final SkeletonColumns skeleton) {
+        final long skeletonNodeId = inserter.createNode(properties(
+                "skeletonId", dataset + ":" + bodyId,
+                "timeStamp", timeStamp), skeletonLabels);
+        inserter.createRelationship(segmentNodeIds.get(bodyId), skeletonNodeId, CONTAINS, null);
+
+        final long[] skelNodeNodeIds = new long[skeleton.size()];
+        for (int i = 0; i < skeleton.size(); i++) {
+            skelNodeNodeIds[i] = inserter.createNode(properties(
+                    "skelNodeId", skeleton.getSkelNodeId(dataset, bodyId, i),
+                    "location", Values.pointValue(CoordinateReferenceSystem.Cartesian_3D, skeleton.getX(i), skeleton.getY(i), skeleton.getZ(i)),
+                    "radius", skeleton.getRadius(i),
+                    "rowNumber", (long) skeleton.getRowNumber(i),
+                    "type", (long) skeleton.getType(i),
+                    "timeStamp", timeStamp), skelNodeLabels);
+            inserter.createRelationship(skeletonNodeId, skelNodeNodeIds[i], CONTAINS, null);
+            // parents precede their children in swc files
+            if (skeleton.getParent(i) != -1) {
+                inserter.createRelationship(skelNodeNodeIds[skeleton.getParent(i)], skelNodeNodeIds[i], LINKS_TO, null);
+            }
+        }
+    }
+
+    /**
+     * Creates the same constraints and indexes as {@link Neo4jImporter#prepDatabase}, {@link Neo4jImporter#prepDatabaseForClusterNames}
+     * and {@link Neo4jImporter#indexBooleanRoiProperties}.
+     */
+    private void createSchema(final Set<String> rois) {
+        final List<Neo4jImporter.SchemaIndex> schemaIndexes = new ArrayList<>(Neo4jImporter.getLoadSchemaIndexes(dataset));
+        schemaIndexes.addAll(Neo4jImporter.getDeferrableSchemaIndexes(dataset));
+        if (hasClusterNames) {
+            schemaIndexes.add(Neo4jImporter.getClusterNameSchemaIndex(dataset));
+        }
+        schemaIndexes.addAll(Neo4jImporter.getRoiSchemaIndexes(dataset, rois));
+
+        for (final Neo4jImporter.SchemaIndex schemaIndex : schemaIndexes) {
+            final Label label = Label.label(schemaIndex.getLabel());
+            if (schemaIndex.isUnique()) {
+                inserter.createDeferredConstraint(label).assertPropertyIsUnique(schemaIndex.getProperty()).create();
+            } else {
+                inserter.createDeferredSchemaIndex(label).on(schemaIndex.getProperty()).create();
+            }
+        }
+        LOG.info("createSchema: created {} constraints and indexes", schemaIndexes.size());
+    }
+
+    private static void logProgress(final String method, final String name, final long count) {
+        if (count % PROGRESS_LOG_INTERVAL == 0) {
+            LOG.info("{}: inserted {} {}", method, count, name);
+        }
+    }
+
+    /**
+     * @return map of the given keys and values, without the keys whose values are null
+     */
+    private static Map<String, Object> properties(final Object... keysAndValues) {
+        final Map<String, Object> properties = new HashMap<>();
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            if (keysAndValues[i + 1] != null) {
+                properties.put((String) keysAndValues[i], keysAndValues[i + 1]);
+            }
+        }
+        return properties;
+    }
+
+    private static PointValue toPoint(final Location location) {
+        return Values.pointValue(CoordinateReferenceSystem.Cartesian_3D, location.getX(), location.getY(), location.getZ());
+    }
+
+    private static Label[] labels(final String... names) {
+        return Arrays.stream(names).map(Label::label).toArray(Label[]::new);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchInsertLoader.class);
+
+}
@@ -0,0 +1,167 @@
+package org.janelia.flyem.neuprint;
+
+import java.time.LocalDateTime;
+
+/**
+ * Options for the batched loaders in {@link NeuPrintMain} ({@link NeuPrintMain#loadNeuronJsonInBatches},
+ * {@link NeuPrintMain#loadSynapseJsonInBatches} and {@link NeuPrintMain#loadSynapseBinaryInBatches}).
+ * Options that are not set keep the defaults of the corresponding command line parameters.
+ */
+public class BatchLoadOptions {
+
+    private final String dataset;
+    private final LocalDateTime timeStamp;
+    private float dataModelVersion = 1.0F;
+    private double preHPThreshold = 0.0;
+    private double postHPThreshold = 0.0;
+    private long neuronThreshold = 10;
+    private boolean addConnectionSetRoiInfoAndWeightHP = true;
+    private boolean addClusterNames = true;
+    private boolean addConnectionInfo = true;
+    private boolean useUnwindForSynapses = false;
+    private int pipelineQueueDepth = 0;
+    private CheckpointJournal checkpointJournal;
+
+    /**
+     * Class constructor.
+     *
+     * @param dataset   dataset name
+     * @param timeStamp time stamp for loaded nodes
+     */
+    public BatchLoadOptions(final String dataset, final LocalDateTime timeStamp) {
+        this.dataset = dataset;
+        this.timeStamp = timeStamp;
+    }
+
+    /**
+     * @param dataModelVersion data model version written to the Meta node if the database is initialized by the load
+     * @return these options
+     */
+    public BatchLoadOptions dataModelVersion(final float dataModelVersion) {
+        this.dataModelVersion = dataModelVersion;
+        return this;
+    }
+
+    /**
+     * @param preHPThreshold  high-precision threshold for presynaptic densities
+     * @param postHPThreshold high-precision threshold for postsynaptic densities
+     * @return these options
+     */
+    public BatchLoadOptions hpThresholds(final double preHPThreshold, final double postHPThreshold) {
+        this.preHPThreshold = preHPThreshold;
+        this.postHPThreshold = postHPThreshold;
+        return this;
+    }
+
+    /**
+     * @param neuronThreshold segments with greater than or equal to this number of synapses (post or pre/5) are labeled as Neurons
+     * @return these options
+     */
+    public BatchLoadOptions neuronThreshold(final long neuronThreshold) {
+        this.neuronThreshold = neuronThreshold;
+        return this;
+    }
+
+    /**
+     * @param addConnectionSetRoiInfoAndWeightHP if true, roiInfo and weightHP are added to ConnectionSets
+     * @return these options
+     */
+    public BatchLoadOptions addConnectionSetRoiInfoAndWeightHP(final boolean addConnectionSetRoiInfoAndWeightHP) {
+        this.addConnectionSetRoiInfoAndWeightHP = addConnectionSetRoiInfoAndWeightHP;
+        return this;
+    }
+
+    /**
+     * @param addClusterNames if true, cluster names are added to Neurons
+     * @return these options
+     */
+    public BatchLoadOptions addClusterNames(final boolean addClusterNames) {
+        this.addClusterNames = addClusterNames;
+        return this;
+    }
+
+    /**
+     * @param addConnectionInfo if false, only Segment nodes are written by the neuron loader (connection info is added separately)
+     * @return these options
+     */
+    public BatchLoadOptions addConnectionInfo(final boolean addConnectionInfo) {
+        this.addConnectionInfo = addConnectionInfo;
+        return this;
+    }
+
+    /**
+     * @param useUnwindForSynapses if true, synapses are written with UNWIND statements rather than one statement per synapse
+     * @return these options
+     */
+    public BatchLoadOptions useUnwindForSynapses(final boolean useUnwindForSynapses) {
+        this.useUnwindForSynapses = useUnwindForSynapses;
+        return this;
+    }
+
+    /**
+     * @param pipelineQueueDepth number of batches read ahead while the current batch is written (0 to read and write in the same thread)
+     * @return these options
+     */
+    public BatchLoadOptions pipelineQueueDepth(final int pipelineQueueDepth) {
+        this.pipelineQueueDepth = pipelineQueueDepth;
+        return this;
+    }
+
+    /**
+     * @param checkpointJournal journal recording committed batches, or null to load without checkpoints
+     * @return these options
+     */
+    public BatchLoadOptions checkpointJournal(final CheckpointJournal checkpointJournal) {
+        this.checkpointJournal = checkpointJournal;
+        return this;
+    }
+
+    public String getDataset() {
+        return dataset;
+    }
+
+    public LocalDateTime getTimeStamp() {
+        return timeStamp;
+    }
+
+    public float getDataModelVersion() {
+        return dataModelVersion;
+    }
+
+    public double getPreHPThreshold() {
+        return preHPThreshold;
+    }
+
+    public double getPostHPThreshold() {
+        return postHPThreshold;
+    }
+
+    public long getNeuronThreshold() {
+        return neuronThreshold;
+    }
+
+    public boolean getAddConnectionSetRoiInfoAndWeightHP() {
+        return addConnectionSetRoiInfoAndWeightHP;
+    }
+
+    public boolean getAddClusterNames() {
+        return addClusterNames;
+    }
+
+    public boolean getAddConnectionInfo() {
+        return addConnectionInfo;
+    }
+
+    public boolean getUseUnwindForSynapses() {
+        return useUnwindForSynapses;
+    }
+
+    public int getPipelineQueueDepth() {
+        return pipelineQueueDepth;
+    }
+
+    public CheckpointJournal getCheckpointJournal() {
+        return checkpointJournal;
+    }
+
+}
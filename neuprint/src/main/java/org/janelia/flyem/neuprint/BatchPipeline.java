@@ -0,0 +1,232 @@
+package org.janelia.flyem.neuprint;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a batched load as two stages: a parse stage that reads batches from the input and a commit stage
+ * that writes them to the database. When the queue depth is greater than 0, the parse stage runs on its
+ * own thread and hands batches to the commit stage through a bounded queue, so parsing of the next batch
+ * overlaps with committing of the current one. The parse stage blocks when the queue is full (backpressure).
+ * When the queue depth is 0, the stages run one after the other on the calling thread.
+ * <p>
+ * Time spent in each stage is logged when the load finishes so that the bottleneck (parsing or committing)
+ * can be identified for a given dataset.
+ *
+ * @param <T> type of object being loaded
+ */
+public class BatchPipeline<T> {
+
+    /**
+     * Reads the next batch from the input.
+     *
+     * @param <T> type of object being loaded
+     */
+    @FunctionalInterface
+    public interface BatchSource<T> {
+        /**
+         * @return the next batch, or null (or an empty list) when the input is exhausted
+         * @throws IOException if the input cannot be read
+         */
+        List<T> nextBatch() throws IOException;
+    }
+
+    /**
+     * Commits a batch to the database.
+     *
+     * @param <T> type of object being loaded
+     */
+    @FunctionalInterface
+    public interface BatchSink<T> {
+        void commitBatch(List<T> batch);
+    }
+
+    private final String name;
+    private final int queueDepth;
+
+    private long parseNanos;
+    private long parseWaitNanos;
+    private long commitNanos;
+    private long commitWaitNanos;
+    private long batchCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param name       name used when logging stage statistics
+     * @param queueDepth maximum number of parsed batches waiting to be committed (0 to run without a separate parse thread)
+     */
+    public BatchPipeline(final String name, final int queueDepth) {
+        this.name = name;
+        this.queueDepth = Math.max(0, queueDepth);
+    }
+
+    /**
+     * Reads all batches from the source and commits them with the sink, in order.
+     *
+     * @param source reads batches from the input
+     * @param sink   commits batches to the database
+     * @throws IOException if the source fails to read the input
+     */
+    public void run(final BatchSource<T> source, final BatchSink<T> sink) throws IOException {
+        final long startNanos = System.nanoTime();
+        if (queueDepth == 0) {
+            runSequentially(source, sink);
+        } else {
+            runPipelined(source, sink);
+        }
+        logStageUtilization(System.nanoTime() - startNanos);
+    }
+
+    private void runSequentially(final BatchSource<T> source, final BatchSink<T> sink) throws IOException {
+        while (true) {
+            long start = System.nanoTime();
+            final List<T> batch = source.nextBatch();
+            parseNanos += System.nanoTime() - start;
+            if (batch == null || batch.isEmpty()) {
+                break;
+            }
+            start = System.nanoTime();
+            sink.commitBatch(batch);
+            commitNanos += System.nanoTime() - start;
+            batchCount++;
+        }
+    }
+
+    private void runPipelined(final BatchSource<T> source, final BatchSink<T> sink) throws IOException {
+
+        final BlockingQueue<Object> queue = new ArrayBlockingQueue<>(queueDepth);
+        final Object endOfInput = new Object();
+        final Throwable[] parseFailure = new Throwable[1];
+
+        final Thread parseThread = new Thread(() -> {
+            try {
+                while (true) {
+                    long start = System.nanoTime();
+                    final List<T> batch = source.nextBatch();
+                    parseNanos += System.nanoTime() - start;
+                    if (batch == null || batch.isEmpty()) {
+                        break;
+                    }
+                    start = System.nanoTime();
+                    queue.put(batch);
+                    parseWaitNanos += System.nanoTime() - start;
+                }
+            } catch (final InterruptedException e) {
+                // commit stage failed and stopped the load
+                return;
+            } catch (final Throwable t) {
+                parseFailure[0] = t;
+            }
+            try {
+                queue.put(endOfInput);
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, name + "-parse");
+        parseThread.setDaemon(true);
+        parseThread.start();
+
+        try {
+            while (true) {
+                long start = System.nanoTime();
+                final Object item = queue.take();
+                commitWaitNanos += System.nanoTime() - start;
+                if (item == endOfInput) {
+                    break;
+                }
+                @SuppressWarnings("unchecked") final List<T> batch = (List<T>) item;
+                start = System.nanoTime();
+                sink.commitBatch(batch);
+                commitNanos += System.nanoTime() - start;
+                batchCount++;
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(name + ": interrupted while waiting for parsed batch", e);
+        } catch (final RuntimeException e) {
+            parseThread.interrupt();
+            throw e;
+        }
+
+        try {
+            // ensures that the parse thread's timings are visible to this thread
+            parseThread.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (parseFailure[0] != null) {
+            if (parseFailure[0] instanceof IOException) {
+                throw (IOException) parseFailure[0];
+            } else if (parseFailure[0] instanceof RuntimeException) {
+                throw (RuntimeException) parseFailure[0];
+            } else {
+                throw new RuntimeException(name + ": parse stage failed", parseFailure[0]);
+            }
+        }
+    }
+
+    private void logStageUtilization(final long totalNanos) {
+        LOG.info(String.format("%s: %d batches in %.1f s; parse %.1f s (%.0f%%), parse waiting on commit %.1f s (%.0f%%), commit %.1f s (%.0f%%), commit waiting on parse %.1f s (%.0f%%)",
+                name,
+                batchCount,
+                seconds(totalNanos),
+                seconds(parseNanos), percent(parseNanos, totalNanos),
+                seconds(parseWaitNanos), percent(parseWaitNanos, totalNanos),
+                seconds(commitNanos), percent(commitNanos, totalNanos),
+                seconds(commitWaitNanos), percent(commitWaitNanos, totalNanos)));
+    }
+
+    /**
+     * @return time spent reading batches from the input, in nanoseconds
+     */
+    public long getParseNanos() {
+        return parseNanos;
+    }
+
+    /**
+     * @return time the parse stage spent blocked on a full queue, in nanoseconds
+     */
+    public long getParseWaitNanos() {
+        return parseWaitNanos;
+    }
+
+    /**
+     * @return time spent committing batches, in nanoseconds
+     */
+    public long getCommitNanos() {
+        return commitNanos;
+    }
+
+    /**
+     * @return time the commit stage spent waiting for a parsed batch, in nanoseconds
+     */
+    public long getCommitWaitNanos() {
+        return commitWaitNanos;
+    }
+
+    /**
+     * @return number of batches committed
+     */
+    public long getBatchCount() {
+        return batchCount;
+    }
+
+    private static double seconds(final long nanos) {
+        return nanos / 1e9;
+    }
+
+    private static double percent(final long nanos, final long totalNanos) {
+        return totalNanos == 0 ? 0 : 100.0 * nanos / totalNanos;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchPipeline.class);
+
+}
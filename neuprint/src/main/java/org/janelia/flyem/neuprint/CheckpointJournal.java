@@ -0,0 +1,192 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records the progress of batched loads so that an interrupted load can be resumed. After each batch has been
+ * committed, one JSON line is appended to the journal file with the load phase, the input file, the number of
+ * input records committed so far and the batch number. When a phase has read all of its input, a line marking
+ * the phase as complete is appended. Each line is flushed and synced to disk before the next batch is read.
+ * <p>
+ * When resuming, the journal is read back and the batched loaders skip the records that were already committed.
+ * A batch that was being committed when the load was interrupted is loaded again.
+ */
+public class CheckpointJournal implements AutoCloseable {
+
+    /**
+     * One line of the journal.
+     */
+    static class Checkpoint {
+        String phase;
+        String inputFile;
+        long committedRecords;
+        long batch;
+        boolean complete;
+        String timeStamp;
+    }
+
+    private final File journalFile;
+    private final FileOutputStream outputStream;
+    private final Writer writer;
+    private final Map<String, Checkpoint> lastCheckpoints = new HashMap<>();
+    private final Gson gson = new Gson();
+
+    /**
+     * Class constructor.
+     *
+     * @param journalFile file to which checkpoints are appended
+     * @param resume      if true, checkpoints already in the file are read so that committed records are skipped;
+     *                    otherwise the file is truncated
+     * @throws IOException if the journal file cannot be read or opened
+     */
+    public CheckpointJournal(final File journalFile, final boolean resume) throws IOException {
+        this.journalFile = journalFile;
+        if (resume && journalFile.exists()) {
+            readCheckpoints();
+        }
+        final boolean endsWithPartialLine = resume && endsWithPartialLine(journalFile);
+        this.outputStream = new FileOutputStream(journalFile, resume);
+        this.writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        if (endsWithPartialLine) {
+            // terminate the partial line so the next checkpoint starts on its own line
+            writer.write('\n');
+            writer.flush();
+        }
+        LOG.info("writing load checkpoints to {}{}", journalFile, resume ? " (resuming)" : "");
+    }
+
+    private void readCheckpoints() throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(journalFile.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty()) {
+                    continue;
+                }
+                try {
+                    final Checkpoint checkpoint = gson.fromJson(line, Checkpoint.class);
+                    lastCheckpoints.put(key(checkpoint.phase, checkpoint.inputFile), checkpoint);
+                } catch (JsonSyntaxException e) {
+                    // the last line may be partial if the load was killed while writing it
+                    LOG.warn("ignoring unreadable line {} of checkpoint journal {}", lineNumber, journalFile);
+                }
+            }
+        }
+        lastCheckpoints.values().forEach(c -> LOG.info("resuming {} of {} after {} committed records ({} batches){}",
+                c.phase, c.inputFile, c.committedRecords, c.batch, c.complete ? ", phase complete" : ""));
+    }
+
+    private static boolean endsWithPartialLine(final File file) throws IOException {
+        if (!file.exists() || file.length() == 0) {
+            return false;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r")) {
+            randomAccessFile.seek(file.length() - 1);
+            return randomAccessFile.read() != '\n';
+        }
+    }
+
+    private static String key(final String phase, final String inputFile) {
+        return phase + "\t" + inputFile;
+    }
+
+    /**
+     * @param phase     name of load phase
+     * @param inputFile input file (or directory) for the phase
+     * @return number of input records already committed for the phase
+     */
+    public synchronized long getCommittedRecords(final String phase, final String inputFile) {
+        final Checkpoint checkpoint = lastCheckpoints.get(key(phase, inputFile));
+        return checkpoint == null ? 0 : checkpoint.committedRecords;
+    }
+
+    /**
+     * @param phase     name of load phase
+     * @param inputFile input file (or directory) for the phase
+     * @return number of batches already committed for the phase
+     */
+    public synchronized long getCommittedBatches(final String phase, final String inputFile) {
+        final Checkpoint checkpoint = lastCheckpoints.get(key(phase, inputFile));
+        return checkpoint == null ? 0 : checkpoint.batch;
+    }
+
+    /**
+     * @param phase     name of load phase
+     * @param inputFile input file (or directory) for the phase
+     * @return true if all input records for the phase have been committed
+     */
+    public synchronized boolean isComplete(final String phase, final String inputFile) {
+        final Checkpoint checkpoint = lastCheckpoints.get(key(phase, inputFile));
+        return checkpoint != null && checkpoint.complete;
+    }
+
+    /**
+     * Records that a batch has been committed.
+     *
+     * @param phase            name of load phase
+     * @param inputFile        input file (or directory) for the phase
+     * @param committedRecords number of input records committed so far, including those in this batch
+     */
+    public synchronized void recordBatch(final String phase, final String inputFile, final long committedRecords) {
+        append(phase, inputFile, committedRecords, getCommittedBatches(phase, inputFile) + 1, false);
+    }
+
+    /**
+     * Records that all input records for a phase have been committed.
+     *
+     * @param phase     name of load phase
+     * @param inputFile input file (or directory) for the phase
+     */
+    public synchronized void recordComplete(final String phase, final String inputFile) {
+        append(phase, inputFile, getCommittedRecords(phase, inputFile), getCommittedBatches(phase, inputFile), true);
+    }
+
+    private void append(final String phase, final String inputFile, final long committedRecords, final long batch, final boolean complete) {
+        final Checkpoint checkpoint = new Checkpoint();
+        checkpoint.phase = phase;
+        checkpoint.inputFile = inputFile;
+        checkpoint.committedRecords = committedRecords;
+        checkpoint.batch = batch;
+        checkpoint.complete = complete;
+        checkpoint.timeStamp = LocalDateTime.now().toString();
+        try {
+            writer.write(gson.toJson(checkpoint));
+            writer.write('\n');
+            writer.flush();
+            outputStream.getFD().sync();
+        } catch (IOException e) {
+            throw new UncheckedIOException("failed to write to checkpoint journal " + journalFile, e);
+        }
+        lastCheckpoints.put(key(phase, inputFile), checkpoint);
+    }
+
+    @Override
+    public void close() {
+        try {
+            writer.close();
+        } catch (final IOException e) {
+            LOG.warn("failed to close " + journalFile + ", ignoring error");
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CheckpointJournal.class);
+
+}
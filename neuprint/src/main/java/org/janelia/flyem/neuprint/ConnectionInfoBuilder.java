@@ -0,0 +1,779 @@
+package org.janelia.flyem.neuprint;
+
+import org.janelia.flyem.neuprint.json.SynapseRecord;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LongIntHashMap;
+import org.janelia.flyem.neuprint.model.PackedLocation;
+import org.janelia.flyem.neuprint.model.PackedLocationSet;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiCounts;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiInfoCodec;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PrimitiveIterator;
+import java.util.Set;
+
+/**
+ * Computes connection information (ConnectsTo weights, ConnectionSets, roiInfo, pre/post counts and :Neuron labels on
+ * Segments) from synapses, synaptic connections and neuron synapse sets held in memory. Results match those produced by
+ * the loader.addPropsAndConnectionInfoToSegment procedure once it has been run on every segment.
+ * <p>
+ * Each synapse is given an integer id when it is first added, and its type, confidence, ROIs and containing body are
+ * stored in primitive arrays indexed by that id so that datasets with hundreds of millions of synapses fit in memory.
+ * ROIs are given ids by a {@link RoiDictionary}: each synapse refers to a shared {@link RoiSet} bitset, ROI counts are
+ * accumulated in {@link RoiCounts}, and ROI names are only looked up when results are returned.
+ * Locations are held as packed longs (see {@link PackedLocation}) and looked up in a {@link LongIntHashMap}.
+ * Synapses should be added first, then synaptic connections, then the synapse sets of all segments, after which
+ * {@link #build()} computes the ConnectionSets.
+ */
+public class ConnectionInfoBuilder {
+
+    /**
+     * Body id of synapses that do not belong to a segment.
+     */
+    public static final long NO_BODY = Long.MIN_VALUE;
+
+    private static final byte PRE = 0;
+    private static final byte POST = 1;
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final double preHPThreshold;
+    private final double postHPThreshold;
+    private final long neuronThreshold;
+    private final boolean addConnectionSetRoiInfoAndWeightHP;
+    private final boolean addRoiInfoBinary;
+
+    // synapse ids by packed location (see PackedLocation); locations that cannot be packed are kept in the overflow maps
+    private final LongIntHashMap synapseIdByPackedLocation = new LongIntHashMap(INITIAL_CAPACITY);
+    private final Map<Location, Integer> synapseIdByOverflowLocation = new HashMap<>();
+    // synapses of the other type at a location that already has a synapse (PreSyn and PostSyn nodes are merged separately by location)
+    private final LongIntHashMap otherTypeSynapseIdByPackedLocation = new LongIntHashMap();
+    private final Map<Location, Integer> otherTypeSynapseIdByOverflowLocation = new HashMap<>();
+    private int synapseCount;
+    private long[] synapsePackedLocations = new long[INITIAL_CAPACITY];
+    private final Map<Integer, Location> overflowLocationBySynapseId = new HashMap<>();
+    private byte[] synapseTypes = new byte[INITIAL_CAPACITY];
+    private double[] synapseConfidences = new double[INITIAL_CAPACITY];
+    private RoiSet[] synapseRoiSets = new RoiSet[INITIAL_CAPACITY];
+    private long[] synapseBodyIds = new long[INITIAL_CAPACITY];
+
+    // ROIs have dense ids and ROI sets are shared bitsets (most synapses are in one of a small number of ROI combinations)
+    private final RoiDictionary roiDictionary = new RoiDictionary();
+
+    // synaptic connections packed as (pre synapse id << 32 | post synapse id)
+    private long[] connections = new long[INITIAL_CAPACITY];
+    private int connectionCount;
+
+    private final RoiCounts datasetRoiCounts = new RoiCounts();
+    private final BitSet superLevelRoiIds = new BitSet();
+    private final Set<String> superLevelRois = new HashSet<>();
+    private long totalPreCount;
+    private long totalPostCount;
+    private long missingSynapseCount;
+
+    private Map<Long, Map<Long, ConnectionSetInfo>> connectionSetsByPreAndPostBodyId;
+    private int connectionSetCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     */
+    public ConnectionInfoBuilder(final double preHPThreshold,
+                                 final double postHPThreshold,
+                                 final long neuronThreshold,
+                                 final boolean addConnectionSetRoiInfoAndWeightHP) {
+        this(preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, false);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     * @param addRoiInfoBinary                   boolean indicating if roiInfo should also be encoded with {@link RoiInfoCodec}, using the ids of {@link #getRoiDictionary()}
+     */
+    public ConnectionInfoBuilder(final double preHPThreshold,
+                                 final double postHPThreshold,
+                                 final long neuronThreshold,
+                                 final boolean addConnectionSetRoiInfoAndWeightHP,
+                                 final boolean addRoiInfoBinary) {
+        this.preHPThreshold = preHPThreshold;
+        this.postHPThreshold = postHPThreshold;
+        this.neuronThreshold = neuronThreshold;
+        this.addConnectionSetRoiInfoAndWeightHP = addConnectionSetRoiInfoAndWeightHP;
+        this.addRoiInfoBinary = addRoiInfoBinary;
+    }
+
+    /**
+     * Adds a synapse from the synapses JSON. Synapses already added at the same location are left unchanged.
+     *
+     * @param synapse {@link Synapse} to add
+     */
+    public void addSynapse(final Synapse synapse) {
+        if (getSynapseIdOrMinusOne(synapse.getLocation()) < 0) {
+            addSynapseWithRois(synapse.getLocation(), synapse.getType(), synapse.getConfidence(), roiDictionary.getRoiSet(synapse.getRois()));
+        }
+    }
+
+    /**
+     * Adds a synapse read by a {@link org.janelia.flyem.neuprint.json.StreamingJsonDecoder}, without creating a
+     * {@link Synapse} or a set of ROI names. Synapses already added at the same location are left unchanged.
+     *
+     * @param synapse {@link SynapseRecord} to add
+     */
+    public void addSynapse(final SynapseRecord synapse) {
+        final Location location = new Location(synapse.getX(), synapse.getY(), synapse.getZ());
+        if (getSynapseIdOrMinusOne(location) < 0) {
+            addSynapseWithRois(location, synapse.getType(), synapse.getConfidence(), synapse.getRoiSet(roiDictionary));
+        }
+    }
+
+    /**
+     * Adds a synapse whose ROIs have already been resolved with {@link #getRoiDictionary()}, e.g. once per distinct
+     * ROI list of a {@link org.janelia.flyem.neuprint.binary.BinaryInputFile}. Synapses already added at the same
+     * location are left unchanged.
+     *
+     * @param x          x coordinate
+     * @param y          y coordinate
+     * @param z          z coordinate
+     * @param type       "pre" or "post"
+     * @param confidence confidence of synapse
+     * @param rois       ROIs of synapse from {@link #getRoiDictionary()}
+     */
+    public void addSynapse(final long x, final long y, final long z, final String type, final double confidence, final RoiSet rois) {
+        final Location location = new Location(x, y, z);
+        if (getSynapseIdOrMinusOne(location) < 0) {
+            addSynapseWithRois(location, type, confidence, rois);
+        }
+    }
+
+    private void addSynapseWithRois(final Location location, final String type, final double confidence, final RoiSet rois) {
+        final int synapseId = addSynapse(location, type.equals("pre") ? PRE : POST, confidence, rois);
+        final int superLevelRoiId = rois.getSuperLevelRoiId(); // first listed roi will be a "super" roi
+        if (superLevelRoiId >= 0 && !superLevelRoiIds.get(superLevelRoiId)) {
+            superLevelRoiIds.set(superLevelRoiId);
+            superLevelRois.add(roiDictionary.getName(superLevelRoiId));
+        }
+        if (synapseTypes[synapseId] == PRE) {
+            datasetRoiCounts.incrementPre(rois);
+        } else {
+            datasetRoiCounts.incrementPost(rois);
+        }
+    }
+
+    /**
+     * Adds a synaptic connection from the connections JSON. Synapses that were not in the synapses JSON are added with a
+     * confidence of 0.0 and no ROIs.
+     *
+     * @param connection {@link SynapticConnection} to add
+     */
+    public void addSynapticConnection(final SynapticConnection connection) {
+        final int preSynapseId = getOrAddSynapse(connection.getPreLocation(), PRE);
+        final int postSynapseId = getOrAddSynapse(connection.getPostLocation(), POST);
+        if (connectionCount == connections.length) {
+            connections = Arrays.copyOf(connections, connections.length * 2);
+        }
+        connections[connectionCount++] = ((long) preSynapseId << 32) | (postSynapseId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Assigns the synapses in a segment's synapse set to the segment. A pre and a post synapse at the same location
+     * are both assigned. Locations without a known synapse are counted and otherwise ignored.
+     *
+     * @param bodyId           bodyId of segment
+     * @param synapseLocations locations of synapses in the segment's synapse set
+     */
+    public void addSegmentSynapses(final long bodyId, final Set<Location> synapseLocations) {
+        if (synapseLocations instanceof PackedLocationSet) {
+            final PrimitiveIterator.OfLong packedLocations = ((PackedLocationSet) synapseLocations).getPackedLocations().iterator();
+            while (packedLocations.hasNext()) {
+                assignSynapsesToBody(packedLocations.nextLong(), bodyId);
+            }
+        } else {
+            for (final Location location : synapseLocations) {
+                assignSynapsesToBody(location, bodyId);
+            }
+        }
+    }
+
+    /**
+     * Assigns the synapses at one location of a segment's synapse set to the segment. Locations without a known
+     * synapse are counted and otherwise ignored.
+     *
+     * @param bodyId bodyId of segment
+     * @param x      x coordinate
+     * @param y      y coordinate
+     * @param z      z coordinate
+     */
+    public void addSegmentSynapse(final long bodyId, final long x, final long y, final long z) {
+        if (PackedLocation.fits(x, y, z)) {
+            assignSynapsesToBody(PackedLocation.pack(x, y, z), bodyId);
+        } else {
+            assignSynapsesToBody(new Location(x, y, z), bodyId);
+        }
+    }
+
+    private void assignSynapsesToBody(final long packedLocation, final long bodyId) {
+        final int synapseId = synapseIdByPackedLocation.get(packedLocation, -1);
+        if (synapseId < 0) {
+            missingSynapseCount++;
+        } else {
+            synapseBodyIds[synapseId] = bodyId;
+            final int otherTypeSynapseId = otherTypeSynapseIdByPackedLocation.get(packedLocation, -1);
+            if (otherTypeSynapseId >= 0) {
+                synapseBodyIds[otherTypeSynapseId] = bodyId;
+            }
+        }
+    }
+
+    private void assignSynapsesToBody(final Location location, final long bodyId) {
+        if (PackedLocation.fits(location)) {
+            assignSynapsesToBody(PackedLocation.pack(location), bodyId);
+        } else {
+            final Integer synapseId = synapseIdByOverflowLocation.get(location);
+            if (synapseId == null) {
+                missingSynapseCount++;
+            } else {
+                synapseBodyIds[synapseId] = bodyId;
+                final Integer otherTypeSynapseId = otherTypeSynapseIdByOverflowLocation.get(location);
+                if (otherTypeSynapseId != null) {
+                    synapseBodyIds[otherTypeSynapseId] = bodyId;
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes ConnectionSets, weights and roiInfo for every pair of segments connected by at least one synaptic
+     * connection. Must be called after all synapses, connections and segment synapse sets have been added.
+     */
+    public void build() {
+
+        if (missingSynapseCount > 0) {
+            LOG.warn("build: {} synapse locations in segment synapse sets were not found in the synapses or connections", missingSynapseCount);
+        }
+
+        // remove duplicate connections (SynapsesTo relationships are merged during a Bolt load)
+        Arrays.sort(connections, 0, connectionCount);
+        int distinctCount = 0;
+        for (int i = 0; i < connectionCount; i++) {
+            if (i == 0 || connections[i] != connections[distinctCount - 1]) {
+                connections[distinctCount++] = connections[i];
+            }
+        }
+        connectionCount = distinctCount;
+
+        connectionSetsByPreAndPostBodyId = new HashMap<>();
+        connectionSetCount = 0;
+        for (int i = 0; i < connectionCount; i++) {
+            final int preSynapseId = getPreSynapseId(i);
+            final int postSynapseId = getPostSynapseId(i);
+            final long preBodyId = synapseBodyIds[preSynapseId];
+            final long postBodyId = synapseBodyIds[postSynapseId];
+            if (preBodyId != NO_BODY && postBodyId != NO_BODY) {
+                ConnectionSetInfo connectionSet = connectionSetsByPreAndPostBodyId
+                        .computeIfAbsent(preBodyId, k -> new HashMap<>())
+                        .get(postBodyId);
+                if (connectionSet == null) {
+                    connectionSet = new ConnectionSetInfo(preBodyId, postBodyId);
+                    connectionSetsByPreAndPostBodyId.get(preBodyId).put(postBodyId, connectionSet);
+                    connectionSetCount++;
+                }
+                connectionSet.addSynapseId(preSynapseId);
+                connectionSet.addSynapseId(postSynapseId);
+            }
+        }
+
+        // ROI counts are accumulated in one reusable RoiCounts per thread
+        final ThreadLocal<RoiCounts> roiCounts = ThreadLocal.withInitial(RoiCounts::new);
+        getConnectionSets().parallelStream().forEach(connectionSet -> computeWeightsAndRoiInfo(connectionSet, roiCounts.get()));
+
+        LOG.info("build: {} synapses, {} distinct synaptic connections, {} connection sets", synapseCount, connectionCount, connectionSetCount);
+
+    }
+
+    private void computeWeightsAndRoiInfo(final ConnectionSetInfo connectionSet, final RoiCounts roiCounts) {
+        connectionSet.removeDuplicateSynapseIds();
+        roiCounts.clear();
+        int weight = 0;
+        int weightHP = 0;
+        for (int i = 0; i < connectionSet.synapseCount; i++) {
+            final int synapseId = connectionSet.synapseIds[i];
+            final double confidence = synapseConfidences[synapseId];
+            if (synapseTypes[synapseId] == PRE) {
+                roiCounts.incrementPre(synapseRoiSets[synapseId], confidence > preHPThreshold);
+            } else {
+                final boolean highPrecision = confidence > postHPThreshold;
+                weight++;
+                if (highPrecision) {
+                    weightHP++;
+                }
+                roiCounts.incrementPost(synapseRoiSets[synapseId], highPrecision);
+            }
+        }
+        connectionSet.weight = weight;
+        if (addConnectionSetRoiInfoAndWeightHP) {
+            connectionSet.weightHP = weightHP;
+            connectionSet.roiInfo = roiCounts.toRoiInfoWithHighPrecisionCounts(roiDictionary).getAsJsonString();
+            if (addRoiInfoBinary) {
+                connectionSet.roiInfoBinary = RoiInfoCodec.encode(roiCounts, true);
+            }
+        }
+    }
+
+    /**
+     * Computes the properties of a segment from the synapses in its synapse set (including both synapses where a pre
+     * and a post synapse share a location).
+     *
+     * @param bodyId           bodyId of segment
+     * @param synapseLocations locations of synapses in the segment's synapse set
+     * @return {@link SegmentInfo} for the segment
+     */
+    public SegmentInfo getSegmentInfo(final long bodyId, final Set<Location> synapseLocations) {
+        final long[] preAndPostCounts = new long[2];
+        final RoiCounts roiCounts = new RoiCounts();
+        if (synapseLocations instanceof PackedLocationSet) {
+            final PrimitiveIterator.OfLong packedLocations = ((PackedLocationSet) synapseLocations).getPackedLocations().iterator();
+            while (packedLocations.hasNext()) {
+                final long packedLocation = packedLocations.nextLong();
+                countSynapse(synapseIdByPackedLocation.get(packedLocation, -1), preAndPostCounts, roiCounts);
+                countSynapse(otherTypeSynapseIdByPackedLocation.get(packedLocation, -1), preAndPostCounts, roiCounts);
+            }
+        } else {
+            for (final Location location : synapseLocations) {
+                for (final int synapseId : getSynapseIds(location)) {
+                    countSynapse(synapseId, preAndPostCounts, roiCounts);
+                }
+            }
+        }
+
+        return createSegmentInfo(bodyId, preAndPostCounts[0], preAndPostCounts[1], roiCounts);
+    }
+
+    private void countSynapse(final int synapseId, final long[] preAndPostCounts, final RoiCounts roiCounts) {
+        if (synapseId >= 0) {
+            if (synapseTypes[synapseId] == PRE) {
+                preAndPostCounts[0]++;
+                roiCounts.incrementPre(synapseRoiSets[synapseId]);
+            } else {
+                preAndPostCounts[1]++;
+                roiCounts.incrementPost(synapseRoiSets[synapseId]);
+            }
+        }
+    }
+
+    /**
+     * Computes the properties of every segment that was assigned at least one synapse by
+     * {@link #addSegmentSynapses(long, Set)}, in a single pass over the synapses.
+     *
+     * @return list of {@link SegmentInfo} for segments with synapses
+     */
+    public List<SegmentInfo> getSegmentInfos() {
+        // chain the synapses of each body together (in reverse order) so that bodies can be processed one at a time
+        final LongIntHashMap lastSynapseIdByBodyId = new LongIntHashMap();
+        final int[] previousSynapseIdOfBody = new int[synapseCount];
+        long[] bodyIds = new long[INITIAL_CAPACITY];
+        int bodyCount = 0;
+        for (int synapseId = 0; synapseId < synapseCount; synapseId++) {
+            final long bodyId = synapseBodyIds[synapseId];
+            if (bodyId != NO_BODY) {
+                final int previousSynapseId = lastSynapseIdByBodyId.get(bodyId, -1);
+                if (previousSynapseId < 0) {
+                    if (bodyCount == bodyIds.length) {
+                        bodyIds = Arrays.copyOf(bodyIds, bodyIds.length * 2);
+                    }
+                    bodyIds[bodyCount++] = bodyId;
+                }
+                previousSynapseIdOfBody[synapseId] = previousSynapseId;
+                lastSynapseIdByBodyId.put(bodyId, synapseId);
+            }
+        }
+
+        final List<SegmentInfo> segmentInfos = new ArrayList<>(bodyCount);
+        final long[] preAndPostCounts = new long[2];
+        final RoiCounts roiCounts = new RoiCounts();
+        for (int i = 0; i < bodyCount; i++) {
+            preAndPostCounts[0] = 0;
+            preAndPostCounts[1] = 0;
+            roiCounts.clear();
+            for (int synapseId = lastSynapseIdByBodyId.get(bodyIds[i], -1); synapseId >= 0; synapseId = previousSynapseIdOfBody[synapseId]) {
+                countSynapse(synapseId, preAndPostCounts, roiCounts);
+            }
+            segmentInfos.add(createSegmentInfo(bodyIds[i], preAndPostCounts[0], preAndPostCounts[1], roiCounts));
+        }
+        return segmentInfos;
+    }
+
+    private SegmentInfo createSegmentInfo(final long bodyId, final long pre, final long post, final RoiCounts roiCounts) {
+        final RoiInfo roiInfo = roiCounts.toRoiInfo(roiDictionary);
+        final byte[] roiInfoBinary = addRoiInfoBinary ? RoiInfoCodec.encode(roiCounts, false) : null;
+        final boolean hasSynapses = pre > 0 || post > 0;
+        final boolean isNeuron = pre >= (long) (neuronThreshold / 5.0F) || post >= neuronThreshold;
+        String clusterName = null;
+        if (isNeuron && hasSynapses) {
+            clusterName = LoadingProcedures.generateClusterName(roiInfo, pre, post, 0.10, superLevelRois);
+        }
+        return new SegmentInfo(bodyId, hasSynapses, pre, post, roiInfo, roiInfoBinary, isNeuron, clusterName);
+    }
+
+    /**
+     * @return all ConnectionSets computed by {@link #build()}
+     */
+    public Collection<ConnectionSetInfo> getConnectionSets() {
+        final List<ConnectionSetInfo> connectionSets = new ArrayList<>(connectionSetCount);
+        connectionSetsByPreAndPostBodyId.values().forEach(m -> connectionSets.addAll(m.values()));
+        return connectionSets;
+    }
+
+    /**
+     * @param preBodyId  bodyId of presynaptic segment
+     * @param postBodyId bodyId of postsynaptic segment
+     * @return the ConnectionSet from preBodyId to postBodyId or null if the segments are not connected
+     */
+    public ConnectionSetInfo getConnectionSet(final long preBodyId, final long postBodyId) {
+        final Map<Long, ConnectionSetInfo> connectionSetsByPostBodyId = connectionSetsByPreAndPostBodyId.get(preBodyId);
+        return connectionSetsByPostBodyId == null ? null : connectionSetsByPostBodyId.get(postBodyId);
+    }
+
+    /**
+     * @return number of synapses (ids are 0 to synapse count - 1)
+     */
+    public int getSynapseCount() {
+        return synapseCount;
+    }
+
+    /**
+     * @return number of distinct synaptic connections (after {@link #build()})
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    public int getPreSynapseId(final int connectionIndex) {
+        return (int) (connections[connectionIndex] >>> 32);
+    }
+
+    public int getPostSynapseId(final int connectionIndex) {
+        return (int) connections[connectionIndex];
+    }
+
+    public Location getSynapseLocation(final int synapseId) {
+        final Location overflowLocation = overflowLocationBySynapseId.get(synapseId);
+        return overflowLocation == null ? PackedLocation.toLocation(synapsePackedLocations[synapseId]) : overflowLocation;
+    }
+
+    public String getSynapseType(final int synapseId) {
+        return synapseTypes[synapseId] == PRE ? "pre" : "post";
+    }
+
+    public double getSynapseConfidence(final int synapseId) {
+        return synapseConfidences[synapseId];
+    }
+
+    public Set<String> getSynapseRois(final int synapseId) {
+        return synapseRoiSets[synapseId].getRoiNames(roiDictionary);
+    }
+
+    public long getSynapseBodyId(final int synapseId) {
+        return synapseBodyIds[synapseId];
+    }
+
+    /**
+     * @param location synapse location
+     * @return id of the first synapse added at the location or null if there is no synapse at the location
+     */
+    public Integer getSynapseId(final Location location) {
+        final int synapseId = getSynapseIdOrMinusOne(location);
+        return synapseId < 0 ? null : synapseId;
+    }
+
+    /**
+     * @param location synapse location
+     * @return ids of the synapses at the location: none, one, or a pre and a post synapse that share the location
+     */
+    public int[] getSynapseIds(final Location location) {
+        final int synapseId = getSynapseIdOrMinusOne(location);
+        if (synapseId < 0) {
+            return new int[0];
+        }
+        final int otherTypeSynapseId;
+        if (PackedLocation.fits(location)) {
+            otherTypeSynapseId = otherTypeSynapseIdByPackedLocation.get(PackedLocation.pack(location), -1);
+        } else {
+            final Integer overflowSynapseId = otherTypeSynapseIdByOverflowLocation.get(location);
+            otherTypeSynapseId = overflowSynapseId == null ? -1 : overflowSynapseId;
+        }
+        return otherTypeSynapseId < 0 ? new int[]{synapseId} : new int[]{synapseId, otherTypeSynapseId};
+    }
+
+    /**
+     * @return dictionary whose ids are used by roiInfoBinary (stored as the Meta node roiDictionary)
+     */
+    public RoiDictionary getRoiDictionary() {
+        return roiDictionary;
+    }
+
+    /**
+     * @return true if roiInfoBinary is computed for ConnectionSets and segments
+     */
+    public boolean isAddRoiInfoBinary() {
+        return addRoiInfoBinary;
+    }
+
+    /**
+     * @return pre and post counts per ROI for the dataset (Meta node roiInfo)
+     */
+    public RoiInfo getDatasetRoiInfo() {
+        return datasetRoiCounts.toRoiInfo(roiDictionary);
+    }
+
+    /**
+     * @return super level ROIs for the dataset (first listed ROI of each synapse)
+     */
+    public Set<String> getSuperLevelRois() {
+        return superLevelRois;
+    }
+
+    public long getTotalPreCount() {
+        return totalPreCount;
+    }
+
+    public long getTotalPostCount() {
+        return totalPostCount;
+    }
+
+    private int getSynapseIdOrMinusOne(final Location location) {
+        if (PackedLocation.fits(location)) {
+            return synapseIdByPackedLocation.get(PackedLocation.pack(location), -1);
+        }
+        final Integer synapseId = synapseIdByOverflowLocation.get(location);
+        return synapseId == null ? -1 : synapseId;
+    }
+
+    private int getOrAddSynapse(final Location location, final byte type) {
+        final boolean packed = PackedLocation.fits(location);
+        final long packedLocation = packed ? PackedLocation.pack(location) : 0;
+        int synapseId = getSynapseIdOrMinusOne(location);
+        if (synapseId >= 0 && synapseTypes[synapseId] != type) {
+            if (packed) {
+                synapseId = otherTypeSynapseIdByPackedLocation.get(packedLocation, -1);
+            } else {
+                final Integer otherTypeSynapseId = otherTypeSynapseIdByOverflowLocation.get(location);
+                synapseId = otherTypeSynapseId == null ? -1 : otherTypeSynapseId;
+            }
+            if (synapseId < 0) {
+                synapseId = addSynapse(location, type, 0.0, RoiSet.EMPTY);
+                if (packed) {
+                    otherTypeSynapseIdByPackedLocation.put(packedLocation, synapseId);
+                } else {
+                    otherTypeSynapseIdByOverflowLocation.put(location, synapseId);
+                }
+            }
+        }
+        return synapseId < 0 ? addSynapse(location, type, 0.0, RoiSet.EMPTY) : synapseId;
+    }
+
+    private int addSynapse(final Location location, final byte type, final double confidence, final RoiSet rois) {
+        final int synapseId = synapseCount++;
+        if (synapseId == synapseTypes.length) {
+            final int newCapacity = synapseTypes.length * 2;
+            synapsePackedLocations = Arrays.copyOf(synapsePackedLocations, newCapacity);
+            synapseTypes = Arrays.copyOf(synapseTypes, newCapacity);
+            synapseConfidences = Arrays.copyOf(synapseConfidences, newCapacity);
+            synapseRoiSets = Arrays.copyOf(synapseRoiSets, newCapacity);
+            synapseBodyIds = Arrays.copyOf(synapseBodyIds, newCapacity);
+        }
+        if (PackedLocation.fits(location)) {
+            final long packedLocation = PackedLocation.pack(location);
+            synapseIdByPackedLocation.putIfAbsent(packedLocation, synapseId);
+            synapsePackedLocations[synapseId] = packedLocation;
+        } else {
+            synapseIdByOverflowLocation.putIfAbsent(location, synapseId);
+            overflowLocationBySynapseId.put(synapseId, location);
+        }
+        synapseTypes[synapseId] = type;
+        synapseConfidences[synapseId] = confidence;
+        synapseRoiSets[synapseId] = rois;
+        synapseBodyIds[synapseId] = NO_BODY;
+        if (type == PRE) {
+            totalPreCount++;
+        } else {
+            totalPostCount++;
+        }
+        return synapseId;
+    }
+
+    /**
+     * Connection information for a pair of connected segments: the synapses in the ConnectionSet, the ConnectsTo
+     * weight (number of postsynaptic densities) and weightHP (number of high-precision postsynaptic densities), and
+     * the ConnectionSet roiInfo.
+     */
+    public static class ConnectionSetInfo {
+
+        private final long preBodyId;
+        private final long postBodyId;
+        private int[] synapseIds = new int[4];
+        private int synapseCount;
+        private int weight;
+        private Integer weightHP;
+        private String roiInfo;
+        private byte[] roiInfoBinary;
+
+        private ConnectionSetInfo(final long preBodyId, final long postBodyId) {
+            this.preBodyId = preBodyId;
+            this.postBodyId = postBodyId;
+        }
+
+        private void addSynapseId(final int synapseId) {
+            if (synapseCount == synapseIds.length) {
+                synapseIds = Arrays.copyOf(synapseIds, synapseIds.length * 2);
+            }
+            synapseIds[synapseCount++] = synapseId;
+        }
+
+        private void removeDuplicateSynapseIds() {
+            Arrays.sort(synapseIds, 0, synapseCount);
+            int distinctCount = 0;
+            for (int i = 0; i < synapseCount; i++) {
+                if (i == 0 || synapseIds[i] != synapseIds[distinctCount - 1]) {
+                    synapseIds[distinctCount++] = synapseIds[i];
+                }
+            }
+            synapseCount = distinctCount;
+            synapseIds = Arrays.copyOf(synapseIds, synapseCount);
+        }
+
+        public long getPreBodyId() {
+            return preBodyId;
+        }
+
+        public long getPostBodyId() {
+            return postBodyId;
+        }
+
+        /**
+         * @return ids of pre and postsynaptic densities in this ConnectionSet
+         */
+        public int[] getSynapseIds() {
+            return Arrays.copyOf(synapseIds, synapseCount);
+        }
+
+        public int getWeight() {
+            return weight;
+        }
+
+        /**
+         * @return weightHP or null if ConnectionSet roiInfo and weightHP were not computed
+         */
+        public Integer getWeightHP() {
+            return weightHP;
+        }
+
+        /**
+         * @return roiInfo JSON string or null if ConnectionSet roiInfo and weightHP were not computed
+         */
+        public String getRoiInfo() {
+            return roiInfo;
+        }
+
+        /**
+         * @return roiInfo encoded with {@link RoiInfoCodec} or null if it was not computed
+         */
+        public byte[] getRoiInfoBinary() {
+            return roiInfoBinary;
+        }
+    }
+
+    /**
+     * Properties of a Segment computed from the synapses in its synapse set.
+     */
+    public static class SegmentInfo {
+
+        private final long bodyId;
+        private final boolean hasSynapses;
+        private final long pre;
+        private final long post;
+        private final RoiInfo roiInfo;
+        private final byte[] roiInfoBinary;
+        private final boolean neuron;
+        private final String clusterName;
+
+        private SegmentInfo(final long bodyId, final boolean hasSynapses, final long pre, final long post, final RoiInfo roiInfo, final byte[] roiInfoBinary, final boolean neuron, final String clusterName) {
+            this.bodyId = bodyId;
+            this.hasSynapses = hasSynapses;
+            this.pre = pre;
+            this.post = post;
+            this.roiInfo = roiInfo;
+            this.roiInfoBinary = roiInfoBinary;
+            this.neuron = neuron;
+            this.clusterName = clusterName;
+        }
+
+        public long getBodyId() {
+            return bodyId;
+        }
+
+        /**
+         * @return true if the segment contains at least one synapse (pre, post and roiInfo are only set on segments with synapses)
+         */
+        public boolean hasSynapses() {
+            return hasSynapses;
+        }
+
+        public long getPre() {
+            return pre;
+        }
+
+        public long getPost() {
+            return post;
+        }
+
+        public RoiInfo getRoiInfo() {
+            return roiInfo;
+        }
+
+        /**
+         * @return roiInfo encoded with {@link RoiInfoCodec} or null if it was not computed
+         */
+        public byte[] getRoiInfoBinary() {
+            return roiInfoBinary;
+        }
+
+        /**
+         * @return true if the segment meets the neuron threshold and should be given a :Neuron label
+         */
+        public boolean isNeuron() {
+            return neuron;
+        }
+
+        /**
+         * @return cluster name or null if the segment is not a neuron or has no synapses
+         */
+        public String getClusterName() {
+            return clusterName;
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ConnectionInfoBuilder.class);
+
+}
@@ -0,0 +1,229 @@
+package org.janelia.flyem.neuprint;
+
+/**
+ * Cypher statement texts used by {@link Neo4jImporter} to load a dataset. Dataset labels cannot be passed as
+ * parameters, so the texts are built once per dataset and reused for every statement. Everything else that varies
+ * between statements (including ROI properties, which are applied from a map with {@code +=}) is a parameter, so a
+ * load sends a small, fixed set of statement texts and neo4j plans each of them once.
+ */
+final class ImportStatementTemplates {
+
+    final String dataset;
+
+    final String preSynapse;
+    final String postSynapse;
+    final String preSynapseUnwind;
+    final String postSynapseUnwind;
+
+    final String preSynapseMerge;
+    final String postSynapseMerge;
+    final String synapseRelations;
+
+    final String segment;
+    final String synapseSet;
+    final String segmentContainsSynapseSet;
+    final String synapseSetContainsSynapse;
+
+    final String addConnectionDetailsToSegments;
+    final String segmentPropertiesUnwind;
+    final String segmentPropertiesWithRoiInfoBinaryUnwind;
+    final String neuronUnwind;
+    final String connectionSetUnwind;
+    final String connectionSetWithRoiInfoBinaryUnwind;
+    final String connectionSetContainsPostUnwind;
+
+    final String skeletonSegmentMerge;
+    final String segmentToSkeletonConnection;
+    final String skelNodeParent;
+    final String skelNodeChild;
+    final String skeletonUnwind;
+
+    ImportStatementTemplates(final String dataset) {
+
+        this.dataset = dataset;
+
+        final String synapseLabel = "`" + dataset + "-Synapse`";
+        final String preSynLabel = "`" + dataset + "-PreSyn`";
+        final String postSynLabel = "`" + dataset + "-PostSyn`";
+        final String segmentLabel = "`" + dataset + "-Segment`";
+        final String synapseSetLabel = "`" + dataset + "-SynapseSet`";
+        final String connectionSetLabel = "`" + dataset + "-ConnectionSet`";
+        final String skeletonLabel = "`" + dataset + "-Skeleton`";
+        final String skelNodeLabel = "`" + dataset + "-SkelNode`";
+
+        this.preSynapse =
+                "MERGE (s:" + synapseLabel + "{location:$location}) " +
+                        " ON CREATE SET s.location=$location, " +
+                        "s:" + preSynLabel + "," +
+                        "s:Synapse," +
+                        "s:PreSyn," +
+                        "s:" + dataset + "," +
+                        " s.confidence=$confidence, " +
+                        " s.type=$type, " +
+                        " s += $roiProps, " +
+                        " s.timeStamp=$timeStamp";
+
+        this.postSynapse =
+                "MERGE (s:" + synapseLabel + "{location:$location}) " +
+                        " ON CREATE SET s.location=$location, " +
+                        "s:" + postSynLabel + "," +
+                        "s:Synapse," +
+                        "s:PostSyn," +
+                        "s:" + dataset + "," +
+                        " s.confidence=$confidence, " +
+                        " s.type=$type, " +
+                        " s += $roiProps, " +
+                        " s.timeStamp=$timeStamp";
+
+        this.preSynapseUnwind =
+                "UNWIND $rows AS row " +
+                        "MERGE (s:" + synapseLabel + "{location:row.location}) " +
+                        " ON CREATE SET s.location=row.location, " +
+                        "s:" + preSynLabel + "," +
+                        "s:Synapse," +
+                        "s:PreSyn," +
+                        "s:" + dataset + "," +
+                        " s.confidence=row.confidence, " +
+                        " s.type=row.type, " +
+                        " s += row.rois, " +
+                        " s.timeStamp=$timeStamp";
+
+        this.postSynapseUnwind =
+                "UNWIND $rows AS row " +
+                        "MERGE (s:" + synapseLabel + "{location:row.location}) " +
+                        " ON CREATE SET s.location=row.location, " +
+                        "s:" + postSynLabel + "," +
+                        "s:Synapse," +
+                        "s:PostSyn," +
+                        "s:" + dataset + "," +
+                        " s.confidence=row.confidence, " +
+                        " s.type=row.type, " +
+                        " s += row.rois, " +
+                        " s.timeStamp=$timeStamp";
+
+        // for some reason, both merge...on create set queries in the same statement results in one of them not executing properly.
+        // separating each statement to properly create synapses that may not have been previously added in addSynapses
+        this.preSynapseMerge = "MERGE (s:" + preSynLabel + "{location:$prelocation}) ON CREATE SET s.location = $prelocation, s.type=\"pre\", s.confidence=0.0, s.timeStamp=$timeStamp, s:Synapse, s:" + dataset + ", s:PreSyn, s:" + preSynLabel + ", s:" + synapseLabel;
+        this.postSynapseMerge = "MERGE (t:" + postSynLabel + "{location:$postlocation}) ON CREATE SET t.location = $postlocation, t.timeStamp=$timeStamp, t.type=\"post\", t.confidence=0.0, t:Synapse, t:" + dataset + ", t:PostSyn, t:" + postSynLabel + ", t:" + synapseLabel;
+
+        this.synapseRelations = "MERGE (s:" + preSynLabel + "{location:$prelocation}) SET s.timeStamp=$timeStamp \n" +
+                "MERGE (t:" + postSynLabel + "{location:$postlocation}) SET t.timeStamp=$timeStamp \n" +
+                "MERGE (s)-[:SynapsesTo]->(t)";
+
+        this.segment = "MERGE (n:" + segmentLabel + "{bodyId:$bodyId}) " +
+                "ON CREATE SET n.bodyId = $bodyId," +
+                " n:Segment," +
+                " n:" + dataset + "," +
+                " n.name = $name," +
+                " n.type = $type," +
+                " n.instance = $instance," +
+                " n.primaryNeurite = $primaryNeurite," +
+                " n.majorInput = $majorInput," +
+                " n.majorOutput = $majorOutput," +
+                " n.clonalUnit = $clonalUnit," +
+                " n.neurotransmitter = $neurotransmitter," +
+                " n.property = $property," +
+                " n.status = $status," +
+                " n.size = $size," +
+                " n.somaLocation = $somaLocation," +
+                " n.somaRadius = $somaRadius, " +
+                " n += $roiProps, " +
+                " n.timeStamp = $timeStamp";
+
+        this.synapseSet = "MERGE (s:" + synapseSetLabel + "{datasetBodyId:$datasetBodyId}) ON CREATE SET s.datasetBodyId=$datasetBodyId, s.timeStamp=$timeStamp, s:SynapseSet, s:" + dataset + " \n";
+
+        this.segmentContainsSynapseSet = "MERGE (n:" + segmentLabel + "{bodyId:$bodyId}) \n" +
+                "MERGE (s:" + synapseSetLabel + "{datasetBodyId:$datasetBodyId}) \n" +
+                "MERGE (n)-[:Contains]->(s)";
+
+        this.synapseSetContainsSynapse = "MERGE (s:" + synapseLabel + "{location:$location}) \n" +
+                "MERGE (t:" + synapseSetLabel + "{datasetBodyId:$datasetBodyId}) \n" +
+                "MERGE (t)-[:Contains]->(s) \n";
+
+        this.addConnectionDetailsToSegments = "CALL loader.addPropsAndConnectionInfoToSegments($bodyIds, $dataset, $preHPThreshold, $postHPThreshold, $neuronThreshold, $addCSRoiInfoAndWeightHP) " +
+                "YIELD bodyId RETURN count(bodyId)";
+
+        this.segmentPropertiesUnwind = segmentPropertiesUnwind(segmentLabel, "");
+        this.segmentPropertiesWithRoiInfoBinaryUnwind = segmentPropertiesUnwind(segmentLabel, " n.roiInfoBinary=row.roiInfoBinary, ");
+
+        this.neuronUnwind =
+                "UNWIND $rows AS row " +
+                        "MATCH (n:" + segmentLabel + "{bodyId:row.bodyId}) " +
+                        "SET n:Neuron, " +
+                        " n:`" + dataset + "-Neuron`, " +
+                        " n.clusterName=row.clusterName";
+
+        this.connectionSetUnwind = connectionSetUnwind(dataset, " ");
+        this.connectionSetWithRoiInfoBinaryUnwind = connectionSetUnwind(dataset, ", c.roiInfoBinary=row.roiInfoBinary ");
+
+        this.connectionSetContainsPostUnwind =
+                "UNWIND $rows AS row " +
+                        "MATCH (c:" + connectionSetLabel + "{datasetBodyIds:row.datasetBodyIds}) " +
+                        "WITH c, row " +
+                        "UNWIND row.postLocations AS location " +
+                        "MATCH (s:" + postSynLabel + "{location:location}) " +
+                        "MERGE (c)-[:Contains]->(s)";
+
+        this.skeletonSegmentMerge = "MERGE (n:" + segmentLabel + "{bodyId:$bodyId}) ON CREATE SET " +
+                "n.bodyId=$bodyId, " +
+                "n.timeStamp=$timeStamp, " +
+                "n:Segment, " +
+                "n:" + dataset;
+
+        this.segmentToSkeletonConnection = "MERGE (r:" + skeletonLabel + "{skeletonId:$skeletonId}) ON CREATE SET r.skeletonId=$skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
+                "MERGE (n:" + segmentLabel + "{bodyId:$bodyId}) \n" +
+                "MERGE (n)-[:Contains]->(r) \n";
+
+        this.skelNodeParent = "MERGE (p:" + skelNodeLabel + "{skelNodeId:$parentSkelNodeId}) ON CREATE SET p.skelNodeId=$parentSkelNodeId, p.location=$pLocation, p.radius=$pRadius, p.rowNumber=$pRowNumber, p.type=$pType, p.timeStamp=$timeStamp, p:SkelNode, p:" + dataset + " \n" +
+                "MERGE (r:" + skeletonLabel + "{skeletonId:$skeletonId}) \n" +
+                "MERGE (r)-[:Contains]->(p) ";
+
+        this.skelNodeChild = "MERGE (c:" + skelNodeLabel + "{skelNodeId:$childNodeId}) ON CREATE SET c.skelNodeId=$childNodeId, c.location=$childLocation, c.radius=$childRadius, c.rowNumber=$childRowNumber, c.type=$childType, c.timeStamp=$timeStamp, c:SkelNode, c:" + dataset + " \n" +
+                "MERGE (p:" + skelNodeLabel + "{skelNodeId:$parentSkelNodeId}) \n" +
+                "MERGE (p)-[:LinksTo]-(c)";
+
+        this.skeletonUnwind = "MERGE (n:" + segmentLabel + "{bodyId:$bodyId}) ON CREATE SET n.bodyId=$bodyId, n.timeStamp=$timeStamp, n:Segment, n:" + dataset + " \n" +
+                "MERGE (r:" + skeletonLabel + "{skeletonId:$skeletonId}) ON CREATE SET r.skeletonId=$skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
+                "MERGE (n)-[:Contains]->(r) \n" +
+                "WITH r \n" +
+                "UNWIND $rows AS row \n" +
+                "MERGE (s:" + skelNodeLabel + "{skelNodeId:row.skelNodeId}) ON CREATE SET s.skelNodeId=row.skelNodeId, s.location=row.location, s.radius=row.radius, s.rowNumber=row.rowNumber, s.type=row.type, s.timeStamp=$timeStamp, s:SkelNode, s:" + dataset + " \n" +
+                "MERGE (r)-[:Contains]->(s) \n" +
+                "WITH row.rowNumber AS rowNumber, s ORDER BY rowNumber \n" +
+                "WITH collect(s) AS skelNodes \n" +
+                "UNWIND $links AS link \n" +
+                "WITH skelNodes[link[0]] AS p, skelNodes[link[1]] AS c \n" +
+                "MERGE (p)-[:LinksTo]-(c)";
+    }
+
+    private static String segmentPropertiesUnwind(final String segmentLabel, final String roiInfoBinaryText) {
+        return "UNWIND $rows AS row " +
+                "MATCH (n:" + segmentLabel + "{bodyId:row.bodyId}) " +
+                "SET n.pre=row.pre, " +
+                " n.post=row.post, " +
+                " n.roiInfo=row.roiInfo, " +
+                roiInfoBinaryText +
+                " n += row.rois";
+    }
+
+    private static String connectionSetUnwind(final String dataset, final String roiInfoBinaryText) {
+        return "UNWIND $rows AS row " +
+                "MATCH (a:`" + dataset + "-Segment`{bodyId:row.preBodyId}), (b:`" + dataset + "-Segment`{bodyId:row.postBodyId}) " +
+                "MERGE (c:`" + dataset + "-ConnectionSet`{datasetBodyIds:row.datasetBodyIds}) " +
+                " ON CREATE SET c.datasetBodyIds=row.datasetBodyIds, " +
+                "c:ConnectionSet, " +
+                "c:" + dataset + ", " +
+                " c.timeStamp=$timeStamp " +
+                "SET c.roiInfo=row.roiInfo" + roiInfoBinaryText +
+                "MERGE (c)-[:From]->(a) " +
+                "MERGE (c)-[:To]->(b) " +
+                "MERGE (a)-[r:ConnectsTo]->(b) " +
+                "SET r.weight=row.weight, " +
+                " r.weightHP=row.weightHP " +
+                "WITH c, row " +
+                "UNWIND row.preLocations AS location " +
+                "MATCH (s:`" + dataset + "-PreSyn`{location:location}) " +
+                "MERGE (c)-[:Contains]->(s)";
+    }
+
+}
@@ -0,0 +1,567 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.io.CompressedInput;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.SkeletonColumns;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Writes node and relationship CSV files for an initial load with neo4j-admin import, as an alternative to loading
+ * through Bolt with {@link Neo4jImporter}. The output contains the same nodes, relationships and properties as a Bolt
+ * load followed by loader.addPropsAndConnectionInfoToSegment on every segment: Meta and DataModel nodes, Synapses and
+ * SynapsesTo, Segments/Neurons with pre/post counts, roiInfo and cluster names, SynapseSets, ConnectionSets with
+ * roiInfo, ConnectsTo with weight and weightHP, and Skeletons/SkelNodes.
+ * <p>
+ * Input JSON files are streamed. Only a compact per-synapse index ({@link ConnectionInfoBuilder}) and the ConnectionSet
+ * membership are held in memory; neuron JSON is read a second time when writing Segments, and swc files are parsed in
+ * parallel in bounded chunks. Independent output files are written concurrently.
+ */
+public class Neo4jAdminCsvExporter {
+
+    private static final int JSON_BATCH_SIZE = 10000;
+    private static final int JSON_QUEUE_DEPTH = 2;
+    private static final int SWC_FILES_PER_THREAD_PER_CHUNK = 16;
+
+    private final String dataset;
+    private final File outputDirectory;
+    private final float dataModelVersion;
+    private final double preHPThreshold;
+    private final double postHPThreshold;
+    private final boolean addConnectionSetRoiInfoAndWeightHP;
+    private final int threads;
+    private final LocalDateTime timeStamp;
+    private final ConnectionInfoBuilder connectionInfoBuilder;
+    private final List<String> nodeFiles = new ArrayList<>();
+    private final List<String> relationshipFiles = new ArrayList<>();
+
+    /**
+     * Class constructor.
+     *
+     * @param dataset                            dataset name
+     * @param outputDirectory                    directory in which CSV files are written (created if it does not exist)
+     * @param dataModelVersion                   version of data model
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet nodes should have roiInfo property and weightHP should be added to ConnectsTo relationships
+     * @param threads                            number of threads used to write files and parse swc files
+     * @param timeStamp                          time stamp for load
+     */
+    public Neo4jAdminCsvExporter(final String dataset,
+                                 final File outputDirectory,
+                                 final float dataModelVersion,
+                                 final double preHPThreshold,
+                                 final double postHPThreshold,
+                                 final long neuronThreshold,
+                                 final boolean addConnectionSetRoiInfoAndWeightHP,
+                                 final int threads,
+                                 final LocalDateTime timeStamp) {
+        this.dataset = dataset;
+        this.outputDirectory = outputDirectory;
+        this.dataModelVersion = dataModelVersion;
+        this.preHPThreshold = preHPThreshold;
+        this.postHPThreshold = postHPThreshold;
+        this.addConnectionSetRoiInfoAndWeightHP = addConnectionSetRoiInfoAndWeightHP;
+        this.threads = Math.max(1, threads);
+        this.timeStamp = timeStamp;
+        this.connectionInfoBuilder = new ConnectionInfoBuilder(preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP);
+    }
+
+    /**
+     * Reads the input files and writes all CSV files to the output directory. Any input may be null.
+     *
+     * @param synapseJson    path to synapses JSON file
+     * @param connectionJson path to connections JSON file
+     * @param neuronJson     path to neurons JSON file
+     * @param swcFiles       swc files (file name is the bodyId)
+     * @param metaInfo       {@link MetaInfo} for the dataset
+     * @throws IOException if an input file cannot be read or an output file cannot be written
+     */
+    public void export(final String synapseJson,
+                       final String connectionJson,
+                       final String neuronJson,
+                       final File[] swcFiles,
+                       final MetaInfo metaInfo) throws IOException {
+
+        LOG.info("export: entry");
+
+        Files.createDirectories(outputDirectory.toPath());
+
+        if (synapseJson != null) {
+            readJsonInBatches(synapseJson, "readSynapses", new StreamingJsonDecoder()::nextSynapse,
+                    synapseList -> synapseList.forEach(connectionInfoBuilder::addSynapse));
+        }
+
+        if (connectionJson != null) {
+            readJsonInBatches(connectionJson, "readConnections", new StreamingJsonDecoder()::nextSynapticConnection,
+                    connectionList -> connectionList.forEach(connectionInfoBuilder::addSynapticConnection));
+        }
+
+        // first pass over neurons assigns synapses to bodies and collects segment ROIs
+        final Set<Long> segmentBodyIds = new HashSet<>();
+        final Set<String> segmentRois = new TreeSet<>(connectionInfoBuilder.getDatasetRoiInfo().getSetOfRois());
+        if (neuronJson != null) {
+            readJsonInBatches(neuronJson, "readNeurons", new StreamingJsonDecoder()::nextNeuron,
+                    neuronList -> {
+                        for (final Neuron neuron : neuronList) {
+                            connectionInfoBuilder.addSegmentSynapses(neuron.getId(), neuron.getSynapseLocationSet());
+                            segmentBodyIds.add(neuron.getId());
+                            segmentRois.addAll(neuron.getRois());
+                        }
+                    });
+        }
+
+        connectionInfoBuilder.build();
+
+        final File[] swcFileArray = swcFiles == null ? new File[0] : swcFiles;
+        final List<Long> skeletonOnlyBodyIds = new ArrayList<>();
+        for (final File swcFile : swcFileArray) {
+            final Long bodyId = NeuPrintMain.setSkeletonAssociatedBodyId(swcFile.getAbsolutePath());
+            if (!segmentBodyIds.contains(bodyId)) {
+                skeletonOnlyBodyIds.add(bodyId);
+            }
+        }
+
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            futures.add(executor.submit(() -> writeMetaAndDataModel(metaInfo)));
+            futures.add(executor.submit(this::writeSynapses));
+            futures.add(executor.submit(this::writeConnectionSets));
+            futures.add(executor.submit(() -> writeSegments(neuronJson, new ArrayList<>(segmentRois), skeletonOnlyBodyIds)));
+            futures.add(executor.submit(() -> writeSkeletons(swcFileArray)));
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while writing CSV files", e);
+        } catch (final ExecutionException e) {
+            if (e.getCause() instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) e.getCause()).getCause();
+            }
+            throw new RuntimeException("Error writing CSV files: " + e.getCause(), e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOG.info("export: wrote CSV files to {}. Import with:\n{}", outputDirectory, getImportCommand());
+        LOG.info("export: exit");
+    }
+
+    /**
+     * @return a neo4j-admin import command line that loads all files written by {@link #export}
+     */
+    public synchronized String getImportCommand() {
+        final StringBuilder command = new StringBuilder("neo4j-admin import --database=").append(dataset).append(".db");
+        nodeFiles.forEach(f -> command.append(" --nodes=").append(new File(outputDirectory, f).getPath()));
+        relationshipFiles.forEach(f -> command.append(" --relationships=").append(new File(outputDirectory, f).getPath()));
+        return command.toString();
+    }
+
+    static <T> void readJsonInBatches(final String filepath,
+                                       final String name,
+                                       final JsonObjectReader<T> objectReader,
+                                       final BatchPipeline.BatchSink<T> sink) throws IOException {
+        try (JsonReader reader = new JsonReader(new BufferedReader(CompressedInput.openReader(filepath)))) {
+            reader.beginArray();
+            new BatchPipeline<T>(name, JSON_QUEUE_DEPTH).run(
+                    () -> {
+                        final List<T> batch = new ArrayList<>(JSON_BATCH_SIZE);
+                        while (reader.hasNext() && batch.size() < JSON_BATCH_SIZE) {
+                            batch.add(objectReader.read(reader));
+                        }
+                        return batch;
+                    },
+                    sink);
+        }
+    }
+
+    private void writeMetaAndDataModel(final MetaInfo metaInfo) {
+        final String metaId = dataset;
+        final String dataModelId = String.valueOf(dataModelVersion);
+        try (CsvFile metaFile = openNodeFile("Neuprint_Meta.csv",
+                ":ID(Meta-ID)", "dataset:string", "roiInfo:string", "superLevelRois:string[]", "totalPreCount:long", "totalPostCount:long",
+                "preHPThreshold:double", "postHPThreshold:double", "lastDatabaseEdit:localdatetime",
+                "neuroglancerInfo:string", "uuid:string", "dvidServer:string", "statusDefinitions:string", "meshHost:string", "info:string", ":LABEL");
+             CsvFile dataModelFile = openNodeFile("Neuprint_DataModel.csv",
+                     ":ID(DataModel-ID)", "dataModelVersion:float", "timeStamp:localdatetime", ":LABEL");
+             CsvFile isFile = openRelationshipFile("Neuprint_Meta_to_DataModel.csv",
+                     ":START_ID(Meta-ID)", ":END_ID(DataModel-ID)", ":TYPE")) {
+
+            metaFile.writeRow(metaId,
+                    dataset,
+                    connectionInfoBuilder.getDatasetRoiInfo().getAsJsonString(),
+                    connectionInfoBuilder.getSuperLevelRois().toArray(new String[0]),
+                    connectionInfoBuilder.getTotalPreCount(),
+                    connectionInfoBuilder.getTotalPostCount(),
+                    addConnectionSetRoiInfoAndWeightHP ? preHPThreshold : null,
+                    addConnectionSetRoiInfoAndWeightHP ? postHPThreshold : null,
+                    timeStamp,
+                    metaInfo == null ? null : metaInfo.getNeuroglancerInfo(),
+                    metaInfo == null ? null : metaInfo.getUuid(),
+                    metaInfo == null ? null : metaInfo.getDvidServer(),
+                    metaInfo == null ? null : metaInfo.getStatusDefinitions(),
+                    metaInfo == null ? null : metaInfo.getMeshHost(),
+                    metaInfo == null ? null : metaInfo.getInfo(),
+                    "Meta;" + dataset);
+            dataModelFile.writeRow(dataModelId, dataModelVersion, timeStamp, "DataModel");
+            isFile.writeRow(metaId, dataModelId, "Is");
+        }
+    }
+
+    private void writeSynapses() {
+
+        final List<String> rois = new ArrayList<>(new TreeSet<>(connectionInfoBuilder.getDatasetRoiInfo().getSetOfRois()));
+        final List<String> header = new ArrayList<>(Arrays.asList(":ID(Syn-ID)", "type:string", "confidence:double", "location:point{srid:9157}", "timeStamp:localdatetime", ":LABEL"));
+        rois.forEach(roi -> header.add(roi + ":boolean"));
+
+        final String preLabels = "Synapse;PreSyn;" + dataset + ";" + dataset + "-Synapse;" + dataset + "-PreSyn";
+        final String postLabels = "Synapse;PostSyn;" + dataset + ";" + dataset + "-Synapse;" + dataset + "-PostSyn";
+
+        try (CsvFile synapseFile = openNodeFile("Neuprint_Synapses.csv", header.toArray(new String[0]));
+             CsvFile synapsesToFile = openRelationshipFile("Neuprint_Synapse_Connections.csv", ":START_ID(Syn-ID)", ":END_ID(Syn-ID)", ":TYPE")) {
+
+            final Object[] row = new Object[header.size()];
+            for (int synapseId = 0; synapseId < connectionInfoBuilder.getSynapseCount(); synapseId++) {
+                final String type = connectionInfoBuilder.getSynapseType(synapseId);
+                final Set<String> synapseRois = connectionInfoBuilder.getSynapseRois(synapseId);
+                row[0] = synapseId;
+                row[1] = type;
+                row[2] = connectionInfoBuilder.getSynapseConfidence(synapseId);
+                row[3] = connectionInfoBuilder.getSynapseLocation(synapseId);
+                row[4] = timeStamp;
+                row[5] = type.equals("pre") ? preLabels : postLabels;
+                for (int i = 0; i < rois.size(); i++) {
+                    row[6 + i] = synapseRois.contains(rois.get(i)) ? Boolean.TRUE : null;
+                }
+                synapseFile.writeRow(row);
+            }
+
+            for (int i = 0; i < connectionInfoBuilder.getConnectionCount(); i++) {
+                synapsesToFile.writeRow(connectionInfoBuilder.getPreSynapseId(i), connectionInfoBuilder.getPostSynapseId(i), "SynapsesTo");
+            }
+        }
+    }
+
+    private void writeConnectionSets() {
+
+        final String connectionSetLabels = "ConnectionSet;" + dataset + ";" + dataset + "-ConnectionSet";
+
+        try (CsvFile connectionSetFile = openNodeFile("Neuprint_ConnectionSets.csv",
+                ":ID(ConnSet-ID)", "datasetBodyIds:string", "roiInfo:string", "timeStamp:localdatetime", ":LABEL");
+             CsvFile connectsToFile = openRelationshipFile("Neuprint_Neuron_Connections.csv",
+                     ":START_ID(Body-ID)", "weight:int", "weightHP:int", ":END_ID(Body-ID)", ":TYPE");
+             CsvFile fromToFile = openRelationshipFile("Neuprint_ConnectionSet_to_Neurons.csv",
+                     ":START_ID(ConnSet-ID)", ":END_ID(Body-ID)", ":TYPE");
+             CsvFile containsFile = openRelationshipFile("Neuprint_ConnectionSet_to_Synapses.csv",
+                     ":START_ID(ConnSet-ID)", ":END_ID(Syn-ID)", ":TYPE")) {
+
+            for (final ConnectionInfoBuilder.ConnectionSetInfo connectionSet : connectionInfoBuilder.getConnectionSets()) {
+                final String connectionSetId = connectionSet.getPreBodyId() + ":" + connectionSet.getPostBodyId();
+                connectionSetFile.writeRow(connectionSetId, dataset + ":" + connectionSetId, connectionSet.getRoiInfo(), timeStamp, connectionSetLabels);
+                connectsToFile.writeRow(connectionSet.getPreBodyId(), connectionSet.getWeight(), connectionSet.getWeightHP(), connectionSet.getPostBodyId(), "ConnectsTo");
+                fromToFile.writeRow(connectionSetId, connectionSet.getPreBodyId(), "From");
+                fromToFile.writeRow(connectionSetId, connectionSet.getPostBodyId(), "To");
+                for (final int synapseId : connectionSet.getSynapseIds()) {
+                    containsFile.writeRow(connectionSetId, synapseId, "Contains");
+                }
+            }
+        }
+    }
+
+    private void writeSegments(final String neuronJson, final List<String> rois, final List<Long> skeletonOnlyBodyIds) {
+
+        final List<String> header = new ArrayList<>(Arrays.asList(":ID(Body-ID)", "bodyId:long", "name:string", "type:string", "instance:string",
+                "primaryNeurite:string", "majorInput:string", "majorOutput:string", "clonalUnit:string", "neurotransmitter:string",
+                "property:string", "status:string", "size:long", "somaLocation:point{srid:9157}", "somaRadius:double",
+                "pre:long", "post:long", "roiInfo:string", "clusterName:string", "timeStamp:localdatetime", ":LABEL"));
+        final int firstRoiColumn = header.size();
+        rois.forEach(roi -> header.add(roi + ":boolean"));
+
+        final String segmentLabels = "Segment;" + dataset + ";" + dataset + "-Segment";
+        final String neuronLabels = segmentLabels + ";Neuron;" + dataset + "-Neuron";
+        final String synapseSetLabels = "SynapseSet;" + dataset + ";" + dataset + "-SynapseSet";
+
+        try (CsvFile segmentFile = openNodeFile("Neuprint_Neurons.csv", header.toArray(new String[0]));
+             CsvFile synapseSetFile = openNodeFile("Neuprint_SynapseSets.csv",
+                     ":ID(SynSet-ID)", "datasetBodyId:string", "timeStamp:localdatetime", ":LABEL");
+             CsvFile segmentToSynapseSetFile = openRelationshipFile("Neuprint_Neuron_to_SynapseSet.csv",
+                     ":START_ID(Body-ID)", ":END_ID(SynSet-ID)", ":TYPE");
+             CsvFile synapseSetToSynapseFile = openRelationshipFile("Neuprint_SynapseSet_to_Synapses.csv",
+                     ":START_ID(SynSet-ID)", ":END_ID(Syn-ID)", ":TYPE")) {
+
+            final Object[] row = new Object[header.size()];
+
+            if (neuronJson != null) {
+                readJsonInBatches(neuronJson, "writeSegments", new StreamingJsonDecoder()::nextNeuron, neuronList -> {
+                    for (final Neuron neuron : neuronList) {
+                        final ConnectionInfoBuilder.SegmentInfo segmentInfo = connectionInfoBuilder.getSegmentInfo(neuron.getId(), neuron.getSynapseLocationSet());
+                        final Set<String> segmentRois = new HashSet<>(neuron.getRois());
+                        segmentRois.addAll(segmentInfo.getRoiInfo().getSetOfRois());
+
+                        Arrays.fill(row, null);
+                        row[0] = neuron.getId();
+                        row[1] = neuron.getId();
+                        row[2] = neuron.getName();
+                        row[3] = neuron.getType();
+                        row[4] = neuron.getInstance();
+                        row[5] = neuron.getPrimaryNeurite();
+                        row[6] = neuron.getMajorInput();
+                        row[7] = neuron.getMajorOutput();
+                        row[8] = neuron.getClonalUnit();
+                        row[9] = neuron.getNeurotransmitter();
+                        row[10] = neuron.getProperty();
+                        row[11] = neuron.getStatus();
+                        row[12] = neuron.getSize();
+                        row[13] = neuron.getSoma() == null ? null : neuron.getSoma().getLocation();
+                        row[14] = neuron.getSomaRadius();
+                        if (segmentInfo.hasSynapses()) {
+                            row[15] = segmentInfo.getPre();
+                            row[16] = segmentInfo.getPost();
+                            row[17] = segmentInfo.getRoiInfo().getAsJsonString();
+                        }
+                        row[18] = segmentInfo.getClusterName();
+                        row[19] = timeStamp;
+                        row[20] = segmentInfo.isNeuron() ? neuronLabels : segmentLabels;
+                        for (int i = 0; i < rois.size(); i++) {
+                            row[firstRoiColumn + i] = segmentRois.contains(rois.get(i)) ? Boolean.TRUE : null;
+                        }
+                        segmentFile.writeRow(row);
+
+                        if (neuron.getSynapseLocationSet().size() > 0) {
+                            synapseSetFile.writeRow(neuron.getId(), dataset + ":" + neuron.getId(), timeStamp, synapseSetLabels);
+                            segmentToSynapseSetFile.writeRow(neuron.getId(), neuron.getId(), "Contains");
+                            for (final Location location : neuron.getSynapseLocationSet()) {
+                                for (final int synapseId : connectionInfoBuilder.getSynapseIds(location)) {
+                                    synapseSetToSynapseFile.writeRow(neuron.getId(), synapseId, "Contains");
+                                }
+                            }
+                        }
+                    }
+                });
+            }
+
+            // segments that only have a skeleton
+            for (final Long bodyId : skeletonOnlyBodyIds) {
+                Arrays.fill(row, null);
+                row[0] = bodyId;
+                row[1] = bodyId;
+                row[19] = timeStamp;
+                row[20] = segmentLabels;
+                segmentFile.writeRow(row);
+            }
+
+        } catch (final IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void writeSkeletons(final File[] swcFiles) {
+
+        final String skeletonLabels = "Skeleton;" + dataset + ";" + dataset + "-Skeleton";
+        final String skelNodeLabels = "SkelNode;" + dataset + ";" + dataset + "-SkelNode";
+
+        try (CsvFile skeletonFile = openNodeFile("Neuprint_Skeletons.csv",
+                ":ID(Skel-ID)", "skeletonId:string", "timeStamp:localdatetime", ":LABEL");
+             CsvFile skelNodeFile = openNodeFile("Neuprint_SkelNodes.csv",
+                     ":ID(SkelNode-ID)", "skelNodeId:string", "location:point{srid:9157}", "radius:double", "rowNumber:long", "type:long", "timeStamp:localdatetime", ":LABEL");
+             CsvFile segmentToSkeletonFile = openRelationshipFile("Neuprint_Neuron_to_Skeleton.csv",
+                     ":START_ID(Body-ID)", ":END_ID(Skel-ID)", ":TYPE");
+             CsvFile skeletonToSkelNodeFile = openRelationshipFile("Neuprint_Skeleton_to_SkelNodes.csv",
+                     ":START_ID(Skel-ID)", ":END_ID(SkelNode-ID)", ":TYPE");
+             CsvFile linksToFile = openRelationshipFile("Neuprint_SkelNode_to_SkelNode.csv",
+                     ":START_ID(SkelNode-ID)", ":END_ID(SkelNode-ID)", ":TYPE")) {
+
+            // parse a bounded number of swc files at a time in parallel, on a pool of threads rather than the common pool
+            final int chunkSize = threads * SWC_FILES_PER_THREAD_PER_CHUNK;
+            final ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                for (int start = 0; start < swcFiles.length; start += chunkSize) {
+                    final List<File> chunk = Arrays.asList(swcFiles).subList(start, Math.min(start + chunkSize, swcFiles.length));
+                    pool.submit(() -> chunk.parallelStream().forEach(swcFile -> {
+                        final Long bodyId = NeuPrintMain.setSkeletonAssociatedBodyId(swcFile.getAbsolutePath());
+                        final SkeletonColumns skeleton;
+                        try (InputStream inputStream = CompressedInput.open(swcFile, 1)) {
+                            skeleton = SkeletonColumns.fromSwc(inputStream);
+                        } catch (final IOException e) {
+                            throw new UncheckedIOException("Error reading skeleton file " + swcFile + ": " + e, e);
+                        }
+
+                        final String skeletonId = dataset + ":" + bodyId;
+                        final String[] skelNodeIds = new String[skeleton.size()];
+                        final List<Object[]> skelNodeRows = new ArrayList<>(skeleton.size());
+                        final List<Object[]> linksToRows = new ArrayList<>(skeleton.size());
+                        for (int i = 0; i < skeleton.size(); i++) {
+                            skelNodeIds[i] = skeleton.getSkelNodeId(dataset, bodyId, i);
+                            skelNodeRows.add(new Object[]{skelNodeIds[i], skelNodeIds[i],
+                                    new Location((long) skeleton.getX(i), (long) skeleton.getY(i), (long) skeleton.getZ(i)),
+                                    skeleton.getRadius(i), skeleton.getRowNumber(i), skeleton.getType(i), timeStamp, skelNodeLabels});
+                            // parents precede their children in swc files
+                            if (skeleton.getParent(i) != -1) {
+                                linksToRows.add(new Object[]{skelNodeIds[skeleton.getParent(i)], skelNodeIds[i], "LinksTo"});
+                            }
+                        }
+
+                        skeletonFile.writeRow(bodyId, skeletonId, timeStamp, skeletonLabels);
+                        segmentToSkeletonFile.writeRow(bodyId, bodyId, "Contains");
+                        skelNodeFile.writeRows(skelNodeRows);
+                        for (final Object[] skelNodeRow : skelNodeRows) {
+                            skeletonToSkelNodeFile.writeRow(bodyId, skelNodeRow[0], "Contains");
+                        }
+                        linksToFile.writeRows(linksToRows);
+                    })).get();
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("interrupted while writing skeletons", e);
+            } catch (final ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new RuntimeException("Error writing skeletons: " + e.getCause(), e.getCause());
+            } finally {
+                pool.shutdown();
+            }
+        }
+    }
+
+    private synchronized CsvFile openNodeFile(final String fileName, final String... header) {
+        nodeFiles.add(fileName);
+        return new CsvFile(new File(outputDirectory, fileName), header);
+    }
+
+    private synchronized CsvFile openRelationshipFile(final String fileName, final String... header) {
+        relationshipFiles.add(fileName);
+        return new CsvFile(new File(outputDirectory, fileName), header);
+    }
+
+    @FunctionalInterface
+    interface JsonObjectReader<T> {
+        T read(JsonReader reader) throws IOException;
+    }
+
+    /**
+     * A CSV file in the format expected by neo4j-admin import. Strings are quoted (with embedded quotes doubled), arrays
+     * are separated by semicolons, locations are written as points, and null values are left empty so that the
+     * property is not set. Rows may be written from multiple threads.
+     */
+    static class CsvFile implements Closeable {
+
+        private final File file;
+        private final BufferedWriter writer;
+        private final StringBuilder line = new StringBuilder();
+        private long rowCount;
+
+        CsvFile(final File file, final String... header) {
+            this.file = file;
+            try {
+                this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+                for (int i = 0; i < header.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writer.write('"' + header[i].replace("\"", "\"\"") + '"');
+                }
+                writer.newLine();
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Error opening " + file + ": " + e, e);
+            }
+        }
+
+        synchronized void writeRow(final Object... values) {
+            line.setLength(0);
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    line.append(',');
+                }
+                appendValue(line, values[i]);
+            }
+            line.append('\n');
+            try {
+                writer.write(line.toString());
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Error writing " + file + ": " + e, e);
+            }
+            rowCount++;
+        }
+
+        synchronized void writeRows(final List<Object[]> rows) {
+            rows.forEach(this::writeRow);
+        }
+
+        static void appendValue(final StringBuilder line, final Object value) {
+            if (value == null) {
+                return;
+            }
+            if (value instanceof String) {
+                appendQuoted(line, (String) value);
+            } else if (value instanceof String[]) {
+                appendQuoted(line, String.join(";", (String[]) value));
+            } else if (value instanceof Location) {
+                final Location location = (Location) value;
+                line.append("\"{x:").append(location.getX())
+                        .append(", y:").append(location.getY())
+                        .append(", z:").append(location.getZ())
+                        .append("}\"");
+            } else {
+                // numbers, booleans, and LocalDateTime (ISO-8601)
+                line.append(value);
+            }
+        }
+
+        private static void appendQuoted(final StringBuilder line, final String value) {
+            line.append('"');
+            for (int i = 0; i < value.length(); i++) {
+                final char c = value.charAt(i);
+                if (c == '"') {
+                    line.append('"');
+                }
+                line.append(c);
+            }
+            line.append('"');
+        }
+
+        @Override
+        public synchronized void close() {
+            try {
+                writer.close();
+            } catch (final IOException e) {
+                throw new UncheckedIOException("Error closing " + file + ": " + e, e);
+            }
+            LOG.info("close: wrote {} rows to {}", rowCount, file);
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(Neo4jAdminCsvExporter.class);
+
+}
@@ -2,40 +2,62 @@ package org.janelia.flyem.neuprint;
 
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
+import org.janelia.flyem.neuprint.db.AdaptiveBatchSize;
+import org.janelia.flyem.neuprint.db.CommitLog;
+import org.janelia.flyem.neuprint.db.CountingTransactionBatch;
 import org.janelia.flyem.neuprint.db.DbConfig;
 import org.janelia.flyem.neuprint.db.DbTransactionBatch;
+import org.janelia.flyem.neuprint.db.ParallelDbTransactionBatch;
+import org.janelia.flyem.neuprint.db.StatementTextCounter;
 import org.janelia.flyem.neuprint.db.StdOutTransactionBatch;
 import org.janelia.flyem.neuprint.db.TransactionBatch;
 import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LongHashSet;
 import org.janelia.flyem.neuprint.model.MetaInfo;
 import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.PackedLocation;
+import org.janelia.flyem.neuprint.model.PackedLocationSet;
 import org.janelia.flyem.neuprint.model.SkelNode;
 import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.SkeletonColumns;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiCounts;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
 import org.janelia.flyem.neuprintloadprocedures.model.RoiInfo;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
 import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
 import org.neo4j.driver.v1.AuthTokens;
 import org.neo4j.driver.v1.Driver;
 import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.Statement;
 import org.neo4j.driver.v1.StatementResult;
 import org.neo4j.driver.v1.Transaction;
+import org.neo4j.driver.v1.types.Point;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
 import java.util.Set;
 import java.util.SortedSet;
 import java.util.TreeSet;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
 
 import static org.neo4j.driver.v1.Values.parameters;
 
@@ -44,9 +66,19 @@ import static org.neo4j.driver.v1.Values.parameters;
  */
 public class Neo4jImporter implements AutoCloseable {
 
+    private static final long INDEX_POLL_MILLIS = 500;
+    private static final long INDEX_PROGRESS_LOG_NANOS = 60L * 1000000000L;
+
     private final Driver driver;
     private final int statementsPerTransaction;
     private final int connectionInfoStatementsPerTransaction;
+    private final int parallelism;
+    private final boolean adaptiveBatching;
+    private final long targetCommitMillis;
+    private final CommitLog commitLog;
+    private final boolean deferIndexes;
+    private final Map<String, ImportStatementTemplates> templatesByDataset = new ConcurrentHashMap<>();
+    private final StatementTextCounter statementTextCounter = new StatementTextCounter();
 
     /**
      * Class constructor.
@@ -54,12 +86,28 @@ public class Neo4jImporter implements AutoCloseable {
      * @param dbConfig {@link DbConfig} object containing the database configuration
      */
     public Neo4jImporter(final DbConfig dbConfig) {
+        this(dbConfig, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param dbConfig  {@link DbConfig} object containing the database configuration
+     * @param commitLog counts commits and records statements that cannot be committed (may be null)
+     */
+    public Neo4jImporter(final DbConfig dbConfig, final CommitLog commitLog) {
+
+        this.commitLog = commitLog;
 
         if (dbConfig == null) {
 
             this.driver = null;
             this.statementsPerTransaction = 1;
             this.connectionInfoStatementsPerTransaction = 1;
+            this.parallelism = 1;
+            this.adaptiveBatching = false;
+            this.targetCommitMillis = 0;
+            this.deferIndexes = false;
 
         } else {
 
@@ -68,6 +116,10 @@ public class Neo4jImporter implements AutoCloseable {
                             dbConfig.getPassword()));
             this.statementsPerTransaction = dbConfig.getStatementsPerTransaction();
             this.connectionInfoStatementsPerTransaction = dbConfig.getConnectionInfoStatementsPerTransaction();
+            this.parallelism = dbConfig.getParallelism();
+            this.adaptiveBatching = dbConfig.isAdaptiveBatching();
+            this.targetCommitMillis = dbConfig.getTargetCommitMillis();
+            this.deferIndexes = dbConfig.isDeferIndexes();
 
         }
 
@@ -79,9 +131,72 @@ public class Neo4jImporter implements AutoCloseable {
      * @param driver neo4j bolt driver
      */
     public Neo4jImporter(final Driver driver) {
+        this(driver, new Options());
+    }
+
+    /**
+     * Class constructor for testing with the settings that otherwise come from a {@link DbConfig}.
+     *
+     * @param driver  neo4j bolt driver
+     * @param options parallelism, batching, commit log and index settings
+     */
+    public Neo4jImporter(final Driver driver, final Options options) {
+        this.commitLog = options.commitLog;
+        this.deferIndexes = options.deferIndexes;
         this.driver = driver;
         this.statementsPerTransaction = 20;
         this.connectionInfoStatementsPerTransaction = 1;
+        this.parallelism = options.parallelism;
+        this.adaptiveBatching = options.adaptiveBatching;
+        this.targetCommitMillis = 1000;
+    }
+
+    /**
+     * Settings for {@link #Neo4jImporter(Driver, Options)}. Settings that are not set keep their {@link DbConfig} defaults.
+     */
+    public static class Options {
+
+        private int parallelism = 1;
+        private boolean adaptiveBatching = false;
+        private CommitLog commitLog;
+        private boolean deferIndexes = false;
+
+        /**
+         * @param parallelism number of sessions used to commit synapse, segment, and skeleton statements
+         * @return these options
+         */
+        public Options parallelism(final int parallelism) {
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /**
+         * @param adaptiveBatching if true, statements per transaction are adjusted based on commit latency and failures
+         * @return these options
+         */
+        public Options adaptiveBatching(final boolean adaptiveBatching) {
+            this.adaptiveBatching = adaptiveBatching;
+            return this;
+        }
+
+        /**
+         * @param commitLog counts commits and records statements that cannot be committed (may be null)
+         * @return these options
+         */
+        public Options commitLog(final CommitLog commitLog) {
+            this.commitLog = commitLog;
+            return this;
+        }
+
+        /**
+         * @param deferIndexes if true, indexes that are not needed while loading are only created by {@link Neo4jImporter#createDeferredIndexes}
+         * @return these options
+         */
+        public Options deferIndexes(final boolean deferIndexes) {
+            this.deferIndexes = deferIndexes;
+            return this;
+        }
+
     }
 
     /**
@@ -103,13 +218,79 @@ public class Neo4jImporter implements AutoCloseable {
         if (driver == null) {
             batch = new StdOutTransactionBatch();
         } else {
-            batch = new DbTransactionBatch(driver.session(), statementsPerTransaction);
+            batch = new DbTransactionBatch(driver.session(), statementsPerTransaction, null, commitLog);
         }
         return batch;
     }
 
     /**
-     * Adds uniqueness constraints and indices to database.
+     * Acquires a database transaction batch for one phase of the load. If adaptive batching is enabled, the number of
+     * statements per transaction starts at statementsPerBatch and is adjusted based on commit latency and failures.
+     *
+     * @param phase              name of load phase (used in log messages)
+     * @param statementsPerBatch (initial) number of statements per transaction
+     * @return {@link TransactionBatch} object for storing and writing transactions
+     */
+    private TransactionBatch getBatch(final String phase, final int statementsPerBatch) {
+        final TransactionBatch batch;
+        if (driver == null) {
+            batch = new StdOutTransactionBatch();
+        } else {
+            batch = new DbTransactionBatch(driver.session(), statementsPerBatch,
+                    adaptiveBatching ? getAdaptiveBatchSize(phase, statementsPerBatch) : null, commitLog);
+        }
+        return new CountingTransactionBatch(batch, phase, statementTextCounter);
+    }
+
+    /**
+     * Acquires a database transaction batch that commits with multiple sessions in parallel if parallelism
+     * is greater than 1. Statements should be added with a routing key so that statements touching the same
+     * nodes are committed by the same session.
+     *
+     * @param phase name of load phase (used in log messages)
+     * @return {@link TransactionBatch} object for storing and writing transactions
+     */
+    private TransactionBatch getPartitionedBatch(final String phase) {
+        final TransactionBatch batch;
+        if (driver == null || parallelism <= 1) {
+            return getBatch(phase, statementsPerTransaction);
+        } else {
+            batch = new ParallelDbTransactionBatch(driver, parallelism, statementsPerTransaction,
+                    adaptiveBatching ? getAdaptiveBatchSize(phase, statementsPerTransaction) : null, commitLog);
+        }
+        return new CountingTransactionBatch(batch, phase, statementTextCounter);
+    }
+
+    /**
+     * Returns the statement texts for a dataset, which are built the first time they are needed.
+     *
+     * @param dataset dataset name
+     * @return {@link ImportStatementTemplates} for the dataset
+     */
+    private ImportStatementTemplates getTemplates(final String dataset) {
+        return templatesByDataset.computeIfAbsent(dataset, ImportStatementTemplates::new);
+    }
+
+    /**
+     * Returns the number of distinct statement texts sent so far in a phase of the load. Statements are built from a fixed set of
+     * templates, so this should stay small (and not grow with the number of statements or ROI combinations).
+     *
+     * @param phase name of load phase (e.g. "addSynapsesWithRois")
+     * @return number of distinct statement texts
+     */
+    public int getDistinctStatementTextCount(final String phase) {
+        return statementTextCounter.getDistinctStatementTextCount(phase);
+    }
+
+    private AdaptiveBatchSize getAdaptiveBatchSize(final String phase, final int initialSize) {
+        final AdaptiveBatchSize adaptiveBatchSize = new AdaptiveBatchSize(phase, initialSize, 1, initialSize * 10, targetCommitMillis);
+        LOG.info("{}: adaptive batching starting at {} statements per transaction", phase, initialSize);
+        return adaptiveBatchSize;
+    }
+
+    /**
+     * Adds uniqueness constraints and indices to database. If indexes are deferred, only the constraints and index used to
+     * look up nodes while loading are added; the rest are added by {@link #createDeferredIndexes}.
      *
      * @param dataset dataset name
      */
@@ -117,33 +298,16 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("prepDatabase: entry");
 
-        final String[] prepTextArray = {
-                "CREATE CONSTRAINT ON (n:`" + dataset + "-Neuron`) ASSERT n.bodyId IS UNIQUE",
-                "CREATE CONSTRAINT ON (n:`" + dataset + "-Segment`) ASSERT n.bodyId IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-ConnectionSet`) ASSERT s.datasetBodyIds IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-SynapseSet`) ASSERT s.datasetBodyId IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-PreSyn`) ASSERT s.location IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-PostSyn`) ASSERT s.location IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-SkelNode`) ASSERT s.skelNodeId IS UNIQUE",
-                "CREATE CONSTRAINT ON (s:`" + dataset + "-Skeleton`) ASSERT s.skeletonId IS UNIQUE",
-                "CREATE CONSTRAINT ON (m:Meta) ASSERT m.dataset IS UNIQUE",
-                "CREATE CONSTRAINT ON (d:DataModel) ASSERT d.dataModelVersion IS UNIQUE",
-                "CREATE INDEX ON :`" + dataset + "-Neuron`(status)",
-                "CREATE INDEX ON :`" + dataset + "-Neuron`(somaLocation)",
-                "CREATE INDEX ON :`" + dataset + "-Neuron`(name)",
-                "CREATE INDEX ON :`" + dataset + "-SkelNode`(location)",
-                "CREATE INDEX ON :`" + dataset + "-Neuron`(pre)",
-                "CREATE INDEX ON :`" + dataset + "-Neuron`(post)",
-                "CREATE INDEX ON :Neuron(name)",
-                "CREATE INDEX ON :`" + dataset + "-Segment`(pre)",
-                "CREATE INDEX ON :`" + dataset + "-Segment`(post)",
-                "CREATE INDEX ON :`" + dataset + "-Synapse`(location)",
-                "CREATE CONSTRAINT ON (n:`" + dataset + "-Segment`) ASSERT n.mutationUuidAndId IS UNIQUE" //used for live updates
-        };
-
-        for (final String prepText : prepTextArray) {
+        final List<SchemaIndex> schemaIndexes = new ArrayList<>(getLoadSchemaIndexes(dataset));
+        if (deferIndexes) {
+            LOG.info("prepDatabase: deferring creation of {} indexes until the data is loaded", getDeferrableSchemaIndexes(dataset).size());
+        } else {
+            schemaIndexes.addAll(getDeferrableSchemaIndexes(dataset));
+        }
+
+        for (final SchemaIndex schemaIndex : schemaIndexes) {
             try (final TransactionBatch batch = getBatch()) {
-                batch.addStatement(new Statement(prepText));
+                batch.addStatement(new Statement(schemaIndex.getCreateText()));
                 batch.writeTransaction();
             }
         }
@@ -153,7 +317,7 @@ public class Neo4jImporter implements AutoCloseable {
     }
 
     /**
-     * Creates index if clusterNames will be added.
+     * Creates index if clusterNames will be added (unless indexes are deferred).
      *
      * @param dataset dataset for load
      */
@@ -161,18 +325,18 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("prepDatabaseForClusterNames: entry");
 
-        final String prepText = "CREATE INDEX ON :`" + dataset + "-Neuron`(clusterName)";
-
-        try (final TransactionBatch batch = getBatch()) {
-            batch.addStatement(new Statement(prepText));
-            batch.writeTransaction();
+        if (!deferIndexes) {
+            try (final TransactionBatch batch = getBatch()) {
+                batch.addStatement(new Statement(getClusterNameSchemaIndex(dataset).getCreateText()));
+                batch.writeTransaction();
+            }
         }
 
         LOG.info("prepDatabaseForClusterNames: exit");
     }
 
     /**
-     * Creates an index for each ROI present in the dataset. ROIs are stored as boolean properties (set to true) on Neuron/Segment nodes and Synapse (PreSyn and PostSyn) nodes.
+     * Creates an index for each ROI present in the dataset (unless indexes are deferred). ROIs are stored as boolean properties (set to true) on Neuron/Segment nodes and Synapse (PreSyn and PostSyn) nodes.
      *
      * @param dataset dataset for load
      */
@@ -180,6 +344,185 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("indexBooleanRoiProperties: entry");
 
+        if (deferIndexes) {
+            LOG.info("indexBooleanRoiProperties: ROI indexes are deferred until the data is loaded");
+        } else {
+            for (final SchemaIndex schemaIndex : getRoiSchemaIndexes(dataset)) {
+                try (final TransactionBatch batch = getBatch()) {
+                    batch.addStatement(new Statement(schemaIndex.getCreateText()));
+                    batch.writeTransaction();
+                }
+            }
+        }
+        LOG.info("indexBooleanRoiProperties: exit");
+
+    }
+
+    /**
+     * Creates the indexes skipped by {@link #prepDatabase}, {@link #prepDatabaseForClusterNames} and {@link #indexBooleanRoiProperties}
+     * when indexes are deferred, so that they are built once from the loaded data rather than maintained on every insert.
+     * Each index is created in its own transaction and the transactions are issued concurrently, so the indexes are populated
+     * in parallel. Waits until every index is online and logs how long each one took to build.
+     *
+     * @param dataset         dataset name
+     * @param addClusterNames true if Neurons have clusterNames
+     * @return true if all indexes are online, false if any could not be created
+     */
+    public boolean createDeferredIndexes(final String dataset, final boolean addClusterNames) {
+
+        LOG.info("createDeferredIndexes: entry");
+
+        final List<SchemaIndex> schemaIndexes = new ArrayList<>(getDeferrableSchemaIndexes(dataset));
+        if (addClusterNames) {
+            schemaIndexes.add(getClusterNameSchemaIndex(dataset));
+        }
+        schemaIndexes.addAll(getRoiSchemaIndexes(dataset));
+
+        if (driver == null) {
+            try (final TransactionBatch batch = getBatch()) {
+                for (final SchemaIndex schemaIndex : schemaIndexes) {
+                    batch.addStatement(new Statement(schemaIndex.getCreateText()));
+                }
+                batch.writeTransaction();
+            }
+            return true;
+        }
+
+        // schema transactions only wait for uniqueness constraints to be validated; other indexes are populated in the background
+        final long startNanos = System.nanoTime();
+        final Map<SchemaIndex, Long> createdNanos = new ConcurrentHashMap<>();
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(schemaIndexes.size(), Math.max(parallelism, 8)) + 1);
+        boolean allOnline = true;
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final SchemaIndex schemaIndex : schemaIndexes) {
+                futures.add(executor.submit(() -> {
+                    try (Session session = driver.session()) {
+                        session.writeTransaction(tx -> tx.run(schemaIndex.getCreateText()).consume());
+                    }
+                    createdNanos.put(schemaIndex, System.nanoTime());
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    LOG.error("createDeferredIndexes: failed to create {}: {}", schemaIndexes.get(i), e.getCause().toString());
+                    allOnline = false;
+                }
+            }
+            LOG.info("createDeferredIndexes: created {} indexes in {} ms", createdNanos.size(), (System.nanoTime() - startNanos) / 1000000);
+
+            allOnline &= awaitSchemaIndexesOnline(schemaIndexes.stream().filter(createdNanos::containsKey).collect(Collectors.toList()), startNanos);
+
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.error("createDeferredIndexes: interrupted while creating indexes");
+            allOnline = false;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        LOG.info("createDeferredIndexes: exit, all indexes online in {} s", String.format("%.1f", (System.nanoTime() - startNanos) / 1e9));
+        return allOnline;
+    }
+
+    /**
+     * Polls db.indexes() until all of the indexes are online (or have failed), logging the time from startNanos at which each one came online.
+     */
+    private boolean awaitSchemaIndexesOnline(final List<SchemaIndex> schemaIndexes, final long startNanos) throws InterruptedException {
+        final Map<String, SchemaIndex> pending = new HashMap<>();
+        for (final SchemaIndex schemaIndex : schemaIndexes) {
+            pending.put(schemaIndex.getKey(), schemaIndex);
+        }
+        boolean allOnline = true;
+        long lastProgressNanos = System.nanoTime();
+        try (Session session = driver.session()) {
+            while (!pending.isEmpty()) {
+                final List<Record> indexRecords = session.readTransaction(tx -> tx.run("CALL db.indexes() YIELD tokenNames, properties, state, progress, failureMessage " +
+                        "RETURN tokenNames, properties, state, progress, failureMessage").list());
+                final StringBuilder progress = new StringBuilder();
+                for (final Record indexRecord : indexRecords) {
+                    final List<Object> tokenNames = indexRecord.get("tokenNames").asList();
+                    final List<Object> properties = indexRecord.get("properties").asList();
+                    if (tokenNames.size() != 1 || properties.size() != 1) {
+                        continue;
+                    }
+                    final SchemaIndex schemaIndex = pending.get(SchemaIndex.getKey(tokenNames.get(0).toString(), properties.get(0).toString()));
+                    if (schemaIndex == null) {
+                        continue;
+                    }
+                    final String state = indexRecord.get("state").asString();
+                    if ("ONLINE".equals(state)) {
+                        pending.remove(schemaIndex.getKey());
+                        LOG.info("awaitSchemaIndexesOnline: {} online after {} s", schemaIndex, String.format("%.1f", (System.nanoTime() - startNanos) / 1e9));
+                    } else if ("FAILED".equals(state)) {
+                        pending.remove(schemaIndex.getKey());
+                        LOG.error("awaitSchemaIndexesOnline: {} failed: {}", schemaIndex, indexRecord.get("failureMessage").asString());
+                        allOnline = false;
+                    } else {
+                        progress.append(" ").append(schemaIndex).append(" ").append(indexRecord.get("progress").asObject());
+                    }
+                }
+                if (!pending.isEmpty()) {
+                    if (System.nanoTime() - lastProgressNanos > INDEX_PROGRESS_LOG_NANOS) {
+                        LOG.info("awaitSchemaIndexesOnline: waiting for {} indexes:{}", pending.size(), progress);
+                        lastProgressNanos = System.nanoTime();
+                    }
+                    Thread.sleep(INDEX_POLL_MILLIS);
+                }
+            }
+        }
+        return allOnline;
+    }
+
+    /**
+     * @return constraints (and the Synapse location index) used to find nodes merged while loading
+     */
+    static List<SchemaIndex> getLoadSchemaIndexes(final String dataset) {
+        return Arrays.asList(
+                SchemaIndex.constraint(dataset + "-Segment", "bodyId"),
+                SchemaIndex.constraint(dataset + "-ConnectionSet", "datasetBodyIds"),
+                SchemaIndex.constraint(dataset + "-SynapseSet", "datasetBodyId"),
+                SchemaIndex.constraint(dataset + "-PreSyn", "location"),
+                SchemaIndex.constraint(dataset + "-PostSyn", "location"),
+                SchemaIndex.constraint(dataset + "-SkelNode", "skelNodeId"),
+                SchemaIndex.constraint(dataset + "-Skeleton", "skeletonId"),
+                SchemaIndex.constraint("Meta", "dataset"),
+                SchemaIndex.constraint("DataModel", "dataModelVersion"),
+                SchemaIndex.index(dataset + "-Synapse", "location"));
+    }
+
+    /**
+     * @return constraints and indexes that are only used by queries after the load
+     */
+    static List<SchemaIndex> getDeferrableSchemaIndexes(final String dataset) {
+        return Arrays.asList(
+                SchemaIndex.constraint(dataset + "-Neuron", "bodyId"),
+                SchemaIndex.index(dataset + "-Neuron", "status"),
+                SchemaIndex.index(dataset + "-Neuron", "somaLocation"),
+                SchemaIndex.index(dataset + "-Neuron", "name"),
+                SchemaIndex.index(dataset + "-SkelNode", "location"),
+                SchemaIndex.index(dataset + "-Neuron", "pre"),
+                SchemaIndex.index(dataset + "-Neuron", "post"),
+                SchemaIndex.index("Neuron", "name"),
+                SchemaIndex.index(dataset + "-Segment", "pre"),
+                SchemaIndex.index(dataset + "-Segment", "post"),
+                SchemaIndex.constraint(dataset + "-Segment", "mutationUuidAndId")); //used for live updates
+    }
+
+    static SchemaIndex getClusterNameSchemaIndex(final String dataset) {
+        return SchemaIndex.index(dataset + "-Neuron", "clusterName");
+    }
+
+    /**
+     * @return an index on each ROI in the Meta node roiInfo for Neuron, Segment, PreSyn and PostSyn nodes
+     */
+    private List<SchemaIndex> getRoiSchemaIndexes(final String dataset) {
+        if (driver == null) {
+            // no Meta node to read ROIs from when writing statements to stdout
+            return new ArrayList<>();
+        }
         RoiInfo currentRoiInfo;
         try (Session session = driver.session()) {
             currentRoiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
@@ -187,27 +530,76 @@ public class Neo4jImporter implements AutoCloseable {
         if (currentRoiInfo == null) {
             currentRoiInfo = new RoiInfo();
         }
+        return getRoiSchemaIndexes(dataset, currentRoiInfo.getSetOfRois());
+    }
+
+    /**
+     * @return an index on each ROI for Neuron, Segment, PreSyn and PostSyn nodes
+     */
+    static List<SchemaIndex> getRoiSchemaIndexes(final String dataset, final Set<String> rois) {
+        final List<SchemaIndex> schemaIndexes = new ArrayList<>();
+        for (final String roi : rois) {
+            schemaIndexes.add(SchemaIndex.index(dataset + "-Neuron", roi));
+            schemaIndexes.add(SchemaIndex.index(dataset + "-Segment", roi));
+            schemaIndexes.add(SchemaIndex.index(dataset + "-PreSyn", roi));
+            schemaIndexes.add(SchemaIndex.index(dataset + "-PostSyn", roi));
+        }
+        return schemaIndexes;
+    }
+
+    /**
+     * A single property index or uniqueness constraint on a label.
+     */
+    static final class SchemaIndex {
+
+        private final String label;
+        private final String property;
+        private final boolean unique;
+
+        private SchemaIndex(final String label, final String property, final boolean unique) {
+            this.label = label;
+            this.property = property;
+            this.unique = unique;
+        }
 
-        Set<String> roiNameSet = currentRoiInfo.getSetOfRois();
+        static SchemaIndex index(final String label, final String property) {
+            return new SchemaIndex(label, property, false);
+        }
 
-        String[] indexTextArray = new String[roiNameSet.size() * 4];
-        int i = 0;
-        for (String roi : roiNameSet) {
-            indexTextArray[i] = "CREATE INDEX ON :`" + dataset + "-Neuron`(`" + roi + "`)";
-            indexTextArray[i + 1] = "CREATE INDEX ON :`" + dataset + "-Segment`(`" + roi + "`)";
-            indexTextArray[i + 2] = "CREATE INDEX ON :`" + dataset + "-PreSyn`(`" + roi + "`)";
-            indexTextArray[i + 3] = "CREATE INDEX ON :`" + dataset + "-PostSyn`(`" + roi + "`)";
-            i += 4;
+        static SchemaIndex constraint(final String label, final String property) {
+            return new SchemaIndex(label, property, true);
         }
 
-        for (final String indexText : indexTextArray) {
-            try (final TransactionBatch batch = getBatch()) {
-                batch.addStatement(new Statement(indexText));
-                batch.writeTransaction();
-            }
+        String getLabel() {
+            return label;
         }
-        LOG.info("indexBooleanRoiProperties: exit");
 
+        String getProperty() {
+            return property;
+        }
+
+        boolean isUnique() {
+            return unique;
+        }
+
+        String getCreateText() {
+            return unique ?
+                    "CREATE CONSTRAINT ON (n:`" + label + "`) ASSERT n.`" + property + "` IS UNIQUE" :
+                    "CREATE INDEX ON :`" + label + "`(`" + property + "`)";
+        }
+
+        String getKey() {
+            return getKey(label, property);
+        }
+
+        static String getKey(final String label, final String property) {
+            return label + ":" + property;
+        }
+
+        @Override
+        public String toString() {
+            return (unique ? "constraint on :`" : "index on :`") + label + "`(" + property + ")";
+        }
     }
 
     /**
@@ -302,31 +694,7 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("addSynapses: entry");
 
-        String roiPropertyBaseString = " s.`%s` = TRUE,";
-
-        final String preSynapseText =
-                "MERGE (s:`" + dataset + "-Synapse`{location:$location}) " +
-                        " ON CREATE SET s.location=$location, " +
-                        "s:`" + dataset + "-PreSyn`," +
-                        "s:Synapse," +
-                        "s:PreSyn," +
-                        "s:" + dataset + "," +
-                        " s.confidence=$confidence, " +
-                        " s.type=$type, " +
-                        "%s" + //placeholder for roi properties
-                        " s.timeStamp=$timeStamp";
-
-        final String postSynapseText =
-                "MERGE (s:`" + dataset + "-Synapse`{location:$location}) " +
-                        " ON CREATE SET s.location=$location, " +
-                        "s:`" + dataset + "-PostSyn`," +
-                        "s:Synapse," +
-                        "s:PostSyn," +
-                        "s:" + dataset + "," +
-                        " s.confidence=$confidence, " +
-                        " s.type=$type, " +
-                        "%s" + //placeholder for roi properties
-                        " s.timeStamp=$timeStamp";
+        final ImportStatementTemplates templates = getTemplates(dataset);
 
         // get existing values from meta node
         Set<String> currentSuperLevelRois;
@@ -339,32 +707,36 @@ public class Neo4jImporter implements AutoCloseable {
         RoiInfo updatedRoiInfo = currentRoiInfo;
         Set<String> updatedSuperLevelRois = currentSuperLevelRois;
 
-        try (final TransactionBatch batch = getBatch()) {
+        final RoiDictionary roiDictionary = new RoiDictionary();
+        final RoiCounts batchRoiCounts = new RoiCounts();
+        try (final TransactionBatch batch = getPartitionedBatch("addSynapsesWithRois")) {
+            final Set<Location> batchLocations = new HashSet<>();
             for (final Synapse synapse : synapseList) {
-                // accumulates super level rois and roi info data
-                StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(updatedSuperLevelRois, updatedRoiInfo, roiPropertyBaseString, synapse.getRois(), synapse.getType());
+                // accumulates super level rois and roi info data (a repeated location is merged into the first synapse, so is only counted once)
+                countSynapseRois(synapse, batchLocations.add(synapse.getLocation()), roiDictionary, batchRoiCounts, updatedSuperLevelRois);
+                final Map<String, Object> roiProperties = createRoiPropertyMap(synapse.getRois());
 
                 if (synapse.getType().equals("pre")) {
 
-                    String preSynapseTextWithRois = String.format(preSynapseText, roiProperties.toString());
                     batch.addStatement(new Statement(
-                            preSynapseTextWithRois,
+                            templates.preSynapse,
                             parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
                                     "confidence", synapse.getConfidence(),
                                     "type", synapse.getType(),
-                                    "timeStamp", timeStamp))
+                                    "roiProps", roiProperties,
+                                    "timeStamp", timeStamp)),
+                            synapse.getLocation()
                     );
                 } else if (synapse.getType().equals("post")) {
 
-                    String postSynapseTextWithRois = String.format(postSynapseText, roiProperties.toString());
                     batch.addStatement(new Statement(
-                            postSynapseTextWithRois,
+                            templates.postSynapse,
                             parameters("location", synapse.getLocationAsPoint(),
-                                    "datasetLocation", dataset + ":" + synapse.getLocationString(),
                                     "confidence", synapse.getConfidence(),
                                     "type", synapse.getType(),
-                                    "timeStamp", timeStamp))
+                                    "roiProps", roiProperties,
+                                    "timeStamp", timeStamp)),
+                            synapse.getLocation()
                     );
 
                 }
@@ -374,13 +746,108 @@ public class Neo4jImporter implements AutoCloseable {
             batch.writeTransaction();
         }
 
-        //delay to allow transactions to complete before taking count
-        try {
-            TimeUnit.MILLISECONDS.sleep(10);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        batchRoiCounts.addTo(updatedRoiInfo, roiDictionary);
+        updateMetaNodeSynapseCounts(dataset, updatedRoiInfo, updatedSuperLevelRois, timeStamp);
+
+        LOG.info("addSynapses: exit");
+    }
+
+    /**
+     * Adds Synapse nodes to database as specified by a <a href="http://github.com/janelia-flyem/neuPrint/blob/master/jsonspecs.md" target="_blank">synapses JSON file</a>.
+     * Produces the same nodes as {@link #addSynapsesWithRois(String, List, LocalDateTime)}, but groups synapses into list parameters
+     * that are written with one UNWIND statement per group. ROI properties are passed as a map on each row, so the same two query
+     * strings are used regardless of ROI combination. Each statement holds up to statementsPerTransaction synapses.
+     *
+     * @param dataset     dataset
+     * @param synapseList list of {@link Synapse} objects
+     * @param timeStamp   time stamp for load
+     */
+    public void addSynapsesWithRoisUsingUnwind(final String dataset, final List<Synapse> synapseList, final LocalDateTime timeStamp) {
+
+        LOG.info("addSynapsesWithRoisUsingUnwind: entry");
+
+        final ImportStatementTemplates templates = getTemplates(dataset);
+
+        // get existing values from meta node
+        Set<String> currentSuperLevelRois;
+        RoiInfo currentRoiInfo;
+        try (Session session = driver.session()) {
+            currentSuperLevelRois = session.readTransaction(tx -> getMetaNodeSuperLevelRois(tx, dataset));
+            currentRoiInfo = session.readTransaction(tx -> getMetaNodeRoiInfo(tx, dataset));
         }
 
+        RoiInfo updatedRoiInfo = currentRoiInfo;
+        Set<String> updatedSuperLevelRois = currentSuperLevelRois;
+
+        final RoiDictionary roiDictionary = new RoiDictionary();
+        final RoiCounts batchRoiCounts = new RoiCounts();
+        try (final TransactionBatch batch = getPartitionedBatch("addSynapsesWithRoisUsingUnwind")) {
+            // rows are partitioned by location and each partition's statements are routed by the partition, so that a pre and a post
+            // synapse at the same location (which merge on the same -Synapse node) are committed in order by the same session
+            final int partitionCount = Math.max(parallelism, 1);
+            final List<List<Map<String, Object>>> preRowsByPartition = new ArrayList<>(partitionCount);
+            final List<List<Map<String, Object>>> postRowsByPartition = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                preRowsByPartition.add(new ArrayList<>());
+                postRowsByPartition.add(new ArrayList<>());
+            }
+            final Set<Location> batchLocations = new HashSet<>();
+            for (final Synapse synapse : synapseList) {
+                // accumulates super level rois and roi info data (a repeated location is merged into the first synapse, so is only counted once)
+                countSynapseRois(synapse, batchLocations.add(synapse.getLocation()), roiDictionary, batchRoiCounts, updatedSuperLevelRois);
+
+                Map<String, Object> row = new HashMap<>();
+                row.put("location", synapse.getLocationAsPoint());
+                row.put("confidence", synapse.getConfidence());
+                row.put("type", synapse.getType());
+                row.put("rois", createRoiPropertyMap(synapse.getRois()));
+
+                final int partition = Math.floorMod(synapse.getLocation().hashCode(), partitionCount);
+                if (synapse.getType().equals("pre")) {
+                    final List<Map<String, Object>> preRows = preRowsByPartition.get(partition);
+                    preRows.add(row);
+                    if (preRows.size() == statementsPerTransaction) {
+                        batch.addStatement(new Statement(templates.preSynapseUnwind, parameters("rows", preRows, "timeStamp", timeStamp)), partition);
+                        preRowsByPartition.set(partition, new ArrayList<>());
+                    }
+                } else if (synapse.getType().equals("post")) {
+                    final List<Map<String, Object>> postRows = postRowsByPartition.get(partition);
+                    postRows.add(row);
+                    if (postRows.size() == statementsPerTransaction) {
+                        batch.addStatement(new Statement(templates.postSynapseUnwind, parameters("rows", postRows, "timeStamp", timeStamp)), partition);
+                        postRowsByPartition.set(partition, new ArrayList<>());
+                    }
+                }
+
+            }
+
+            for (int partition = 0; partition < partitionCount; partition++) {
+                if (preRowsByPartition.get(partition).size() > 0) {
+                    batch.addStatement(new Statement(templates.preSynapseUnwind, parameters("rows", preRowsByPartition.get(partition), "timeStamp", timeStamp)), partition);
+                }
+                if (postRowsByPartition.get(partition).size() > 0) {
+                    batch.addStatement(new Statement(templates.postSynapseUnwind, parameters("rows", postRowsByPartition.get(partition), "timeStamp", timeStamp)), partition);
+                }
+            }
+
+            batch.writeTransaction();
+        }
+
+        batchRoiCounts.addTo(updatedRoiInfo, roiDictionary);
+        updateMetaNodeSynapseCounts(dataset, updatedRoiInfo, updatedSuperLevelRois, timeStamp);
+
+        LOG.info("addSynapsesWithRoisUsingUnwind: exit");
+    }
+
+    /**
+     * Writes the Meta node roiInfo accumulated by {@link #countSynapseRois} while adding a batch of synapses,
+     * rather than counting synapses in every ROI with one query per ROI. Total pre and post counts come from the label counts in the
+     * database's count store, which are read without scanning. Per-ROI counts assume that synapses in the batch were not already in the
+     * database, so they are only a running estimate while the synapses are loaded; {@link #recomputeMetaNodeSynapseCounts} makes them exact
+     * at the end of the load.
+     */
+    private void updateMetaNodeSynapseCounts(final String dataset, final RoiInfo updatedRoiInfo, final Set<String> updatedSuperLevelRois, final LocalDateTime timeStamp) {
+
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
                 "m.lastDatabaseEdit=$timeStamp," +
                 "m.roiInfo=$roiInfo, " +
@@ -390,15 +857,9 @@ public class Neo4jImporter implements AutoCloseable {
 
         long totalPreCount;
         long totalPostCount;
-        RoiInfo newRoiInfo = new RoiInfo();
         try (Session session = driver.session()) {
             totalPreCount = session.readTransaction(tx -> getTotalPreCount(tx, dataset));
             totalPostCount = session.readTransaction(tx -> getTotalPostCount(tx, dataset));
-            for (String roi : updatedRoiInfo.getSetOfRois()) {
-                long roiPreCount = session.readTransaction(tx -> getRoiPreCount(tx, dataset, roi));
-                long roiPostCount = session.readTransaction(tx -> getRoiPostCount(tx, dataset, roi));
-                newRoiInfo.addSynapseCountsForRoi(roi, roiPreCount, roiPostCount);
-            }
         }
 
         try (final TransactionBatch batch = getBatch()) {
@@ -407,7 +868,7 @@ public class Neo4jImporter implements AutoCloseable {
                     parameters(
                             "dataset", dataset,
                             "timeStamp", timeStamp,
-                            "roiInfo", newRoiInfo.getAsJsonString(),
+                            "roiInfo", updatedRoiInfo.getAsJsonString(),
                             "superLevelRois", updatedSuperLevelRois,
                             "totalPreCount", totalPreCount,
                             "totalPostCount", totalPostCount
@@ -417,7 +878,25 @@ public class Neo4jImporter implements AutoCloseable {
             batch.writeTransaction();
         }
 
-        LOG.info("addSynapses: exit");
+    }
+
+    /**
+     * Recomputes the Meta node totalPreCount, totalPostCount and roiInfo with loader.recomputeMetaNodeSynapseCounts, in a single pass over
+     * the dataset's synapses. The roiInfo written after each synapse batch counts every synapse statement, including synapses that were
+     * already in the database (repeated in the input or added again by a resumed load), so this is called once all synapses are loaded.
+     *
+     * @param dataset dataset name
+     */
+    public void recomputeMetaNodeSynapseCounts(final String dataset) {
+
+        LOG.info("recomputeMetaNodeSynapseCounts: entry");
+
+        try (final TransactionBatch batch = getBatch()) {
+            batch.addStatement(new Statement("CALL loader.recomputeMetaNodeSynapseCounts($dataset)", parameters("dataset", dataset)));
+            batch.writeTransaction();
+        }
+
+        LOG.info("recomputeMetaNodeSynapseCounts: exit");
     }
 
     /**
@@ -431,47 +910,42 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("addSynapsesTo: entry");
 
-        // for some reason, both merge...on create set queries in the same statement results in one of them not executing properly.
-        // separating each statement to properly create synapses that may not have been previously added in addSynapses
-        final String preSynapseMergeText = "MERGE (s:`" + dataset + "-PreSyn`{location:$prelocation}) ON CREATE SET s.location = $prelocation, s.type=\"pre\", s.confidence=0.0, s.timeStamp=$timeStamp, s:Synapse, s:" + dataset + ", s:PreSyn, s:`" + dataset + "-PreSyn`, s:`" + dataset + "-Synapse`";
-        final String postSynapseMergeText = "MERGE (t:`" + dataset + "-PostSyn`{location:$postlocation}) ON CREATE SET t.location = $postlocation, t.timeStamp=$timeStamp, t.type=\"post\", t.confidence=0.0, t:Synapse, t:" + dataset + ", t:PostSyn, t:`" + dataset + "-PostSyn`, t:`" + dataset + "-Synapse`";
+        final ImportStatementTemplates templates = getTemplates(dataset);
 
-        final String synapseRelationsText = "MERGE (s:`" + dataset + "-PreSyn`{location:$prelocation}) SET s.timeStamp=$timeStamp \n" +
-                "MERGE (t:`" + dataset + "-PostSyn`{location:$postlocation}) SET t.timeStamp=$timeStamp \n" +
-                "MERGE (s)-[:SynapsesTo]->(t)";
-
-        try (final TransactionBatch batch = getBatch()) {
+        try (final TransactionBatch batch = getPartitionedBatch("addSynapsesTo")) {
+            // a presynaptic density usually has several connections; its merge statement is only needed once (statements
+            // for the same pre location are routed to the same session, so the first merge is committed before the rest)
+            final LongHashSet mergedPreLocations = new LongHashSet(synapticConnectionList.size());
             for (SynapticConnection connection : synapticConnectionList) {
-                batch.addStatement(new Statement(preSynapseMergeText,
-                        parameters(
-                                "prelocation", connection.getPreLocation().getAsPoint(),
-                                "timeStamp", timeStamp
-                        )
-                ));
-                batch.addStatement(new Statement(postSynapseMergeText,
+                final Location preLocation = connection.getPreLocation();
+                final Point prePoint = preLocation.getAsPoint();
+                final Point postPoint = connection.getPostLocation().getAsPoint();
+                if (!PackedLocation.fits(preLocation) || mergedPreLocations.add(PackedLocation.pack(preLocation))) {
+                    batch.addStatement(new Statement(templates.preSynapseMerge,
+                            parameters(
+                                    "prelocation", prePoint,
+                                    "timeStamp", timeStamp
+                            )
+                    ), preLocation);
+                }
+                batch.addStatement(new Statement(templates.postSynapseMerge,
                         parameters(
-                                "postlocation", connection.getPostLocation().getAsPoint(),
+                                "postlocation", postPoint,
                                 "timeStamp", timeStamp
                         )
-                ));
-                batch.addStatement(new Statement(synapseRelationsText,
+                ), preLocation);
+                batch.addStatement(new Statement(templates.synapseRelations,
                         parameters(
-                                "prelocation", connection.getPreLocation().getAsPoint(),
+                                "prelocation", prePoint,
                                 "timeStamp", timeStamp,
-                                "postlocation", connection.getPostLocation().getAsPoint()
+                                "postlocation", postPoint
                         )
-                ));
+                ), preLocation);
             }
             batch.writeTransaction();
         }
 
-        //delay to allow transactions to complete before taking count
         // note pre and post counts may have changed if synapses in the connections file were not listed in the synapses file
-        try {
-            TimeUnit.MILLISECONDS.sleep(10);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
-        }
 
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
                 "m.lastDatabaseEdit=$timeStamp," +
@@ -514,51 +988,16 @@ public class Neo4jImporter implements AutoCloseable {
                             final LocalDateTime timeStamp) {
         LOG.info("addSegments: entry");
 
-        String roiPropertyBaseString = " n.`%s` = TRUE,";
-
-        final String segmentText = "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) " +
-                "ON CREATE SET n.bodyId = $bodyId," +
-                " n:Segment," +
-                " n:" + dataset + "," +
-                " n.name = $name," +
-                " n.type = $type," +
-                " n.instance = $instance," +
-                " n.primaryNeurite = $primaryNeurite," +
-                " n.majorInput = $majorInput," +
-                " n.majorOutput = $majorOutput," +
-                " n.clonalUnit = $clonalUnit," +
-                " n.neurotransmitter = $neurotransmitter," +
-                " n.property = $property," +
-                " n.status = $status," +
-                " n.size = $size," +
-                " n.somaLocation = $somaLocation," +
-                " n.somaRadius = $somaRadius, " +
-                "%s" + //placeholder for roi properties
-                " n.timeStamp = $timeStamp";
-
-        final String synapseSetText = "MERGE (s:`" + dataset + "-SynapseSet`{datasetBodyId:$datasetBodyId}) ON CREATE SET s.datasetBodyId=$datasetBodyId, s.timeStamp=$timeStamp, s:SynapseSet, s:" + dataset + " \n";
-
-        final String segmentContainsSynapseSetText = "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) \n" +
-                "MERGE (s:`" + dataset + "-SynapseSet`{datasetBodyId:$datasetBodyId}) \n" +
-                "MERGE (n)-[:Contains]->(s)";
-
-        final String synapseSetContainsSynapseText = "MERGE (s:`" + dataset + "-Synapse`{location:$location}) \n" +
-                "MERGE (t:`" + dataset + "-SynapseSet`{datasetBodyId:$datasetBodyId}) \n" +
-                "MERGE (t)-[:Contains]->(s) \n";
+        final ImportStatementTemplates templates = getTemplates(dataset);
 
         final String metaNodeString = "MATCH (m:Meta{dataset:$dataset}) SET " +
                 "m.lastDatabaseEdit=$timeStamp";
 
-        try (final TransactionBatch batch = getBatch()) {
+        try (final TransactionBatch batch = getPartitionedBatch("addSegments")) {
             for (final Neuron neuron : neuronList) {
 
-                // accumulates super level rois
-                StringBuilder roiProperties = updateSuperRoisRoiInfoAndCreateRoiPropertyString(new HashSet<>(), new RoiInfo(), roiPropertyBaseString, neuron.getRois(), "none");
-
-                String segmentTextWithRois = String.format(segmentText, roiProperties.toString());
-
                 batch.addStatement(
-                        new Statement(segmentTextWithRois,
+                        new Statement(templates.segment,
                                 parameters(
                                         "bodyId", neuron.getId(),
                                         "name", neuron.getName(),
@@ -574,30 +1013,45 @@ public class Neo4jImporter implements AutoCloseable {
                                         "size", neuron.getSize(),
                                         "somaLocation", neuron.getSomaLocation(),
                                         "somaRadius", neuron.getSomaRadius(),
-                                        "timeStamp", timeStamp))
+                                        "roiProps", createRoiPropertyMap(neuron.getRois()),
+                                        "timeStamp", timeStamp)),
+                        neuron.getId()
                 );
 
                 if (neuron.getSynapseLocationSet().size() > 0) {
                     batch.addStatement(
-                            new Statement(synapseSetText,
+                            new Statement(templates.synapseSet,
                                     parameters(
                                             "datasetBodyId", dataset + ":" + neuron.getId(),
-                                            "timeStamp", timeStamp))
+                                            "timeStamp", timeStamp)),
+                            neuron.getId()
                     );
 
                     batch.addStatement(
-                            new Statement(segmentContainsSynapseSetText,
+                            new Statement(templates.segmentContainsSynapseSet,
                                     parameters(
                                             "bodyId", neuron.getId(),
-                                            "datasetBodyId", dataset + ":" + neuron.getId())));
-
-                    for (Location synapseLocation : neuron.getSynapseLocationSet()) {
-                        batch.addStatement(new Statement(synapseSetContainsSynapseText,
-                                parameters(
-                                        "location", synapseLocation.getAsPoint(),
-                                        "datasetBodyId", dataset + ":" + neuron.getId()
-                                )));
-
+                                            "datasetBodyId", dataset + ":" + neuron.getId())),
+                            neuron.getId());
+
+                    final String datasetBodyId = dataset + ":" + neuron.getId();
+                    if (neuron.getSynapseLocationSet() instanceof PackedLocationSet) {
+                        final PrimitiveIterator.OfLong packedLocations = ((PackedLocationSet) neuron.getSynapseLocationSet()).getPackedLocations().iterator();
+                        while (packedLocations.hasNext()) {
+                            batch.addStatement(new Statement(templates.synapseSetContainsSynapse,
+                                    parameters(
+                                            "location", PackedLocation.toPoint(packedLocations.nextLong()),
+                                            "datasetBodyId", datasetBodyId
+                                    )), neuron.getId());
+                        }
+                    } else {
+                        for (Location synapseLocation : neuron.getSynapseLocationSet()) {
+                            batch.addStatement(new Statement(templates.synapseSetContainsSynapse,
+                                    parameters(
+                                            "location", synapseLocation.getAsPoint(),
+                                            "datasetBodyId", datasetBodyId
+                                    )), neuron.getId());
+                        }
                     }
                 }
 
@@ -639,17 +1093,21 @@ public class Neo4jImporter implements AutoCloseable {
                                   final double preHPThreshold,
                                   final double postHPThreshold,
                                   final long neuronThreshold) {
-        final String addConnectionDetailsToSegment = "MATCH (n:`" + dataset + "-Segment`{bodyId:$bodyId})," +
-                "(ss:`" + dataset + "-SynapseSet`{datasetBodyId:$datasetBodyId})" +
-                " WITH n,ss CALL loader.addPropsAndConnectionInfoToSegment(n, ss, $dataset, $preHPThreshold, $postHPThreshold, $neuronThreshold, $addCSRoiInfoAndWeightHP) RETURN n.bodyId";
-        try (final TransactionBatch batch = getBatch()) {
-            int statementCount = 0;
-            for (final Neuron neuron : neuronList) {
+        final ImportStatementTemplates templates = getTemplates(dataset);
+        // Each procedure call adds connection info for connectionInfoStatementsPerTransaction segments, reading the Meta node once and
+        // writing each ConnectionSet touched by those segments once. This is much more work than other statements used during the load,
+        // so each call is committed in its own transaction (unless adaptive batching finds that more calls per transaction commit quickly).
+        // Commits are synchronous, so the next batch is not sent until the database has finished with the previous one.
+        try (final TransactionBatch batch = getBatch("addConnectionInfo", 1)) {
+            for (int start = 0; start < neuronList.size(); start += connectionInfoStatementsPerTransaction) {
+                final List<Long> bodyIds = new ArrayList<>();
+                for (final Neuron neuron : neuronList.subList(start, Math.min(start + connectionInfoStatementsPerTransaction, neuronList.size()))) {
+                    bodyIds.add(neuron.getId());
+                }
 
-                batch.addStatement(new Statement(addConnectionDetailsToSegment,
+                batch.addStatement(new Statement(templates.addConnectionDetailsToSegments,
                         parameters(
-                                "bodyId", neuron.getId(),
-                                "datasetBodyId", dataset + ":" + neuron.getId(),
+                                "bodyIds", bodyIds,
                                 "dataset", dataset,
                                 "preHPThreshold", preHPThreshold,
                                 "postHPThreshold", postHPThreshold,
@@ -657,37 +1115,194 @@ public class Neo4jImporter implements AutoCloseable {
                                 "addCSRoiInfoAndWeightHP", addConnectionSetRoiInfoAndWeightHP
                         )));
 
-                statementCount++;
+            }
+            batch.writeTransaction();
+        }
 
-                // This procedure call is more complicated than other statements used during the load, so generally needs a smaller batch size. This can be specified in the properties file or will default to 1/40th of the standard transaction size.
-                if (statementCount == this.connectionInfoStatementsPerTransaction) {
-                    batch.writeTransaction();
-                    statementCount = 0;
+    }
+
+    /**
+     * Writes connection information (ConnectsTo relationships, ConnectionSets, weight/weightHP, roiInfo and pre/post counts on Segments, :Neuron label)
+     * that was computed client-side by a {@link ConnectionInfoBuilder}. Produces the same graph as {@link #addConnectionInfo} but uses a
+     * handful of UNWIND statements instead of one loader.addPropsAndConnectionInfoToSegment call per segment. Segments, synapses and synapse
+     * sets must already be in the database. loader.addPropsAndConnectionInfoToSegment is still the way to add connection information for
+     * segments added incrementally to an existing database.
+     * <p>
+     * If the builder computed roiInfoBinary, it is written alongside roiInfo and the builder's {@link RoiDictionary} is stored on the
+     * Meta node as roiDictionary. roiInfoBinary is skipped if the Meta node already has a roiDictionary that assigns different ids.
+     *
+     * @param dataset               dataset name
+     * @param connectionInfoBuilder {@link ConnectionInfoBuilder} on which build() has been called
+     * @param timeStamp             time stamp for load
+     */
+    public void addPrecomputedConnectionInfo(final String dataset,
+                                             final ConnectionInfoBuilder connectionInfoBuilder,
+                                             final LocalDateTime timeStamp) {
+
+        LOG.info("addPrecomputedConnectionInfo: entry");
+
+        final boolean addRoiInfoBinary = connectionInfoBuilder.isAddRoiInfoBinary() && saveRoiDictionary(dataset, connectionInfoBuilder.getRoiDictionary());
+        final ImportStatementTemplates templates = getTemplates(dataset);
+        final String segmentPropertiesUnwindText = addRoiInfoBinary ? templates.segmentPropertiesWithRoiInfoBinaryUnwind : templates.segmentPropertiesUnwind;
+        final String connectionSetUnwindText = addRoiInfoBinary ? templates.connectionSetWithRoiInfoBinaryUnwind : templates.connectionSetUnwind;
+
+        final List<ConnectionInfoBuilder.SegmentInfo> segmentInfos = connectionInfoBuilder.getSegmentInfos();
+
+        // the segment row and the neuron row for a body touch the same node, so rows are partitioned by bodyId and each partition's
+        // statements are routed by the partition; statements for different bodies can then be spread across sessions
+        try (final TransactionBatch batch = getPartitionedBatch("addPrecomputedConnectionInfo")) {
+            final int partitionCount = Math.max(parallelism, 1);
+            final List<List<Map<String, Object>>> segmentRowsByPartition = new ArrayList<>(partitionCount);
+            final List<List<Map<String, Object>>> neuronRowsByPartition = new ArrayList<>(partitionCount);
+            for (int i = 0; i < partitionCount; i++) {
+                segmentRowsByPartition.add(new ArrayList<>());
+                neuronRowsByPartition.add(new ArrayList<>());
+            }
+            for (final ConnectionInfoBuilder.SegmentInfo segmentInfo : segmentInfos) {
+                final int partition = Math.floorMod(Long.hashCode(segmentInfo.getBodyId()), partitionCount);
+                if (segmentInfo.hasSynapses()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("bodyId", segmentInfo.getBodyId());
+                    row.put("pre", segmentInfo.getPre());
+                    row.put("post", segmentInfo.getPost());
+                    row.put("roiInfo", segmentInfo.getRoiInfo().getAsJsonString());
+                    if (addRoiInfoBinary) {
+                        row.put("roiInfoBinary", segmentInfo.getRoiInfoBinary());
+                    }
+                    row.put("rois", createRoiPropertyMap(segmentInfo.getRoiInfo().getSetOfRois()));
+                    final List<Map<String, Object>> segmentRows = segmentRowsByPartition.get(partition);
+                    segmentRows.add(row);
+                    if (segmentRows.size() == statementsPerTransaction) {
+                        batch.addStatement(new Statement(segmentPropertiesUnwindText, parameters("rows", segmentRows)), partition);
+                        segmentRowsByPartition.set(partition, new ArrayList<>());
+                    }
                 }
-                //delay to allow transactions to complete to prevent blocking
-                try {
-                    TimeUnit.MILLISECONDS.sleep(2);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+                if (segmentInfo.isNeuron()) {
+                    Map<String, Object> row = new HashMap<>();
+                    row.put("bodyId", segmentInfo.getBodyId());
+                    row.put("clusterName", segmentInfo.getClusterName());
+                    final List<Map<String, Object>> neuronRows = neuronRowsByPartition.get(partition);
+                    neuronRows.add(row);
+                    if (neuronRows.size() == statementsPerTransaction) {
+                        batch.addStatement(new Statement(templates.neuronUnwind, parameters("rows", neuronRows)), partition);
+                        neuronRowsByPartition.set(partition, new ArrayList<>());
+                    }
                 }
+            }
+            for (int partition = 0; partition < partitionCount; partition++) {
+                if (segmentRowsByPartition.get(partition).size() > 0) {
+                    batch.addStatement(new Statement(segmentPropertiesUnwindText, parameters("rows", segmentRowsByPartition.get(partition))), partition);
+                }
+                if (neuronRowsByPartition.get(partition).size() > 0) {
+                    batch.addStatement(new Statement(templates.neuronUnwind, parameters("rows", neuronRowsByPartition.get(partition))), partition);
+                }
+            }
+            batch.writeTransaction();
+        }
+
+        // ConnectsTo relationships lock both of their segments, so connection sets are written by a single session to avoid deadlocks.
+        // These statements do much more work per row than the segment statements, so rows are grouped in chunks of connectionInfoStatementsPerTransaction.
+        try (final TransactionBatch batch = getBatch()) {
+            List<Map<String, Object>> connectionSetRows = new ArrayList<>();
+            for (final ConnectionInfoBuilder.ConnectionSetInfo connectionSet : connectionInfoBuilder.getConnectionSets()) {
+                List<Object> preLocations = new ArrayList<>();
+                List<Object> postLocations = new ArrayList<>();
+                for (final int synapseId : connectionSet.getSynapseIds()) {
+                    if (connectionInfoBuilder.getSynapseType(synapseId).equals("pre")) {
+                        preLocations.add(connectionInfoBuilder.getSynapseLocation(synapseId).getAsPoint());
+                    } else {
+                        postLocations.add(connectionInfoBuilder.getSynapseLocation(synapseId).getAsPoint());
+                    }
+                }
+
+                Map<String, Object> row = new HashMap<>();
+                row.put("preBodyId", connectionSet.getPreBodyId());
+                row.put("postBodyId", connectionSet.getPostBodyId());
+                row.put("datasetBodyIds", dataset + ":" + connectionSet.getPreBodyId() + ":" + connectionSet.getPostBodyId());
+                row.put("weight", connectionSet.getWeight());
+                row.put("weightHP", connectionSet.getWeightHP());
+                row.put("roiInfo", connectionSet.getRoiInfo());
+                if (addRoiInfoBinary) {
+                    row.put("roiInfoBinary", connectionSet.getRoiInfoBinary());
+                }
+                row.put("preLocations", preLocations);
+                row.put("postLocations", postLocations);
+                connectionSetRows.add(row);
 
+                if (connectionSetRows.size() == connectionInfoStatementsPerTransaction) {
+                    addConnectionSetStatements(batch, connectionSetUnwindText, templates.connectionSetContainsPostUnwind, connectionSetRows, timeStamp);
+                    connectionSetRows = new ArrayList<>();
+                }
+            }
+            if (connectionSetRows.size() > 0) {
+                addConnectionSetStatements(batch, connectionSetUnwindText, templates.connectionSetContainsPostUnwind, connectionSetRows, timeStamp);
             }
+        }
+
+        LOG.info("addPrecomputedConnectionInfo: exit");
+    }
+
+    /**
+     * Stores a {@link RoiDictionary} on the Meta node as roiDictionary, unless the Meta node already has one that is not a prefix of
+     * it (ids in existing roiInfoBinary properties must not change).
+     *
+     * @return true if the dictionary was stored
+     */
+    private boolean saveRoiDictionary(final String dataset, final RoiDictionary roiDictionary) {
+        final List<String> names = Arrays.asList(roiDictionary.getNames());
+        List<String> storedNames;
+        try (Session session = driver.session()) {
+            storedNames = session.readTransaction(tx -> getMetaNodeRoiDictionary(tx, dataset));
+        }
+        if (storedNames.size() > names.size() || !storedNames.equals(names.subList(0, storedNames.size()))) {
+            LOG.warn("addPrecomputedConnectionInfo: Meta node roiDictionary for {} assigns different ids to ROIs; roiInfoBinary will not be written.", dataset);
+            return false;
+        }
+        try (final TransactionBatch batch = getBatch()) {
+            batch.addStatement(new Statement("MATCH (m:Meta{dataset:$dataset}) SET m.roiDictionary=$roiDictionary",
+                    parameters("dataset", dataset, "roiDictionary", names)));
             batch.writeTransaction();
         }
+        return true;
+    }
 
+    private void addConnectionSetStatements(final TransactionBatch batch,
+                                            final String connectionSetUnwindText,
+                                            final String connectionSetContainsPostUnwindText,
+                                            final List<Map<String, Object>> connectionSetRows,
+                                            final LocalDateTime timeStamp) {
+        batch.addStatement(new Statement(connectionSetUnwindText, parameters("rows", connectionSetRows, "timeStamp", timeStamp)));
+        batch.addStatement(new Statement(connectionSetContainsPostUnwindText, parameters("rows", connectionSetRows)));
+        // commit each chunk on its own so a transaction holds at most connectionInfoStatementsPerTransaction connection sets
+        batch.writeTransaction();
     }
 
-    StringBuilder updateSuperRoisRoiInfoAndCreateRoiPropertyString(Set<String> datasetSuperLevelRois, RoiInfo datasetRoiInfo, String roiPropertyBaseString, Set<String> synapseOrNeuronRois, String synapseType) {
-        StringBuilder roiProperties = new StringBuilder();
-        if (synapseOrNeuronRois != null && synapseOrNeuronRois.size() > 0) {
-            datasetSuperLevelRois.add(synapseOrNeuronRois.iterator().next()); // first listed roi will be a "super" roi
-            for (String roi : synapseOrNeuronRois) {
-                roiProperties.append(String.format(roiPropertyBaseString, roi));
-                if (synapseType.equals("pre")) {
-                    datasetRoiInfo.incrementPreForRoi(roi);
-                } else if (synapseType.equals("post")) {
-                    datasetRoiInfo.incrementPostForRoi(roi);
-                }
+    /**
+     * Adds the first listed roi of a synapse to the super level rois and, unless the synapse is at the same location as an earlier synapse
+     * in the batch, counts the synapse in each of its rois.
+     */
+    private static void countSynapseRois(final Synapse synapse, final boolean firstAtLocation, final RoiDictionary roiDictionary, final RoiCounts roiCounts, final Set<String> superLevelRois) {
+        final RoiSet rois = roiDictionary.getRoiSet(synapse.getRois());
+        if (rois.getSuperLevelRoiId() >= 0) {
+            superLevelRois.add(roiDictionary.getName(rois.getSuperLevelRoiId())); // first listed roi will be a "super" roi
+        }
+        if (firstAtLocation) {
+            if (synapse.getType().equals("pre")) {
+                roiCounts.incrementPre(rois);
+            } else if (synapse.getType().equals("post")) {
+                roiCounts.incrementPost(rois);
+            }
+        }
+    }
+
+    /**
+     * Returns a map with a TRUE value for each roi, to be applied to a node with {@code SET n += $roiProps}.
+     */
+    private static Map<String, Object> createRoiPropertyMap(final Set<String> rois) {
+        final Map<String, Object> roiProperties = new HashMap<>();
+        if (rois != null) {
+            for (final String roi : rois) {
+                roiProperties.put(roi, true);
             }
         }
         return roiProperties;
@@ -706,43 +1321,30 @@ public class Neo4jImporter implements AutoCloseable {
 
         LOG.info("addSkeletonNodes: entry");
 
-        final String segmentMergeString = "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) ON CREATE SET " +
-                "n.bodyId=$bodyId, " +
-                "n.timeStamp=$timeStamp, " +
-                "n:Segment, " +
-                "n:" + dataset;
-
-        final String segmentToSkeletonConnectionString = "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:$skeletonId}) ON CREATE SET r.skeletonId=$skeletonId, r.timeStamp=$timeStamp, r:Skeleton, r:" + dataset + " \n" +
-                "MERGE (n:`" + dataset + "-Segment`{bodyId:$bodyId}) \n" +
-                "MERGE (n)-[:Contains]->(r) \n";
-
-        final String parentNodeString = "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:$parentSkelNodeId}) ON CREATE SET p.skelNodeId=$parentSkelNodeId, p.location=$pLocation, p.radius=$pRadius, p.rowNumber=$pRowNumber, p.type=$pType, p.timeStamp=$timeStamp, p:SkelNode, p:" + dataset + " \n" +
-                "MERGE (r:`" + dataset + "-Skeleton`{skeletonId:$skeletonId}) \n" +
-                "MERGE (r)-[:Contains]->(p) ";
+        final ImportStatementTemplates templates = getTemplates(dataset);
 
-        final String childNodeString = "MERGE (c:`" + dataset + "-SkelNode`{skelNodeId:$childNodeId}) ON CREATE SET c.skelNodeId=$childNodeId, c.location=$childLocation, c.radius=$childRadius, c.rowNumber=$childRowNumber, c.type=$childType, c.timeStamp=$timeStamp, c:SkelNode, c:" + dataset + " \n" +
-                "MERGE (p:`" + dataset + "-SkelNode`{skelNodeId:$parentSkelNodeId}) \n" +
-                "MERGE (p)-[:LinksTo]-(c)";
+        final long startNanos = System.nanoTime();
+        long skelNodeCount = 0;
 
-        try (final TransactionBatch batch = getBatch()) {
+        try (final TransactionBatch batch = getPartitionedBatch("addSkeletonNodes")) {
             for (Skeleton skeleton : skeletonList) {
 
                 Long associatedBodyId = skeleton.getAssociatedBodyId();
                 List<SkelNode> skelNodeList = skeleton.getSkelNodeList();
 
-                batch.addStatement(new Statement(segmentMergeString, parameters(
+                batch.addStatement(new Statement(templates.skeletonSegmentMerge, parameters(
                         "bodyId", associatedBodyId,
                         "timeStamp", timeStamp
-                )));
+                )), associatedBodyId);
 
-                batch.addStatement(new Statement(segmentToSkeletonConnectionString, parameters("bodyId", associatedBodyId,
+                batch.addStatement(new Statement(templates.segmentToSkeletonConnection, parameters("bodyId", associatedBodyId,
                         "skeletonId", dataset + ":" + associatedBodyId,
                         "timeStamp", timeStamp
-                )));
+                )), associatedBodyId);
 
                 for (SkelNode skelNode : skelNodeList) {
 
-                    batch.addStatement(new Statement(parentNodeString, parameters(
+                    batch.addStatement(new Statement(templates.skelNodeParent, parameters(
                             "pLocation", skelNode.getLocationAsPoint(),
                             "pRadius", skelNode.getRadius(),
                             "skeletonId", dataset + ":" + associatedBodyId,
@@ -750,11 +1352,11 @@ public class Neo4jImporter implements AutoCloseable {
                             "pRowNumber", skelNode.getRowNumber(),
                             "pType", skelNode.getType(),
                             "timeStamp", timeStamp
-                    )));
+                    )), associatedBodyId);
 
                     for (SkelNode childSkelNode : skelNode.getChildren()) {
                         String childNodeId = childSkelNode.getSkelNodeId(dataset);
-                        batch.addStatement(new Statement(childNodeString, parameters(
+                        batch.addStatement(new Statement(templates.skelNodeChild, parameters(
                                 "parentSkelNodeId", skelNode.getSkelNodeId(dataset),
                                 "skeletonId", dataset + ":" + associatedBodyId,
                                 "pLocation", skelNode.getLocationAsPoint(),
@@ -767,14 +1369,101 @@ public class Neo4jImporter implements AutoCloseable {
                                 "childRadius", childSkelNode.getRadius(),
                                 "childRowNumber", childSkelNode.getRowNumber(),
                                 "childType", childSkelNode.getType()
-                        )));
+                        )), associatedBodyId);
                     }
                 }
+                skelNodeCount += skelNodeList.size();
                 LOG.info("Added full skeleton for bodyId: " + skeleton.getAssociatedBodyId());
             }
             batch.writeTransaction();
         }
-        LOG.info("addSkeletonNodes: exit");
+
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        LOG.info("addSkeletonNodes: exit, wrote {} SkelNodes for {} skeletons in {} s ({} SkelNodes/s)",
+                skelNodeCount, skeletonList.size(), String.format("%.1f", elapsedSeconds), String.format("%.0f", skelNodeCount / Math.max(elapsedSeconds, 1e-9)));
+    }
+
+    /**
+     * Adds Skeleton and SkelNode nodes to database using one statement per skeleton. Produces the same graph as
+     * {@link #addSkeletonNodes}. The statement merges the Segment and Skeleton, then unwinds a list of SkelNode rows
+     * and a list of LinksTo pairs. The pairs are keyed by row number: each pair holds the positions of the parent and
+     * child within the SkelNode rows ordered by row number, so the SkelNodes do not need to be looked up again.
+     * Each SkelNode is merged once, rather than once for itself and once for each of its children.
+     *
+     * @param dataset      dataset name
+     * @param skeletonList list of {@link Skeleton} objects
+     * @param timeStamp    time of data load
+     */
+    public void addSkeletonNodesUsingUnwind(final String dataset, final List<Skeleton> skeletonList, final LocalDateTime timeStamp) {
+
+        LOG.info("addSkeletonNodesUsingUnwind: entry");
+
+        final ImportStatementTemplates templates = getTemplates(dataset);
+
+        final long startNanos = System.nanoTime();
+        long skelNodeCount = 0;
+
+        try (final TransactionBatch batch = getPartitionedBatch("addSkeletonNodesUsingUnwind")) {
+            for (final Skeleton skeleton : skeletonList) {
+
+                final Long associatedBodyId = skeleton.getAssociatedBodyId();
+                final SkeletonColumns skelNodes = skeleton.getSkeletonColumns();
+
+                // order by row number, which is almost always file order already
+                final int[] order = new int[skelNodes.size()];
+                boolean sorted = true;
+                for (int i = 0; i < order.length; i++) {
+                    order[i] = i;
+                    sorted &= i == 0 || skelNodes.getRowNumber(i - 1) <= skelNodes.getRowNumber(i);
+                }
+                if (!sorted) {
+                    final Integer[] boxedOrder = new Integer[order.length];
+                    for (int i = 0; i < order.length; i++) {
+                        boxedOrder[i] = i;
+                    }
+                    Arrays.sort(boxedOrder, Comparator.comparingInt(skelNodes::getRowNumber));
+                    for (int i = 0; i < order.length; i++) {
+                        order[i] = boxedOrder[i];
+                    }
+                }
+
+                final int[] positionOfSkelNode = new int[order.length];
+                final List<Map<String, Object>> rows = new ArrayList<>(order.length);
+                for (final int i : order) {
+                    positionOfSkelNode[i] = rows.size();
+                    final Map<String, Object> row = new HashMap<>();
+                    row.put("skelNodeId", skelNodes.getSkelNodeId(dataset, associatedBodyId, i));
+                    row.put("location", skelNodes.getLocationAsPoint(i));
+                    row.put("radius", skelNodes.getRadius(i));
+                    row.put("rowNumber", skelNodes.getRowNumber(i));
+                    row.put("type", skelNodes.getType(i));
+                    rows.add(row);
+                }
+
+                final List<List<Integer>> links = new ArrayList<>(order.length);
+                for (final int i : order) {
+                    final int parent = skelNodes.getParent(i);
+                    if (parent != -1) {
+                        links.add(Arrays.asList(positionOfSkelNode[parent], positionOfSkelNode[i]));
+                    }
+                }
+
+                batch.addStatement(new Statement(templates.skeletonUnwind, parameters(
+                        "bodyId", associatedBodyId,
+                        "skeletonId", dataset + ":" + associatedBodyId,
+                        "timeStamp", timeStamp,
+                        "rows", rows,
+                        "links", links
+                )), associatedBodyId);
+
+                skelNodeCount += rows.size();
+            }
+            batch.writeTransaction();
+        }
+
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        LOG.info("addSkeletonNodesUsingUnwind: exit, wrote {} SkelNodes for {} skeletons in {} s ({} SkelNodes/s)",
+                skelNodeCount, skeletonList.size(), String.format("%.1f", elapsedSeconds), String.format("%.0f", skelNodeCount / Math.max(elapsedSeconds, 1e-9)));
     }
 
     /**
@@ -869,6 +1558,20 @@ public class Neo4jImporter implements AutoCloseable {
         return roiSet;
     }
 
+    private static List<String> getMetaNodeRoiDictionary(final Transaction tx, final String dataset) {
+        StatementResult result = tx.run("MATCH (m:Meta{dataset:$dataset}) RETURN m.roiDictionary AS roiDictionary", parameters("dataset", dataset));
+        List<String> names = new ArrayList<>();
+        if (result.hasNext()) {
+            List<?> resultList = (List<?>) result.next().asMap().get("roiDictionary");
+            if (resultList != null) {
+                for (Object aResult : resultList) {
+                    names.add((String) aResult);
+                }
+            }
+        }
+        return names;
+    }
+
     private static RoiInfo getMetaNodeRoiInfo(final Transaction tx, final String dataset) {
         StatementResult result = tx.run("MATCH (m:Meta{dataset:\"" + dataset + "\"}) WITH m.roiInfo AS roiInfo RETURN roiInfo");
         String roiInfoString = (String) result.next().asMap().get("roiInfo");
@@ -885,16 +1588,6 @@ public class Neo4jImporter implements AutoCloseable {
         return (long) result.next().asMap().get("count(n)");
     }
 
-    private static long getRoiPreCount(final Transaction tx, final String dataset, final String roi) {
-        StatementResult result = tx.run("MATCH (n:`" + dataset + "-PreSyn`{`" + roi + "`:true}) RETURN count(n)");
-        return (long) result.next().asMap().get("count(n)");
-    }
-
-    private static long getRoiPostCount(final Transaction tx, final String dataset, final String roi) {
-        StatementResult result = tx.run("MATCH (n:`" + dataset + "-PostSyn`{`" + roi + "`:true}) RETURN count(n)");
-        return (long) result.next().asMap().get("count(n)");
-    }
-
     private static SortedSet<Map.Entry<String, SynapseCounter>> entriesSortedByComparator(Map<String, SynapseCounter> map, Comparator<Map.Entry<String, SynapseCounter>> comparator) {
         SortedSet<Map.Entry<String, SynapseCounter>> sortedEntries = new TreeSet<>(comparator);
         sortedEntries.addAll(map.entrySet());
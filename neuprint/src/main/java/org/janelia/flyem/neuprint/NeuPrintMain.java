@@ -6,26 +6,39 @@ import com.beust.jcommander.ParameterException;
 import com.beust.jcommander.Parameters;
 import com.google.common.base.Stopwatch;
 import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.binary.BinaryInputFile;
+import org.janelia.flyem.neuprint.binary.BinaryInputWriter;
+import org.janelia.flyem.neuprint.db.CommitLog;
 import org.janelia.flyem.neuprint.db.DbConfig;
+import org.janelia.flyem.neuprint.io.CompressedInput;
 import org.janelia.flyem.neuprint.json.JsonUtils;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
 import org.janelia.flyem.neuprint.model.MetaInfo;
 import org.janelia.flyem.neuprint.model.Neuron;
 import org.janelia.flyem.neuprint.model.Skeleton;
 import org.janelia.flyem.neuprint.model.Synapse;
 import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.time.LocalDateTime;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 /**
  * The NeuPrintMain class implements an application that loads neuron and synapse
@@ -43,23 +56,22 @@ public class NeuPrintMain {
 
         @Parameter(
                 names = "--dbProperties",
-                description = "Properties file containing database information (required)",
-                required = true)
+                description = "Properties file containing database information (required unless --csvOutputDirectory is specified)")
         String dbProperties;
 
         @Parameter(
                 names = "--synapseJson",
-                description = "JSON file containing body synapse data to import")
+                description = "JSON file containing body synapse data to import (may be gzip or zstd compressed)")
         String synapseJson;
 
         @Parameter(
                 names = "--connectionJson",
-                description = "Path to JSON file containing synaptic connections.")
+                description = "Path to JSON file containing synaptic connections (may be gzip or zstd compressed).")
         String connectionJson;
 
         @Parameter(
                 names = "--neuronJson",
-                description = "JSON file containing neuron data to import")
+                description = "JSON file containing neuron data to import (may be gzip or zstd compressed)")
         String neuronJson;
 
         @Parameter(
@@ -123,7 +135,7 @@ public class NeuPrintMain {
 
         @Parameter(
                 names = "--skeletonDirectory",
-                description = "Path to directory containing skeleton files for this dataset")
+                description = "Path to directory containing skeleton files for this dataset (.swc, .swc.gz or .swc.zst)")
         String skeletonDirectory;
 
         @Parameter(
@@ -145,6 +157,96 @@ public class NeuPrintMain {
                 arity = 1)
         boolean addClusterNames = true;
 
+        @Parameter(
+                names = "--useUnwindForSynapses",
+                description = "Write synapses with UNWIND statements over batched list parameters rather than one statement per synapse. (omit to use one statement per synapse)",
+                arity = 0)
+        boolean useUnwindForSynapses;
+
+        @Parameter(
+                names = "--useUnwindForSkeletons",
+                description = "Write each skeleton with one UNWIND statement over its SkelNodes and LinksTo edges rather than one statement per SkelNode and per edge. (omit to use one statement per SkelNode and per edge)",
+                arity = 0)
+        boolean useUnwindForSkeletons;
+
+        @Parameter(
+                names = "--swcParseThreads",
+                description = "Number of threads used to parse swc files (default is the number of available processors)"
+        )
+        int swcParseThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(
+                names = "--pipelineQueueDepth",
+                description = "If > 0, batched loads parse the next batches on a separate thread while the current batch is committed, holding at most this many parsed batches in memory. (default is 0)"
+        )
+        int pipelineQueueDepth;
+
+        @Parameter(
+                names = "--precomputeConnectionInfo",
+                description = "Compute ConnectsTo weights, ConnectionSets, roiInfo, pre/post counts and :Neuron labels client-side and write them with bulk UNWIND statements rather than calling loader.addPropsAndConnectionInfoToSegment for each neuron. Requires --synapseJson, --connectionJson and --neuronJson. (omit to use the procedure)",
+                arity = 0)
+        boolean precomputeConnectionInfo;
+
+        @Parameter(
+                names = "--addRoiInfoBinary",
+                description = "Also write roiInfo as a compact binary roiInfoBinary property on Segments and ConnectionSets, keyed by a roiDictionary stored on the Meta node. Proofreading procedures update roiInfoBinary without parsing roiInfo JSON. Requires --precomputeConnectionInfo. (omit to write only roiInfo JSON)",
+                arity = 0)
+        boolean addRoiInfoBinary;
+
+        @Parameter(
+                names = "--deadLetterFile",
+                description = "If specified, a transaction that fails to commit is split in half and retried until the failing statements are isolated. These statements are appended to this file as JSON lines and the rest of the transaction is committed. (omit to stop the load on the first failed transaction)"
+        )
+        String deadLetterFile;
+
+        @Parameter(
+                names = "--checkpointFile",
+                description = "If specified, batched loads (--synapseBatchSize, --connectionBatchSize, --neuronBatchSize, --skeletonBatchSize) record each committed batch in this file so that an interrupted load can be resumed with --resume."
+        )
+        String checkpointFile;
+
+        @Parameter(
+                names = "--resume",
+                description = "Resume an interrupted load from --checkpointFile, skipping input records that were already committed. Must be run with the same input files and batch options. (omit to start the load from the beginning)",
+                arity = 0)
+        boolean resume;
+
+        @Parameter(
+                names = "--csvOutputDirectory",
+                description = "If specified, neo4j-admin import CSV files are written to this directory instead of loading the database. ConnectsTo weights, ConnectionSets, roiInfo, and the Meta node are precomputed."
+        )
+        String csvOutputDirectory;
+
+        @Parameter(
+                names = "--csvThreads",
+                description = "Number of threads used to write CSV files and parse swc files when --csvOutputDirectory or --storeDirectory is specified (default is the number of available processors)"
+        )
+        int csvThreads = Runtime.getRuntime().availableProcessors();
+
+        @Parameter(
+                names = "--binaryOutputFile",
+                description = "If specified, --synapseJson, --connectionJson and --neuronJson are converted to a memory-mapped binary input file at this path instead of loading the database. Neuron properties other than bodyId and synapse set are not converted."
+        )
+        String binaryOutputFile;
+
+        @Parameter(
+                names = "--binaryInputFile",
+                description = "Binary input file written with --binaryOutputFile. Synapses and connections are loaded from it instead of --synapseJson and --connectionJson, and --precomputeConnectionInfo reads synapses, connections and neuron synapse sets from it. --neuronJson is still needed to load neuron properties."
+        )
+        String binaryInputFile;
+
+        @Parameter(
+                names = "--storeDirectory",
+                description = "If specified, a new neo4j database directory (e.g. data/databases/graph.db) is written directly with the embedded batch inserter instead of loading the database through Bolt. The directory must not exist or be empty and must not be in use by a running server. ConnectsTo weights, ConnectionSets, roiInfo, and the Meta node are precomputed."
+        )
+        String storeDirectory;
+
+        @Parameter(
+                names = "--storePageCacheMemory",
+                description = "Page cache size used while writing --storeDirectory, e.g. 4g (default is the neo4j default)"
+        )
+        String storePageCacheMemory;
+
         @Parameter(
                 names = "--help",
                 help = true)
@@ -174,7 +276,7 @@ public class NeuPrintMain {
      */
     public static List<Neuron> readNeuronsJson(String filepath) {
         List<Neuron> neuronList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        try (BufferedReader reader = new BufferedReader(CompressedInput.openReader(filepath))) {
             neuronList = Neuron.fromJson(reader);
             LOG.info(String.format("Loaded %d neurons/segments from JSON.", neuronList.size()));
         } catch (Exception e) {
@@ -186,49 +288,69 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Loads neurons from a neurons JSON file in batches, adding connection info for each batch unless
+     * {@link BatchLoadOptions#addConnectionInfo} is false.
+     *
+     * @param filepath            path to neurons JSON file
+     * @param neuronBatchSize     number of neurons per batch
+     * @param neo4jImporter       importer
+     * @param databaseInitialized if false, the database is initialized for the dataset before loading
+     * @param options             load options
+     */
     public static void loadNeuronJsonInBatches(String filepath,
                                                int neuronBatchSize,
                                                Neo4jImporter neo4jImporter,
-                                               String dataset,
                                                boolean databaseInitialized,
-                                               float dataModelVersion,
-                                               double preHPThreshold,
-                                               double postHPThreshold,
-                                               long neuronThreshold,
-                                               boolean addConnectionSetRoiInfoAndWeightHP,
-                                               boolean addClusterNames,
-                                               LocalDateTime timeStamp) {
+                                               BatchLoadOptions options) {
+
+        final String dataset = options.getDataset();
+        final double preHPThreshold = options.getPreHPThreshold();
+        final double postHPThreshold = options.getPostHPThreshold();
+        final long neuronThreshold = options.getNeuronThreshold();
+        final boolean addConnectionSetRoiInfoAndWeightHP = options.getAddConnectionSetRoiInfoAndWeightHP();
+        final boolean addConnectionInfo = options.getAddConnectionInfo();
+        final CheckpointJournal checkpointJournal = options.getCheckpointJournal();
+        final LocalDateTime timeStamp = options.getTimeStamp();
+
+        final String phase = "loadNeuronJsonInBatches";
+        final String inputFile = new File(filepath).getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
         if (!databaseInitialized) {
-            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+            initializeDatabase(neo4jImporter, dataset, options.getDataModelVersion(), options.getPreHPThreshold(), options.getPostHPThreshold(), options.getAddConnectionSetRoiInfoAndWeightHP(), options.getAddClusterNames(), timeStamp);
 
         }
 
         LOG.info(String.format("Loading neurons in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(filepath))) {
             reader.beginArray();
-            while (reader.hasNext()) {
-                List<Neuron> neuronList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
-                    i++;
-                }
+            final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+            final long[] committedRecords = {skipCommittedRecords(reader, checkpointJournal, phase, inputFile)};
+            new BatchPipeline<Neuron>(phase, options.getPipelineQueueDepth()).run(
+                    () -> readNeuronBatch(reader, decoder, neuronBatchSize),
+                    neuronList -> {
+                        timer.start();
+                        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+                        LOG.info(String.format("Loading batch of neurons took: %s", timer.stop()));
+                        timer.reset();
 
-                timer.start();
-                neo4jImporter.addSegments(dataset, neuronList, timeStamp);
-                LOG.info(String.format("Loading batch of neurons took: %s", timer.stop()));
-                timer.reset();
+                        if (addConnectionInfo) {
+                            timer.start();
+                            neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+                            LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
+                            timer.reset();
+                        }
 
-                timer.start();
-                neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
-                LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
-                timer.reset();
-            }
+                        committedRecords[0] += neuronList.size();
+                        recordBatch(checkpointJournal, phase, inputFile, committedRecords[0]);
+                    });
+            recordComplete(checkpointJournal, phase, inputFile);
 
         } catch (IOException e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -250,6 +372,29 @@ public class NeuPrintMain {
             boolean addConnectionSetRoiInfoAndWeightHP,
             boolean addClusterNames,
             LocalDateTime timeStamp) {
+        loadConnectionInfoInBatches(filepath, neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, null, timeStamp);
+    }
+
+    public static void loadConnectionInfoInBatches(
+            String filepath,
+            int neuronBatchSize,
+            Neo4jImporter neo4jImporter,
+            String dataset,
+            boolean databaseInitialized,
+            float dataModelVersion,
+            double preHPThreshold,
+            double postHPThreshold,
+            long neuronThreshold,
+            boolean addConnectionSetRoiInfoAndWeightHP,
+            boolean addClusterNames,
+            CheckpointJournal checkpointJournal,
+            LocalDateTime timeStamp) {
+
+        final String phase = "loadConnectionInfoInBatches";
+        final String inputFile = new File(filepath).getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
@@ -260,22 +405,21 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading neuron json (connection info only) in batches of size %d", neuronBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(filepath))) {
             reader.beginArray();
-            while (reader.hasNext()) {
-                List<Neuron> neuronList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < neuronBatchSize) {
-                    Neuron neuron = Neuron.fromJsonSingleObject(reader);
-                    neuronList.add(neuron);
-                    i++;
-                }
-
+            final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+            long committedRecords = skipCommittedRecords(reader, checkpointJournal, phase, inputFile);
+            List<Neuron> neuronList;
+            while (!(neuronList = readNeuronBatch(reader, decoder, neuronBatchSize)).isEmpty()) {
                 timer.start();
                 neo4jImporter.addConnectionInfo(dataset, neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
                 LOG.info(String.format("Loading all connection info for batch took: %s", timer.stop()));
                 timer.reset();
+
+                committedRecords += neuronList.size();
+                recordBatch(checkpointJournal, phase, inputFile, committedRecords);
             }
+            recordComplete(checkpointJournal, phase, inputFile);
 
         } catch (IOException e) {
             LOG.error("Error reading neurons JSON: " + e);
@@ -284,6 +428,233 @@ public class NeuPrintMain {
 
     }
 
+    private static List<Neuron> readNeuronBatch(JsonReader reader, StreamingJsonDecoder decoder, int neuronBatchSize) throws IOException {
+        List<Neuron> neuronList = new ArrayList<>();
+        int i = 0;
+        while (reader.hasNext() && i < neuronBatchSize) {
+            Neuron neuron = decoder.nextNeuron(reader);
+            neuronList.add(neuron);
+            i++;
+        }
+        return neuronList;
+    }
+
+    private static boolean isPhaseComplete(CheckpointJournal checkpointJournal, String phase, String inputFile) {
+        if (checkpointJournal != null && checkpointJournal.isComplete(phase, inputFile)) {
+            LOG.info(String.format("Skipping %s of %s: already complete according to checkpoint journal", phase, inputFile));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Skips the records in the JSON array that were committed by a previous (interrupted) load.
+     *
+     * @param reader            reader positioned inside the JSON array
+     * @param checkpointJournal journal of committed batches (may be null)
+     * @param phase             name of load phase
+     * @param inputFile         input file for the phase
+     * @return number of records skipped
+     * @throws IOException if the input cannot be read
+     */
+    private static long skipCommittedRecords(JsonReader reader, CheckpointJournal checkpointJournal, String phase, String inputFile) throws IOException {
+        final long committedRecords = (checkpointJournal == null) ? 0 : checkpointJournal.getCommittedRecords(phase, inputFile);
+        long skipped = 0;
+        while (skipped < committedRecords && reader.hasNext()) {
+            reader.skipValue();
+            skipped++;
+        }
+        if (skipped > 0) {
+            LOG.info(String.format("Resuming %s of %s: skipped %d committed records", phase, inputFile, skipped));
+        }
+        return skipped;
+    }
+
+    private static long getCommittedRecords(CheckpointJournal checkpointJournal, String phase, String inputFile) {
+        final long committedRecords = (checkpointJournal == null) ? 0 : checkpointJournal.getCommittedRecords(phase, inputFile);
+        if (committedRecords > 0) {
+            LOG.info(String.format("Resuming %s of %s: skipped %d committed records", phase, inputFile, committedRecords));
+        }
+        return committedRecords;
+    }
+
+    private static void recordBatch(CheckpointJournal checkpointJournal, String phase, String inputFile, long committedRecords) {
+        if (checkpointJournal != null) {
+            checkpointJournal.recordBatch(phase, inputFile, committedRecords);
+        }
+    }
+
+    private static void recordComplete(CheckpointJournal checkpointJournal, String phase, String inputFile) {
+        if (checkpointJournal != null) {
+            checkpointJournal.recordComplete(phase, inputFile);
+        }
+    }
+
+    /**
+     * A resumed synapse phase loads again the batch that was being committed when the load was interrupted, and the Meta node roiInfo
+     * written for that batch counts its synapses a second time, so the counts are recomputed once the phase is complete.
+     */
+    private static void recomputeMetaNodeSynapseCountsIfResumed(Neo4jImporter neo4jImporter, String dataset, long resumedRecords) {
+        if (resumedRecords > 0) {
+            neo4jImporter.recomputeMetaNodeSynapseCounts(dataset);
+        }
+    }
+
+    /**
+     * Streams the synapse, connection and neuron JSON files into a {@link ConnectionInfoBuilder} and computes
+     * connection information for the whole dataset, for writing with {@link Neo4jImporter#addPrecomputedConnectionInfo}.
+     *
+     * @param synapseJson                        path to synapses JSON file
+     * @param connectionJson                     path to connections JSON file
+     * @param neuronJson                         path to neurons JSON file
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     * @return {@link ConnectionInfoBuilder} on which build() has been called
+     */
+    public static ConnectionInfoBuilder buildConnectionInfo(String synapseJson,
+                                                            String connectionJson,
+                                                            String neuronJson,
+                                                            double preHPThreshold,
+                                                            double postHPThreshold,
+                                                            long neuronThreshold,
+                                                            boolean addConnectionSetRoiInfoAndWeightHP) {
+        return buildConnectionInfo(synapseJson, connectionJson, neuronJson, preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, false);
+    }
+
+    /**
+     * Streams the synapse, connection and neuron JSON files into a {@link ConnectionInfoBuilder} and computes
+     * connection information for the whole dataset, for writing with {@link Neo4jImporter#addPrecomputedConnectionInfo}.
+     *
+     * @param synapseJson                        path to synapses JSON file
+     * @param connectionJson                     path to connections JSON file
+     * @param neuronJson                         path to neurons JSON file
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     * @param addRoiInfoBinary                   boolean indicating if roiInfoBinary should be computed
+     * @return {@link ConnectionInfoBuilder} on which build() has been called
+     */
+    public static ConnectionInfoBuilder buildConnectionInfo(String synapseJson,
+                                                            String connectionJson,
+                                                            String neuronJson,
+                                                            double preHPThreshold,
+                                                            double postHPThreshold,
+                                                            long neuronThreshold,
+                                                            boolean addConnectionSetRoiInfoAndWeightHP,
+                                                            boolean addRoiInfoBinary) {
+
+        Stopwatch timer = Stopwatch.createStarted();
+
+        ConnectionInfoBuilder connectionInfoBuilder = new ConnectionInfoBuilder(preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, addRoiInfoBinary);
+        StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(synapseJson))) {
+            reader.beginArray();
+            final SynapseRecord synapseRecord = new SynapseRecord();
+            while (reader.hasNext()) {
+                connectionInfoBuilder.addSynapse(decoder.readSynapse(reader, synapseRecord));
+            }
+        } catch (IOException e) {
+            LOG.error("Error reading synapse JSON: " + e);
+            System.exit(1);
+        }
+
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(connectionJson))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                connectionInfoBuilder.addSynapticConnection(decoder.nextSynapticConnection(reader));
+            }
+        } catch (IOException e) {
+            LOG.error("Error reading synaptic connections JSON: " + e);
+            System.exit(1);
+        }
+
+        addSegmentSynapsesFromJson(connectionInfoBuilder, neuronJson, decoder);
+
+        connectionInfoBuilder.build();
+
+        LOG.info(String.format("Computing connection info took: %s", timer.stop()));
+
+        return connectionInfoBuilder;
+    }
+
+    /**
+     * Reads the synapses, connections and neuron synapse sets of a {@link BinaryInputFile} into a
+     * {@link ConnectionInfoBuilder} and computes connection information for the whole dataset, for writing with
+     * {@link Neo4jImporter#addPrecomputedConnectionInfo}. The ROIs of each distinct ROI list in the file are resolved
+     * once rather than once per synapse.
+     *
+     * @param binaryInputFile                    binary input file
+     * @param neuronJson                         path to neurons JSON file, used for neuron synapse sets if the binary input file has no neurons (may be null)
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param neuronThreshold                    Neuron must have greater than or equal to neuronThreshold/5 presynaptic densities or greater than or equal to neuronThreshold postsynaptic densities to be given a :Neuron label
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     * @param addRoiInfoBinary                   boolean indicating if roiInfoBinary should be computed
+     * @return {@link ConnectionInfoBuilder} on which build() has been called
+     */
+    public static ConnectionInfoBuilder buildConnectionInfo(BinaryInputFile binaryInputFile,
+                                                            String neuronJson,
+                                                            double preHPThreshold,
+                                                            double postHPThreshold,
+                                                            long neuronThreshold,
+                                                            boolean addConnectionSetRoiInfoAndWeightHP,
+                                                            boolean addRoiInfoBinary) {
+
+        Stopwatch timer = Stopwatch.createStarted();
+
+        ConnectionInfoBuilder connectionInfoBuilder = new ConnectionInfoBuilder(preHPThreshold, postHPThreshold, neuronThreshold, addConnectionSetRoiInfoAndWeightHP, addRoiInfoBinary);
+
+        final RoiSet[] roiSets = new RoiSet[binaryInputFile.getRoiListCount()];
+        for (int i = 0; i < roiSets.length; i++) {
+            final String[] roiList = binaryInputFile.getRoiList(i);
+            roiSets[i] = connectionInfoBuilder.getRoiDictionary().getRoiSet(roiList, roiList.length);
+        }
+
+        final BinaryInputFile.SynapseCursor synapses = binaryInputFile.synapses(0, binaryInputFile.getSynapseCount());
+        while (synapses.next()) {
+            connectionInfoBuilder.addSynapse(synapses.getX(), synapses.getY(), synapses.getZ(), synapses.getType(), synapses.getConfidence(), roiSets[synapses.getRoiListId()]);
+        }
+
+        final BinaryInputFile.ConnectionCursor connections = binaryInputFile.connections(0, binaryInputFile.getConnectionCount());
+        while (connections.next()) {
+            connectionInfoBuilder.addSynapticConnection(connections.toSynapticConnection());
+        }
+
+        if (binaryInputFile.getNeuronCount() > 0 || neuronJson == null) {
+            final BinaryInputFile.NeuronCursor neurons = binaryInputFile.neurons(0, binaryInputFile.getNeuronCount());
+            while (neurons.next()) {
+                for (int i = 0; i < neurons.getSynapseCount(); i++) {
+                    connectionInfoBuilder.addSegmentSynapse(neurons.getBodyId(), neurons.getSynapseX(i), neurons.getSynapseY(i), neurons.getSynapseZ(i));
+                }
+            }
+        } else {
+            addSegmentSynapsesFromJson(connectionInfoBuilder, neuronJson, new StreamingJsonDecoder());
+        }
+
+        connectionInfoBuilder.build();
+
+        LOG.info(String.format("Computing connection info from %s took: %s", binaryInputFile.getFile(), timer.stop()));
+
+        return connectionInfoBuilder;
+    }
+
+    private static void addSegmentSynapsesFromJson(ConnectionInfoBuilder connectionInfoBuilder, String neuronJson, StreamingJsonDecoder decoder) {
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(neuronJson))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                Neuron neuron = decoder.nextNeuron(reader);
+                connectionInfoBuilder.addSegmentSynapses(neuron.getId(), neuron.getSynapseLocationSet());
+            }
+        } catch (IOException e) {
+            LOG.error("Error reading neurons JSON: " + e);
+            System.exit(1);
+        }
+    }
+
     /**
      * Returns a list of {@link Synapse} objects read from a JSON file
      * at the provided file path.
@@ -293,7 +664,7 @@ public class NeuPrintMain {
      */
     public static List<Synapse> readSynapsesJson(String filepath) {
         List<Synapse> synapseList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        try (BufferedReader reader = new BufferedReader(CompressedInput.openReader(filepath))) {
             synapseList = Synapse.fromJson(reader);
             LOG.info(String.format("Loaded %d synapses from JSON.", synapseList.size()));
         } catch (Exception e) {
@@ -303,46 +674,73 @@ public class NeuPrintMain {
         return synapseList;
     }
 
+    /**
+     * Loads synapses from a synapses JSON file in batches.
+     *
+     * @param filepath            path to synapses JSON file
+     * @param synapseBatchSize    number of synapses per batch
+     * @param neo4jImporter       importer
+     * @param databaseInitialized if false, the database is initialized for the dataset before loading
+     * @param options             load options
+     */
     public static void loadSynapseJsonInBatches(String filepath,
                                                 int synapseBatchSize,
                                                 Neo4jImporter neo4jImporter,
-                                                String dataset,
                                                 boolean databaseInitialized,
-                                                float dataModelVersion,
-                                                double preHPThreshold,
-                                                double postHPThreshold,
-                                                boolean addConnectionSetRoiInfoAndWeightHP,
-                                                boolean addClusterNames,
-                                                LocalDateTime timeStamp) {
+                                                BatchLoadOptions options) {
+
+        final String dataset = options.getDataset();
+        final CheckpointJournal checkpointJournal = options.getCheckpointJournal();
+        final LocalDateTime timeStamp = options.getTimeStamp();
+
+        final String phase = "loadSynapseJsonInBatches";
+        final String inputFile = new File(filepath).getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
         if (!databaseInitialized) {
-            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+            initializeDatabase(neo4jImporter, dataset, options.getDataModelVersion(), options.getPreHPThreshold(), options.getPostHPThreshold(), options.getAddConnectionSetRoiInfoAndWeightHP(), options.getAddClusterNames(), timeStamp);
 
         }
 
         LOG.info(String.format("Loading synapses in batches of size %d", synapseBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(filepath))) {
             reader.beginArray();
-            while (reader.hasNext()) {
-                List<Synapse> synapseList = new ArrayList<>();
-                int i = 0;
-                while (reader.hasNext() && i < synapseBatchSize) {
-                    Synapse synapse = Synapse.fromJsonSingleObject(reader);
-                    synapseList.add(synapse);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
-                LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
-                timer.reset();
+            final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+            final long resumedRecords = skipCommittedRecords(reader, checkpointJournal, phase, inputFile);
+            final long[] committedRecords = {resumedRecords};
+            new BatchPipeline<Synapse>(phase, options.getPipelineQueueDepth()).run(
+                    () -> {
+                        List<Synapse> synapseList = new ArrayList<>();
+                        int i = 0;
+                        while (reader.hasNext() && i < synapseBatchSize) {
+                            Synapse synapse = decoder.nextSynapse(reader);
+                            synapseList.add(synapse);
+                            i++;
+                        }
+                        return synapseList;
+                    },
+                    synapseList -> {
+                        timer.start();
+                        if (options.getUseUnwindForSynapses()) {
+                            neo4jImporter.addSynapsesWithRoisUsingUnwind(dataset, synapseList, timeStamp);
+                        } else {
+                            neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+                        }
+                        LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
+                        timer.reset();
 
-                neo4jImporter.indexBooleanRoiProperties(dataset);
+                        neo4jImporter.indexBooleanRoiProperties(dataset);
 
-            }
+                        committedRecords[0] += synapseList.size();
+                        recordBatch(checkpointJournal, phase, inputFile, committedRecords[0]);
+                    });
+            recordComplete(checkpointJournal, phase, inputFile);
+            recomputeMetaNodeSynapseCountsIfResumed(neo4jImporter, dataset, resumedRecords);
 
         } catch (IOException e) {
             LOG.error("Error reading synapse JSON: " + e);
@@ -351,6 +749,81 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Loads the synapses of a {@link BinaryInputFile} in batches, as {@link #loadSynapseJsonInBatches} does for a
+     * synapses JSON file. A resumed load starts at the first uncommitted record rather than skipping records.
+     */
+    public static void loadSynapseBinaryInBatches(BinaryInputFile binaryInputFile,
+                                                  int synapseBatchSize,
+                                                  Neo4jImporter neo4jImporter,
+                                                  boolean databaseInitialized,
+                                                  BatchLoadOptions options) {
+
+        final String dataset = options.getDataset();
+        final CheckpointJournal checkpointJournal = options.getCheckpointJournal();
+        final LocalDateTime timeStamp = options.getTimeStamp();
+
+        final String phase = "loadSynapseBinaryInBatches";
+        final String inputFile = binaryInputFile.getFile().getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
+
+        if (!databaseInitialized) {
+            initializeDatabase(neo4jImporter, dataset, options.getDataModelVersion(), options.getPreHPThreshold(), options.getPostHPThreshold(), options.getAddConnectionSetRoiInfoAndWeightHP(), options.getAddClusterNames(), timeStamp);
+        }
+
+        LOG.info(String.format("Loading synapses in batches of size %d", synapseBatchSize));
+
+        Stopwatch timer = Stopwatch.createUnstarted();
+        final long synapseCount = binaryInputFile.getSynapseCount();
+        final long resumedRecords = getCommittedRecords(checkpointJournal, phase, inputFile);
+        final long[] nextRecord = {resumedRecords};
+        final long[] committedRecords = {resumedRecords};
+        final int threads = Runtime.getRuntime().availableProcessors();
+        try {
+            new BatchPipeline<Synapse>(phase, options.getPipelineQueueDepth()).run(
+                    () -> {
+                        final long from = nextRecord[0];
+                        nextRecord[0] = Math.min(synapseCount, from + synapseBatchSize);
+                        return binaryInputFile.readSynapses(from, nextRecord[0], threads);
+                    },
+                    synapseList -> {
+                        timer.start();
+                        if (options.getUseUnwindForSynapses()) {
+                            neo4jImporter.addSynapsesWithRoisUsingUnwind(dataset, synapseList, timeStamp);
+                        } else {
+                            neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+                        }
+                        LOG.info(String.format("Loading batch of synapses took: %s", timer.stop()));
+                        timer.reset();
+
+                        neo4jImporter.indexBooleanRoiProperties(dataset);
+
+                        committedRecords[0] += synapseList.size();
+                        recordBatch(checkpointJournal, phase, inputFile, committedRecords[0]);
+                    });
+            recordComplete(checkpointJournal, phase, inputFile);
+            recomputeMetaNodeSynapseCountsIfResumed(neo4jImporter, dataset, resumedRecords);
+        } catch (IOException e) {
+            LOG.error("Error reading binary input file: " + e);
+            System.exit(1);
+        }
+
+    }
+
+    private static void addSynapses(Neo4jImporter neo4jImporter, String dataset, List<Synapse> synapseList, boolean useUnwindForSynapses, LocalDateTime timeStamp) {
+        Stopwatch timer = Stopwatch.createStarted();
+        if (useUnwindForSynapses) {
+            neo4jImporter.addSynapsesWithRoisUsingUnwind(dataset, synapseList, timeStamp);
+        } else {
+            neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        }
+        LOG.info(String.format("Loading all synapses took: %s", timer.stop()));
+
+        neo4jImporter.indexBooleanRoiProperties(dataset);
+    }
+
     /**
      * Returns a list of {@link SynapticConnection} objects read from a JSON file
      * at the provided file path.
@@ -360,7 +833,7 @@ public class NeuPrintMain {
      */
     public static List<SynapticConnection> readConnectionsJson(String filepath) {
         List<SynapticConnection> connectionList = new ArrayList<>();
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        try (BufferedReader reader = new BufferedReader(CompressedInput.openReader(filepath))) {
             connectionList = SynapticConnection.fromJson(reader);
             LOG.info(String.format("Loaded %d synaptic connections from JSON.", connectionList.size()));
         } catch (Exception e) {
@@ -381,6 +854,43 @@ public class NeuPrintMain {
                                                    boolean addConnectionSetRoiInfoAndWeightHP,
                                                    boolean addClusterNames,
                                                    LocalDateTime timeStamp) {
+        loadConnectionJsonInBatches(filepath, connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, 0, timeStamp);
+    }
+
+    public static void loadConnectionJsonInBatches(String filepath,
+                                                   int connectionBatchSize,
+                                                   Neo4jImporter neo4jImporter,
+                                                   String dataset,
+                                                   boolean databaseInitialized,
+                                                   float dataModelVersion,
+                                                   double preHPThreshold,
+                                                   double postHPThreshold,
+                                                   boolean addConnectionSetRoiInfoAndWeightHP,
+                                                   boolean addClusterNames,
+                                                   int pipelineQueueDepth,
+                                                   LocalDateTime timeStamp) {
+        loadConnectionJsonInBatches(filepath, connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, pipelineQueueDepth, null, timeStamp);
+    }
+
+    public static void loadConnectionJsonInBatches(String filepath,
+                                                   int connectionBatchSize,
+                                                   Neo4jImporter neo4jImporter,
+                                                   String dataset,
+                                                   boolean databaseInitialized,
+                                                   float dataModelVersion,
+                                                   double preHPThreshold,
+                                                   double postHPThreshold,
+                                                   boolean addConnectionSetRoiInfoAndWeightHP,
+                                                   boolean addClusterNames,
+                                                   int pipelineQueueDepth,
+                                                   CheckpointJournal checkpointJournal,
+                                                   LocalDateTime timeStamp) {
+
+        final String phase = "loadConnectionJsonInBatches";
+        final String inputFile = new File(filepath).getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
@@ -390,25 +900,31 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading connections in batches of size %d", connectionBatchSize));
 
-        try (JsonReader reader = new JsonReader(new FileReader(filepath))) {
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(filepath))) {
             reader.beginArray();
-            while (reader.hasNext()) {
-                List<SynapticConnection> connectionsList = new ArrayList<>();
-                int i = 0;
-                // get to start
-
-                while (reader.hasNext() && i < connectionBatchSize) {
-                    SynapticConnection synapticConnection = SynapticConnection.fromJsonSingleObject(reader);
-                    connectionsList.add(synapticConnection);
-                    i++;
-                }
-
-                timer.start();
-                neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
-                LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
-                timer.reset();
+            final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+            final long[] committedRecords = {skipCommittedRecords(reader, checkpointJournal, phase, inputFile)};
+            new BatchPipeline<SynapticConnection>(phase, pipelineQueueDepth).run(
+                    () -> {
+                        List<SynapticConnection> connectionsList = new ArrayList<>();
+                        int i = 0;
+                        while (reader.hasNext() && i < connectionBatchSize) {
+                            SynapticConnection synapticConnection = decoder.nextSynapticConnection(reader);
+                            connectionsList.add(synapticConnection);
+                            i++;
+                        }
+                        return connectionsList;
+                    },
+                    connectionsList -> {
+                        timer.start();
+                        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+                        LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
+                        timer.reset();
 
-            }
+                        committedRecords[0] += connectionsList.size();
+                        recordBatch(checkpointJournal, phase, inputFile, committedRecords[0]);
+                    });
+            recordComplete(checkpointJournal, phase, inputFile);
 
         } catch (IOException e) {
             LOG.error("Error reading connection JSON: " + e);
@@ -417,8 +933,67 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Loads the synaptic connections of a {@link BinaryInputFile} in batches, as {@link #loadConnectionJsonInBatches}
+     * does for a connections JSON file. A resumed load starts at the first uncommitted record rather than skipping
+     * records.
+     */
+    public static void loadConnectionBinaryInBatches(BinaryInputFile binaryInputFile,
+                                                     int connectionBatchSize,
+                                                     Neo4jImporter neo4jImporter,
+                                                     String dataset,
+                                                     boolean databaseInitialized,
+                                                     float dataModelVersion,
+                                                     double preHPThreshold,
+                                                     double postHPThreshold,
+                                                     boolean addConnectionSetRoiInfoAndWeightHP,
+                                                     boolean addClusterNames,
+                                                     int pipelineQueueDepth,
+                                                     CheckpointJournal checkpointJournal,
+                                                     LocalDateTime timeStamp) {
+
+        final String phase = "loadConnectionBinaryInBatches";
+        final String inputFile = binaryInputFile.getFile().getAbsolutePath();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
+
+        if (!databaseInitialized) {
+            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, timeStamp);
+        }
+
+        LOG.info(String.format("Loading connections in batches of size %d", connectionBatchSize));
+
+        Stopwatch timer = Stopwatch.createUnstarted();
+        final long connectionCount = binaryInputFile.getConnectionCount();
+        final long[] nextRecord = {getCommittedRecords(checkpointJournal, phase, inputFile)};
+        final long[] committedRecords = {nextRecord[0]};
+        try {
+            new BatchPipeline<SynapticConnection>(phase, pipelineQueueDepth).run(
+                    () -> {
+                        final long from = nextRecord[0];
+                        nextRecord[0] = Math.min(connectionCount, from + connectionBatchSize);
+                        return binaryInputFile.readConnections(from, nextRecord[0]);
+                    },
+                    connectionsList -> {
+                        timer.start();
+                        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+                        LOG.info(String.format("Loading batch of synaptic connections took: %s", timer.stop()));
+                        timer.reset();
+
+                        committedRecords[0] += connectionsList.size();
+                        recordBatch(checkpointJournal, phase, inputFile, committedRecords[0]);
+                    });
+            recordComplete(checkpointJournal, phase, inputFile);
+        } catch (IOException e) {
+            LOG.error("Error reading binary input file: " + e);
+            System.exit(1);
+        }
+
+    }
+
     public static MetaInfo readMetaInfoJson(String filepath) {
-        try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
+        try (BufferedReader reader = new BufferedReader(CompressedInput.openReader(filepath))) {
             MetaInfo metaInfo = MetaInfo.fromJson(reader);
             LOG.info(String.format("Loaded meta info for dataset: %s", metaInfo));
             return metaInfo;
@@ -436,23 +1011,61 @@ public class NeuPrintMain {
      * @return list of Skeletons
      */
     public static List<Skeleton> createSkeletonListFromSwcFileArray(File[] arrayOfSwcFiles) {
+        return createSkeletonListFromSwcFileArray(arrayOfSwcFiles, 1);
+    }
+
+    /**
+     * Returns a list of {@link Skeleton} objects read from an array of swc files, parsing files in parallel.
+     * Skeletons are returned in the same order as the files.
+     *
+     * @param arrayOfSwcFiles {@link File} array of swc files
+     * @param threads         number of threads used to parse swc files
+     * @return list of Skeletons
+     */
+    public static List<Skeleton> createSkeletonListFromSwcFileArray(File[] arrayOfSwcFiles, int threads) {
         List<Skeleton> skeletonList = new ArrayList<>();
-        for (File swcFile : arrayOfSwcFiles) {
-            String filepath = swcFile.getAbsolutePath();
-            Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
-            Skeleton skeleton = new Skeleton();
-
-            try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-                skeleton.fromSwc(reader, associatedBodyId);
-                skeletonList.add(skeleton);
+        if (threads <= 1) {
+            for (File swcFile : arrayOfSwcFiles) {
+                try {
+                    skeletonList.add(readSkeleton(swcFile));
+                } catch (Exception e) {
+                    LOG.error("Error reading skeleton files: " + e);
+                    System.exit(1);
+                }
+            }
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try {
+                skeletonList = pool.submit(() -> Arrays.stream(arrayOfSwcFiles)
+                        .parallel()
+                        .map(swcFile -> {
+                            try {
+                                return readSkeleton(swcFile);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toList())).get();
             } catch (Exception e) {
                 LOG.error("Error reading skeleton files: " + e);
                 System.exit(1);
+            } finally {
+                pool.shutdown();
             }
         }
         return skeletonList;
     }
 
+    private static Skeleton readSkeleton(File swcFile) throws IOException {
+        String filepath = swcFile.getAbsolutePath();
+        Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
+        Skeleton skeleton = new Skeleton();
+        try (InputStream inputStream = CompressedInput.open(swcFile, 1)) {
+            skeleton.fromSwc(inputStream, associatedBodyId, null);
+        }
+        return skeleton;
+    }
+
     public static void loadSkeletonsInBatches(File[] arrayOfSwcFiles,
                                               int skeletonBatchSize,
                                               boolean databaseInitialized,
@@ -464,6 +1077,67 @@ public class NeuPrintMain {
                                               boolean addConnectionSetRoiInfoAndWeightHP,
                                               boolean addClusterNames,
                                               LocalDateTime timeStamp) {
+        loadSkeletonsInBatches(arrayOfSwcFiles, skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, null, timeStamp);
+    }
+
+    public static void loadSkeletonsInBatches(File[] arrayOfSwcFiles,
+                                              int skeletonBatchSize,
+                                              boolean databaseInitialized,
+                                              Neo4jImporter neo4jImporter,
+                                              String dataset,
+                                              float dataModelVersion,
+                                              double preHPThreshold,
+                                              double postHPThreshold,
+                                              boolean addConnectionSetRoiInfoAndWeightHP,
+                                              boolean addClusterNames,
+                                              CheckpointJournal checkpointJournal,
+                                              LocalDateTime timeStamp) {
+        loadSkeletonsInBatches(arrayOfSwcFiles, skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, addConnectionSetRoiInfoAndWeightHP, addClusterNames, 1, false, checkpointJournal, timeStamp);
+    }
+
+    /**
+     * Loads skeletons from swc files in batches.
+     *
+     * @param arrayOfSwcFiles                    swc files (file name is the bodyId)
+     * @param skeletonBatchSize                  number of swc files per batch
+     * @param databaseInitialized                true if the database has already been initialized
+     * @param neo4jImporter                      importer used to write to the database
+     * @param dataset                            dataset name
+     * @param dataModelVersion                   data model version
+     * @param preHPThreshold                     high-precision threshold for presynaptic densities
+     * @param postHPThreshold                    high-precision threshold for postsynaptic densities
+     * @param addConnectionSetRoiInfoAndWeightHP boolean indicating if ConnectionSet roiInfo and ConnectsTo weightHP should be computed
+     * @param addClusterNames                    boolean indicating if cluster names should be added to Neuron nodes
+     * @param swcParseThreads                    number of threads used to parse the swc files in each batch
+     * @param useUnwindForSkeletons              if true, write each skeleton with {@link Neo4jImporter#addSkeletonNodesUsingUnwind}
+     * @param checkpointJournal                  journal of committed batches (may be null)
+     * @param timeStamp                          time stamp for load
+     */
+    public static void loadSkeletonsInBatches(File[] arrayOfSwcFiles,
+                                              int skeletonBatchSize,
+                                              boolean databaseInitialized,
+                                              Neo4jImporter neo4jImporter,
+                                              String dataset,
+                                              float dataModelVersion,
+                                              double preHPThreshold,
+                                              double postHPThreshold,
+                                              boolean addConnectionSetRoiInfoAndWeightHP,
+                                              boolean addClusterNames,
+                                              int swcParseThreads,
+                                              boolean useUnwindForSkeletons,
+                                              CheckpointJournal checkpointJournal,
+                                              LocalDateTime timeStamp) {
+
+        final String phase = "loadSkeletonsInBatches";
+        final String inputFile = (arrayOfSwcFiles.length == 0) ? "" : arrayOfSwcFiles[0].getAbsoluteFile().getParent();
+        if (isPhaseComplete(checkpointJournal, phase, inputFile)) {
+            return;
+        }
+        if (checkpointJournal != null) {
+            // the record index in the journal refers to this order
+            arrayOfSwcFiles = arrayOfSwcFiles.clone();
+            Arrays.sort(arrayOfSwcFiles);
+        }
 
         Stopwatch timer = Stopwatch.createUnstarted();
 
@@ -473,31 +1147,31 @@ public class NeuPrintMain {
 
         LOG.info(String.format("Loading skeletons in batches of size %d", skeletonBatchSize));
 
-        int currentFileIndex = 0;
+        int currentFileIndex = (checkpointJournal == null) ? 0 : (int) Math.min(arrayOfSwcFiles.length, checkpointJournal.getCommittedRecords(phase, inputFile));
+        if (currentFileIndex > 0) {
+            LOG.info(String.format("Resuming %s of %s: skipped %d committed swc files", phase, inputFile, currentFileIndex));
+        }
         while (currentFileIndex < arrayOfSwcFiles.length) {
-            List<Skeleton> skeletonList = new ArrayList<>();
-            int i = 0;
-            while (currentFileIndex < arrayOfSwcFiles.length && i < skeletonBatchSize) {
-                String filepath = arrayOfSwcFiles[currentFileIndex].getAbsolutePath();
-                currentFileIndex++;
-                Long associatedBodyId = setSkeletonAssociatedBodyId(filepath);
-                Skeleton skeleton = new Skeleton();
-                try (BufferedReader reader = new BufferedReader(new FileReader(filepath))) {
-                    skeleton.fromSwc(reader, associatedBodyId);
-                    skeletonList.add(skeleton);
-                    i++;
-                } catch (Exception e) {
-                    LOG.error("Error reading skeleton files: " + e);
-                    System.exit(1);
-                }
-            }
+            int batchEnd = Math.min(arrayOfSwcFiles.length, currentFileIndex + skeletonBatchSize);
+            timer.start();
+            List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(Arrays.copyOfRange(arrayOfSwcFiles, currentFileIndex, batchEnd), swcParseThreads);
+            LOG.info("Reading batch of swc files took: " + timer.stop());
+            timer.reset();
+            currentFileIndex = batchEnd;
 
             timer.start();
-            neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+            if (useUnwindForSkeletons) {
+                neo4jImporter.addSkeletonNodesUsingUnwind(dataset, skeletonList, timeStamp);
+            } else {
+                neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+            }
             LOG.info("Loading all Skeleton nodes took: " + timer.stop());
             timer.reset();
 
+            recordBatch(checkpointJournal, phase, inputFile, currentFileIndex);
+
         }
+        recordComplete(checkpointJournal, phase, inputFile);
 
     }
 
@@ -507,9 +1181,9 @@ public class NeuPrintMain {
      * @param swcFilePath path to swc file
      * @return bodyId
      */
-    private static Long setSkeletonAssociatedBodyId(String swcFilePath) {
+    static Long setSkeletonAssociatedBodyId(String swcFilePath) {
 
-        String patternSurroundingId = ".*/(.*?).swc";
+        String patternSurroundingId = ".*/(.*?).swc(\\.gz|\\.zst)?";
         Pattern r = Pattern.compile(patternSurroundingId);
         Matcher mR = r.matcher(swcFilePath);
         mR.matches();
@@ -517,6 +1191,17 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Returns true if the file name is that of an swc file, which may be gzip or zstd compressed.
+     *
+     * @param fileName name of file
+     * @return true if the file is an swc file
+     */
+    static boolean isSwcFile(String fileName) {
+        String lowerCaseName = fileName.toLowerCase();
+        return lowerCaseName.endsWith(".swc") || lowerCaseName.endsWith(".swc.gz") || lowerCaseName.endsWith(".swc.zst");
+    }
+
     /**
      * Adds constraints/indices and creates a new Meta node, which is required for the subsequent load.
      *
@@ -617,6 +1302,7 @@ public class NeuPrintMain {
         neo4jImporter.addSynapsesWithRois("test", synapseList, timeStamp);
         neo4jImporter.indexBooleanRoiProperties(dataset);
         neo4jImporter.addSynapsesTo("test", connectionsList, timeStamp);
+        neo4jImporter.recomputeMetaNodeSynapseCounts("test");
         neo4jImporter.addSegments("test", neuronList, timeStamp);
         neo4jImporter.addConnectionInfo("test", neuronList, addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
         neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
@@ -628,8 +1314,6 @@ public class NeuPrintMain {
         final JCommander jCommander = new JCommander(parameters);
         jCommander.setProgramName("java -jar neuprint.jar");
 
-        //TODO: add ability to pick up where it left off during load
-
         boolean parseFailed = true;
         try {
             jCommander.parse(args);
@@ -640,6 +1324,16 @@ public class NeuPrintMain {
             LOG.info("failed to parse command line arguments", t);
         }
 
+        if (!parseFailed && parameters.dbProperties == null && parameters.csvOutputDirectory == null && parameters.binaryOutputFile == null && parameters.storeDirectory == null) {
+            JCommander.getConsole().println("\nERROR: either --dbProperties, --csvOutputDirectory, --binaryOutputFile or --storeDirectory must be specified");
+            parseFailed = true;
+        }
+
+        if (!parseFailed && parameters.resume && parameters.checkpointFile == null) {
+            JCommander.getConsole().println("\nERROR: --resume requires --checkpointFile");
+            parseFailed = true;
+        }
+
         if (parameters.help || parseFailed) {
             JCommander.getConsole().println("");
             jCommander.usage();
@@ -659,15 +1353,67 @@ public class NeuPrintMain {
 
         LOG.info("Dataset is: " + dataset);
 
-        try {
+        if (parameters.csvOutputDirectory != null) {
+            exportCsvFiles(parameters, timeStamp);
+            return;
+        }
+
+        if (parameters.storeDirectory != null) {
+            batchInsertStore(parameters, timeStamp);
+            return;
+        }
+
+        if (parameters.binaryOutputFile != null) {
+            try {
+                BinaryInputWriter.convert(parameters.synapseJson, parameters.connectionJson, parameters.neuronJson, new File(parameters.binaryOutputFile));
+            } catch (Exception e) {
+                LOG.error("Error writing binary input file: " + e);
+                System.exit(1);
+            }
+            return;
+        }
+
+        try (final CommitLog commitLog = new CommitLog(parameters.deadLetterFile == null ? null : new File(parameters.deadLetterFile));
+             final CheckpointJournal checkpointJournal = parameters.checkpointFile == null ? null : new CheckpointJournal(new File(parameters.checkpointFile), parameters.resume);
+             final BinaryInputFile binaryInputFile = parameters.binaryInputFile == null ? null : BinaryInputFile.open(new File(parameters.binaryInputFile))) {
 
             Stopwatch timer = Stopwatch.createUnstarted();
 
-            if (parameters.synapseJson != null) {
+            final BatchLoadOptions batchLoadOptions = new BatchLoadOptions(dataset, timeStamp)
+                    .dataModelVersion(dataModelVersion)
+                    .hpThresholds(preHPThreshold, postHPThreshold)
+                    .neuronThreshold(neuronThreshold)
+                    .addConnectionSetRoiInfoAndWeightHP(parameters.addConnectionSetRoiInfoAndWeightHP)
+                    .addClusterNames(parameters.addClusterNames)
+                    .useUnwindForSynapses(parameters.useUnwindForSynapses)
+                    .pipelineQueueDepth(parameters.pipelineQueueDepth)
+                    .checkpointJournal(checkpointJournal);
+
+            if (binaryInputFile != null && binaryInputFile.getSynapseCount() > 0) {
 
                 if (parameters.synapseBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadSynapseJsonInBatches(parameters.synapseJson, parameters.synapseBatchSize, neo4jImporter, dataset, false, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                        loadSynapseBinaryInBatches(binaryInputFile, parameters.synapseBatchSize, neo4jImporter, false, batchLoadOptions);
+                        databaseInitialized = true;
+                    }
+                } else {
+                    timer.start();
+                    List<Synapse> synapseList = binaryInputFile.readSynapses(0, binaryInputFile.getSynapseCount(), Runtime.getRuntime().availableProcessors());
+                    LOG.info(String.format("Reading in %d synapses from binary input file took: %s", synapseList.size(), timer.stop()));
+                    timer.reset();
+
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                        initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                        databaseInitialized = true;
+                        addSynapses(neo4jImporter, dataset, synapseList, parameters.useUnwindForSynapses, timeStamp);
+                    }
+                }
+
+            } else if (parameters.synapseJson != null) {
+
+                if (parameters.synapseBatchSize > 0) {
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                        loadSynapseJsonInBatches(parameters.synapseJson, parameters.synapseBatchSize, neo4jImporter, false, batchLoadOptions);
                         databaseInitialized = true;
                     }
                 } else {
@@ -677,36 +1423,38 @@ public class NeuPrintMain {
                     LOG.info(String.format("Reading in synapse JSON took: %s", timer.stop()));
                     timer.reset();
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
 
                         initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
                         databaseInitialized = true;
-                        timer.start();
-                        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
-                        LOG.info(String.format("Loading all synapses took: %s", timer.stop()));
-                        timer.reset();
-
-                        neo4jImporter.indexBooleanRoiProperties(dataset);
+                        addSynapses(neo4jImporter, dataset, synapseList, parameters.useUnwindForSynapses, timeStamp);
 
                     }
                 }
 
             }
 
-            if (parameters.connectionJson != null) {
+            final boolean hasBinaryConnections = binaryInputFile != null && binaryInputFile.getConnectionCount() > 0;
+            if (hasBinaryConnections || parameters.connectionJson != null) {
 
                 if (parameters.connectionBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadConnectionJsonInBatches(parameters.connectionJson, parameters.connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                        if (hasBinaryConnections) {
+                            loadConnectionBinaryInBatches(binaryInputFile, parameters.connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, parameters.pipelineQueueDepth, checkpointJournal, timeStamp);
+                        } else {
+                            loadConnectionJsonInBatches(parameters.connectionJson, parameters.connectionBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, parameters.pipelineQueueDepth, checkpointJournal, timeStamp);
+                        }
                         databaseInitialized = true;
                     }
                 } else {
                     timer.start();
-                    List<SynapticConnection> connectionsList = readConnectionsJson(parameters.connectionJson);
-                    LOG.info(String.format("Reading in synaptic connections JSON took: %s", timer.stop()));
+                    List<SynapticConnection> connectionsList = hasBinaryConnections ?
+                            binaryInputFile.readConnections(0, binaryInputFile.getConnectionCount()) :
+                            readConnectionsJson(parameters.connectionJson);
+                    LOG.info(String.format("Reading in synaptic connections took: %s", timer.stop()));
                     timer.reset();
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
 
                         if (!databaseInitialized) {
                             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
@@ -721,13 +1469,58 @@ public class NeuPrintMain {
                 }
             }
 
-            if (parameters.neuronJson != null) {
+            if (databaseInitialized) {
+                // the Meta node roiInfo written after each synapse batch is a running estimate (synapses already in the database are
+                // counted again), so the synapse counts are recomputed once the synapses and connections are loaded
+                try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                    timer.start();
+                    neo4jImporter.recomputeMetaNodeSynapseCounts(dataset);
+                    LOG.info(String.format("Recomputing Meta node synapse counts took: %s", timer.stop()));
+                    timer.reset();
+                }
+            }
 
-                if (parameters.addConnectionInfoOnly) {
+            if (parameters.addRoiInfoBinary && !parameters.precomputeConnectionInfo) {
+                LOG.warn("--addRoiInfoBinary requires --precomputeConnectionInfo. Only roiInfo JSON will be written.");
+            }
+
+            if (parameters.neuronJson != null || (binaryInputFile != null && binaryInputFile.getNeuronCount() > 0)) {
+
+                ConnectionInfoBuilder connectionInfoBuilder = null;
+                if (parameters.precomputeConnectionInfo) {
+                    if (binaryInputFile != null) {
+                        connectionInfoBuilder = buildConnectionInfo(binaryInputFile, parameters.neuronJson, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addRoiInfoBinary);
+                    } else if (parameters.synapseJson == null || parameters.connectionJson == null) {
+                        LOG.warn("--precomputeConnectionInfo requires --synapseJson and --connectionJson. Connection info will be added with loader.addPropsAndConnectionInfoToSegment.");
+                    } else {
+                        connectionInfoBuilder = buildConnectionInfo(parameters.synapseJson, parameters.connectionJson, parameters.neuronJson, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addRoiInfoBinary);
+                    }
+                }
+
+                if (parameters.addConnectionInfoOnly && connectionInfoBuilder != null) {
+
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+
+                        if (!databaseInitialized) {
+                            initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                            databaseInitialized = true;
+                        }
+
+                        timer.start();
+                        neo4jImporter.addPrecomputedConnectionInfo(dataset, connectionInfoBuilder, timeStamp);
+                        LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
+                        timer.reset();
+                    }
+
+                } else if (parameters.neuronJson == null) {
+
+                    LOG.warn("--neuronJson is required to load neurons, or to add connection info without --precomputeConnectionInfo. Neurons will not be loaded.");
+
+                } else if (parameters.addConnectionInfoOnly) {
 
                     if (parameters.neuronBatchSize > 0) {
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                            loadConnectionInfoInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                            loadConnectionInfoInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, checkpointJournal, timeStamp);
                             databaseInitialized = true;
                         }
                     } else {
@@ -736,7 +1529,7 @@ public class NeuPrintMain {
                         LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
                         timer.reset();
 
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
 
                             if (!databaseInitialized) {
                                 initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
@@ -753,9 +1546,16 @@ public class NeuPrintMain {
                 } else {
 
                     if (parameters.neuronBatchSize > 0) {
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                            loadNeuronJsonInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, dataset, databaseInitialized, dataModelVersion, preHPThreshold, postHPThreshold, neuronThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                            loadNeuronJsonInBatches(parameters.neuronJson, parameters.neuronBatchSize, neo4jImporter, databaseInitialized, batchLoadOptions.addConnectionInfo(connectionInfoBuilder == null));
                             databaseInitialized = true;
+
+                            if (connectionInfoBuilder != null) {
+                                timer.start();
+                                neo4jImporter.addPrecomputedConnectionInfo(dataset, connectionInfoBuilder, timeStamp);
+                                LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
+                                timer.reset();
+                            }
                         }
                     } else {
                         timer.start();
@@ -763,7 +1563,7 @@ public class NeuPrintMain {
                         LOG.info(String.format("Reading in neurons JSON took: %s", timer.stop()));
                         timer.reset();
 
-                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                        try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
 
                             if (!databaseInitialized) {
                                 initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
@@ -775,7 +1575,11 @@ public class NeuPrintMain {
                             timer.reset();
 
                             timer.start();
-                            neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+                            if (connectionInfoBuilder != null) {
+                                neo4jImporter.addPrecomputedConnectionInfo(dataset, connectionInfoBuilder, timeStamp);
+                            } else {
+                                neo4jImporter.addConnectionInfo(dataset, neuronList, parameters.addConnectionSetRoiInfoAndWeightHP, preHPThreshold, postHPThreshold, neuronThreshold);
+                            }
                             LOG.info(String.format("Loading all connection info took: %s", timer.stop()));
                             timer.reset();
                         }
@@ -786,28 +1590,35 @@ public class NeuPrintMain {
             if (parameters.skeletonDirectory != null) {
 
                 final File folder = new File(parameters.skeletonDirectory);
-                final File[] arrayOfSwcFiles = folder.listFiles((dir, name) -> name.toLowerCase().endsWith(".swc"));
+                final File[] arrayOfSwcFiles = folder.listFiles((dir, name) -> isSwcFile(name));
 
                 assert arrayOfSwcFiles != null : "No swc files found.";
                 LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
 
                 if (parameters.skeletonBatchSize > 0) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
-                        loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                        loadSkeletonsInBatches(arrayOfSwcFiles, parameters.skeletonBatchSize, databaseInitialized, neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, parameters.swcParseThreads, parameters.useUnwindForSkeletons, checkpointJournal, timeStamp);
                         databaseInitialized = true;
                     }
                 } else {
 
-                    final List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+                    timer.start();
+                    final List<Skeleton> skeletonList = createSkeletonListFromSwcFileArray(arrayOfSwcFiles, parameters.swcParseThreads);
+                    LOG.info("Reading all swc files took: " + timer.stop());
+                    timer.reset();
 
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
 
                         if (!databaseInitialized) {
                             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
                         }
 
                         timer.start();
-                        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+                        if (parameters.useUnwindForSkeletons) {
+                            neo4jImporter.addSkeletonNodesUsingUnwind(dataset, skeletonList, timeStamp);
+                        } else {
+                            neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+                        }
                         LOG.info("Loading all Skeleton nodes took: " + timer.stop());
                         timer.reset();
                     }
@@ -820,7 +1631,7 @@ public class NeuPrintMain {
                 // read meta info data
                 MetaInfo metaInfo = readMetaInfoJson(parameters.metaInfoJson);
                 if (metaInfo != null) {
-                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig())) {
+                    try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
                         if (!databaseInitialized) {
                             initializeDatabase(neo4jImporter, dataset, dataModelVersion, preHPThreshold, postHPThreshold, parameters.addConnectionSetRoiInfoAndWeightHP, parameters.addClusterNames, timeStamp);
                         }
@@ -831,6 +1642,19 @@ public class NeuPrintMain {
 
             }
 
+            if (databaseInitialized && parameters.getDbConfig() != null && parameters.getDbConfig().isDeferIndexes()) {
+                try (Neo4jImporter neo4jImporter = new Neo4jImporter(parameters.getDbConfig(), commitLog)) {
+                    timer.start();
+                    if (!neo4jImporter.createDeferredIndexes(dataset, parameters.addClusterNames)) {
+                        LOG.error("Not all deferred indexes could be created.");
+                    }
+                    LOG.info("Creating deferred indexes took: " + timer.stop());
+                    timer.reset();
+                }
+            }
+
+            commitLog.logSummary();
+
         } catch (Exception e) {
             LOG.error("Error loading data: " + e);
             System.exit(1);
@@ -838,6 +1662,94 @@ public class NeuPrintMain {
 
     }
 
+    /**
+     * Writes neo4j-admin import CSV files for all provided inputs rather than loading the database.
+     *
+     * @param parameters command line parameters
+     * @param timeStamp  time stamp for load
+     */
+    private static void exportCsvFiles(final NeuPrintParameters parameters, final LocalDateTime timeStamp) {
+
+        File[] arrayOfSwcFiles = null;
+        if (parameters.skeletonDirectory != null) {
+            final File folder = new File(parameters.skeletonDirectory);
+            arrayOfSwcFiles = folder.listFiles((dir, name) -> isSwcFile(name));
+            assert arrayOfSwcFiles != null : "No swc files found.";
+            LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
+        }
+
+        MetaInfo metaInfo = null;
+        if (parameters.metaInfoJson != null) {
+            metaInfo = readMetaInfoJson(parameters.metaInfoJson);
+        }
+
+        Stopwatch timer = Stopwatch.createStarted();
+        try {
+            Neo4jAdminCsvExporter exporter = new Neo4jAdminCsvExporter(parameters.datasetLabel,
+                    new File(parameters.csvOutputDirectory),
+                    parameters.dataModelVersion,
+                    parameters.preHPThreshold,
+                    parameters.postHPThreshold,
+                    parameters.neuronThreshold,
+                    parameters.addConnectionSetRoiInfoAndWeightHP,
+                    parameters.csvThreads,
+                    timeStamp);
+            exporter.export(parameters.synapseJson, parameters.connectionJson, parameters.neuronJson, arrayOfSwcFiles, metaInfo);
+        } catch (Exception e) {
+            LOG.error("Error writing CSV files: " + e);
+            System.exit(1);
+        }
+        LOG.info("Writing all CSV files took: " + timer.stop());
+
+    }
+
+    /**
+     * Writes all provided inputs directly to a new neo4j store with the embedded batch inserter rather than loading the database through Bolt.
+     *
+     * @param parameters command line parameters
+     * @param timeStamp  time stamp for load
+     */
+    private static void batchInsertStore(final NeuPrintParameters parameters, final LocalDateTime timeStamp) {
+
+        File[] arrayOfSwcFiles = null;
+        if (parameters.skeletonDirectory != null) {
+            final File folder = new File(parameters.skeletonDirectory);
+            arrayOfSwcFiles = folder.listFiles((dir, name) -> isSwcFile(name));
+            assert arrayOfSwcFiles != null : "No swc files found.";
+            LOG.info("Reading in " + arrayOfSwcFiles.length + " swc files.");
+        }
+
+        MetaInfo metaInfo = null;
+        if (parameters.metaInfoJson != null) {
+            metaInfo = readMetaInfoJson(parameters.metaInfoJson);
+        }
+
+        final Map<String, String> storeConfig = new HashMap<>();
+        if (parameters.storePageCacheMemory != null) {
+            storeConfig.put("dbms.pagecache.memory", parameters.storePageCacheMemory);
+        }
+
+        Stopwatch timer = Stopwatch.createStarted();
+        try {
+            BatchInsertLoader loader = new BatchInsertLoader(parameters.datasetLabel,
+                    new File(parameters.storeDirectory),
+                    storeConfig,
+                    parameters.dataModelVersion,
+                    parameters.preHPThreshold,
+                    parameters.postHPThreshold,
+                    parameters.neuronThreshold,
+                    parameters.addConnectionSetRoiInfoAndWeightHP,
+                    parameters.csvThreads,
+                    timeStamp);
+            loader.load(parameters.synapseJson, parameters.connectionJson, parameters.neuronJson, arrayOfSwcFiles, metaInfo);
+        } catch (Exception e) {
+            LOG.error("Error writing store: " + e);
+            System.exit(1);
+        }
+        LOG.info("Writing store took: " + timer.stop());
+
+    }
+
     private static final Logger LOG = LoggerFactory.getLogger(NeuPrintMain.class);
 
 }
@@ -0,0 +1,531 @@
+package org.janelia.flyem.neuprint.binary;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+/**
+ * Read-only view of a binary input file written by {@link BinaryInputWriter}. The file holds the synapses, synaptic
+ * connections and neuron synapse sets of a dataset in fixed-width little-endian records, so it can be memory-mapped
+ * with {@link FileChannel#map} and read in place: opening a file only reads its header, ROI names and ROI lists,
+ * and cursors read records directly from the mapped pages without decoding the whole file.
+ * <p>
+ * File layout (all sections start at multiples of 8 bytes):
+ * <pre>
+ * header        magic "NEUPRINT", int version, int header size, then (long offset, long count) for each section
+ * synapses      32 bytes each: double confidence, int x, int y, int z, int ROI list id, byte type (0 pre, 1 post)
+ * connections   24 bytes each: int pre x, y, z, int post x, y, z
+ * locations     12 bytes each: int x, y, z of the synapse sets of all neurons, neuron by neuron
+ * neurons       16 bytes each: long bodyId, long index of the neuron's first location (CSR offsets; a neuron's
+ *               locations end where the next neuron's begin)
+ * ROI names     int[count + 1] byte offsets followed by the UTF-8 bytes of each name
+ * ROI lists     int[count + 1] offsets followed by the ROI name ids of each distinct ROI list, in input order
+ * </pre>
+ * Sections larger than 2 GB are mapped as several buffers that each hold a whole number of records.
+ * <p>
+ * Cursors are not thread-safe, but any number of cursors may read the same file concurrently, e.g. one per region
+ * when processing records in parallel. Mapped buffers are released when garbage collected, not by {@link #close()}.
+ */
+public class BinaryInputFile implements AutoCloseable {
+
+    static final long MAGIC = 0x544E495250554E45L; // "NEUPRINT" in little-endian order
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 128;
+
+    static final int SYNAPSES = 0;
+    static final int CONNECTIONS = 1;
+    static final int NEURON_LOCATIONS = 2;
+    static final int NEURONS = 3;
+    static final int ROI_NAMES = 4;
+    static final int ROI_LISTS = 5;
+    static final int SECTION_COUNT = 6;
+
+    static final int SYNAPSE_RECORD_SIZE = 32;
+    static final int CONNECTION_RECORD_SIZE = 24;
+    static final int LOCATION_RECORD_SIZE = 12;
+    static final int NEURON_RECORD_SIZE = 16;
+
+    static final byte PRE = 0;
+    static final byte POST = 1;
+
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final Section synapses;
+    private final Section connections;
+    private final Section neuronLocations;
+    private final Section neurons;
+    private final long totalNeuronLocationCount;
+    private final String[] roiNames;
+    private final int[][] roiLists;
+
+    private BinaryInputFile(final File file) throws IOException {
+        this.file = file;
+        this.randomAccessFile = new RandomAccessFile(file, "r");
+        boolean opened = false;
+        try {
+            final FileChannel channel = randomAccessFile.getChannel();
+            if (channel.size() < HEADER_SIZE) {
+                throw new IOException(file + " is not a neuPrint binary input file (too short)");
+            }
+            final ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            if (header.getLong(0) != MAGIC) {
+                throw new IOException(file + " is not a neuPrint binary input file");
+            }
+            final int version = header.getInt(8);
+            if (version != VERSION) {
+                throw new IOException(file + " has binary input format version " + version + " but only version " + VERSION + " is supported; convert the JSON files again");
+            }
+
+            final long[] offsets = new long[SECTION_COUNT];
+            final long[] counts = new long[SECTION_COUNT];
+            for (int i = 0; i < SECTION_COUNT; i++) {
+                offsets[i] = header.getLong(16 + 16 * i);
+                counts[i] = header.getLong(24 + 16 * i);
+            }
+
+            this.synapses = new Section(channel, offsets[SYNAPSES], counts[SYNAPSES], SYNAPSE_RECORD_SIZE);
+            this.connections = new Section(channel, offsets[CONNECTIONS], counts[CONNECTIONS], CONNECTION_RECORD_SIZE);
+            this.neuronLocations = new Section(channel, offsets[NEURON_LOCATIONS], counts[NEURON_LOCATIONS], LOCATION_RECORD_SIZE);
+            this.neurons = new Section(channel, offsets[NEURONS], counts[NEURONS], NEURON_RECORD_SIZE);
+            this.totalNeuronLocationCount = counts[NEURON_LOCATIONS];
+            this.roiNames = readRoiNames(channel, offsets[ROI_NAMES], (int) counts[ROI_NAMES]);
+            this.roiLists = readRoiLists(channel, offsets[ROI_LISTS], (int) counts[ROI_LISTS]);
+            opened = true;
+        } finally {
+            if (!opened) {
+                randomAccessFile.close();
+            }
+        }
+    }
+
+    /**
+     * Opens and maps a binary input file.
+     *
+     * @param file file written by {@link BinaryInputWriter}
+     * @return {@link BinaryInputFile}
+     * @throws IOException if the file cannot be read or is not a binary input file of a supported version
+     */
+    public static BinaryInputFile open(final File file) throws IOException {
+        return new BinaryInputFile(file);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public long getSynapseCount() {
+        return synapses.count;
+    }
+
+    public long getConnectionCount() {
+        return connections.count;
+    }
+
+    public long getNeuronCount() {
+        return neurons.count;
+    }
+
+    /**
+     * @return names of all ROIs, indexed by ROI name id
+     */
+    public String[] getRoiNames() {
+        return roiNames.clone();
+    }
+
+    /**
+     * @return number of distinct ROI lists
+     */
+    public int getRoiListCount() {
+        return roiLists.length;
+    }
+
+    /**
+     * @param roiListId ROI list id
+     * @return ROI names of the list, in input order (the first listed ROI is the super-level ROI)
+     */
+    public String[] getRoiList(final int roiListId) {
+        final int[] roiIds = roiLists[roiListId];
+        final String[] names = new String[roiIds.length];
+        for (int i = 0; i < roiIds.length; i++) {
+            names[i] = roiNames[roiIds[i]];
+        }
+        return names;
+    }
+
+    /**
+     * @param from index of first synapse
+     * @param to   index after last synapse
+     * @return cursor over the synapses in [from, to)
+     */
+    public SynapseCursor synapses(final long from, final long to) {
+        return new SynapseCursor(from, checkRange(from, to, synapses.count));
+    }
+
+    /**
+     * @param from index of first connection
+     * @param to   index after last connection
+     * @return cursor over the synaptic connections in [from, to)
+     */
+    public ConnectionCursor connections(final long from, final long to) {
+        return new ConnectionCursor(from, checkRange(from, to, connections.count));
+    }
+
+    /**
+     * @param from index of first neuron
+     * @param to   index after last neuron
+     * @return cursor over the neuron synapse sets in [from, to)
+     */
+    public NeuronCursor neurons(final long from, final long to) {
+        return new NeuronCursor(from, checkRange(from, to, neurons.count));
+    }
+
+    /**
+     * Splits [0, count) into at most the given number of contiguous regions of nearly equal size, for processing
+     * records in parallel with one cursor per region.
+     *
+     * @param count   number of records
+     * @param regions number of regions
+     * @return start of each region followed by count (so region i is [starts[i], starts[i + 1]))
+     */
+    public static long[] split(final long count, final int regions) {
+        final int regionCount = (int) Math.max(1, Math.min(regions, count));
+        final long[] starts = new long[regionCount + 1];
+        for (int i = 0; i <= regionCount; i++) {
+            starts[i] = count * i / regionCount;
+        }
+        return starts;
+    }
+
+    /**
+     * Creates {@link Synapse} objects for the synapses in [from, to), decoding regions of the range in parallel.
+     *
+     * @param from    index of first synapse
+     * @param to      index after last synapse
+     * @param threads number of regions to decode in parallel
+     * @return synapses in file order
+     */
+    public List<Synapse> readSynapses(final long from, final long to, final int threads) {
+        final long[] starts = split(to - from, threads);
+        final List<List<Synapse>> regions = new ArrayList<>(Collections.nCopies(starts.length - 1, null));
+        IntStream.range(0, starts.length - 1).parallel().forEach(i -> {
+            final SynapseCursor cursor = synapses(from + starts[i], from + starts[i + 1]);
+            final List<Synapse> synapseList = new ArrayList<>((int) (starts[i + 1] - starts[i]));
+            while (cursor.next()) {
+                synapseList.add(cursor.toSynapse());
+            }
+            regions.set(i, synapseList);
+        });
+        final List<Synapse> synapseList = new ArrayList<>((int) (to - from));
+        regions.forEach(synapseList::addAll);
+        return synapseList;
+    }
+
+    /**
+     * Creates {@link SynapticConnection} objects for the connections in [from, to).
+     *
+     * @param from index of first connection
+     * @param to   index after last connection
+     * @return connections in file order
+     */
+    public List<SynapticConnection> readConnections(final long from, final long to) {
+        final ConnectionCursor cursor = connections(from, to);
+        final List<SynapticConnection> connectionList = new ArrayList<>((int) (to - from));
+        while (cursor.next()) {
+            connectionList.add(cursor.toSynapticConnection());
+        }
+        return connectionList;
+    }
+
+    @Override
+    public void close() throws IOException {
+        randomAccessFile.close();
+    }
+
+    private static long checkRange(final long from, final long to, final long count) {
+        if (from < 0 || to < from || to > count) {
+            throw new IndexOutOfBoundsException("range [" + from + ", " + to + ") out of bounds for " + count + " records");
+        }
+        return to;
+    }
+
+    private static String[] readRoiNames(final FileChannel channel, final long offset, final int count) throws IOException {
+        final ByteBuffer buffer = mapSmallSection(channel, offset, 4L * (count + 1));
+        final int byteCount = buffer.getInt(4 * count);
+        final ByteBuffer bytes = mapSmallSection(channel, offset + 4L * (count + 1), byteCount);
+        final String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            final byte[] name = new byte[buffer.getInt(4 * (i + 1)) - buffer.getInt(4 * i)];
+            ((Buffer) bytes).position(buffer.getInt(4 * i));
+            bytes.get(name);
+            names[i] = new String(name, StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    private static int[][] readRoiLists(final FileChannel channel, final long offset, final int count) throws IOException {
+        final ByteBuffer buffer = mapSmallSection(channel, offset, 4L * (count + 1));
+        final int idCount = buffer.getInt(4 * count);
+        final ByteBuffer ids = mapSmallSection(channel, offset + 4L * (count + 1), 4L * idCount);
+        final int[][] lists = new int[count][];
+        for (int i = 0; i < count; i++) {
+            final int start = buffer.getInt(4 * i);
+            lists[i] = new int[buffer.getInt(4 * (i + 1)) - start];
+            for (int j = 0; j < lists[i].length; j++) {
+                lists[i][j] = ids.getInt(4 * (start + j));
+            }
+        }
+        return lists;
+    }
+
+    private static ByteBuffer mapSmallSection(final FileChannel channel, final long offset, final long size) throws IOException {
+        if (offset + size > channel.size()) {
+            throw new IOException("binary input file is truncated");
+        }
+        return channel.map(FileChannel.MapMode.READ_ONLY, offset, size).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * A section of fixed-width records, mapped as one or more buffers of whole records.
+     */
+    private static final class Section {
+
+        private final long count;
+        private final int recordSize;
+        private final int recordsPerBuffer;
+        private final MappedByteBuffer[] buffers;
+
+        private Section(final FileChannel channel, final long offset, final long count, final int recordSize) throws IOException {
+            this.count = count;
+            this.recordSize = recordSize;
+            this.recordsPerBuffer = Integer.MAX_VALUE / recordSize;
+            if (offset + count * recordSize > channel.size()) {
+                throw new IOException("binary input file is truncated");
+            }
+            this.buffers = new MappedByteBuffer[(int) ((count + recordsPerBuffer - 1) / recordsPerBuffer)];
+            for (int i = 0; i < buffers.length; i++) {
+                final long first = (long) i * recordsPerBuffer;
+                final long records = Math.min(recordsPerBuffer, count - first);
+                buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + first * recordSize, records * recordSize);
+                buffers[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+
+        private ByteBuffer buffer(final long index) {
+            return buffers[(int) (index / recordsPerBuffer)];
+        }
+
+        private int position(final long index) {
+            return (int) (index % recordsPerBuffer) * recordSize;
+        }
+    }
+
+    /**
+     * Iterates over a range of records. Call {@link #next()} before reading the first record.
+     */
+    public abstract static class Cursor {
+
+        private final Section section;
+        private final long to;
+        long index;
+        ByteBuffer buffer;
+        int position;
+
+        private Cursor(final Section section, final long from, final long to) {
+            this.section = section;
+            this.index = from - 1;
+            this.to = to;
+        }
+
+        /**
+         * @return true if the cursor moved to another record, false at the end of the range
+         */
+        public boolean next() {
+            if (index + 1 >= to) {
+                index = to;
+                return false;
+            }
+            index++;
+            buffer = section.buffer(index);
+            position = section.position(index);
+            return true;
+        }
+
+        /**
+         * @return index of the current record within the file
+         */
+        public long getIndex() {
+            return index;
+        }
+    }
+
+    /**
+     * Reads synapse records in place.
+     */
+    public final class SynapseCursor extends Cursor {
+
+        private SynapseCursor(final long from, final long to) {
+            super(synapses, from, to);
+        }
+
+        public double getConfidence() {
+            return buffer.getDouble(position);
+        }
+
+        public int getX() {
+            return buffer.getInt(position + 8);
+        }
+
+        public int getY() {
+            return buffer.getInt(position + 12);
+        }
+
+        public int getZ() {
+            return buffer.getInt(position + 16);
+        }
+
+        /**
+         * @return id of the synapse's ROI list (see {@link BinaryInputFile#getRoiList})
+         */
+        public int getRoiListId() {
+            return buffer.getInt(position + 20);
+        }
+
+        public boolean isPre() {
+            return buffer.get(position + 24) == PRE;
+        }
+
+        /**
+         * @return "pre" or "post"
+         */
+        public String getType() {
+            return isPre() ? "pre" : "post";
+        }
+
+        /**
+         * @return a new {@link Synapse} with the values of the current record
+         */
+        public Synapse toSynapse() {
+            final int[] roiIds = roiLists[getRoiListId()];
+            final Set<String> rois = new LinkedHashSet<>();
+            for (final int roiId : roiIds) {
+                rois.add(roiNames[roiId]);
+            }
+            return new Synapse(getType(), getConfidence(), new Location((long) getX(), (long) getY(), (long) getZ()), rois);
+        }
+    }
+
+    /**
+     * Reads synaptic connection records in place.
+     */
+    public final class ConnectionCursor extends Cursor {
+
+        private ConnectionCursor(final long from, final long to) {
+            super(connections, from, to);
+        }
+
+        public int getPreX() {
+            return buffer.getInt(position);
+        }
+
+        public int getPreY() {
+            return buffer.getInt(position + 4);
+        }
+
+        public int getPreZ() {
+            return buffer.getInt(position + 8);
+        }
+
+        public int getPostX() {
+            return buffer.getInt(position + 12);
+        }
+
+        public int getPostY() {
+            return buffer.getInt(position + 16);
+        }
+
+        public int getPostZ() {
+            return buffer.getInt(position + 20);
+        }
+
+        /**
+         * @return a new {@link SynapticConnection} with the values of the current record
+         */
+        public SynapticConnection toSynapticConnection() {
+            return new SynapticConnection(new Location((long) getPreX(), (long) getPreY(), (long) getPreZ()),
+                    new Location((long) getPostX(), (long) getPostY(), (long) getPostZ()));
+        }
+    }
+
+    /**
+     * Reads neuron records and their synapse locations in place.
+     */
+    public final class NeuronCursor extends Cursor {
+
+        private long firstLocation;
+        private long locationCount;
+
+        private NeuronCursor(final long from, final long to) {
+            super(neurons, from, to);
+        }
+
+        @Override
+        public boolean next() {
+            if (!super.next()) {
+                return false;
+            }
+            firstLocation = buffer.getLong(position + 8);
+            final long end = index + 1 < neurons.count ?
+                    neurons.buffer(index + 1).getLong(neurons.position(index + 1) + 8) :
+                    totalNeuronLocationCount;
+            locationCount = end - firstLocation;
+            return true;
+        }
+
+        public long getBodyId() {
+            return buffer.getLong(position);
+        }
+
+        /**
+         * @return number of synapse locations in the neuron's synapse set (including any repeated locations)
+         */
+        public int getSynapseCount() {
+            return (int) locationCount;
+        }
+
+        public int getSynapseX(final int i) {
+            return neuronLocations.buffer(firstLocation + i).getInt(neuronLocations.position(firstLocation + i));
+        }
+
+        public int getSynapseY(final int i) {
+            return neuronLocations.buffer(firstLocation + i).getInt(neuronLocations.position(firstLocation + i) + 4);
+        }
+
+        public int getSynapseZ(final int i) {
+            return neuronLocations.buffer(firstLocation + i).getInt(neuronLocations.position(firstLocation + i) + 8);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryInputFile{" + file + ", synapses = " + synapses.count + ", connections = " + connections.count +
+                ", neurons = " + neurons.count + ", rois = " + Arrays.toString(roiNames) + "}";
+    }
+
+}
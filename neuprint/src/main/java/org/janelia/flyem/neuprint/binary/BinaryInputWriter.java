@@ -0,0 +1,277 @@
+package org.janelia.flyem.neuprint.binary;
+
+import com.google.common.base.Stopwatch;
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.io.CompressedInput;
+import org.janelia.flyem.neuprint.json.NeuronRecord;
+import org.janelia.flyem.neuprint.json.StreamingJsonDecoder;
+import org.janelia.flyem.neuprint.json.SynapseRecord;
+import org.janelia.flyem.neuprint.json.SynapticConnectionRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Converts synapse, connection and neuron JSON files into the binary input format read by {@link BinaryInputFile}.
+ * The JSON files are read once with a {@link StreamingJsonDecoder}, so they are validated as they would be during a
+ * load. Only the values needed to load synapses and connections and to compute connection information are kept:
+ * neuron properties other than the bodyId and synapse set are not converted.
+ * <p>
+ * Coordinates are stored as ints; a coordinate outside the int range fails the conversion.
+ */
+public class BinaryInputWriter {
+
+    private static final int BUFFER_SIZE = 1 << 20;
+    private static final byte[] PADDING = new byte[8];
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final long[] sectionOffsets = new long[BinaryInputFile.SECTION_COUNT];
+    private final long[] sectionCounts = new long[BinaryInputFile.SECTION_COUNT];
+    private final Map<String, Integer> roiIdByName = new HashMap<>();
+    private final List<String> roiNames = new ArrayList<>();
+    private final Map<List<Integer>, Integer> roiListIdByRoiIds = new HashMap<>();
+    private final List<List<Integer>> roiLists = new ArrayList<>();
+    private long position;
+
+    private BinaryInputWriter(final FileChannel channel) {
+        this.channel = channel;
+        this.position = BinaryInputFile.HEADER_SIZE;
+    }
+
+    /**
+     * Writes a binary input file from JSON files. Any of the JSON files may be null, in which case the file has no
+     * records of that kind.
+     *
+     * @param synapseJson    path to synapses JSON file
+     * @param connectionJson path to connections JSON file
+     * @param neuronJson     path to neurons JSON file
+     * @param outputFile     binary input file to write (replaced if it exists)
+     * @throws IOException if a JSON file cannot be read or the output cannot be written
+     */
+    public static void convert(final String synapseJson,
+                               final String connectionJson,
+                               final String neuronJson,
+                               final File outputFile) throws IOException {
+
+        final Stopwatch timer = Stopwatch.createStarted();
+        try (FileChannel channel = FileChannel.open(outputFile.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            final BinaryInputWriter writer = new BinaryInputWriter(channel);
+            final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+            if (synapseJson != null) {
+                writer.writeSynapses(synapseJson, decoder);
+            }
+            if (connectionJson != null) {
+                writer.writeConnections(connectionJson, decoder);
+            }
+            if (neuronJson != null) {
+                writer.writeNeurons(neuronJson, decoder);
+            }
+            writer.writeRoiNames();
+            writer.writeRoiLists();
+            writer.flush();
+            writer.writeHeader();
+            channel.force(false);
+            LOG.info("Wrote {} synapses, {} connections and {} neurons to {} ({} bytes) in {}",
+                    writer.sectionCounts[BinaryInputFile.SYNAPSES], writer.sectionCounts[BinaryInputFile.CONNECTIONS],
+                    writer.sectionCounts[BinaryInputFile.NEURONS], outputFile, writer.position, timer.stop());
+        }
+    }
+
+    private void writeSynapses(final String synapseJson, final StreamingJsonDecoder decoder) throws IOException {
+        startSection(BinaryInputFile.SYNAPSES);
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(synapseJson))) {
+            reader.beginArray();
+            final SynapseRecord synapse = new SynapseRecord();
+            final List<Integer> roiIds = new ArrayList<>();
+            while (reader.hasNext()) {
+                decoder.readSynapse(reader, synapse);
+                roiIds.clear();
+                for (int i = 0; i < synapse.getRoiCount(); i++) {
+                    roiIds.add(getRoiId(synapse.getRoi(i)));
+                }
+                Integer roiListId = roiListIdByRoiIds.get(roiIds);
+                if (roiListId == null) {
+                    roiListId = roiLists.size();
+                    final List<Integer> roiList = new ArrayList<>(roiIds);
+                    roiLists.add(roiList);
+                    roiListIdByRoiIds.put(roiList, roiListId);
+                }
+                ensureCapacity(BinaryInputFile.SYNAPSE_RECORD_SIZE);
+                buffer.putDouble(synapse.getConfidence());
+                putLocation(synapse.getX(), synapse.getY(), synapse.getZ());
+                buffer.putInt(roiListId);
+                buffer.put(synapse.getType().equals("pre") ? BinaryInputFile.PRE : BinaryInputFile.POST);
+                buffer.put(PADDING, 0, 7);
+                sectionCounts[BinaryInputFile.SYNAPSES]++;
+            }
+        }
+    }
+
+    private void writeConnections(final String connectionJson, final StreamingJsonDecoder decoder) throws IOException {
+        startSection(BinaryInputFile.CONNECTIONS);
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(connectionJson))) {
+            reader.beginArray();
+            final SynapticConnectionRecord connection = new SynapticConnectionRecord();
+            while (reader.hasNext()) {
+                decoder.readSynapticConnection(reader, connection);
+                ensureCapacity(BinaryInputFile.CONNECTION_RECORD_SIZE);
+                putLocation(connection.getPreX(), connection.getPreY(), connection.getPreZ());
+                putLocation(connection.getPostX(), connection.getPostY(), connection.getPostZ());
+                sectionCounts[BinaryInputFile.CONNECTIONS]++;
+            }
+        }
+    }
+
+    private void writeNeurons(final String neuronJson, final StreamingJsonDecoder decoder) throws IOException {
+        // locations are written as the neurons are read; the CSR index is held in memory and written after them
+        long[] bodyIds = new long[1024];
+        long[] firstLocations = new long[1024];
+        int neuronCount = 0;
+        startSection(BinaryInputFile.NEURON_LOCATIONS);
+        try (JsonReader reader = new JsonReader(CompressedInput.openReader(neuronJson))) {
+            reader.beginArray();
+            final NeuronRecord neuron = new NeuronRecord();
+            while (reader.hasNext()) {
+                decoder.readNeuron(reader, neuron);
+                if (neuronCount == bodyIds.length) {
+                    bodyIds = Arrays.copyOf(bodyIds, 2 * neuronCount);
+                    firstLocations = Arrays.copyOf(firstLocations, 2 * neuronCount);
+                }
+                bodyIds[neuronCount] = neuron.getId();
+                firstLocations[neuronCount] = sectionCounts[BinaryInputFile.NEURON_LOCATIONS];
+                neuronCount++;
+                for (int i = 0; i < neuron.getSynapseCount(); i++) {
+                    ensureCapacity(BinaryInputFile.LOCATION_RECORD_SIZE);
+                    putLocation(neuron.getSynapseX(i), neuron.getSynapseY(i), neuron.getSynapseZ(i));
+                    sectionCounts[BinaryInputFile.NEURON_LOCATIONS]++;
+                }
+            }
+        }
+
+        startSection(BinaryInputFile.NEURONS);
+        for (int i = 0; i < neuronCount; i++) {
+            ensureCapacity(BinaryInputFile.NEURON_RECORD_SIZE);
+            buffer.putLong(bodyIds[i]);
+            buffer.putLong(firstLocations[i]);
+        }
+        sectionCounts[BinaryInputFile.NEURONS] = neuronCount;
+    }
+
+    private void writeRoiNames() throws IOException {
+        startSection(BinaryInputFile.ROI_NAMES);
+        final byte[][] names = new byte[roiNames.size()][];
+        int offset = 0;
+        for (int i = 0; i < names.length; i++) {
+            names[i] = roiNames.get(i).getBytes(StandardCharsets.UTF_8);
+            ensureCapacity(4);
+            buffer.putInt(offset);
+            offset += names[i].length;
+        }
+        ensureCapacity(4);
+        buffer.putInt(offset);
+        for (final byte[] name : names) {
+            ensureCapacity(name.length);
+            buffer.put(name);
+        }
+        sectionCounts[BinaryInputFile.ROI_NAMES] = names.length;
+    }
+
+    private void writeRoiLists() throws IOException {
+        startSection(BinaryInputFile.ROI_LISTS);
+        int offset = 0;
+        for (final List<Integer> roiList : roiLists) {
+            ensureCapacity(4);
+            buffer.putInt(offset);
+            offset += roiList.size();
+        }
+        ensureCapacity(4);
+        buffer.putInt(offset);
+        for (final List<Integer> roiList : roiLists) {
+            for (final int roiId : roiList) {
+                ensureCapacity(4);
+                buffer.putInt(roiId);
+            }
+        }
+        sectionCounts[BinaryInputFile.ROI_LISTS] = roiLists.size();
+    }
+
+    private void writeHeader() throws IOException {
+        final ByteBuffer header = ByteBuffer.allocate(BinaryInputFile.HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putLong(BinaryInputFile.MAGIC);
+        header.putInt(BinaryInputFile.VERSION);
+        header.putInt(BinaryInputFile.HEADER_SIZE);
+        for (int i = 0; i < BinaryInputFile.SECTION_COUNT; i++) {
+            header.putLong(sectionOffsets[i]);
+            header.putLong(sectionCounts[i]);
+        }
+        ((Buffer) header).clear();
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+    }
+
+    private int getRoiId(final String roi) {
+        Integer roiId = roiIdByName.get(roi);
+        if (roiId == null) {
+            roiId = roiNames.size();
+            roiNames.add(roi);
+            roiIdByName.put(roi, roiId);
+        }
+        return roiId;
+    }
+
+    private void putLocation(final long x, final long y, final long z) {
+        buffer.putInt(toInt(x, x, y, z));
+        buffer.putInt(toInt(y, x, y, z));
+        buffer.putInt(toInt(z, x, y, z));
+    }
+
+    private static int toInt(final long coordinate, final long x, final long y, final long z) {
+        if (coordinate < Integer.MIN_VALUE || coordinate > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("location " + x + ":" + y + ":" + z + " cannot be written to a binary input file, coordinates must fit in an int");
+        }
+        return (int) coordinate;
+    }
+
+    /**
+     * Pads the output to a multiple of 8 bytes and records the start of a section.
+     */
+    private void startSection(final int section) throws IOException {
+        final int padding = (int) ((8 - (position + buffer.position()) % 8) % 8);
+        ensureCapacity(padding);
+        buffer.put(PADDING, 0, padding);
+        sectionOffsets[section] = position + buffer.position();
+    }
+
+    private void ensureCapacity(final int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    private void flush() throws IOException {
+        // cast so that the Buffer methods are called when compiled with a newer JDK and run on Java 8
+        ((Buffer) buffer).flip();
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+        ((Buffer) buffer).clear();
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(BinaryInputWriter.class);
+
+}
@@ -0,0 +1,114 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Chooses the number of statements per transaction from observed commit latency (additive increase, multiplicative decrease).
+ * The batch size grows by a fixed step after every commit that finishes within the target time and is halved after a commit
+ * that takes longer than the target or fails with a transient or out-of-memory error. Every change is logged so that the
+ * sizes chosen for each load phase are recorded in the load log.
+ */
+public class AdaptiveBatchSize {
+
+    private final String name;
+    private final int minSize;
+    private final int maxSize;
+    private final int additiveIncrease;
+    private final long targetCommitMillis;
+
+    private int size;
+    private int smallestSize;
+    private int largestSize;
+    private long commitCount;
+    private long failureCount;
+
+    /**
+     * Class constructor.
+     *
+     * @param name               name of load phase (used in log messages)
+     * @param initialSize        initial number of statements per transaction
+     * @param minSize            smallest number of statements per transaction
+     * @param maxSize            largest number of statements per transaction
+     * @param targetCommitMillis commits that take longer than this halve the batch size
+     */
+    public AdaptiveBatchSize(final String name,
+                             final int initialSize,
+                             final int minSize,
+                             final int maxSize,
+                             final long targetCommitMillis) {
+        if (minSize < 1 || maxSize < minSize) {
+            throw new IllegalArgumentException("invalid batch size range [" + minSize + ", " + maxSize + "]");
+        }
+        this.name = name;
+        this.minSize = minSize;
+        this.maxSize = maxSize;
+        this.targetCommitMillis = targetCommitMillis;
+        this.size = Math.max(minSize, Math.min(maxSize, initialSize));
+        this.additiveIncrease = Math.max(1, this.size / 10);
+        this.smallestSize = this.size;
+        this.largestSize = this.size;
+    }
+
+    /**
+     * @return current number of statements per transaction
+     */
+    public synchronized int get() {
+        return size;
+    }
+
+    /**
+     * @return smallest number of statements per transaction that could be chosen
+     */
+    public int getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Records a successful commit. Grows the batch size if the commit was within the target time and the batch was full,
+     * otherwise halves it if the commit took longer than the target time.
+     *
+     * @param statementCount number of statements committed
+     * @param elapsedMillis  time taken by the commit
+     */
+    public synchronized void onCommit(final int statementCount, final long elapsedMillis) {
+        commitCount++;
+        if (elapsedMillis > targetCommitMillis) {
+            setSize(size / 2, String.format("commit of %d statements took %d ms", statementCount, elapsedMillis));
+        } else if (statementCount >= size) {
+            setSize(size + additiveIncrease, String.format("commit of %d statements took %d ms", statementCount, elapsedMillis));
+        }
+    }
+
+    /**
+     * Records a failed commit and halves the batch size.
+     *
+     * @param statementCount number of statements in the failed commit
+     * @param cause          reason for the failure
+     */
+    public synchronized void onFailure(final int statementCount, final Throwable cause) {
+        failureCount++;
+        setSize(Math.min(size, statementCount) / 2, String.format("commit of %d statements failed: %s", statementCount, cause));
+    }
+
+    private void setSize(final int requestedSize, final String reason) {
+        final int newSize = Math.max(minSize, Math.min(maxSize, requestedSize));
+        if (newSize != size) {
+            LOG.info("{}: batch size {} -> {} ({})", name, size, newSize, reason);
+            size = newSize;
+            smallestSize = Math.min(smallestSize, size);
+            largestSize = Math.max(largestSize, size);
+        }
+    }
+
+    /**
+     * Logs the batch sizes chosen during the load phase.
+     */
+    public synchronized void logSummary() {
+        LOG.info("{}: final batch size {} (smallest {}, largest {}) after {} commits and {} failed commits",
+                name, size, smallestSize, largestSize, commitCount, failureCount);
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(AdaptiveBatchSize.class);
+
+}
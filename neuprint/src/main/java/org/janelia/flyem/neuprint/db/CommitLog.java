@@ -0,0 +1,153 @@
+package org.janelia.flyem.neuprint.db;
+
+import com.google.gson.Gson;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.exceptions.Neo4jException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts committed and failed statements and transactions for a load and, if given a dead-letter file, records statements
+ * that could not be committed. When dead-lettering is enabled, a batch that fails is bisected until the failing statements
+ * are isolated (see {@link DbTransactionBatch}); each isolated statement is written to the dead-letter file as one JSON object
+ * per line containing the error, the statement text and its parameters (the source record), and the rest of the batch is committed.
+ */
+public class CommitLog implements AutoCloseable {
+
+    private final File deadLetterFile;
+    private final BufferedWriter deadLetterWriter;
+    private final long startNanos = System.nanoTime();
+    private final AtomicLong committedStatements = new AtomicLong();
+    private final AtomicLong committedTransactions = new AtomicLong();
+    private final AtomicLong failedTransactions = new AtomicLong();
+    private final AtomicLong deadLetterStatements = new AtomicLong();
+    private final Gson gson = new Gson();
+
+    /**
+     * Class constructor.
+     *
+     * @param deadLetterFile file to which statements that cannot be committed are appended, or null to fail the batch instead
+     * @throws IOException if the dead-letter file cannot be opened
+     */
+    public CommitLog(final File deadLetterFile) throws IOException {
+        this.deadLetterFile = deadLetterFile;
+        if (deadLetterFile == null) {
+            this.deadLetterWriter = null;
+        } else {
+            this.deadLetterWriter = Files.newBufferedWriter(deadLetterFile.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+            LOG.info("writing statements that fail to commit to {}", deadLetterFile);
+        }
+    }
+
+    /**
+     * @return true if failing statements are isolated and written to the dead-letter file rather than failing the batch
+     */
+    public boolean isDeadLettering() {
+        return deadLetterWriter != null;
+    }
+
+    void onCommit(final int statementCount) {
+        committedStatements.addAndGet(statementCount);
+        committedTransactions.incrementAndGet();
+    }
+
+    void onFailure() {
+        failedTransactions.incrementAndGet();
+    }
+
+    /**
+     * Writes a statement that could not be committed to the dead-letter file.
+     *
+     * @param statement statement that failed
+     * @param e         error returned by the database
+     */
+    synchronized void deadLetter(final Statement statement, final Neo4jException e) {
+        deadLetterStatements.incrementAndGet();
+        LOG.error("dead-lettering statement that failed with {}: {}", e.code(), e.getMessage());
+
+        final Map<String, Object> record = new LinkedHashMap<>();
+        record.put("timeStamp", LocalDateTime.now().toString());
+        record.put("code", e.code());
+        record.put("message", e.getMessage());
+        record.put("statement", statement.text());
+        record.put("parameters", toJsonValue(statement.parameters().asMap()));
+        try {
+            deadLetterWriter.write(gson.toJson(record));
+            deadLetterWriter.newLine();
+            deadLetterWriter.flush();
+        } catch (final IOException ioe) {
+            throw new UncheckedIOException("failed to write to dead-letter file " + deadLetterFile, ioe);
+        }
+    }
+
+    private static Object toJsonValue(final Object value) {
+        if (value instanceof Map) {
+            final Map<String, Object> map = new LinkedHashMap<>();
+            ((Map<?, ?>) value).forEach((k, v) -> map.put(String.valueOf(k), toJsonValue(v)));
+            return map;
+        } else if (value instanceof List) {
+            final List<Object> list = new ArrayList<>();
+            ((List<?>) value).forEach(v -> list.add(toJsonValue(v)));
+            return list;
+        } else if (value == null || value instanceof Number || value instanceof String || value instanceof Boolean) {
+            return value;
+        } else {
+            // points, temporal values, etc.
+            return value.toString();
+        }
+    }
+
+    public long getCommittedStatements() {
+        return committedStatements.get();
+    }
+
+    public long getCommittedTransactions() {
+        return committedTransactions.get();
+    }
+
+    public long getFailedTransactions() {
+        return failedTransactions.get();
+    }
+
+    public long getDeadLetterStatements() {
+        return deadLetterStatements.get();
+    }
+
+    /**
+     * Logs failure and throughput counters for the load.
+     */
+    public void logSummary() {
+        final double elapsedSeconds = (System.nanoTime() - startNanos) / 1e9;
+        LOG.info("committed {} statements in {} transactions ({} statements/s), {} failed transactions, {} statements written to dead-letter file {}",
+                committedStatements.get(), committedTransactions.get(), String.format("%.1f", committedStatements.get() / Math.max(elapsedSeconds, 1e-9)),
+                failedTransactions.get(), deadLetterStatements.get(), deadLetterFile);
+    }
+
+    @Override
+    public void close() {
+        if (deadLetterWriter != null) {
+            try {
+                deadLetterWriter.close();
+            } catch (final IOException e) {
+                LOG.warn("failed to close " + deadLetterFile + ", ignoring error");
+            }
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CommitLog.class);
+
+}
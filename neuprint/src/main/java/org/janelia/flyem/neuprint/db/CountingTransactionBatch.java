@@ -0,0 +1,56 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.neo4j.driver.v1.Statement;
+
+/**
+ * Records the text of each statement added to a {@link TransactionBatch} with a {@link StatementTextCounter}
+ * before passing it on. The counts for the phase are logged when the batch is closed.
+ */
+public class CountingTransactionBatch implements TransactionBatch {
+
+    private final TransactionBatch batch;
+    private final String phase;
+    private final StatementTextCounter statementTextCounter;
+
+    /**
+     * Class constructor.
+     *
+     * @param batch                batch to which statements are passed
+     * @param phase                name of load phase
+     * @param statementTextCounter counts distinct statement texts per phase
+     */
+    public CountingTransactionBatch(final TransactionBatch batch,
+                                    final String phase,
+                                    final StatementTextCounter statementTextCounter) {
+        this.batch = batch;
+        this.phase = phase;
+        this.statementTextCounter = statementTextCounter;
+    }
+
+    @Override
+    public void addStatement(final Statement statement) {
+        statementTextCounter.record(phase, statement.text());
+        batch.addStatement(statement);
+    }
+
+    @Override
+    public void addStatement(final Statement statement, final Object routingKey) {
+        statementTextCounter.record(phase, statement.text());
+        batch.addStatement(statement, routingKey);
+    }
+
+    @Override
+    public void writeTransaction() {
+        batch.writeTransaction();
+    }
+
+    @Override
+    public void close() {
+        try {
+            batch.close();
+        } finally {
+            statementTextCounter.log(phase);
+        }
+    }
+
+}
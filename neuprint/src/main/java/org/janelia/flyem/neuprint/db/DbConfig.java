@@ -19,6 +19,10 @@ public class DbConfig {
     private final String password;
     private final int statementsPerTransaction;
     private final int connectionInfoStatementsPerTransaction;
+    private final int parallelism;
+    private final boolean adaptiveBatching;
+    private final long targetCommitMillis;
+    private final boolean deferIndexes;
 
     /**
      * Class constructor.
@@ -27,18 +31,30 @@ public class DbConfig {
      * @param user                     username for database
      * @param password                 password for database
      * @param statementsPerTransaction number of statements per database transaction
-     * @param connectionInfoStatementsPerTransaction number of connection info statements per database transaction
+     * @param connectionInfoStatementsPerTransaction number of segments per connection info procedure call (each call is its own database transaction)
+     * @param parallelism              number of sessions/worker threads used to commit statements
+     * @param adaptiveBatching         if true, statements per transaction are adjusted based on commit latency and failures
+     * @param targetCommitMillis       commit time above which adaptive batching reduces the statements per transaction
+     * @param deferIndexes             if true, only constraints needed during the load are created up front; other indexes are created at the end
      */
     private DbConfig(final String uri,
                      final String user,
                      final String password,
                      final int statementsPerTransaction,
-                     final int connectionInfoStatementsPerTransaction) {
+                     final int connectionInfoStatementsPerTransaction,
+                     final int parallelism,
+                     final boolean adaptiveBatching,
+                     final long targetCommitMillis,
+                     final boolean deferIndexes) {
         this.uri = uri;
         this.user = user;
         this.password = password;
         this.statementsPerTransaction = statementsPerTransaction;
         this.connectionInfoStatementsPerTransaction = connectionInfoStatementsPerTransaction;
+        this.parallelism = parallelism;
+        this.adaptiveBatching = adaptiveBatching;
+        this.targetCommitMillis = targetCommitMillis;
+        this.deferIndexes = deferIndexes;
     }
 
     /**
@@ -71,17 +87,52 @@ public class DbConfig {
 
     /**
      *
-     * @return the number of statements per database transaction for adding connection information (procedure call that adds ConnectsTo relationships, ConnectionSets, etc; more complicated than other statements so generally needs a smaller batch size)
+     * @return the number of segments per procedure call (and database transaction) for adding connection information (procedure call that adds ConnectsTo relationships, ConnectionSets, etc; more complicated than other statements so generally needs a smaller batch size)
      */
     public int getConnectionInfoStatementsPerTransaction() {
         return connectionInfoStatementsPerTransaction;
     }
 
+    /**
+     * @return the number of sessions/worker threads used to commit synapse, segment, and skeleton statements (1 commits serially)
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * @return true if statements per transaction should be adjusted based on commit latency and failures (statementsPerTransaction and connectionInfoStatementsPerTransaction are then starting sizes)
+     */
+    public boolean isAdaptiveBatching() {
+        return adaptiveBatching;
+    }
+
+    /**
+     * @return commit time in milliseconds above which adaptive batching reduces the statements per transaction
+     */
+    public long getTargetCommitMillis() {
+        return targetCommitMillis;
+    }
+
+    /**
+     * @return true if indexes that are not needed while loading should be created after the load rather than before it
+     */
+    public boolean isDeferIndexes() {
+        return deferIndexes;
+    }
+
     /**
      * Returns a DbConfig object based on a java {@link Properties} file. The
      * properties file must contain uri, username, and password properties.
      * Optionally, a statementsPerTransaction property can be used to specify
      * the number of statements per transaction. The default value is 100.
+     * A parallelism property can be used to commit statements with multiple
+     * sessions in parallel. The default value is 1. An adaptiveBatching property
+     * set to true adjusts the number of statements per transaction during the load,
+     * halving it when a commit takes longer than targetCommitMillis (default 1000)
+     * or fails and growing it otherwise. A deferIndexes property set to true creates
+     * only the constraints and indexes needed while loading before the load; the
+     * remaining indexes are created together once the data is loaded.
      *
      * @param file a {@link File} object representing the properties file
      * @return a {@link DbConfig} object
@@ -132,6 +183,43 @@ public class DbConfig {
                 }
             }
 
+            final String parallelismString = properties.getProperty("parallelism");
+            final int parallelism;
+            if (parallelismString == null) {
+                parallelism = 1;
+            } else {
+                try {
+                    parallelism = Integer.parseInt(parallelismString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid parallelism value '" + parallelismString +
+                                    "' specified in " + file, nfe);
+                }
+                if (parallelism < 1) {
+                    throw new IllegalArgumentException(
+                            "invalid parallelism value '" + parallelismString +
+                                    "' specified in " + file + ", must be at least 1");
+                }
+            }
+
+            final boolean adaptiveBatching = Boolean.parseBoolean(properties.getProperty("adaptiveBatching", "false"));
+
+            final String targetCommitMillisString = properties.getProperty("targetCommitMillis");
+            final long targetCommitMillis;
+            if (targetCommitMillisString == null) {
+                targetCommitMillis = 1000;
+            } else {
+                try {
+                    targetCommitMillis = Long.parseLong(targetCommitMillisString);
+                } catch (final NumberFormatException nfe) {
+                    throw new IllegalArgumentException(
+                            "invalid targetCommitMillis value '" + targetCommitMillisString +
+                                    "' specified in " + file, nfe);
+                }
+            }
+
+            final boolean deferIndexes = Boolean.parseBoolean(properties.getProperty("deferIndexes", "false"));
+
             if (uri == null) {
                 throw new IllegalArgumentException("failed to read uri from " + file);
             }
@@ -142,7 +230,7 @@ public class DbConfig {
                 throw new IllegalArgumentException("failed to read username from " + file);
             }
 
-            dbConfig = new DbConfig(uri, user, password, statementsPerTransaction, connectionInfoStatementsPerTransaction);
+            dbConfig = new DbConfig(uri, user, password, statementsPerTransaction, connectionInfoStatementsPerTransaction, parallelism, adaptiveBatching, targetCommitMillis, deferIndexes);
 
         } catch (final Exception e) {
             throw new IllegalArgumentException("failed to load properties from " + path, e);
@@ -1,22 +1,42 @@
 package org.janelia.flyem.neuprint.db;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import org.neo4j.driver.v1.Session;
 import org.neo4j.driver.v1.Statement;
 import org.neo4j.driver.v1.TransactionWork;
+import org.neo4j.driver.v1.exceptions.Neo4jException;
+import org.neo4j.driver.v1.exceptions.ServiceUnavailableException;
+import org.neo4j.driver.v1.exceptions.SessionExpiredException;
+import org.neo4j.driver.v1.exceptions.TransientException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  * Collects statements into transaction batches reducing the total number of
  * database commits.
+ * <p>
+ * If constructed with an {@link AdaptiveBatchSize}, the number of statements per transaction follows the observed commit
+ * latency, and a batch that fails with a transient or out-of-memory error is split and retried with the smaller size.
+ * Because commits are synchronous, the caller is held back while the database is busy.
+ * <p>
+ * If constructed with a {@link CommitLog} that has a dead-letter file, a batch that fails is bisected and each half retried
+ * until the failing statements are isolated. Those statements are written to the dead-letter file and the rest of the batch
+ * is committed. A failing UNWIND statement with a list parameter named {@value #ROWS_PARAMETER} is bisected in the same way
+ * over its rows, so only the failing rows are written to the dead-letter file.
  */
 public class DbTransactionBatch implements TransactionBatch {
 
+    static final String ROWS_PARAMETER = "rows";
+
     private final Session session;
     private final int statementsPerBatch;
+    private final AdaptiveBatchSize adaptiveBatchSize;
+    private final CommitLog commitLog;
     private final List<Statement> statementsToWrite;
 
     /**
@@ -27,35 +47,163 @@ public class DbTransactionBatch implements TransactionBatch {
      */
     public DbTransactionBatch(final Session session,
                               final int statementsPerBatch) {
+        this(session, statementsPerBatch, null, null);
+    }
+
+    /**
+     * Class constructor for adaptive batching.
+     *
+     * @param session           session in which transactions occur
+     * @param adaptiveBatchSize chooses the number of statements per transaction batch
+     */
+    public DbTransactionBatch(final Session session,
+                              final AdaptiveBatchSize adaptiveBatchSize) {
+        this(session, adaptiveBatchSize.get(), adaptiveBatchSize, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param session            session in which transactions occur
+     * @param statementsPerBatch number of statements per transaction batch (initial number if adaptiveBatchSize is not null)
+     * @param adaptiveBatchSize  chooses the number of statements per transaction batch (may be null)
+     * @param commitLog          counts commits and records statements that cannot be committed (may be null)
+     */
+    public DbTransactionBatch(final Session session,
+                              final int statementsPerBatch,
+                              final AdaptiveBatchSize adaptiveBatchSize,
+                              final CommitLog commitLog) {
         this.session = session;
         this.statementsPerBatch = statementsPerBatch;
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        this.commitLog = commitLog;
         this.statementsToWrite = new ArrayList<>(statementsPerBatch);
     }
 
     public void addStatement(final Statement statement) {
         statementsToWrite.add(statement);
-        if (statementsToWrite.size() >= statementsPerBatch) {
+        if (statementsToWrite.size() >= getStatementsPerBatch()) {
             writeTransaction();
         }
     }
 
     public void writeTransaction() {
+        final int statementCount = commit(session, statementsToWrite, adaptiveBatchSize, commitLog);
+        statementsToWrite.clear();
+
+        LOG.info("writeTransaction: exit, committed {} statements", statementCount);
+    }
+
+    private int getStatementsPerBatch() {
+        return adaptiveBatchSize == null ? statementsPerBatch : adaptiveBatchSize.get();
+    }
+
+    @Override
+    public void close() {
+        if (adaptiveBatchSize != null) {
+            adaptiveBatchSize.logSummary();
+        }
+        session.close();
+    }
+
+    /**
+     * Commits statements in one transaction. If adaptiveBatchSize is not null, the commit time is reported to it and
+     * a transaction that fails with a transient or out-of-memory error is split into batches of the reduced size and
+     * retried until the minimum size is reached. If commitLog has a dead-letter file, any other failed transaction is
+     * bisected and retried until the failing statements are isolated and written to the dead-letter file. A failing
+     * statement with a list of rows is then bisected over its rows, and each part of it that commits is counted as a statement.
+     *
+     * @param session           session in which transactions occur
+     * @param statements        statements to commit
+     * @param adaptiveBatchSize chooses the number of statements per transaction batch (may be null)
+     * @param commitLog         counts commits and records statements that cannot be committed (may be null)
+     * @return number of statements committed
+     */
+    static int commit(final Session session,
+                      final List<Statement> statements,
+                      final AdaptiveBatchSize adaptiveBatchSize,
+                      final CommitLog commitLog) {
         // see https://neo4j.com/docs/developer-manual/current/drivers/sessions-transactions/#driver-transactions-transaction-functions
         final TransactionWork<Void> work = tx -> {
-            statementsToWrite.forEach(tx::run);
+            statements.forEach(tx::run);
             return null;
         };
-        session.writeTransaction(work);
 
-        final int statementCount = statementsToWrite.size();
-        statementsToWrite.clear();
+        final long start = System.currentTimeMillis();
+        try {
+            session.writeTransaction(work);
+        } catch (final Neo4jException e) {
+            if (e instanceof ServiceUnavailableException || e instanceof SessionExpiredException) {
+                // the database cannot be reached, so retrying smaller batches won't help
+                throw e;
+            }
+            if (commitLog != null) {
+                commitLog.onFailure();
+            }
 
-        LOG.info("writeTransaction: exit, committed {} statements", statementCount);
+            if (adaptiveBatchSize != null && isRetriable(e) && statements.size() > adaptiveBatchSize.getMinSize()) {
+                adaptiveBatchSize.onFailure(statements.size(), e);
+                final int retrySize = Math.min(adaptiveBatchSize.get(), (statements.size() + 1) / 2);
+                int committed = 0;
+                for (int i = 0; i < statements.size(); i += retrySize) {
+                    committed += commit(session, statements.subList(i, Math.min(i + retrySize, statements.size())), adaptiveBatchSize, commitLog);
+                }
+                return committed;
+            }
+
+            if (commitLog == null || !commitLog.isDeadLettering()) {
+                throw e;
+            }
+            if (statements.size() == 1) {
+                return commitRows(session, statements.get(0), e, adaptiveBatchSize, commitLog);
+            }
+            final int middle = statements.size() / 2;
+            LOG.warn("commit: transaction of {} statements failed with {}, retrying as two transactions of {} and {} statements",
+                    statements.size(), e.code(), middle, statements.size() - middle);
+            return commit(session, statements.subList(0, middle), adaptiveBatchSize, commitLog)
+                    + commit(session, statements.subList(middle, statements.size()), adaptiveBatchSize, commitLog);
+        }
+
+        if (adaptiveBatchSize != null) {
+            adaptiveBatchSize.onCommit(statements.size(), System.currentTimeMillis() - start);
+        }
+        if (commitLog != null && statements.size() > 0) {
+            commitLog.onCommit(statements.size());
+        }
+        return statements.size();
     }
 
-    @Override
-    public void close() {
-         session.close();
+    /**
+     * Bisects the rows of a single failed statement and retries each half, or writes the statement to the dead-letter
+     * file if it has at most one row.
+     */
+    private static int commitRows(final Session session,
+                                  final Statement statement,
+                                  final Neo4jException e,
+                                  final AdaptiveBatchSize adaptiveBatchSize,
+                                  final CommitLog commitLog) {
+        final Object rows = statement.parameters().get(ROWS_PARAMETER).asObject();
+        if (!(rows instanceof List) || ((List<?>) rows).size() < 2) {
+            commitLog.deadLetter(statement, e);
+            return 0;
+        }
+        final List<?> rowList = (List<?>) rows;
+        final int middle = rowList.size() / 2;
+        LOG.warn("commit: statement with {} rows failed with {}, retrying as two statements of {} and {} rows",
+                rowList.size(), e.code(), middle, rowList.size() - middle);
+        return commit(session, Collections.singletonList(withRows(statement, rowList.subList(0, middle))), adaptiveBatchSize, commitLog)
+                + commit(session, Collections.singletonList(withRows(statement, rowList.subList(middle, rowList.size()))), adaptiveBatchSize, commitLog);
+    }
+
+    private static Statement withRows(final Statement statement, final List<?> rows) {
+        final Map<String, Object> parameters = new HashMap<>(statement.parameters().asMap());
+        parameters.put(ROWS_PARAMETER, rows);
+        return statement.withParameters(parameters);
+    }
+
+    private static boolean isRetriable(final Neo4jException e) {
+        // the driver has already retried transient errors with the same batch, so retry with a smaller batch
+        return e instanceof TransientException || (e.code() != null && e.code().contains("OutOfMemory"));
     }
 
     private static final Logger LOG = LoggerFactory.getLogger(DbTransactionBatch.class);
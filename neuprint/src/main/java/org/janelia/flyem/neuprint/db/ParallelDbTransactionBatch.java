@@ -0,0 +1,261 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Statement;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Spreads statements across several sessions, each committed by its own worker thread.
+ * Statements are partitioned by a routing key (e.g. synapse location, bodyId, skeletonId)
+ * so that all statements touching the same nodes are committed in order by the same worker,
+ * which keeps concurrent writers from deadlocking on each other. Statements added without a
+ * routing key are sent to the first worker.
+ * <p>
+ * {@link #writeTransaction()} commits everything that is pending on every worker and waits
+ * for all workers to finish, so callers can use it as a barrier between import phases.
+ */
+public class ParallelDbTransactionBatch implements TransactionBatch {
+
+    // number of batches a worker may have queued before addStatement blocks
+    private static final int MAX_QUEUED_BATCHES_PER_WORKER = 2;
+
+    private final int statementsPerBatch;
+    private final AdaptiveBatchSize adaptiveBatchSize;
+    private final List<Worker> workers;
+
+    /**
+     * Class constructor.
+     *
+     * @param driver             driver used to open one session per worker
+     * @param parallelism        number of workers (and sessions)
+     * @param statementsPerBatch number of statements per transaction batch for each worker
+     */
+    public ParallelDbTransactionBatch(final Driver driver,
+                                      final int parallelism,
+                                      final int statementsPerBatch) {
+        this(driver, parallelism, statementsPerBatch, null, null);
+    }
+
+    /**
+     * Class constructor for adaptive batching. All workers share the same {@link AdaptiveBatchSize}, so the number of
+     * statements per transaction follows the commit latency observed across workers.
+     *
+     * @param driver            driver used to open one session per worker
+     * @param parallelism       number of workers (and sessions)
+     * @param adaptiveBatchSize chooses the number of statements per transaction batch for each worker
+     */
+    public ParallelDbTransactionBatch(final Driver driver,
+                                      final int parallelism,
+                                      final AdaptiveBatchSize adaptiveBatchSize) {
+        this(driver, parallelism, adaptiveBatchSize.get(), adaptiveBatchSize, null);
+    }
+
+    /**
+     * Class constructor.
+     *
+     * @param driver             driver used to open one session per worker
+     * @param parallelism        number of workers (and sessions)
+     * @param statementsPerBatch number of statements per transaction batch for each worker (initial number if adaptiveBatchSize is not null)
+     * @param adaptiveBatchSize  chooses the number of statements per transaction batch for each worker (may be null)
+     * @param commitLog          counts commits and records statements that cannot be committed (may be null)
+     */
+    public ParallelDbTransactionBatch(final Driver driver,
+                                      final int parallelism,
+                                      final int statementsPerBatch,
+                                      final AdaptiveBatchSize adaptiveBatchSize,
+                                      final CommitLog commitLog) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+        }
+        this.statementsPerBatch = statementsPerBatch;
+        this.adaptiveBatchSize = adaptiveBatchSize;
+        this.workers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            workers.add(new Worker(i, driver.session(), statementsPerBatch, adaptiveBatchSize, commitLog));
+        }
+    }
+
+    @Override
+    public void addStatement(final Statement statement) {
+        addToWorker(workers.get(0), statement);
+    }
+
+    @Override
+    public void addStatement(final Statement statement, final Object routingKey) {
+        if (routingKey == null) {
+            addStatement(statement);
+        } else {
+            addToWorker(workers.get(Math.floorMod(routingKey.hashCode(), workers.size())), statement);
+        }
+    }
+
+    private void addToWorker(final Worker worker, final Statement statement) {
+        worker.pendingStatements.add(statement);
+        if (worker.pendingStatements.size() >= (adaptiveBatchSize == null ? statementsPerBatch : adaptiveBatchSize.get())) {
+            worker.submitPending();
+        }
+    }
+
+    /**
+     * Commits any remaining statements on all workers and waits until every worker has finished.
+     *
+     * @throws RuntimeException if any worker failed to commit a batch since the last call
+     */
+    @Override
+    public void writeTransaction() {
+        for (final Worker worker : workers) {
+            worker.submitPending();
+        }
+        for (final Worker worker : workers) {
+            worker.awaitQueued(0);
+        }
+
+        final List<Throwable> failures = new ArrayList<>();
+        for (final Worker worker : workers) {
+            Throwable failure;
+            while ((failure = worker.newFailures.poll()) != null) {
+                failures.add(failure);
+            }
+        }
+
+        if (failures.size() > 0) {
+            final RuntimeException e = new RuntimeException(failures.size() + " batch(es) failed to commit; first failure: " + failures.get(0), failures.get(0));
+            for (int i = 1; i < failures.size(); i++) {
+                e.addSuppressed(failures.get(i));
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Waits for all queued work to finish, closes every session, and logs per-worker commit counts and failures.
+     * Statements that were added but not yet submitted by {@link #writeTransaction()} are discarded.
+     */
+    @Override
+    public void close() {
+        for (final Worker worker : workers) {
+            worker.awaitQueued(0);
+            worker.executor.shutdown();
+        }
+        for (final Worker worker : workers) {
+            try {
+                if (!worker.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    LOG.warn("close: worker {} did not terminate within 1 minute", worker.index);
+                }
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            worker.session.close();
+            LOG.info("close: worker {} committed {} statements in {} transactions, {} failed transactions",
+                    worker.index, worker.committedStatements.get(), worker.committedTransactions.get(), worker.failedTransactions.get());
+        }
+        if (adaptiveBatchSize != null) {
+            adaptiveBatchSize.logSummary();
+        }
+    }
+
+    /**
+     * @return number of statements committed by each worker, indexed by worker
+     */
+    public long[] getCommittedStatementCounts() {
+        final long[] counts = new long[workers.size()];
+        for (int i = 0; i < workers.size(); i++) {
+            counts[i] = workers.get(i).committedStatements.get();
+        }
+        return counts;
+    }
+
+    /**
+     * @return number of failed transactions for each worker, indexed by worker
+     */
+    public long[] getFailedTransactionCounts() {
+        final long[] counts = new long[workers.size()];
+        for (int i = 0; i < workers.size(); i++) {
+            counts[i] = workers.get(i).failedTransactions.get();
+        }
+        return counts;
+    }
+
+    private static class Worker {
+
+        private final int index;
+        private final Session session;
+        private final ExecutorService executor;
+        private final Deque<Future<?>> queuedBatches = new ArrayDeque<>();
+        private final ConcurrentLinkedQueue<Throwable> newFailures = new ConcurrentLinkedQueue<>();
+        private final AtomicLong committedStatements = new AtomicLong();
+        private final AtomicLong committedTransactions = new AtomicLong();
+        private final AtomicLong failedTransactions = new AtomicLong();
+        private final AdaptiveBatchSize adaptiveBatchSize;
+        private final CommitLog commitLog;
+        private List<Statement> pendingStatements;
+
+        private Worker(final int index, final Session session, final int statementsPerBatch, final AdaptiveBatchSize adaptiveBatchSize, final CommitLog commitLog) {
+            this.index = index;
+            this.session = session;
+            this.adaptiveBatchSize = adaptiveBatchSize;
+            this.commitLog = commitLog;
+            this.executor = Executors.newSingleThreadExecutor(r -> {
+                final Thread thread = new Thread(r, "neuprint-batch-worker-" + index);
+                thread.setDaemon(true);
+                return thread;
+            });
+            this.pendingStatements = new ArrayList<>(statementsPerBatch);
+        }
+
+        private void submitPending() {
+            if (pendingStatements.isEmpty()) {
+                return;
+            }
+            // backpressure: don't let the producer get too far ahead of this worker
+            awaitQueued(MAX_QUEUED_BATCHES_PER_WORKER - 1);
+
+            final List<Statement> statementsToWrite = pendingStatements;
+            pendingStatements = new ArrayList<>(statementsToWrite.size());
+
+            queuedBatches.add(executor.submit(() -> {
+                try {
+                    final int statementCount = DbTransactionBatch.commit(session, statementsToWrite, adaptiveBatchSize, commitLog);
+                    committedStatements.addAndGet(statementCount);
+                    committedTransactions.incrementAndGet();
+                    LOG.info("writeTransaction: worker {} committed {} statements", index, statementCount);
+                } catch (final Exception e) {
+                    failedTransactions.incrementAndGet();
+                    newFailures.add(e);
+                    LOG.error("writeTransaction: worker {} failed to commit {} statements: {}", index, statementsToWrite.size(), e.toString());
+                }
+            }));
+        }
+
+        private void awaitQueued(final int maxRemaining) {
+            while (queuedBatches.size() > maxRemaining) {
+                try {
+                    queuedBatches.removeFirst().get();
+                } catch (final InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("interrupted while waiting for worker " + index, e);
+                } catch (final ExecutionException e) {
+                    // failures are recorded by the task itself
+                    LOG.error("writeTransaction: worker {} task failed: {}", index, e.getCause().toString());
+                }
+            }
+        }
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(ParallelDbTransactionBatch.class);
+
+}
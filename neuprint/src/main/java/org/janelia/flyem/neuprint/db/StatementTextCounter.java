@@ -0,0 +1,62 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts the distinct statement texts sent in each phase of a load. neo4j caches query plans by statement text, so a
+ * phase that sends many distinct texts (e.g. because values were spliced into the text rather than passed as
+ * parameters) re-plans its statements and evicts other plans from the cache. A well-behaved phase sends a handful
+ * of distinct texts however many statements it sends.
+ */
+public class StatementTextCounter {
+
+    private final Map<String, Set<String>> textsByPhase = new ConcurrentHashMap<>();
+    private final Map<String, AtomicLong> statementCountByPhase = new ConcurrentHashMap<>();
+
+    /**
+     * Records a statement sent in a phase.
+     *
+     * @param phase         name of load phase
+     * @param statementText text of statement
+     */
+    public void record(final String phase, final String statementText) {
+        textsByPhase.computeIfAbsent(phase, p -> ConcurrentHashMap.newKeySet()).add(statementText);
+        statementCountByPhase.computeIfAbsent(phase, p -> new AtomicLong()).incrementAndGet();
+    }
+
+    /**
+     * @param phase name of load phase
+     * @return number of distinct statement texts recorded for the phase
+     */
+    public int getDistinctStatementTextCount(final String phase) {
+        final Set<String> texts = textsByPhase.get(phase);
+        return texts == null ? 0 : texts.size();
+    }
+
+    /**
+     * @param phase name of load phase
+     * @return number of statements recorded for the phase
+     */
+    public long getStatementCount(final String phase) {
+        final AtomicLong statementCount = statementCountByPhase.get(phase);
+        return statementCount == null ? 0 : statementCount.get();
+    }
+
+    /**
+     * Logs the number of distinct statement texts and statements recorded for a phase.
+     *
+     * @param phase name of load phase
+     */
+    public void log(final String phase) {
+        LOG.info("{}: {} distinct statement texts in {} statements", phase, getDistinctStatementTextCount(phase), getStatementCount(phase));
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(StatementTextCounter.class);
+
+}
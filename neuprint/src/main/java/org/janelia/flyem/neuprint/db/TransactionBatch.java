@@ -16,6 +16,18 @@ public interface TransactionBatch
      */
     void addStatement(final Statement statement);
 
+    /**
+     * Adds the specified statement to the current batch. Implementations that commit in parallel
+     * use the routing key to keep statements that touch the same nodes together;
+     * by default the key is ignored.
+     *
+     * @param statement  statement containing query
+     * @param routingKey key identifying the nodes touched by the statement (e.g. location, bodyId)
+     */
+    default void addStatement(final Statement statement, final Object routingKey) {
+        addStatement(statement);
+    }
+
     /**
      * Writes (commits) any remaining uncommitted previously batched statements.
      */
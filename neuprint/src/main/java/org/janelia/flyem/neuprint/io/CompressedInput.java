@@ -0,0 +1,446 @@
+package org.janelia.flyem.neuprint.io;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Opens input files that may be compressed, so that loaders can read gzip or zstd compressed JSON and swc files
+ * directly. The format is detected from the first bytes of the file rather than from its name:
+ * <ul>
+ * <li>uncompressed files are read as is;</li>
+ * <li>gzip files (including files with several concatenated members) are decompressed on a separate thread;</li>
+ * <li>block-compressed gzip files (BGZF, as written by {@code bgzip}) are split into blocks on a separate thread
+ * and the blocks are decompressed in parallel;</li>
+ * <li>zstd files are decompressed by an external {@code zstd} process, which must be on the path.</li>
+ * </ul>
+ * Decompressed data is handed to the reading thread in chunks through a bounded queue, so decompression overlaps
+ * with parsing without temporary files and with bounded memory. Small gzip files are decompressed on the reading
+ * thread.
+ */
+public class CompressedInput {
+
+    static final int CHUNK_SIZE = 1 << 20;
+    private static final int QUEUE_DEPTH = 16;
+    private static final int MAX_BLOCK_SIZE = 1 << 16;
+
+    private static final int FHCRC = 2;
+    private static final int FEXTRA = 4;
+    private static final int FNAME = 8;
+    private static final int FCOMMENT = 16;
+
+    private static final AtomicInteger THREAD_COUNT = new AtomicInteger();
+
+    private CompressedInput() {
+    }
+
+    /**
+     * Opens a possibly compressed file for reading, decompressing block-compressed files with a thread per
+     * available processor.
+     *
+     * @param file file to read
+     * @return stream of decompressed data
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream open(final File file) throws IOException {
+        return open(file, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Opens a possibly compressed file for reading.
+     *
+     * @param file    file to read
+     * @param threads number of threads used to decompress the blocks of a block-compressed file
+     * @return stream of decompressed data
+     * @throws IOException if the file cannot be opened
+     */
+    public static InputStream open(final File file, final int threads) throws IOException {
+        final byte[] magic = new byte[4];
+        final int magicLength;
+        try (InputStream inputStream = new FileInputStream(file)) {
+            magicLength = readFully(inputStream, magic, 0, magic.length);
+        }
+
+        if (magicLength == 4 && (magic[0] & 0xff) == 0x28 && (magic[1] & 0xff) == 0xb5 && (magic[2] & 0xff) == 0x2f && (magic[3] & 0xff) == 0xfd) {
+            return openZstd(file);
+        } else if (magicLength >= 2 && (magic[0] & 0xff) == 0x1f && (magic[1] & 0xff) == 0x8b) {
+            if (isBgzf(file)) {
+                LOG.info("Decompressing block-compressed {} with {} threads", file, Math.max(1, threads));
+                return new DecompressingInputStream(file, threads);
+            } else if (file.length() < CHUNK_SIZE) {
+                return new GZIPInputStream(new FileInputStream(file), 1 << 16);
+            } else {
+                LOG.info("Decompressing {} on a separate thread", file);
+                return new DecompressingInputStream(file, 0);
+            }
+        }
+        return new FileInputStream(file);
+    }
+
+    /**
+     * Opens a possibly compressed UTF-8 text file for reading.
+     *
+     * @param filepath path to file
+     * @return reader of decompressed text
+     * @throws IOException if the file cannot be opened
+     * @see #open(File)
+     */
+    public static Reader openReader(final String filepath) throws IOException {
+        return new InputStreamReader(open(new File(filepath)), StandardCharsets.UTF_8);
+    }
+
+    private static InputStream openZstd(final File file) throws IOException {
+        final Process process;
+        try {
+            process = new ProcessBuilder("zstd", "-d", "-c", "-q", file.getAbsolutePath())
+                    .redirectError(ProcessBuilder.Redirect.INHERIT)
+                    .start();
+        } catch (IOException e) {
+            throw new IOException("zstd command is required to read zstd compressed " + file + ": " + e.getMessage(), e);
+        }
+        process.getOutputStream().close();
+        LOG.info("Decompressing {} with zstd process", file);
+
+        return new FilterInputStream(new BufferedInputStream(process.getInputStream(), CHUNK_SIZE)) {
+            private boolean eof;
+
+            @Override
+            public int read() throws IOException {
+                return checkEof(super.read());
+            }
+
+            @Override
+            public int read(final byte[] b, final int off, final int len) throws IOException {
+                return checkEof(super.read(b, off, len));
+            }
+
+            private int checkEof(final int result) throws IOException {
+                if (result == -1 && !eof) {
+                    eof = true;
+                    try {
+                        final int exitValue = process.waitFor();
+                        if (exitValue != 0) {
+                            throw new IOException("zstd failed to decompress " + file + " (exit value " + exitValue + ")");
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException("interrupted while waiting for zstd to decompress " + file);
+                    }
+                }
+                return result;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    process.destroy();
+                }
+            }
+        };
+    }
+
+    static boolean isBgzf(final File file) {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return readBgzfBlock(inputStream) != null;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Reads the next block of a BGZF file, whose total size is stored in the "BC" subfield of the gzip header.
+     *
+     * @return the compressed block, including its header and trailer, or null at the end of the file
+     * @throws IOException if the next member is not a BGZF block
+     */
+    static byte[] readBgzfBlock(final InputStream inputStream) throws IOException {
+        final byte[] header = new byte[12];
+        final int headerLength = readFully(inputStream, header, 0, header.length);
+        if (headerLength == 0) {
+            return null;
+        } else if (headerLength < header.length || (header[0] & 0xff) != 0x1f || (header[1] & 0xff) != 0x8b || header[2] != 8 || (header[3] & FEXTRA) == 0) {
+            throw new IOException("not a BGZF block");
+        }
+
+        final int extraLength = getShort(header, 10);
+        final byte[] extra = new byte[extraLength];
+        if (readFully(inputStream, extra, 0, extraLength) < extraLength) {
+            throw new EOFException("truncated BGZF block");
+        }
+        int blockSize = -1;
+        for (int i = 0; i + 4 <= extraLength; i += 4 + getShort(extra, i + 2)) {
+            if (extra[i] == 'B' && extra[i + 1] == 'C' && getShort(extra, i + 2) == 2 && i + 6 <= extraLength) {
+                blockSize = getShort(extra, i + 4) + 1;
+            }
+        }
+        if (blockSize < header.length + extraLength + 8) {
+            throw new IOException("not a BGZF block");
+        }
+
+        final byte[] block = new byte[blockSize];
+        System.arraycopy(header, 0, block, 0, header.length);
+        System.arraycopy(extra, 0, block, header.length, extraLength);
+        final int offset = header.length + extraLength;
+        if (readFully(inputStream, block, offset, blockSize - offset) < blockSize - offset) {
+            throw new EOFException("truncated BGZF block");
+        }
+        return block;
+    }
+
+    /**
+     * Decompresses a single gzip member that is held entirely in memory and checks its CRC.
+     */
+    static byte[] inflateMember(final byte[] member) throws IOException {
+        final int flags = member[3];
+        int offset = 10;
+        if ((flags & FEXTRA) != 0) {
+            offset += 2 + getShort(member, offset);
+        }
+        if ((flags & FNAME) != 0) {
+            offset = skipZeroTerminated(member, offset);
+        }
+        if ((flags & FCOMMENT) != 0) {
+            offset = skipZeroTerminated(member, offset);
+        }
+        if ((flags & FHCRC) != 0) {
+            offset += 2;
+        }
+
+        final int trailer = member.length - 8;
+        final int expectedCrc = getInt(member, trailer);
+        final int size = getInt(member, trailer + 4);
+        if (size < 0 || size > MAX_BLOCK_SIZE) {
+            throw new IOException("invalid BGZF block size " + size);
+        }
+
+        final byte[] data = new byte[size];
+        final Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(member, offset, trailer - offset);
+            int length = 0;
+            while (length < size) {
+                final int inflated = inflater.inflate(data, length, size - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new EOFException("truncated BGZF block");
+                }
+                length += inflated;
+            }
+        } catch (DataFormatException e) {
+            throw new IOException("corrupt BGZF block: " + e.getMessage(), e);
+        } finally {
+            inflater.end();
+        }
+
+        final CRC32 crc = new CRC32();
+        crc.update(data, 0, size);
+        if ((int) crc.getValue() != expectedCrc) {
+            throw new IOException("BGZF block failed CRC check");
+        }
+        return data;
+    }
+
+    private static int skipZeroTerminated(final byte[] bytes, int offset) throws IOException {
+        while (offset < bytes.length && bytes[offset] != 0) {
+            offset++;
+        }
+        if (offset == bytes.length) {
+            throw new IOException("corrupt gzip header");
+        }
+        return offset + 1;
+    }
+
+    private static int readFully(final InputStream inputStream, final byte[] bytes, final int offset, final int length) throws IOException {
+        int total = 0;
+        while (total < length) {
+            final int read = inputStream.read(bytes, offset + total, length - total);
+            if (read == -1) {
+                break;
+            }
+            total += read;
+        }
+        return total;
+    }
+
+    private static int getShort(final byte[] bytes, final int offset) {
+        return (bytes[offset] & 0xff) | (bytes[offset + 1] & 0xff) << 8;
+    }
+
+    private static int getInt(final byte[] bytes, final int offset) {
+        return getShort(bytes, offset) | getShort(bytes, offset + 2) << 16;
+    }
+
+    /**
+     * Stream of data decompressed by a producer thread. The producer either decompresses a gzip file itself, in
+     * chunks, or reads the blocks of a BGZF file and submits them to a pool of decompression threads. Either way it
+     * queues futures of decompressed chunks in file order, and the reading thread waits on them one at a time.
+     */
+    private static class DecompressingInputStream extends InputStream {
+
+        private static final Future<byte[]> END = CompletableFuture.completedFuture(new byte[0]);
+
+        private final File file;
+        private final BlockingQueue<Future<byte[]>> queue;
+        private final ExecutorService pool;
+        private final Thread producer;
+        private byte[] chunk = new byte[0];
+        private int position;
+        private boolean eof;
+
+        /**
+         * @param threads number of threads decompressing BGZF blocks (0 to decompress a gzip file on the producer thread)
+         */
+        DecompressingInputStream(final File file, final int threads) {
+            this.file = file;
+            if (threads == 0) {
+                this.queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+                this.pool = null;
+                this.producer = newThread(this::decompressGzip);
+            } else {
+                // BGZF blocks are at most 64 KB decompressed, so more of them can be queued
+                this.queue = new ArrayBlockingQueue<>(QUEUE_DEPTH * Math.max(4, threads));
+                this.pool = threads > 1 ? Executors.newFixedThreadPool(threads, CompressedInput::newThread) : null;
+                this.producer = newThread(this::readBgzfBlocks);
+            }
+            this.producer.start();
+        }
+
+        private void decompressGzip() {
+            try (InputStream inputStream = new GZIPInputStream(new FileInputStream(file), 1 << 16)) {
+                int length;
+                do {
+                    final byte[] data = new byte[CHUNK_SIZE];
+                    length = readFully(inputStream, data, 0, data.length);
+                    if (length > 0) {
+                        queue.put(CompletableFuture.completedFuture(length == data.length ? data : Arrays.copyOf(data, length)));
+                    }
+                } while (length == CHUNK_SIZE);
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // closed before the end of the file
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void readBgzfBlocks() {
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(file), CHUNK_SIZE)) {
+                byte[] block;
+                while ((block = readBgzfBlock(inputStream)) != null) {
+                    final byte[] member = block;
+                    queue.put(pool == null ? CompletableFuture.completedFuture(inflateMember(member)) : pool.submit(() -> inflateMember(member)));
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // closed before the end of the file
+            } catch (IOException e) {
+                fail(e);
+            }
+        }
+
+        private void fail(final IOException e) {
+            final CompletableFuture<byte[]> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            try {
+                queue.put(failed);
+            } catch (InterruptedException ignored) {
+                // closed, so nobody is waiting for the error
+            }
+        }
+
+        private boolean nextChunk() throws IOException {
+            while (!eof) {
+                final Future<byte[]> next;
+                try {
+                    next = queue.take();
+                    if (next == END) {
+                        eof = true;
+                    } else {
+                        chunk = next.get();
+                        position = 0;
+                        if (chunk.length > 0) {
+                            return true;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("interrupted while decompressing " + file);
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof IOException) {
+                        throw new IOException("error decompressing " + file + ": " + e.getCause().getMessage(), e.getCause());
+                    }
+                    throw new IOException("error decompressing " + file, e.getCause());
+                }
+            }
+            return false;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (position == chunk.length && !nextChunk()) {
+                return -1;
+            }
+            return chunk[position++] & 0xff;
+        }
+
+        @Override
+        public int read(final byte[] b, final int off, final int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            } else if (position == chunk.length && !nextChunk()) {
+                return -1;
+            }
+            final int length = Math.min(len, chunk.length - position);
+            System.arraycopy(chunk, position, b, off, length);
+            position += length;
+            return length;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - position;
+        }
+
+        @Override
+        public void close() {
+            eof = true;
+            producer.interrupt();
+            if (pool != null) {
+                pool.shutdownNow();
+            }
+        }
+    }
+
+    private static Thread newThread(final Runnable runnable) {
+        final Thread thread = new Thread(runnable, "decompress-" + THREAD_COUNT.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompressedInput.class);
+
+}
@@ -0,0 +1,141 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.LongHashSet;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.PackedLocation;
+import org.janelia.flyem.neuprint.model.PackedLocationSet;
+import org.janelia.flyem.neuprint.model.Soma;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Reusable, primitive-backed holder for one object from a neuron JSON file. Synapse locations are held in a
+ * growable long array (x, y, z per synapse). Filled by {@link StreamingJsonDecoder#readNeuron} and overwritten
+ * by the next call.
+ */
+public class NeuronRecord {
+
+    long id;
+    String status;
+    String name;
+    String type;
+    String instance;
+    String primaryNeurite;
+    String majorInput;
+    String majorOutput;
+    String clonalUnit;
+    String neurotransmitter;
+    String property;
+    boolean hasSize;
+    long size;
+    final SynapseRecord.RoiNames rois = new SynapseRecord.RoiNames();
+    boolean hasSoma;
+    final long[] somaLocation = new long[3];
+    double somaRadius;
+    long[] synapseLocations = new long[3 * 64];
+    int synapseCount;
+
+    void reset() {
+        status = null;
+        name = null;
+        type = null;
+        instance = null;
+        primaryNeurite = null;
+        majorInput = null;
+        majorOutput = null;
+        clonalUnit = null;
+        neurotransmitter = null;
+        property = null;
+        hasSize = false;
+        rois.clear();
+        hasSoma = false;
+        synapseCount = 0;
+    }
+
+    /**
+     * @return array to receive the next synapse location at offset 3 * synapseCount
+     */
+    long[] synapseLocationsForAppend() {
+        if (3 * (synapseCount + 1) > synapseLocations.length) {
+            final long[] grown = new long[synapseLocations.length * 2];
+            System.arraycopy(synapseLocations, 0, grown, 0, 3 * synapseCount);
+            synapseLocations = grown;
+        }
+        return synapseLocations;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRoiCount() {
+        return rois.size();
+    }
+
+    public String getRoi(final int index) {
+        return rois.get(index);
+    }
+
+    /**
+     * @return number of synapse locations in the synapseSet (including any repeated locations)
+     */
+    public int getSynapseCount() {
+        return synapseCount;
+    }
+
+    public long getSynapseX(final int index) {
+        return synapseLocations[3 * index];
+    }
+
+    public long getSynapseY(final int index) {
+        return synapseLocations[3 * index + 1];
+    }
+
+    public long getSynapseZ(final int index) {
+        return synapseLocations[3 * index + 2];
+    }
+
+    private boolean synapseLocationsFitPacked() {
+        for (int i = 0; i < 3 * synapseCount; i++) {
+            if (!PackedLocation.fits(synapseLocations[i], 0, 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return a new {@link Neuron} with the values of this record; the synapse location set is a
+     * {@link PackedLocationSet} unless a coordinate is too large to pack
+     */
+    public Neuron toNeuron() {
+        final Soma soma = hasSoma ? new Soma(new Location(somaLocation[0], somaLocation[1], somaLocation[2]), somaRadius) : null;
+        final Set<Location> synapseLocationSet;
+        if (synapseLocationsFitPacked()) {
+            final LongHashSet packedLocations = new LongHashSet(synapseCount);
+            for (int i = 0; i < synapseCount; i++) {
+                packedLocations.add(PackedLocation.pack(getSynapseX(i), getSynapseY(i), getSynapseZ(i)));
+            }
+            synapseLocationSet = new PackedLocationSet(packedLocations);
+        } else {
+            synapseLocationSet = new HashSet<>();
+            for (int i = 0; i < synapseCount; i++) {
+                synapseLocationSet.add(new Location(getSynapseX(i), getSynapseY(i), getSynapseZ(i)));
+            }
+        }
+        return new Neuron(id, status, name, type, instance,
+                primaryNeurite, majorInput, majorOutput, clonalUnit, neurotransmitter, property,
+                hasSize ? size : null, rois.toSet(), soma, synapseLocationSet);
+    }
+
+}
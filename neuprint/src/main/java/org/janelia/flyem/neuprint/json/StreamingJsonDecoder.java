@@ -0,0 +1,393 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Token-level decoder for synapse, connections and neuron JSON objects. Each object is read directly from the
+ * {@link JsonReader} into a reusable record ({@link SynapseRecord}, {@link SynapticConnectionRecord} or
+ * {@link NeuronRecord}) without building a Gson tree, boxing coordinates, or allocating a set per object. Roi
+ * names are canonicalized so that each distinct name is held once.
+ * <p>
+ * Validation and error messages follow {@link SynapseAdapter}, {@link ConnectionsAdapter} and {@link NeuronAdapter},
+ * which remain the reference implementation; the nextSynapse, nextSynapticConnection and nextNeuron methods return
+ * the same model objects as those adapters. A property with a null value is treated as missing.
+ * <p>
+ * Instances are not thread-safe.
+ */
+public class StreamingJsonDecoder {
+
+    private static final String PRE = "pre";
+    private static final String POST = "post";
+
+    private final Map<String, String> roiNames = new HashMap<>();
+    private final SynapseRecord synapseRecord = new SynapseRecord();
+    private final SynapticConnectionRecord connectionRecord = new SynapticConnectionRecord();
+    private final NeuronRecord neuronRecord = new NeuronRecord();
+    private final long[] location = new long[3];
+
+    /**
+     * Reads the next synapse object.
+     *
+     * @param reader reader positioned at the start of a synapse object
+     * @param record record to fill
+     * @return record
+     * @throws IOException        if the input cannot be read
+     * @throws JsonParseException if the object is not a valid synapse
+     */
+    public SynapseRecord readSynapse(final JsonReader reader, final SynapseRecord record) throws IOException {
+        final boolean lenient = reader.isLenient();
+        reader.setLenient(true); // as in Gson.fromJson
+        try {
+            record.reset();
+            boolean hasLocation = false;
+            boolean hasConfidence = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String key = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case "type":
+                        record.type = canonicalType(readString(reader));
+                        break;
+                    case "confidence":
+                        record.confidence = reader.nextDouble();
+                        hasConfidence = true;
+                        break;
+                    case "location":
+                        readLocation(reader, location);
+                        hasLocation = true;
+                        break;
+                    case "rois":
+                        readRois(reader, record.rois);
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (record.type == null) {
+                throw new JsonParseException("Synapse type property missing.");
+            }
+            if (!(record.type.equals(PRE) || record.type.equals(POST))) {
+                throw new JsonParseException("Synapse type must be 'pre' or 'post'.");
+            }
+            if (hasConfidence && (record.confidence < 0 || record.confidence > 1)) {
+                throw new JsonParseException("Synapse confidence must be between 0.0 and 1.0.");
+            }
+            if (!hasLocation) {
+                throw new JsonParseException("Synapse location property missing.");
+            }
+            record.x = location[0];
+            record.y = location[1];
+            record.z = location[2];
+            return record;
+        } finally {
+            reader.setLenient(lenient);
+        }
+    }
+
+    /**
+     * Reads the next synaptic connection object.
+     *
+     * @param reader reader positioned at the start of a connection object
+     * @param record record to fill
+     * @return record
+     * @throws IOException        if the input cannot be read
+     * @throws JsonParseException if the object is not a valid connection
+     */
+    public SynapticConnectionRecord readSynapticConnection(final JsonReader reader, final SynapticConnectionRecord record) throws IOException {
+        final boolean lenient = reader.isLenient();
+        reader.setLenient(true);
+        try {
+            boolean hasPre = false;
+            boolean hasPost = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String key = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case PRE:
+                        readLocation(reader, record.pre);
+                        hasPre = true;
+                        break;
+                    case POST:
+                        readLocation(reader, record.post);
+                        hasPost = true;
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!hasPre) {
+                throw new JsonParseException("Connection must have 'pre' property.");
+            }
+            if (!hasPost) {
+                throw new JsonParseException("Connection must have 'post' property.");
+            }
+            return record;
+        } finally {
+            reader.setLenient(lenient);
+        }
+    }
+
+    /**
+     * Reads the next neuron object.
+     *
+     * @param reader reader positioned at the start of a neuron object
+     * @param record record to fill
+     * @return record
+     * @throws IOException        if the input cannot be read
+     * @throws JsonParseException if the object is not a valid neuron
+     */
+    public NeuronRecord readNeuron(final JsonReader reader, final NeuronRecord record) throws IOException {
+        final boolean lenient = reader.isLenient();
+        reader.setLenient(true);
+        try {
+            record.reset();
+            boolean hasId = false;
+            reader.beginObject();
+            while (reader.hasNext()) {
+                final String key = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.nextNull();
+                    continue;
+                }
+                switch (key) {
+                    case "id":
+                        record.id = readIntegral(reader, "Neuron ID must be a number.", "Neuron ID must be integer value.");
+                        hasId = true;
+                        break;
+                    case "status":
+                        record.status = readString(reader);
+                        break;
+                    case "name":
+                        record.name = readString(reader);
+                        break;
+                    case "type":
+                        record.type = readString(reader);
+                        break;
+                    case "instance":
+                        record.instance = readString(reader);
+                        break;
+                    case "primaryNeurite":
+                        record.primaryNeurite = readString(reader);
+                        break;
+                    case "majorInput":
+                        record.majorInput = readString(reader);
+                        break;
+                    case "majorOutput":
+                        record.majorOutput = readString(reader);
+                        break;
+                    case "clonalUnit":
+                        record.clonalUnit = readString(reader);
+                        break;
+                    case "neurotransmitter":
+                        record.neurotransmitter = readString(reader);
+                        break;
+                    case "property":
+                        record.property = readString(reader);
+                        break;
+                    case "size":
+                        record.size = readLong(reader);
+                        record.hasSize = true;
+                        break;
+                    case "rois":
+                        readRois(reader, record.rois);
+                        break;
+                    case "soma":
+                        readSoma(reader, record);
+                        break;
+                    case "synapseSet":
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            final long[] synapseLocations = record.synapseLocationsForAppend();
+                            readLocation(reader, synapseLocations, 3 * record.synapseCount);
+                            record.synapseCount++;
+                        }
+                        reader.endArray();
+                        break;
+                    default:
+                        reader.skipValue();
+                }
+            }
+            reader.endObject();
+
+            if (!hasId) {
+                throw new JsonParseException("Neuron must have 'id' property.");
+            }
+            return record;
+        } finally {
+            reader.setLenient(lenient);
+        }
+    }
+
+    /**
+     * @param reader reader positioned at the start of a synapse object
+     * @return a new {@link Synapse}
+     * @throws IOException if the input cannot be read
+     */
+    public Synapse nextSynapse(final JsonReader reader) throws IOException {
+        return readSynapse(reader, synapseRecord).toSynapse();
+    }
+
+    /**
+     * @param reader reader positioned at the start of a connection object
+     * @return a new {@link SynapticConnection}
+     * @throws IOException if the input cannot be read
+     */
+    public SynapticConnection nextSynapticConnection(final JsonReader reader) throws IOException {
+        return readSynapticConnection(reader, connectionRecord).toSynapticConnection();
+    }
+
+    /**
+     * @param reader reader positioned at the start of a neuron object
+     * @return a new {@link Neuron}
+     * @throws IOException if the input cannot be read
+     */
+    public Neuron nextNeuron(final JsonReader reader) throws IOException {
+        return readNeuron(reader, neuronRecord).toNeuron();
+    }
+
+    private void readSoma(final JsonReader reader, final NeuronRecord record) throws IOException {
+        boolean hasLocation = false;
+        boolean hasRadius = false;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String key = reader.nextName();
+            if (reader.peek() == JsonToken.NULL) {
+                reader.nextNull();
+                continue;
+            }
+            switch (key) {
+                case "location":
+                    readLocation(reader, record.somaLocation);
+                    hasLocation = true;
+                    break;
+                case "radius":
+                    try {
+                        record.somaRadius = reader.nextDouble();
+                    } catch (NumberFormatException nfe) {
+                        throw new JsonParseException("Radius must be a number.");
+                    }
+                    hasRadius = true;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (hasLocation && !hasRadius) {
+            throw new JsonParseException("Soma must have 'radius' property.");
+        } else if (!hasLocation && hasRadius) {
+            throw new JsonParseException("Soma must have 'location' property.");
+        }
+        record.hasSoma = hasLocation;
+    }
+
+    private void readRois(final JsonReader reader, final SynapseRecord.RoiNames rois) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            final String roi = readString(reader);
+            // dropped here as Neuron.getRois() and Synapse.getRois() drop them
+            if (Neuron.isUnwantedRoi(roi)) {
+                continue;
+            }
+            final String canonicalRoi = roiNames.putIfAbsent(roi, roi);
+            rois.add(canonicalRoi == null ? roi : canonicalRoi);
+        }
+        reader.endArray();
+    }
+
+    private static void readLocation(final JsonReader reader, final long[] location) throws IOException {
+        readLocation(reader, location, 0);
+    }
+
+    private static void readLocation(final JsonReader reader, final long[] location, final int offset) throws IOException {
+        reader.beginArray();
+        int dimensions = 0;
+        while (reader.hasNext()) {
+            if (dimensions == 3) {
+                throw new JsonParseException("Location must be three-dimensional.");
+            }
+            location[offset + dimensions] = readIntegral(reader, "Location coordinates must be a number.", "Location coordinates must be integer values.");
+            dimensions++;
+        }
+        reader.endArray();
+        if (dimensions != 3) {
+            throw new JsonParseException("Location must be three-dimensional.");
+        }
+    }
+
+    /**
+     * Reads a number that must have an integer value (e.g. 5 or 5.0), as checked by the Gson adapters.
+     */
+    private static long readIntegral(final JsonReader reader, final String notNumberMessage, final String notIntegerMessage) throws IOException {
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException e) {
+            // the value is still buffered by the reader
+            final String value = reader.nextString();
+            final double d;
+            final long l;
+            try {
+                d = Double.parseDouble(value);
+                l = new BigDecimal(value).longValue();
+            } catch (NumberFormatException nfe) {
+                throw new JsonParseException(notNumberMessage);
+            }
+            if (d == l) {
+                return l;
+            } else {
+                throw new JsonParseException(notIntegerMessage);
+            }
+        }
+    }
+
+    /**
+     * Reads a number as a long, truncating any fraction as JsonElement.getAsLong does.
+     */
+    private static long readLong(final JsonReader reader) throws IOException {
+        try {
+            return reader.nextLong();
+        } catch (NumberFormatException e) {
+            return new BigDecimal(reader.nextString()).longValue();
+        }
+    }
+
+    private static String readString(final JsonReader reader) throws IOException {
+        if (reader.peek() == JsonToken.BOOLEAN) {
+            return Boolean.toString(reader.nextBoolean());
+        }
+        return reader.nextString();
+    }
+
+    private static String canonicalType(final String type) {
+        if (PRE.equals(type)) {
+            return PRE;
+        } else if (POST.equals(type)) {
+            return POST;
+        }
+        return type;
+    }
+
+}
@@ -0,0 +1,131 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiDictionary;
+import org.janelia.flyem.neuprintloadprocedures.model.RoiSet;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Reusable, primitive-backed holder for one object from a synapse JSON file. Filled by
+ * {@link StreamingJsonDecoder#readSynapse} and overwritten by the next call, so values must be
+ * copied (or converted with {@link #toSynapse()}) before the next object is read.
+ */
+public class SynapseRecord {
+
+    String type;
+    double confidence;
+    long x;
+    long y;
+    long z;
+    final RoiNames rois = new RoiNames();
+
+    void reset() {
+        type = null;
+        confidence = 0.0D;
+        rois.clear();
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public double getConfidence() {
+        return confidence;
+    }
+
+    public long getX() {
+        return x;
+    }
+
+    public long getY() {
+        return y;
+    }
+
+    public long getZ() {
+        return z;
+    }
+
+    /**
+     * @return number of distinct rois, in input order
+     */
+    public int getRoiCount() {
+        return rois.size();
+    }
+
+    /**
+     * @param index index of roi (0 to getRoiCount() - 1)
+     * @return roi name
+     */
+    public String getRoi(final int index) {
+        return rois.get(index);
+    }
+
+    /**
+     * @param dictionary dictionary for ROI ids
+     * @return shared {@link RoiSet} for the rois of this record (first listed roi is the super-level roi)
+     */
+    public RoiSet getRoiSet(final RoiDictionary dictionary) {
+        return rois.toRoiSet(dictionary);
+    }
+
+    /**
+     * @return a new {@link Synapse} with the values of this record
+     */
+    public Synapse toSynapse() {
+        return new Synapse(type, confidence, new Location(x, y, z), rois.toSet());
+    }
+
+    /**
+     * Distinct roi names in input order (order of rois matters for figuring out super-level rois).
+     */
+    static class RoiNames {
+
+        private String[] names = new String[8];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(final String name) {
+            for (int i = 0; i < size; i++) {
+                if (names[i].equals(name)) {
+                    return;
+                }
+            }
+            if (size == names.length) {
+                final String[] grown = new String[size * 2];
+                System.arraycopy(names, 0, grown, 0, size);
+                names = grown;
+            }
+            names[size++] = name;
+        }
+
+        int size() {
+            return size;
+        }
+
+        String get(final int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("roi index " + index + " out of range for " + size + " rois");
+            }
+            return names[index];
+        }
+
+        RoiSet toRoiSet(final RoiDictionary dictionary) {
+            return dictionary.getRoiSet(names, size);
+        }
+
+        Set<String> toSet() {
+            final Set<String> set = new LinkedHashSet<>();
+            for (int i = 0; i < size; i++) {
+                set.add(names[i]);
+            }
+            return set;
+        }
+    }
+
+}
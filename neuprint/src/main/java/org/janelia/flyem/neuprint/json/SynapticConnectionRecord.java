@@ -0,0 +1,46 @@
+package org.janelia.flyem.neuprint.json;
+
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+
+/**
+ * Reusable, primitive-backed holder for one object from a connections JSON file. Filled by
+ * {@link StreamingJsonDecoder#readSynapticConnection} and overwritten by the next call.
+ */
+public class SynapticConnectionRecord {
+
+    final long[] pre = new long[3];
+    final long[] post = new long[3];
+
+    public long getPreX() {
+        return pre[0];
+    }
+
+    public long getPreY() {
+        return pre[1];
+    }
+
+    public long getPreZ() {
+        return pre[2];
+    }
+
+    public long getPostX() {
+        return post[0];
+    }
+
+    public long getPostY() {
+        return post[1];
+    }
+
+    public long getPostZ() {
+        return post[2];
+    }
+
+    /**
+     * @return a new {@link SynapticConnection} with the values of this record
+     */
+    public SynapticConnection toSynapticConnection() {
+        return new SynapticConnection(new Location(pre[0], pre[1], pre[2]), new Location(post[0], post[1], post[2]));
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.janelia.flyem.neuprint.model;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+ * Open-addressing hash set of primitive longs (linear probing, load factor at most 1/2). Used for sets of packed
+ * locations (see {@link PackedLocation}) so that membership costs 16 to 32 bytes per element without boxing.
+ * Not thread-safe.
+ */
+public class LongHashSet {
+
+    // 0 marks an empty slot; the key 0 itself is tracked separately
+    private long[] keys;
+    private boolean containsZero;
+    private int size;
+    private int mask;
+    private int shift;
+
+    public LongHashSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of elements expected (the set grows as needed)
+     */
+    public LongHashSet(final int expectedSize) {
+        allocate(capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key value to add
+     * @return true if the value was not already in the set
+     */
+    public boolean add(final long key) {
+        if (key == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        size++;
+        if (2 * size > keys.length) {
+            rehash(keys.length * 2);
+        }
+        return true;
+    }
+
+    public boolean contains(final long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        Arrays.fill(keys, 0);
+        containsZero = false;
+        size = 0;
+    }
+
+    /**
+     * @return iterator over the values in the set (in no particular order)
+     */
+    public PrimitiveIterator.OfLong iterator() {
+        return new PrimitiveIterator.OfLong() {
+            private int slot = containsZero ? -1 : nextSlot(0);
+
+            @Override
+            public boolean hasNext() {
+                return slot < keys.length;
+            }
+
+            @Override
+            public long nextLong() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                final long key = slot < 0 ? 0 : keys[slot];
+                slot = nextSlot(slot + 1);
+                return key;
+            }
+        };
+    }
+
+    private int nextSlot(int slot) {
+        while (slot < keys.length && keys[slot] == 0) {
+            slot++;
+        }
+        return slot;
+    }
+
+    private int slot(final long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        allocate(capacity);
+        for (final long key : oldKeys) {
+            if (key != 0) {
+                int slot = slot(key);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    static int capacityFor(final int expectedSize) {
+        int capacity = 4;
+        while (capacity < 2L * expectedSize && capacity < (1 << 30)) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+}
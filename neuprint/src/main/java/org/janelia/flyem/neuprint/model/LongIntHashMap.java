@@ -0,0 +1,137 @@
+package org.janelia.flyem.neuprint.model;
+
+/**
+ * Open-addressing hash map from primitive long keys to primitive int values (linear probing, load factor at most 1/2).
+ * Used to map packed locations (see {@link PackedLocation}) to synapse ids without boxing either. Not thread-safe.
+ */
+public class LongIntHashMap {
+
+    // 0 marks an empty slot; the key 0 itself is tracked separately
+    private long[] keys;
+    private int[] values;
+    private boolean containsZero;
+    private int zeroValue;
+    private int size;
+    private int mask;
+    private int shift;
+
+    public LongIntHashMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of entries expected (the map grows as needed)
+     */
+    public LongIntHashMap(final int expectedSize) {
+        allocate(LongHashSet.capacityFor(expectedSize));
+    }
+
+    /**
+     * @param key          key
+     * @param defaultValue value to return if the key is not in the map
+     * @return value for key or defaultValue
+     */
+    public int get(final long key, final int defaultValue) {
+        if (key == 0) {
+            return containsZero ? zeroValue : defaultValue;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    public boolean containsKey(final long key) {
+        if (key == 0) {
+            return containsZero;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+     * @param key   key
+     * @param value value
+     */
+    public void put(final long key, final int value) {
+        if (key == 0) {
+            if (!containsZero) {
+                containsZero = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (2 * size > keys.length) {
+            rehash(keys.length * 2);
+        }
+    }
+
+    /**
+     * Adds an entry if the key is not already in the map.
+     *
+     * @param key   key
+     * @param value value
+     * @return true if the entry was added
+     */
+    public boolean putIfAbsent(final long key, final int value) {
+        if (containsKey(key)) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int slot(final long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void rehash(final int capacity) {
+        final long[] oldKeys = keys;
+        final int[] oldValues = values;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = slot(oldKeys[i]);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    private void allocate(final int capacity) {
+        keys = new long[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+        shift = 64 - Integer.numberOfTrailingZeros(capacity);
+    }
+
+}
@@ -191,12 +191,20 @@ public class Neuron {
         Set<String> newRoiSet = new LinkedHashSet<>();
         if (rois != null) {
             newRoiSet = rois.stream()
-                    .filter(r -> !(r.equals("seven_column_roi") || r.equals("kc_alpha_roi")))
+                    .filter(r -> !isUnwantedRoi(r))
                     .collect(Collectors.toSet());
         }
         return newRoiSet;
     }
 
+    /**
+     * @param roi roi name
+     * @return true if the roi is dropped from neurons and synapses when they are read (see {@link #getRois()})
+     */
+    public static boolean isUnwantedRoi(String roi) {
+        return roi.equals("seven_column_roi") || roi.equals("kc_alpha_roi");
+    }
+
     /**
      * Returns a list of rois in which this neuron is located with and without
      * a "dataset-" prefix.
@@ -0,0 +1,94 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.neo4j.driver.v1.Values;
+import org.neo4j.driver.v1.types.Point;
+
+/**
+ * Packs a 3D location with non-negative coordinates below 2^21 (2,097,152) into a single long: 21 bits per axis with x
+ * in the high bits. A packed location takes 8 bytes in a primitive array or {@link LongHashSet}, versus roughly 100
+ * bytes for a {@link Location} (object header, boxed Long[3] and three Longs) plus the entry of a hash set.
+ */
+public final class PackedLocation {
+
+    /**
+     * Largest coordinate that can be packed.
+     */
+    public static final long MAX_COORDINATE = (1L << 21) - 1;
+
+    private static final int Y_SHIFT = 21;
+    private static final int X_SHIFT = 42;
+
+    private PackedLocation() {
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return true if all coordinates are between 0 and {@link #MAX_COORDINATE}
+     */
+    public static boolean fits(final long x, final long y, final long z) {
+        return ((x | y | z) & ~MAX_COORDINATE) == 0;
+    }
+
+    /**
+     * @param location location (coordinates may be null)
+     * @return true if the location can be packed
+     */
+    public static boolean fits(final Location location) {
+        return location.getX() != null && location.getY() != null && location.getZ() != null &&
+                fits(location.getX(), location.getY(), location.getZ());
+    }
+
+    /**
+     * @param x x coordinate
+     * @param y y coordinate
+     * @param z z coordinate
+     * @return packed location
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    public static long pack(final long x, final long y, final long z) {
+        if (!fits(x, y, z)) {
+            throw new IllegalArgumentException("location " + x + ":" + y + ":" + z + " cannot be packed, coordinates must be between 0 and " + MAX_COORDINATE);
+        }
+        return (x << X_SHIFT) | (y << Y_SHIFT) | z;
+    }
+
+    /**
+     * @param location location
+     * @return packed location
+     * @throws IllegalArgumentException if a coordinate is out of range
+     */
+    public static long pack(final Location location) {
+        return pack(location.getX(), location.getY(), location.getZ());
+    }
+
+    public static long getX(final long packedLocation) {
+        return packedLocation >>> X_SHIFT;
+    }
+
+    public static long getY(final long packedLocation) {
+        return (packedLocation >>> Y_SHIFT) & MAX_COORDINATE;
+    }
+
+    public static long getZ(final long packedLocation) {
+        return packedLocation & MAX_COORDINATE;
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return new {@link Location}
+     */
+    public static Location toLocation(final long packedLocation) {
+        return new Location(getX(packedLocation), getY(packedLocation), getZ(packedLocation));
+    }
+
+    /**
+     * @param packedLocation packed location
+     * @return location as neo4j driver Point type (same as {@link Location#getAsPoint()})
+     */
+    public static Point toPoint(final long packedLocation) {
+        return Values.point(9157, getX(packedLocation), getY(packedLocation), getZ(packedLocation)).asPoint();
+    }
+
+}
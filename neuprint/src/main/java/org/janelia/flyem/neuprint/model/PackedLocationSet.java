@@ -0,0 +1,79 @@
+package org.janelia.flyem.neuprint.model;
+
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.PrimitiveIterator;
+
+/**
+ * A set of {@link Location}s stored as packed longs (see {@link PackedLocation}) in a {@link LongHashSet}. Locations
+ * returned by the iterator are created on demand; code on hot paths should iterate over {@link #getPackedLocations()}
+ * instead.
+ */
+public class PackedLocationSet extends AbstractSet<Location> {
+
+    private final LongHashSet packedLocations;
+
+    public PackedLocationSet() {
+        this(new LongHashSet());
+    }
+
+    /**
+     * @param packedLocations packed locations backing this set
+     */
+    public PackedLocationSet(final LongHashSet packedLocations) {
+        this.packedLocations = packedLocations;
+    }
+
+    /**
+     * @return packed locations backing this set
+     */
+    public LongHashSet getPackedLocations() {
+        return packedLocations;
+    }
+
+    /**
+     * @param location location to add
+     * @return true if the location was not already in the set
+     * @throws IllegalArgumentException if the location cannot be packed
+     */
+    @Override
+    public boolean add(final Location location) {
+        return packedLocations.add(PackedLocation.pack(location));
+    }
+
+    @Override
+    public boolean contains(final Object o) {
+        if (o instanceof Location) {
+            final Location location = (Location) o;
+            return PackedLocation.fits(location) && packedLocations.contains(PackedLocation.pack(location));
+        }
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return packedLocations.size();
+    }
+
+    @Override
+    public void clear() {
+        packedLocations.clear();
+    }
+
+    @Override
+    public Iterator<Location> iterator() {
+        final PrimitiveIterator.OfLong iterator = packedLocations.iterator();
+        return new Iterator<Location>() {
+            @Override
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            @Override
+            public Location next() {
+                return PackedLocation.toLocation(iterator.nextLong());
+            }
+        };
+    }
+
+}
@@ -2,17 +2,19 @@ package org.janelia.flyem.neuprint.model;
 
 import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
+import java.io.InputStream;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 
 /**
  * A class representing a skeleton read from an swc file. A skeleton contains
- * a list of {@link SkelNode} instances and the bodyId of the neuron associated
- * with this skeleton.
+ * the nodes of the swc file as {@link SkeletonColumns}, optionally viewed as a list of
+ * {@link SkelNode} instances, and the bodyId of the neuron associated with this skeleton.
  */
 public class Skeleton {
 
+    private SkeletonColumns skeletonColumns;
     private List<SkelNode> skelNodeList;
     private Long associatedBodyId;
     private Optional<Long> mutationId = Optional.empty();
@@ -25,13 +27,26 @@ public class Skeleton {
     }
 
     /**
+     * Returns the SkelNodes of this skeleton, which are created from {@link #getSkeletonColumns()} on first use.
+     * Code that only iterates over the nodes should use the columns directly.
      *
      * @return list of {@link SkelNode} objects making up this skeleton
      */
     public List<SkelNode> getSkelNodeList() {
+        if (this.skelNodeList == null && this.skeletonColumns != null) {
+            this.skelNodeList = Arrays.asList(this.skeletonColumns.toSkelNodes(this.associatedBodyId));
+        }
         return this.skelNodeList;
     }
 
+    /**
+     *
+     * @return {@link SkeletonColumns} holding the nodes of this skeleton
+     */
+    public SkeletonColumns getSkeletonColumns() {
+        return this.skeletonColumns;
+    }
+
     /**
      *
      * @return bodyId of neuron associated with this skeleton
@@ -51,7 +66,7 @@ public class Skeleton {
     @Override
     public String toString() {
         return "Skeleton{ " + "associatedBodyId = " + associatedBodyId +
-                " skelTree = " + skelNodeList +
+                " skelTree = " + getSkelNodeList() +
                 "}";
 
     }
@@ -97,60 +112,28 @@ public class Skeleton {
      * @throws IOException when swc file is not readable
      */
     public void fromSwc(final BufferedReader reader, final Long associatedBodyId, final String uuid) throws IOException {
-        String swcLine;
-        List<SkelNode> skelNodeList = new ArrayList<>();
-        List<Integer> location;
-        Double radius;
-        int type;
-        SkelNode parent;
-
-        while ((swcLine = reader.readLine()) != null) {
-
-            if (!swcLine.startsWith("#")) {
-
-                String[] lineComponents = swcLine.split(" ");
-
-                location = new ArrayList<>();
-                for (int i = 2; i < 5; i++) {
-                    int coordinate;
-                    try {
-                        coordinate = Integer.parseInt(lineComponents[i]);
-                    } catch (NumberFormatException nfe) {
-                        coordinate = Math.round(Float.parseFloat(lineComponents[i]));
-                    }
-                    location.add(coordinate);
-                }
-
-                radius = Double.parseDouble(lineComponents[5]);
-
-                type = Integer.parseInt(lineComponents[1]);
-
-                int parentIndex = Integer.parseInt(lineComponents[6]);
-
-                int rowNumber = Integer.parseInt(lineComponents[0]);
-
-                SkelNode skelNode;
-                if (parentIndex != -1) {
-                    parent = skelNodeList.get(parentIndex - 1);
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, parent, rowNumber);
-                    parent.addChild(skelNode);
-
-                } else {
-                    skelNode = new SkelNode(associatedBodyId, location, radius, type, null, rowNumber);
-                }
-
-                skelNodeList.add(skelNode);
-
-            } else if (swcLine.startsWith("#${\"mutation id\"")) {
-                this.mutationId = Optional.of(Long.parseLong(swcLine.replaceAll("[^0-9]", "")));
-            }
+        setColumns(SkeletonColumns.fromSwc(reader), associatedBodyId, uuid);
+    }
 
-        }
+    /**
+     * Reads the nodes of an swc file from an {@link InputStream} into {@link SkeletonColumns}, without going through
+     * a {@link java.io.Reader}. The stream is not closed.
+     *
+     * @param inputStream {@link InputStream} of swc file
+     * @param associatedBodyId bodyId of neuron
+     * @param uuid dvid uuid associated with skeleton (may be null)
+     * @throws IOException when swc file is not readable or is malformed
+     */
+    public void fromSwc(final InputStream inputStream, final Long associatedBodyId, final String uuid) throws IOException {
+        setColumns(SkeletonColumns.fromSwc(inputStream), associatedBodyId, uuid);
+    }
 
-        this.skelNodeList = skelNodeList;
+    private void setColumns(final SkeletonColumns skeletonColumns, final Long associatedBodyId, final String uuid) {
+        this.skeletonColumns = skeletonColumns;
+        this.skelNodeList = null;
         this.associatedBodyId = associatedBodyId;
+        this.mutationId = Optional.ofNullable(skeletonColumns.getMutationId());
         this.mutationUuid = Optional.ofNullable(uuid);
-
     }
 
 }
@@ -0,0 +1,490 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.neo4j.driver.v1.Values;
+import org.neo4j.driver.v1.types.Point;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The nodes of a skeleton read from an swc file, stored column-wise in primitive arrays indexed by position in the
+ * file. Parent links are stored as positions (-1 for root nodes) rather than row numbers, so a skeleton with n nodes
+ * takes 7 primitive arrays of length n instead of n {@link SkelNode} objects, each with a boxed location list and a
+ * child list.
+ * <p>
+ * {@link #fromSwc(InputStream)} scans the bytes of the swc file directly. Fields may be separated by any run of
+ * spaces or tabs, lines may end with \n or \r\n, blank lines are skipped and coordinates may be written as floats
+ * (they are rounded to the nearest integer). Numbers are parsed without creating Strings, falling back to
+ * {@link Double#parseDouble} only for values that cannot be converted exactly by the fast path (e.g. with exponents
+ * or more than 15 significant digits).
+ */
+public class SkeletonColumns {
+
+    private static final String MUTATION_ID_PREFIX = "#${\"mutation id\"";
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int FIELDS_PER_LINE = 7;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    private int size;
+    private int[] rowNumber;
+    private int[] x;
+    private int[] y;
+    private int[] z;
+    private double[] radius;
+    private int[] parent;
+    private byte[] type;
+    private Long mutationId;
+
+    private SkeletonColumns(final int capacity) {
+        this.rowNumber = new int[capacity];
+        this.x = new int[capacity];
+        this.y = new int[capacity];
+        this.z = new int[capacity];
+        this.radius = new double[capacity];
+        this.parent = new int[capacity];
+        this.type = new byte[capacity];
+    }
+
+    /**
+     * Reads skeleton nodes from an swc file. The stream is read to its end but not closed.
+     *
+     * @param inputStream stream of swc file
+     * @return {@link SkeletonColumns}
+     * @throws IOException when the stream is not readable or the swc file is malformed
+     */
+    public static SkeletonColumns fromSwc(final InputStream inputStream) throws IOException {
+        return new Parser(inputStream, null).parse();
+    }
+
+    /**
+     * Reads skeleton nodes from an swc file. Characters are narrowed to bytes, which is lossless for the ASCII content
+     * of swc files. The reader is read to its end but not closed.
+     *
+     * @param reader reader of swc file
+     * @return {@link SkeletonColumns}
+     * @throws IOException when the reader is not readable or the swc file is malformed
+     */
+    public static SkeletonColumns fromSwc(final Reader reader) throws IOException {
+        return new Parser(null, reader).parse();
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @param i node position
+     * @return row number of node within the swc file
+     */
+    public int getRowNumber(final int i) {
+        return rowNumber[i];
+    }
+
+    public int getX(final int i) {
+        return x[i];
+    }
+
+    public int getY(final int i) {
+        return y[i];
+    }
+
+    public int getZ(final int i) {
+        return z[i];
+    }
+
+    public double getRadius(final int i) {
+        return radius[i];
+    }
+
+    public int getType(final int i) {
+        return type[i];
+    }
+
+    /**
+     * @param i node position
+     * @return position of the parent of the node, or -1 for a root node
+     */
+    public int getParent(final int i) {
+        return parent[i];
+    }
+
+    /**
+     * @return mutation id from the "#${"mutation id": ...}" comment of the swc file, or null if absent
+     */
+    public Long getMutationId() {
+        return mutationId;
+    }
+
+    /**
+     * Returns the skelNodeId of a node for use in neo4j, in the same format as {@link SkelNode#getSkelNodeId}.
+     *
+     * @param dataset          relevant dataset
+     * @param associatedBodyId bodyId of neuron
+     * @param i                node position
+     * @return skelNodeId
+     */
+    public String getSkelNodeId(final String dataset, final Long associatedBodyId, final int i) {
+        return dataset + ":" + associatedBodyId + ":" + x[i] + ":" + y[i] + ":" + z[i] + ":" + rowNumber[i];
+    }
+
+    /**
+     * Returns the location of a node as a neo4j {@link Point}, as {@link SkelNode#getLocationAsPoint} does.
+     *
+     * @param i node position
+     * @return {@link Point}
+     */
+    public Point getLocationAsPoint(final int i) {
+        return Values.point(9157, x[i], y[i], z[i]).asPoint();
+    }
+
+    /**
+     * Creates {@link SkelNode} objects for all nodes, with parents and children linked as in the swc file.
+     *
+     * @param associatedBodyId bodyId of neuron
+     * @return SkelNodes in file order
+     */
+    public SkelNode[] toSkelNodes(final Long associatedBodyId) {
+        final SkelNode[] skelNodes = new SkelNode[size];
+        for (int i = 0; i < size; i++) {
+            final SkelNode parentSkelNode = parent[i] == -1 ? null : skelNodes[parent[i]];
+            skelNodes[i] = new SkelNode(associatedBodyId, Arrays.asList(x[i], y[i], z[i]), radius[i], type[i], parentSkelNode, rowNumber[i]);
+            if (parentSkelNode != null) {
+                parentSkelNode.addChild(skelNodes[i]);
+            }
+        }
+        return skelNodes;
+    }
+
+    private void add(final int rowNumber, final int x, final int y, final int z, final double radius, final int parent, final byte type) {
+        if (size == this.rowNumber.length) {
+            final int capacity = Math.max(16, 2 * size);
+            this.rowNumber = Arrays.copyOf(this.rowNumber, capacity);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.z = Arrays.copyOf(this.z, capacity);
+            this.radius = Arrays.copyOf(this.radius, capacity);
+            this.parent = Arrays.copyOf(this.parent, capacity);
+            this.type = Arrays.copyOf(this.type, capacity);
+        }
+        this.rowNumber[size] = rowNumber;
+        this.x[size] = x;
+        this.y[size] = y;
+        this.z[size] = z;
+        this.radius[size] = radius;
+        this.parent[size] = parent;
+        this.type[size] = type;
+        size++;
+    }
+
+    /**
+     * Scans swc lines from a byte buffer that is refilled from the stream or reader. A line that does not fit in the
+     * remainder of the buffer is moved to the start before refilling, and the buffer grows for lines longer than it.
+     */
+    private static final class Parser {
+
+        private final InputStream inputStream;
+        private final Reader reader;
+        private char[] chars;
+        private byte[] buffer = new byte[BUFFER_SIZE];
+        private int position;
+        private int limit;
+        private boolean endOfInput;
+        private int lineNumber;
+
+        // start and end of each field of the current line
+        private final int[] fieldStart = new int[FIELDS_PER_LINE];
+        private final int[] fieldEnd = new int[FIELDS_PER_LINE];
+
+        private Parser(final InputStream inputStream, final Reader reader) {
+            this.inputStream = inputStream;
+            this.reader = reader;
+        }
+
+        private SkeletonColumns parse() throws IOException {
+            final SkeletonColumns columns = new SkeletonColumns(1024);
+            int lineEnd;
+            while ((lineEnd = nextLineEnd()) != -1) {
+                lineNumber++;
+                final int lineStart = position;
+                position = lineEnd + 1;
+
+                if (lineStart < lineEnd && buffer[lineStart] == '#') {
+                    if (startsWith(lineStart, lineEnd, MUTATION_ID_PREFIX)) {
+                        columns.mutationId = parseDigitsOfComment(lineStart, lineEnd);
+                    }
+                    continue;
+                }
+
+                final int fieldCount = splitFields(lineStart, lineEnd);
+                if (fieldCount == 0) {
+                    continue;
+                }
+                if (fieldCount < FIELDS_PER_LINE) {
+                    throw error("expected " + FIELDS_PER_LINE + " fields but found " + fieldCount);
+                }
+
+                final int rowNumber = parseInt(0);
+                final int type = parseInt(1);
+                if (type < Byte.MIN_VALUE || type > Byte.MAX_VALUE) {
+                    throw error("type " + type + " is out of range");
+                }
+                final int x = parseCoordinate(2);
+                final int y = parseCoordinate(3);
+                final int z = parseCoordinate(4);
+                final double radius = parseDouble(5);
+                final int parentRowNumber = parseInt(6);
+
+                // as in the swc format, the parent row number is the 1-based position of a node earlier in the file
+                final int parentPosition;
+                if (parentRowNumber == -1) {
+                    parentPosition = -1;
+                } else if (parentRowNumber >= 1 && parentRowNumber <= columns.size) {
+                    parentPosition = parentRowNumber - 1;
+                } else {
+                    throw error("parent " + parentRowNumber + " does not precede row " + rowNumber);
+                }
+
+                columns.add(rowNumber, x, y, z, radius, parentPosition, (byte) type);
+            }
+            return columns;
+        }
+
+        /**
+         * @return index of the end of the next line (a '\n', or limit at end of input) with position at its start,
+         * or -1 if there are no more lines
+         */
+        private int nextLineEnd() throws IOException {
+            int scanned = position;
+            while (true) {
+                for (int i = scanned; i < limit; i++) {
+                    if (buffer[i] == '\n') {
+                        return i;
+                    }
+                }
+                if (endOfInput) {
+                    return position < limit ? limit : -1;
+                }
+                scanned = limit - position;
+                fill();
+                scanned += position;
+            }
+        }
+
+        private void fill() throws IOException {
+            if (position > 0) {
+                System.arraycopy(buffer, position, buffer, 0, limit - position);
+                limit -= position;
+                position = 0;
+            }
+            if (limit == buffer.length) {
+                buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+            }
+            final int read;
+            if (inputStream != null) {
+                read = inputStream.read(buffer, limit, buffer.length - limit);
+            } else {
+                if (chars == null || chars.length < buffer.length - limit) {
+                    chars = new char[buffer.length];
+                }
+                read = reader.read(chars, 0, buffer.length - limit);
+                for (int i = 0; i < read; i++) {
+                    buffer[limit + i] = (byte) chars[i];
+                }
+            }
+            if (read == -1) {
+                endOfInput = true;
+            } else {
+                limit += read;
+            }
+        }
+
+        private int splitFields(final int lineStart, final int lineEnd) {
+            int fieldCount = 0;
+            int i = lineStart;
+            while (i < lineEnd && fieldCount < FIELDS_PER_LINE) {
+                while (i < lineEnd && isSeparator(buffer[i])) {
+                    i++;
+                }
+                if (i == lineEnd) {
+                    break;
+                }
+                fieldStart[fieldCount] = i;
+                while (i < lineEnd && !isSeparator(buffer[i])) {
+                    i++;
+                }
+                fieldEnd[fieldCount] = i;
+                fieldCount++;
+            }
+            return fieldCount;
+        }
+
+        private static boolean isSeparator(final byte b) {
+            return b == ' ' || b == '\t' || b == '\r';
+        }
+
+        private boolean startsWith(final int start, final int end, final String prefix) {
+            if (end - start < prefix.length()) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length(); i++) {
+                if (buffer[start + i] != prefix.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private Long parseDigitsOfComment(final int start, final int end) throws IOException {
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                final int digit = buffer[i] - '0';
+                if (digit >= 0 && digit <= 9) {
+                    if (value > (Long.MAX_VALUE - digit) / 10) {
+                        throw error("mutation id is out of range");
+                    }
+                    value = 10 * value + digit;
+                }
+            }
+            return value;
+        }
+
+        private int parseInt(final int field) throws IOException {
+            int i = fieldStart[field];
+            final int end = fieldEnd[field];
+            final boolean negative = buffer[i] == '-';
+            if (negative || buffer[i] == '+') {
+                i++;
+            }
+            if (i == end) {
+                throw error("expected an integer but found " + fieldText(field));
+            }
+            long value = 0;
+            for (; i < end; i++) {
+                final int digit = buffer[i] - '0';
+                if (digit < 0 || digit > 9) {
+                    throw error("expected an integer but found " + fieldText(field));
+                }
+                value = 10 * value + digit;
+                if (value > Integer.MAX_VALUE + 1L) {
+                    throw error("integer out of range: " + fieldText(field));
+                }
+            }
+            value = negative ? -value : value;
+            if (value > Integer.MAX_VALUE) {
+                throw error("integer out of range: " + fieldText(field));
+            }
+            return (int) value;
+        }
+
+        /**
+         * Parses an integer coordinate exactly, or rounds a float coordinate to the nearest integer with the same result
+         * as Math.round(Float.parseFloat(text)).
+         */
+        private int parseCoordinate(final int field) throws IOException {
+            if (parseDecimal(field) && !hasPoint && digitCount <= 10) {
+                final long value = negativeDecimal ? -mantissa : mantissa;
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+            }
+            if (parseDecimal(field) && digitCount <= 7 && fractionDigits <= 10) {
+                // mantissa and power of ten are exact floats, so one float division rounds correctly
+                final float value = (float) mantissa / (float) POWERS_OF_TEN[fractionDigits];
+                return Math.round(negativeDecimal ? -value : value);
+            }
+            try {
+                return Integer.parseInt(fieldText(field));
+            } catch (NumberFormatException nfe) {
+                try {
+                    return Math.round(Float.parseFloat(fieldText(field)));
+                } catch (NumberFormatException nfe2) {
+                    throw error("expected a coordinate but found " + fieldText(field));
+                }
+            }
+        }
+
+        /**
+         * Parses a double with the same result as Double.parseDouble(text).
+         */
+        private double parseDouble(final int field) throws IOException {
+            if (parseDecimal(field) && digitCount <= 15) {
+                // mantissa and power of ten are exact doubles, so one division rounds correctly
+                final double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negativeDecimal ? -value : value;
+            }
+            try {
+                return Double.parseDouble(fieldText(field));
+            } catch (NumberFormatException nfe) {
+                throw error("expected a number but found " + fieldText(field));
+            }
+        }
+
+        // result of parseDecimal
+        private long mantissa;
+        private int digitCount;
+        private int fractionDigits;
+        private boolean hasPoint;
+        private boolean negativeDecimal;
+
+        /**
+         * Parses a field of the form [sign]digits[.digits] into mantissa, digitCount (significant digits) and
+         * fractionDigits, and whether it has a decimal point into hasPoint.
+         *
+         * @return false if the field has another form or too many digits for the fast path
+         */
+        private boolean parseDecimal(final int field) {
+            int i = fieldStart[field];
+            final int end = fieldEnd[field];
+            negativeDecimal = buffer[i] == '-';
+            if (negativeDecimal || buffer[i] == '+') {
+                i++;
+            }
+            mantissa = 0;
+            digitCount = 0;
+            fractionDigits = 0;
+            hasPoint = false;
+            boolean seenDigit = false;
+            for (; i < end; i++) {
+                final byte b = buffer[i];
+                if (b == '.' && !hasPoint) {
+                    hasPoint = true;
+                    continue;
+                }
+                final int digit = b - '0';
+                if (digit < 0 || digit > 9) {
+                    return false;
+                }
+                seenDigit = true;
+                if (mantissa != 0 || digit != 0) {
+                    digitCount++;
+                }
+                if (digitCount > 18 || (hasPoint && fractionDigits == POWERS_OF_TEN.length - 1)) {
+                    return false;
+                }
+                mantissa = 10 * mantissa + digit;
+                if (hasPoint) {
+                    fractionDigits++;
+                }
+            }
+            return seenDigit;
+        }
+
+        private String fieldText(final int field) {
+            return new String(buffer, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.US_ASCII);
+        }
+
+        private IOException error(final String message) {
+            return new IOException("Malformed swc file at line " + lineNumber + ": " + message);
+        }
+
+    }
+
+}
@@ -77,11 +77,11 @@ public class BatchImportTest {
 
         String dataset = "test";
 
-        NeuPrintMain.loadSynapseJsonInBatches(synapseJsonPath,2,neo4jImporter,dataset,false,1.0F,.2D,.8D,true,true,timeStamp);
+        NeuPrintMain.loadSynapseJsonInBatches(synapseJsonPath, 2, neo4jImporter, false, new BatchLoadOptions(dataset, timeStamp).hpThresholds(.2D, .8D));
 
         NeuPrintMain.loadConnectionJsonInBatches(connectionsJsonPath,2,neo4jImporter,dataset,true,1.0F,.2D,.8D,true,true,timeStamp);
 
-        NeuPrintMain.loadNeuronJsonInBatches(neuronsJsonPath,2,neo4jImporter,dataset,true,1.0F,.2D,.8D,5,true,true,timeStamp);
+        NeuPrintMain.loadNeuronJsonInBatches(neuronsJsonPath, 2, neo4jImporter, true, new BatchLoadOptions(dataset, timeStamp).hpThresholds(.2D, .8D).neuronThreshold(5));
 
         NeuPrintMain.loadSkeletonsInBatches(arrayOfSwcFiles, 2, true, neo4jImporter, dataset, 1.0F,.2D,.8D, true, true, timeStamp);
 
@@ -0,0 +1,125 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.neo4j.graphdb.GraphDatabaseService;
+import org.neo4j.graphdb.Node;
+import org.neo4j.graphdb.Result;
+import org.neo4j.graphdb.Transaction;
+import org.neo4j.graphdb.factory.GraphDatabaseFactory;
+import org.neo4j.graphdb.schema.IndexDefinition;
+import org.neo4j.graphdb.schema.Schema;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tests the {@link BatchInsertLoader} class.
+ */
+public class BatchInsertLoaderTest {
+
+    private static File storeDirectory;
+    private static GraphDatabaseService db;
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        storeDirectory = Files.createTempDirectory("neuprint-store").toFile();
+
+        File[] arrayOfSwcFiles = new File[]{
+                new File("src/test/resources/101.swc"),
+                new File("src/test/resources/102.swc"),
+                new File("src/test/resources/831744.swc")};
+
+        BatchInsertLoader loader = new BatchInsertLoader("test", storeDirectory, Collections.emptyMap(), 1.0F, .2D, .8D, 5, true, 2, timeStamp);
+        loader.load("src/test/resources/synapseList.json",
+                "src/test/resources/connectionsList.json",
+                "src/test/resources/neuronList.json",
+                arrayOfSwcFiles,
+                NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json"));
+
+        db = new GraphDatabaseFactory().newEmbeddedDatabase(storeDirectory);
+    }
+
+    @AfterClass
+    public static void after() throws IOException {
+        db.shutdown();
+        Files.walk(storeDirectory.toPath())
+                .sorted(Collections.reverseOrder())
+                .map(java.nio.file.Path::toFile)
+                .forEach(File::delete);
+    }
+
+    private static long count(final String query) {
+        try (Transaction ignored = db.beginTx(); Result result = db.execute(query)) {
+            return ((Number) result.next().values().iterator().next()).longValue();
+        }
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfSynapses() {
+        Assert.assertEquals(4, count("MATCH (s:Synapse:PreSyn:`test-Synapse`:`test-PreSyn`:test) RETURN count(s)"));
+        Assert.assertEquals(7, count("MATCH (s:Synapse:PostSyn:`test-Synapse`:`test-PostSyn`:test) RETURN count(s)"));
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfSynapseSetsAndConnectionSets() {
+        Assert.assertEquals(4, count("MATCH (ss:SynapseSet:`test-SynapseSet`) RETURN count(ss)"));
+        Assert.assertEquals(5, count("MATCH (cs:ConnectionSet:`test-ConnectionSet`) RETURN count(cs)"));
+    }
+
+    @Test
+    public void shouldHaveCorrectConnectsToWeights() {
+        Assert.assertEquals(2, count("MATCH (n:Segment:test:`test-Segment`{bodyId:26311})-[r:ConnectsTo]->(s{bodyId:8426959}) RETURN r.weight"));
+        Assert.assertEquals(1, count("MATCH (n:Segment:test:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(n) RETURN r.weight"));
+    }
+
+    @Test
+    public void skeletonNodeShouldContainAllSkelNodesForSkeleton() {
+        Assert.assertEquals(3, count("MATCH (s:Skeleton:`test-Skeleton`) RETURN count(s)"));
+        Assert.assertEquals(50, count("MATCH (n:Skeleton:`test-Skeleton`{skeletonId:\"test:101\"}) RETURN size((n)-[:Contains]->())"));
+        Assert.assertEquals(29, count("MATCH (n:Skeleton:`test-Skeleton`{skeletonId:\"test:102\"}) RETURN size((n)-[:Contains]->())"));
+    }
+
+    @Test
+    public void metaNodeShouldHaveCorrectSynapseCountsAndDataModel() {
+        try (Transaction ignored = db.beginTx(); Result result = db.execute("MATCH (n:Meta:test)-[:Is]->(d:DataModel) RETURN n, d")) {
+            Map<String, Object> row = result.next();
+            Map<String, Object> metaProperties = ((Node) row.get("n")).getAllProperties();
+            Assert.assertEquals(4L, metaProperties.get("totalPreCount"));
+            Assert.assertEquals(7L, metaProperties.get("totalPostCount"));
+            Assert.assertEquals(1.0D, ((Node) row.get("d")).getProperty("dataModelVersion"));
+        }
+    }
+
+    @Test
+    public void shouldHaveConstraintsAndRoiIndexesOnline() {
+        try (Transaction ignored = db.beginTx()) {
+            Schema schema = db.schema();
+            schema.awaitIndexesOnline(1, TimeUnit.MINUTES);
+            Set<String> indexNames = new HashSet<>();
+            for (IndexDefinition index : schema.getIndexes()) {
+                Assert.assertEquals(Schema.IndexState.ONLINE, schema.getIndexState(index));
+                indexNames.add(index.getLabel().name() + ":" + index.getPropertyKeys().iterator().next());
+            }
+            Assert.assertTrue(indexNames.contains("test-Segment:bodyId"));
+            Assert.assertTrue(indexNames.contains("test-Synapse:location"));
+            Assert.assertTrue(indexNames.contains("test-Neuron:bodyId"));
+            Assert.assertTrue(indexNames.contains("test-PreSyn:roiA"));
+            Assert.assertTrue(indexNames.contains("test-Segment:roiA"));
+        }
+    }
+
+}
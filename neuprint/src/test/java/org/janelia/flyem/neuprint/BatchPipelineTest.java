@@ -0,0 +1,84 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tests the {@link BatchPipeline} class.
+ */
+public class BatchPipelineTest {
+
+    @Test
+    public void shouldCommitAllBatchesInOrderWhenPipelined() throws IOException {
+        List<Integer> committed = runPipeline(3);
+        Assert.assertEquals(expectedItems(), committed);
+    }
+
+    @Test
+    public void shouldCommitAllBatchesInOrderWhenSequential() throws IOException {
+        List<Integer> committed = runPipeline(0);
+        Assert.assertEquals(expectedItems(), committed);
+    }
+
+    @Test
+    public void shouldRecordStageTimesAndBatchCount() throws IOException {
+        BatchPipeline<Integer> pipeline = new BatchPipeline<>("test", 2);
+        int[] next = {0};
+        pipeline.run(() -> next[0] < 5 ? Collections.singletonList(next[0]++) : null, batch -> {
+        });
+        Assert.assertEquals(5, pipeline.getBatchCount());
+        Assert.assertTrue(pipeline.getParseNanos() > 0);
+        Assert.assertTrue(pipeline.getCommitNanos() >= 0);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRethrowParseFailureOnCallingThread() throws IOException {
+        BatchPipeline<Integer> pipeline = new BatchPipeline<>("test", 2);
+        int[] next = {0};
+        pipeline.run(() -> {
+            if (next[0]++ == 2) {
+                throw new IOException("bad input");
+            }
+            return Collections.singletonList(next[0]);
+        }, batch -> {
+        });
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldStopParsingWhenCommitFails() throws IOException {
+        BatchPipeline<Integer> pipeline = new BatchPipeline<>("test", 1);
+        pipeline.run(() -> Collections.singletonList(1), batch -> {
+            throw new IllegalStateException("commit failed");
+        });
+    }
+
+    private static List<Integer> runPipeline(int queueDepth) throws IOException {
+        List<Integer> input = expectedItems();
+        int batchSize = 7;
+        int[] position = {0};
+        List<Integer> committed = new ArrayList<>();
+        new BatchPipeline<Integer>("test", queueDepth).run(
+                () -> {
+                    List<Integer> batch = new ArrayList<>(input.subList(position[0], Math.min(position[0] + batchSize, input.size())));
+                    position[0] += batch.size();
+                    return batch;
+                },
+                committed::addAll);
+        return committed;
+    }
+
+    private static List<Integer> expectedItems() {
+        Integer[] items = new Integer[100];
+        for (int i = 0; i < items.length; i++) {
+            items[i] = i;
+        }
+        return Arrays.asList(items);
+    }
+
+}
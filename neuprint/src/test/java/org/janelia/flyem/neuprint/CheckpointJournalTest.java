@@ -0,0 +1,74 @@
+package org.janelia.flyem.neuprint;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+public class CheckpointJournalTest {
+
+    @Test
+    public void shouldResumeFromLastCommittedBatch() throws IOException {
+
+        File journalFile = File.createTempFile("checkpoint", ".json");
+        journalFile.deleteOnExit();
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, false)) {
+            checkpointJournal.recordBatch("loadSynapseJsonInBatches", "synapses.json", 2);
+            checkpointJournal.recordBatch("loadSynapseJsonInBatches", "synapses.json", 4);
+            checkpointJournal.recordComplete("loadSynapseJsonInBatches", "synapses.json");
+            checkpointJournal.recordBatch("loadConnectionJsonInBatches", "connections.json", 3);
+        }
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, true)) {
+            Assert.assertEquals(4, checkpointJournal.getCommittedRecords("loadSynapseJsonInBatches", "synapses.json"));
+            Assert.assertEquals(2, checkpointJournal.getCommittedBatches("loadSynapseJsonInBatches", "synapses.json"));
+            Assert.assertTrue(checkpointJournal.isComplete("loadSynapseJsonInBatches", "synapses.json"));
+
+            Assert.assertEquals(3, checkpointJournal.getCommittedRecords("loadConnectionJsonInBatches", "connections.json"));
+            Assert.assertFalse(checkpointJournal.isComplete("loadConnectionJsonInBatches", "connections.json"));
+
+            // same phase with another input file has no checkpoints
+            Assert.assertEquals(0, checkpointJournal.getCommittedRecords("loadConnectionJsonInBatches", "other.json"));
+
+            checkpointJournal.recordBatch("loadConnectionJsonInBatches", "connections.json", 6);
+            Assert.assertEquals(2, checkpointJournal.getCommittedBatches("loadConnectionJsonInBatches", "connections.json"));
+        }
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, true)) {
+            Assert.assertEquals(6, checkpointJournal.getCommittedRecords("loadConnectionJsonInBatches", "connections.json"));
+        }
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, false)) {
+            Assert.assertEquals(0, checkpointJournal.getCommittedRecords("loadConnectionJsonInBatches", "connections.json"));
+            Assert.assertFalse(checkpointJournal.isComplete("loadSynapseJsonInBatches", "synapses.json"));
+        }
+        Assert.assertEquals(0, journalFile.length());
+    }
+
+    @Test
+    public void shouldIgnorePartiallyWrittenLastLine() throws IOException {
+
+        File journalFile = File.createTempFile("checkpoint", ".json");
+        journalFile.deleteOnExit();
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, false)) {
+            checkpointJournal.recordBatch("loadNeuronJsonInBatches", "neurons.json", 10);
+        }
+        Files.write(journalFile.toPath(), "{\"phase\":\"loadNeuronJsonInBatches\",\"inputFile\":\"neu".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, true)) {
+            Assert.assertEquals(10, checkpointJournal.getCommittedRecords("loadNeuronJsonInBatches", "neurons.json"));
+            checkpointJournal.recordBatch("loadNeuronJsonInBatches", "neurons.json", 20);
+        }
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, true)) {
+            Assert.assertEquals(20, checkpointJournal.getCommittedRecords("loadNeuronJsonInBatches", "neurons.json"));
+        }
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests loading with indexes deferred until after the data is loaded.
+ */
+public class DeferredIndexImportTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+    private static boolean allIndexesOnline;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        MetaInfo metaInfo = NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver, new Neo4jImporter.Options().parallelism(4).deferIndexes(true));
+
+        String dataset = "test";
+
+        NeuPrintMain.runStandardLoad(neo4jImporter, dataset, synapseList, connectionsList, neuronList, skeletonList, metaInfo, 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+        allIndexesOnline = neo4jImporter.createDeferredIndexes(dataset, true);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void allIndexesShouldBeOnline() {
+        Assert.assertTrue(allIndexesOnline);
+
+        Session session = driver.session();
+        List<Record> indexes = session.run("CALL db.indexes() YIELD tokenNames, properties, state RETURN tokenNames[0] + ':' + properties[0] AS index, state").list();
+
+        Set<String> indexNames = new HashSet<>();
+        for (Record index : indexes) {
+            Assert.assertEquals("ONLINE", index.get("state").asString());
+            indexNames.add(index.get("index").asString());
+        }
+
+        // created before loading
+        Assert.assertTrue(indexNames.contains("test-Segment:bodyId"));
+        Assert.assertTrue(indexNames.contains("test-Synapse:location"));
+        // deferred
+        Assert.assertTrue(indexNames.contains("test-Neuron:bodyId"));
+        Assert.assertTrue(indexNames.contains("test-Neuron:clusterName"));
+        Assert.assertTrue(indexNames.contains("test-Segment:mutationUuidAndId"));
+        Assert.assertTrue(indexNames.contains("Neuron:name"));
+        Assert.assertTrue(indexNames.contains("test-Neuron:roiA"));
+        Assert.assertTrue(indexNames.contains("test-Segment:roiA"));
+        Assert.assertTrue(indexNames.contains("test-PreSyn:roiA"));
+        Assert.assertTrue(indexNames.contains("test-PostSyn:roiA"));
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfSynapsesAndNeurons() {
+        Session session = driver.session();
+        int preCount = session.readTransaction(tx -> tx.run("MATCH (s:Synapse:PreSyn:`test-Synapse`:`test-PreSyn`:test) RETURN count(s)")).single().get(0).asInt();
+        int postCount = session.readTransaction(tx -> tx.run("MATCH (s:Synapse:PostSyn:`test-Synapse`:`test-PostSyn`:test) RETURN count(s)")).single().get(0).asInt();
+        Assert.assertEquals(4, preCount);
+        Assert.assertEquals(7, postCount);
+
+        List<Record> connectionSets = session.run("MATCH (cs:ConnectionSet:`test-ConnectionSet`) RETURN cs").list();
+        Assert.assertEquals(5, connectionSets.size());
+    }
+
+}
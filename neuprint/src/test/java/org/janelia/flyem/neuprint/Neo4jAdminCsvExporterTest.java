@@ -0,0 +1,189 @@
+package org.janelia.flyem.neuprint;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounterWithHighPrecisionCounts;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tests the {@link Neo4jAdminCsvExporter} and {@link ConnectionInfoBuilder} classes.
+ */
+public class Neo4jAdminCsvExporterTest {
+
+    private static File outputDirectory;
+    private static ConnectionInfoBuilder connectionInfoBuilder;
+    private static List<Neuron> neuronList;
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        outputDirectory = Files.createTempDirectory("neuprint-csv").toFile();
+
+        File[] arrayOfSwcFiles = new File[]{
+                new File("src/test/resources/101.swc"),
+                new File("src/test/resources/102.swc"),
+                new File("src/test/resources/831744.swc")};
+
+        Neo4jAdminCsvExporter exporter = new Neo4jAdminCsvExporter("test", outputDirectory, 1.0F, .2D, .8D, 5, true, 2, timeStamp);
+        exporter.export("src/test/resources/synapseList.json",
+                "src/test/resources/connectionsList.json",
+                "src/test/resources/neuronList.json",
+                arrayOfSwcFiles,
+                NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json"));
+
+        neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+        connectionInfoBuilder = new ConnectionInfoBuilder(.2D, .8D, 5, true);
+        NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json").forEach(connectionInfoBuilder::addSynapse);
+        NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json").forEach(connectionInfoBuilder::addSynapticConnection);
+        neuronList.forEach(neuron -> connectionInfoBuilder.addSegmentSynapses(neuron.getId(), neuron.getSynapseLocationSet()));
+        connectionInfoBuilder.build();
+    }
+
+    @AfterClass
+    public static void after() {
+        File[] files = outputDirectory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        outputDirectory.delete();
+    }
+
+    @Test
+    public void shouldWriteAllNodes() throws IOException {
+        Assert.assertEquals(11, countRows("Neuprint_Synapses.csv"));
+        Assert.assertEquals(4, countRows("Neuprint_SynapseSets.csv"));
+        Assert.assertEquals(5, countRows("Neuprint_ConnectionSets.csv"));
+        Assert.assertEquals(3, countRows("Neuprint_Skeletons.csv"));
+        Assert.assertEquals(1, countRows("Neuprint_Meta.csv"));
+        Assert.assertEquals(1, countRows("Neuprint_DataModel.csv"));
+    }
+
+    @Test
+    public void shouldWriteConnectsToWithWeights() throws IOException {
+        List<String> connectsTo = readRows("Neuprint_Neuron_Connections.csv");
+        Assert.assertEquals(5, connectsTo.size());
+        Assert.assertTrue(connectsTo.contains("26311,2,1,8426959,\"ConnectsTo\""));
+        Assert.assertTrue(connectsTo.contains("8426959,1,1,8426959,\"ConnectsTo\""));
+    }
+
+    @Test
+    public void shouldWriteSkeletonContainsForAllSkelNodes() throws IOException {
+        List<String> skeletonContains = readRows("Neuprint_Skeleton_to_SkelNodes.csv");
+        Assert.assertEquals(50, skeletonContains.stream().filter(r -> r.startsWith("101,")).count());
+        Assert.assertEquals(29, skeletonContains.stream().filter(r -> r.startsWith("102,")).count());
+    }
+
+    @Test
+    public void shouldWriteMetaNodeSynapseCounts() throws IOException {
+        String metaRow = readRows("Neuprint_Meta.csv").get(0);
+        Assert.assertTrue(metaRow.contains(",4,7,0.2,0.8,"));
+        Assert.assertTrue(metaRow.endsWith("\"Meta;test\""));
+    }
+
+    @Test
+    public void shouldComputeConnectionSetRoiInfo() {
+        ConnectionInfoBuilder.ConnectionSetInfo connectionSet = connectionInfoBuilder.getConnectionSet(8426959, 26311);
+        Assert.assertNotNull(connectionSet);
+
+        Map<String, SynapseCounterWithHighPrecisionCounts> roiInfo = new Gson().fromJson(connectionSet.getRoiInfo(), new TypeToken<Map<String, SynapseCounterWithHighPrecisionCounts>>() {
+        }.getType());
+
+        Assert.assertEquals(1, roiInfo.size());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPre());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPreHP());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPost());
+        Assert.assertEquals(0, roiInfo.get("roiA").getPostHP());
+    }
+
+    @Test
+    public void shouldComputeSegmentPropertiesAndClusterName() {
+        Neuron neuron = neuronList.stream().filter(n -> n.getId() == 8426959L).findFirst().orElseThrow(AssertionError::new);
+        ConnectionInfoBuilder.SegmentInfo segmentInfo = connectionInfoBuilder.getSegmentInfo(neuron.getId(), neuron.getSynapseLocationSet());
+
+        Assert.assertTrue(segmentInfo.isNeuron());
+        Assert.assertEquals(2, segmentInfo.getPre());
+        Assert.assertEquals(3, segmentInfo.getPost());
+        Assert.assertEquals("roiA.roiB-roiA", segmentInfo.getClusterName());
+    }
+
+    @Test
+    public void segmentInfosShouldMatchPerSegmentComputation() {
+        List<ConnectionInfoBuilder.SegmentInfo> segmentInfos = connectionInfoBuilder.getSegmentInfos();
+        Assert.assertEquals(4, segmentInfos.size());
+        for (ConnectionInfoBuilder.SegmentInfo segmentInfo : segmentInfos) {
+            Neuron neuron = neuronList.stream().filter(n -> n.getId() == segmentInfo.getBodyId()).findFirst().orElseThrow(AssertionError::new);
+            ConnectionInfoBuilder.SegmentInfo expected = connectionInfoBuilder.getSegmentInfo(neuron.getId(), neuron.getSynapseLocationSet());
+            Assert.assertEquals(expected.getPre(), segmentInfo.getPre());
+            Assert.assertEquals(expected.getPost(), segmentInfo.getPost());
+            Assert.assertEquals(expected.getRoiInfo().getAsJsonString(), segmentInfo.getRoiInfo().getAsJsonString());
+            Assert.assertEquals(expected.isNeuron(), segmentInfo.isNeuron());
+            Assert.assertEquals(expected.getClusterName(), segmentInfo.getClusterName());
+        }
+    }
+
+    @Test
+    public void shouldAssignPreAndPostSynapsesSharingALocationToTheSegment() {
+        Location preLocation = new Location(1L, 1L, 1L);
+        Location sharedLocation = new Location(2L, 2L, 2L);
+        Location postLocation = new Location(3L, 3L, 3L);
+
+        // the pre synapse at the shared location is only created by its connection
+        ConnectionInfoBuilder builder = new ConnectionInfoBuilder(.2D, .8D, 5, true);
+        builder.addSynapse(new Synapse("pre", .9, preLocation, Collections.singleton("roiA")));
+        builder.addSynapse(new Synapse("post", .9, sharedLocation, Collections.singleton("roiA")));
+        builder.addSynapse(new Synapse("post", .9, postLocation, Collections.singleton("roiA")));
+        builder.addSynapticConnection(new SynapticConnection(preLocation, sharedLocation));
+        builder.addSynapticConnection(new SynapticConnection(sharedLocation, postLocation));
+        builder.addSegmentSynapses(1, Collections.singleton(preLocation));
+        builder.addSegmentSynapses(2, Collections.singleton(sharedLocation));
+        builder.addSegmentSynapse(3, 3, 3, 3);
+        builder.build();
+
+        Assert.assertEquals(2, builder.getSynapseIds(sharedLocation).length);
+        for (int synapseId : builder.getSynapseIds(sharedLocation)) {
+            Assert.assertEquals(2, builder.getSynapseBodyId(synapseId));
+        }
+
+        Assert.assertEquals(2, builder.getConnectionSets().size());
+        Assert.assertEquals(1, builder.getConnectionSet(1, 2).getWeight());
+        Assert.assertEquals(1, builder.getConnectionSet(2, 3).getWeight());
+
+        ConnectionInfoBuilder.SegmentInfo segmentInfo = builder.getSegmentInfo(2, Collections.singleton(sharedLocation));
+        Assert.assertEquals(1, segmentInfo.getPre());
+        Assert.assertEquals(1, segmentInfo.getPost());
+        ConnectionInfoBuilder.SegmentInfo segmentInfoFromSinglePass = builder.getSegmentInfos().stream().filter(i -> i.getBodyId() == 2).findFirst().orElseThrow(AssertionError::new);
+        Assert.assertEquals(1, segmentInfoFromSinglePass.getPre());
+        Assert.assertEquals(1, segmentInfoFromSinglePass.getPost());
+    }
+
+    private static List<String> readRows(String fileName) throws IOException {
+        List<String> lines = Files.readAllLines(new File(outputDirectory, fileName).toPath(), StandardCharsets.UTF_8);
+        return lines.subList(1, lines.size());
+    }
+
+    private static long countRows(String fileName) throws IOException {
+        return readRows(fileName).size();
+    }
+
+}
@@ -47,6 +47,7 @@ public class Neo4jImporterTest {
     @ClassRule
     public static Neo4jRule neo4j;
     private static Driver driver;
+    private static Neo4jImporter neo4jImporter;
 
     static {
         neo4j = new Neo4jRule()
@@ -81,7 +82,7 @@ public class Neo4jImporterTest {
 
         driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
 
-        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+        neo4jImporter = new Neo4jImporter(driver);
 
         String dataset = "test";
 
@@ -94,6 +95,15 @@ public class Neo4jImporterTest {
         driver.close();
     }
 
+    @Test
+    public void shouldSendSameStatementTextsForAllRoiCombinations() {
+        // ROI properties are parameters, so each phase sends one text per template however many ROI combinations there are
+        Assert.assertEquals(2, neo4jImporter.getDistinctStatementTextCount("addSynapsesWithRois"));
+        Assert.assertEquals(3, neo4jImporter.getDistinctStatementTextCount("addSynapsesTo"));
+        Assert.assertEquals(4, neo4jImporter.getDistinctStatementTextCount("addSegments"));
+        Assert.assertEquals(1, neo4jImporter.getDistinctStatementTextCount("addConnectionInfo"));
+    }
+
     @Test
     public void synapsesShouldHavePropertiesMatchingInputJson() {
 
@@ -0,0 +1,315 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.janelia.flyem.neuprint.db.AdaptiveBatchSize;
+import org.janelia.flyem.neuprint.db.CommitLog;
+import org.janelia.flyem.neuprint.db.DbTransactionBatch;
+import org.janelia.flyem.neuprint.db.ParallelDbTransactionBatch;
+import org.janelia.flyem.neuprint.model.Location;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.Statement;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+/**
+ * Tests loading with {@link ParallelDbTransactionBatch} (multiple sessions committing in parallel).
+ */
+public class ParallelImportTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        MetaInfo metaInfo = NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver, new Neo4jImporter.Options().parallelism(4));
+
+        String dataset = "test";
+
+        NeuPrintMain.runStandardLoad(neo4jImporter, dataset, synapseList, connectionsList, neuronList, skeletonList, metaInfo, 1.0F, .2D, .8D, 5, true, true, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfSynapses() {
+        Session session = driver.session();
+        int preCount = session.readTransaction(tx -> tx.run("MATCH (s:Synapse:PreSyn:`test-Synapse`:`test-PreSyn`:test) RETURN count(s)")).single().get(0).asInt();
+        int postCount = session.readTransaction(tx -> tx.run("MATCH (s:Synapse:PostSyn:`test-Synapse`:`test-PostSyn`:test) RETURN count(s)")).single().get(0).asInt();
+        Assert.assertEquals(4, preCount);
+        Assert.assertEquals(7, postCount);
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfSynapseSetsAndConnectionSets() {
+        Session session = driver.session();
+
+        List<Record> synapseSets = session.run("MATCH (ss:SynapseSet:`test-SynapseSet`) RETURN ss").list();
+        Assert.assertEquals(4, synapseSets.size());
+
+        List<Record> connectionSets = session.run("MATCH (cs:ConnectionSet:`test-ConnectionSet`) RETURN cs").list();
+        Assert.assertEquals(5, connectionSets.size());
+    }
+
+    @Test
+    public void shouldHaveCorrectConnectsToWeights() {
+        Session session = driver.session();
+
+        int weight_26311To8426959 = session.run("MATCH (n:Segment:test:`test-Segment`{bodyId:26311})-[r:ConnectsTo]->(s{bodyId:8426959}) RETURN r.weight").single().get(0).asInt();
+        Assert.assertEquals(2, weight_26311To8426959);
+
+        int weight_8426959To8426959 = session.run("MATCH (n:Segment:test:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(n) RETURN r.weight").single().get(0).asInt();
+        Assert.assertEquals(1, weight_8426959To8426959);
+    }
+
+    @Test
+    public void skeletonNodeShouldContainAllSkelNodesForSkeleton() {
+        Session session = driver.session();
+
+        List<Record> skeletons = session.run("MATCH (s:Skeleton:`test-Skeleton`) RETURN s").list();
+        Assert.assertEquals(3, skeletons.size());
+
+        Integer skeleton101Degree = session.run("MATCH (n:Skeleton:`test-Skeleton`{skeletonId:\"test:101\"}) WITH n, size((n)-[:Contains]->()) as degree RETURN degree ").single().get(0).asInt();
+        Integer skeleton102Degree = session.run("MATCH (n:Skeleton:`test-Skeleton`{skeletonId:\"test:102\"}) WITH n, size((n)-[:Contains]->()) as degree RETURN degree ").single().get(0).asInt();
+
+        Assert.assertEquals(new Integer(50), skeleton101Degree);
+        Assert.assertEquals(new Integer(29), skeleton102Degree);
+    }
+
+    @Test
+    public void metaNodeShouldHaveCorrectSynapseCounts() {
+        Session session = driver.session();
+
+        Node metaNode = session.run("MATCH (n:Meta:test) RETURN n").single().get(0).asNode();
+        Assert.assertEquals(4L, metaNode.asMap().get("totalPreCount"));
+        Assert.assertEquals(7L, metaNode.asMap().get("totalPostCount"));
+    }
+
+    @Test
+    public void unwindShouldNotDuplicateSynapsesSharingALocation() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        // a pre and a post synapse at each location merge into a single Synapse node
+        int locationCount = 300;
+        List<Synapse> synapseList = new ArrayList<>();
+        for (long i = 0; i < locationCount; i++) {
+            synapseList.add(new Synapse("pre", .9, new Location(i, i, 1L), Collections.singleton("roiA")));
+        }
+        for (long i = 0; i < locationCount; i++) {
+            synapseList.add(new Synapse("post", .9, new Location(i, i, 1L), Collections.singleton("roiA")));
+        }
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver, new Neo4jImporter.Options().parallelism(4));
+        NeuPrintMain.initializeDatabase(neo4jImporter, "shared", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRoisUsingUnwind("shared", synapseList, timeStamp);
+
+        Session session = driver.session();
+        int synapseCount = session.readTransaction(tx -> tx.run("MATCH (s:`shared-Synapse`) RETURN count(s)")).single().get(0).asInt();
+        Assert.assertEquals(locationCount, synapseCount);
+    }
+
+    @Test
+    public void shouldCommitAllStatementsAndReportPerWorkerCounts() {
+
+        long[] committedStatementCounts;
+        long[] failedTransactionCounts;
+        try (ParallelDbTransactionBatch batch = new ParallelDbTransactionBatch(driver, 3, 2)) {
+            for (long i = 0; i < 10; i++) {
+                batch.addStatement(new Statement("CREATE (n:ParallelTest{id:$id})", parameters("id", i)), i);
+            }
+            batch.writeTransaction();
+            committedStatementCounts = batch.getCommittedStatementCounts();
+            failedTransactionCounts = batch.getFailedTransactionCounts();
+        }
+
+        Assert.assertEquals(10L, Arrays.stream(committedStatementCounts).sum());
+        Assert.assertEquals(0L, Arrays.stream(failedTransactionCounts).sum());
+
+        Session session = driver.session();
+        int nodeCount = session.run("MATCH (n:ParallelTest) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(10, nodeCount);
+    }
+
+    @Test
+    public void shouldCommitAllStatementsWithAdaptiveBatchSize() {
+
+        AdaptiveBatchSize adaptiveBatchSize = new AdaptiveBatchSize("test", 2, 1, 8, 1000);
+        try (ParallelDbTransactionBatch batch = new ParallelDbTransactionBatch(driver, 3, adaptiveBatchSize)) {
+            for (long i = 0; i < 30; i++) {
+                batch.addStatement(new Statement("CREATE (n:AdaptiveTest{id:$id})", parameters("id", i)), i);
+            }
+            batch.writeTransaction();
+        }
+
+        Assert.assertTrue(adaptiveBatchSize.get() > 2);
+
+        Session session = driver.session();
+        int nodeCount = session.run("MATCH (n:AdaptiveTest) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(30, nodeCount);
+    }
+
+    @Test
+    public void shouldIsolateFailingStatementAndCommitRestOfBatch() throws Exception {
+
+        File deadLetterFile = File.createTempFile("deadLetter", ".json");
+        deadLetterFile.deleteOnExit();
+
+        try (CommitLog commitLog = new CommitLog(deadLetterFile)) {
+            try (DbTransactionBatch batch = new DbTransactionBatch(driver.session(), 10, null, commitLog)) {
+                for (long i = 0; i < 10; i++) {
+                    // divides by zero for id 7
+                    batch.addStatement(new Statement("CREATE (n:DeadLetterTest{id:$id, ratio:1/$divisor})", parameters("id", i, "divisor", i - 7)));
+                }
+                batch.writeTransaction();
+            }
+
+            Assert.assertEquals(9L, commitLog.getCommittedStatements());
+            Assert.assertEquals(1L, commitLog.getDeadLetterStatements());
+            Assert.assertTrue(commitLog.getFailedTransactions() > 0);
+        }
+
+        Session session = driver.session();
+        int nodeCount = session.run("MATCH (n:DeadLetterTest) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(9, nodeCount);
+
+        List<String> deadLetters = Files.readAllLines(deadLetterFile.toPath());
+        Assert.assertEquals(1, deadLetters.size());
+        JsonObject deadLetter = new JsonParser().parse(deadLetters.get(0)).getAsJsonObject();
+        Assert.assertEquals(7L, deadLetter.getAsJsonObject("parameters").get("id").getAsLong());
+        Assert.assertTrue(deadLetter.get("code").getAsString().startsWith("Neo.ClientError"));
+    }
+
+    @Test
+    public void shouldIsolateFailingRowsOfUnwindStatement() throws Exception {
+
+        File deadLetterFile = File.createTempFile("deadLetter", ".json");
+        deadLetterFile.deleteOnExit();
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (long i = 0; i < 16; i++) {
+            Map<String, Object> row = new HashMap<>();
+            row.put("id", i);
+            // divides by zero for id 11
+            row.put("divisor", i - 11);
+            rows.add(row);
+        }
+
+        try (CommitLog commitLog = new CommitLog(deadLetterFile)) {
+            try (DbTransactionBatch batch = new DbTransactionBatch(driver.session(), 10, null, commitLog)) {
+                batch.addStatement(new Statement("UNWIND $rows AS row CREATE (n:UnwindDeadLetterTest{id:row.id, ratio:1/row.divisor})", parameters("rows", rows)));
+                batch.writeTransaction();
+            }
+
+            Assert.assertEquals(1L, commitLog.getDeadLetterStatements());
+        }
+
+        Session session = driver.session();
+        int nodeCount = session.run("MATCH (n:UnwindDeadLetterTest) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(15, nodeCount);
+
+        List<String> deadLetters = Files.readAllLines(deadLetterFile.toPath());
+        Assert.assertEquals(1, deadLetters.size());
+        JsonArray deadLetterRows = new JsonParser().parse(deadLetters.get(0)).getAsJsonObject().getAsJsonObject("parameters").getAsJsonArray("rows");
+        Assert.assertEquals(1, deadLetterRows.size());
+        Assert.assertEquals(11L, deadLetterRows.get(0).getAsJsonObject().get("id").getAsLong());
+    }
+
+    @Test
+    public void shouldIsolateFailingStatementsInParallelBatch() throws Exception {
+
+        File deadLetterFile = File.createTempFile("deadLetter", ".json");
+        deadLetterFile.deleteOnExit();
+
+        try (CommitLog commitLog = new CommitLog(deadLetterFile)) {
+            try (ParallelDbTransactionBatch batch = new ParallelDbTransactionBatch(driver, 2, 4, null, commitLog)) {
+                for (long i = 0; i < 12; i++) {
+                    // divides by zero for ids 3 and 8
+                    batch.addStatement(new Statement("CREATE (n:ParallelDeadLetterTest{id:$id, ratio:1/$divisor})", parameters("id", i, "divisor", (i - 3) * (i - 8))), i);
+                }
+                batch.writeTransaction();
+            }
+
+            Assert.assertEquals(10L, commitLog.getCommittedStatements());
+            Assert.assertEquals(2L, commitLog.getDeadLetterStatements());
+        }
+
+        Session session = driver.session();
+        int nodeCount = session.run("MATCH (n:ParallelDeadLetterTest) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(10, nodeCount);
+        Assert.assertEquals(2, Files.readAllLines(deadLetterFile.toPath()).size());
+    }
+
+    @Test(expected = RuntimeException.class)
+    public void shouldReportFailedBatchesOnWriteTransaction() {
+        try (ParallelDbTransactionBatch batch = new ParallelDbTransactionBatch(driver, 2, 5)) {
+            batch.addStatement(new Statement("THIS IS NOT CYPHER"), 1L);
+            batch.writeTransaction();
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.janelia.flyem.neuprint.model.MetaInfo;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounter;
+import org.janelia.flyem.neuprintloadprocedures.model.SynapseCounterWithHighPrecisionCounts;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Map;
+
+import static org.neo4j.driver.v1.Values.parameters;
+
+/**
+ * Tests loading with connection information computed client-side by {@link ConnectionInfoBuilder} and written with
+ * {@link Neo4jImporter#addPrecomputedConnectionInfo}. Expected values match those in {@link Neo4jImporterTest}.
+ */
+public class PrecomputedConnectionInfoImportTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+
+        List<Neuron> neuronList = NeuPrintMain.readNeuronsJson("src/test/resources/neuronList.json");
+
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson("src/test/resources/synapseList.json");
+
+        List<SynapticConnection> connectionsList = NeuPrintMain.readConnectionsJson("src/test/resources/connectionsList.json");
+
+        MetaInfo metaInfo = NeuPrintMain.readMetaInfoJson("src/test/resources/testMetaInfo.json");
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        String dataset = "test";
+
+        ConnectionInfoBuilder connectionInfoBuilder = NeuPrintMain.buildConnectionInfo("src/test/resources/synapseList.json",
+                "src/test/resources/connectionsList.json",
+                "src/test/resources/neuronList.json",
+                .2D, .8D, 5, true);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, dataset, 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRois(dataset, synapseList, timeStamp);
+        neo4jImporter.indexBooleanRoiProperties(dataset);
+        neo4jImporter.addSynapsesTo(dataset, connectionsList, timeStamp);
+        neo4jImporter.addSegments(dataset, neuronList, timeStamp);
+        neo4jImporter.addPrecomputedConnectionInfo(dataset, connectionInfoBuilder, timeStamp);
+        neo4jImporter.addSkeletonNodes(dataset, skeletonList, timeStamp);
+        neo4jImporter.addMetaInfo(dataset, metaInfo, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void shouldHaveCorrectNumberOfConnectionSets() {
+        Session session = driver.session();
+
+        List<Record> connectionSets = session.run("MATCH (cs:ConnectionSet:test:`test-ConnectionSet`) RETURN cs").list();
+        Assert.assertEquals(5, connectionSets.size());
+
+        int connectionSetPreCount = session.run("MATCH (n:Neuron:test:`test-Neuron`{bodyId:8426959})<-[:From]-(c:ConnectionSet) RETURN count(c)").single().get(0).asInt();
+        Assert.assertEquals(4, connectionSetPreCount);
+
+        int connectionSetPostCount = session.run("MATCH (n:Neuron:test:`test-Neuron`{bodyId:8426959})<-[:To]-(c:ConnectionSet) RETURN count(c)").single().get(0).asInt();
+        Assert.assertEquals(2, connectionSetPostCount);
+
+        List<Record> synapseCS_8426959_2589725 = session.run("MATCH (t:ConnectionSet:test:`test-ConnectionSet`{datasetBodyIds:\"test:8426959:2589725\"})-[:Contains]->(s) RETURN s").list();
+        Assert.assertEquals(2, synapseCS_8426959_2589725.size());
+    }
+
+    @Test
+    public void shouldHaveCorrectConnectsToWeights() {
+        Session session = driver.session();
+
+        int weight_26311To8426959 = session.run("MATCH (n:Segment:test:`test-Segment`{bodyId:26311})-[r:ConnectsTo]->(s{bodyId:8426959}) RETURN r.weight").single().get(0).asInt();
+        Assert.assertEquals(2, weight_26311To8426959);
+
+        int weight_8426959To8426959 = session.run("MATCH (n:Segment:test:`test-Segment`{bodyId:8426959})-[r:ConnectsTo]->(n) RETURN r.weight").single().get(0).asInt();
+        Assert.assertEquals(1, weight_8426959To8426959);
+
+        // weight should be equal to the number of psds per connection
+        List<Record> connections = session.run("MATCH (n:`test-Neuron`)-[c:ConnectsTo]->(m), (cs:ConnectionSet)-[:Contains]->(s:PostSyn) WHERE cs.datasetBodyIds=\"test:\" + n.bodyId + \":\" + m.bodyId RETURN n.bodyId, m.bodyId, c.weight, cs.datasetBodyIds, count(s)").list();
+        for (Record record : connections) {
+            Assert.assertEquals(record.asMap().get("c.weight"), record.asMap().get("count(s)"));
+        }
+    }
+
+    @Test
+    public void shouldAddSegmentPropertiesAndNeuronLabels() {
+        Session session = driver.session();
+
+        int roiInfoCount = session.run("MATCH (n:Segment:test:`test-Segment`) WHERE exists(n.roiInfo) RETURN count(n)").single().get(0).asInt();
+        Assert.assertEquals(4, roiInfoCount);
+
+        Node bodyId8426959 = session.run("MATCH (n:Neuron:test:`test-Neuron`{bodyId:8426959}) RETURN n").single().get(0).asNode();
+        Assert.assertEquals(3L, bodyId8426959.asMap().get("post"));
+        Assert.assertEquals(2L, bodyId8426959.asMap().get("pre"));
+        Assert.assertEquals(true, bodyId8426959.asMap().get("roiA"));
+        Assert.assertEquals("roiA.roiB-roiA", bodyId8426959.asMap().get("clusterName"));
+
+        Map<String, SynapseCounter> synapseCountPerRoi = new Gson().fromJson((String) bodyId8426959.asMap().get("roiInfo"), new TypeToken<Map<String, SynapseCounter>>() {
+        }.getType());
+        Assert.assertEquals(2, synapseCountPerRoi.get("roiA").getPre());
+
+        int noClusterNameCount = session.readTransaction(tx -> tx.run("MATCH (n:`test-Neuron`) WHERE NOT exists(n.clusterName) RETURN count(n)")).single().get(0).asInt();
+        Assert.assertEquals(0, noClusterNameCount);
+    }
+
+    @Test
+    public void connectionSetsShouldHaveRoiInfoProperty() {
+        Session session = driver.session();
+
+        int countOfConnectionSetsWithoutRoiInfo = session.run("MATCH (t:ConnectionSet) WHERE NOT exists(t.roiInfo) RETURN count(t)").single().get("count(t)").asInt();
+        Assert.assertEquals(0, countOfConnectionSetsWithoutRoiInfo);
+
+        String roiInfoString = session.readTransaction(tx -> tx.run("MATCH (n:`test-ConnectionSet`{datasetBodyIds:$datasetBodyIds}) RETURN n.roiInfo", parameters("datasetBodyIds", "test:8426959:26311"))).single().get("n.roiInfo").asString();
+        Map<String, SynapseCounterWithHighPrecisionCounts> roiInfo = new Gson().fromJson(roiInfoString, new TypeToken<Map<String, SynapseCounterWithHighPrecisionCounts>>() {
+        }.getType());
+
+        Assert.assertEquals(1, roiInfo.size());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPre());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPreHP());
+        Assert.assertEquals(1, roiInfo.get("roiA").getPost());
+        Assert.assertEquals(0, roiInfo.get("roiA").getPostHP());
+    }
+
+}
@@ -0,0 +1,101 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * Tests that a synapse load resumed from a {@link CheckpointJournal} produces the same graph and Meta node counts as an uninterrupted load.
+ */
+public class ResumedLoadTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() throws IOException {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        String synapseJsonPath = "src/test/resources/synapseList.json";
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.loadSynapseJsonInBatches(synapseJsonPath, 2, neo4jImporter, false, new BatchLoadOptions("uninterrupted", timeStamp).hpThresholds(.2D, .8D));
+
+        File journalFile = File.createTempFile("checkpoint", ".json");
+        journalFile.deleteOnExit();
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, false)) {
+            NeuPrintMain.loadSynapseJsonInBatches(synapseJsonPath, 2, neo4jImporter, false, new BatchLoadOptions("resumed", timeStamp).hpThresholds(.2D, .8D).checkpointJournal(checkpointJournal));
+        }
+
+        // simulate a load interrupted after the checkpoint for its second batch, so the batches committed after it are loaded again
+        List<String> checkpoints = Files.readAllLines(journalFile.toPath());
+        Files.write(journalFile.toPath(), checkpoints.subList(0, 2));
+
+        try (CheckpointJournal checkpointJournal = new CheckpointJournal(journalFile, true)) {
+            NeuPrintMain.loadSynapseJsonInBatches(synapseJsonPath, 2, neo4jImporter, true, new BatchLoadOptions("resumed", timeStamp).hpThresholds(.2D, .8D).checkpointJournal(checkpointJournal));
+        }
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void resumedLoadShouldHaveSameSynapsesAsUninterruptedLoad() {
+
+        Session session = driver.session();
+
+        long uninterruptedSynapseCount = session.readTransaction(tx -> tx.run("MATCH (s:`uninterrupted-Synapse`) RETURN count(s)")).single().get(0).asLong();
+        long resumedSynapseCount = session.readTransaction(tx -> tx.run("MATCH (s:`resumed-Synapse`) RETURN count(s)")).single().get(0).asLong();
+
+        Assert.assertEquals(uninterruptedSynapseCount, resumedSynapseCount);
+
+    }
+
+    @Test
+    public void resumedLoadShouldHaveSameMetaNodeSynapseCountsAsUninterruptedLoad() {
+
+        Session session = driver.session();
+
+        Node uninterruptedMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta:uninterrupted) RETURN n")).single().get(0).asNode();
+        Node resumedMeta = session.readTransaction(tx -> tx.run("MATCH (n:Meta:resumed) RETURN n")).single().get(0).asNode();
+
+        Assert.assertEquals(uninterruptedMeta.asMap().get("totalPreCount"), resumedMeta.asMap().get("totalPreCount"));
+        Assert.assertEquals(uninterruptedMeta.asMap().get("totalPostCount"), resumedMeta.asMap().get("totalPostCount"));
+        Assert.assertEquals(uninterruptedMeta.asMap().get("roiInfo"), resumedMeta.asMap().get("roiInfo"));
+
+    }
+
+}
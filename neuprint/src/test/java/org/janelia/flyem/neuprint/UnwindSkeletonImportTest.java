@@ -0,0 +1,133 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Skeleton;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that {@link Neo4jImporter#addSkeletonNodesUsingUnwind} produces the same graph as {@link Neo4jImporter#addSkeletonNodes}.
+ */
+public class UnwindSkeletonImportTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        File swcFile1 = new File("src/test/resources/101.swc");
+        File swcFile2 = new File("src/test/resources/102.swc");
+        File swcFile3 = new File("src/test/resources/831744.swc");
+
+        File[] arrayOfSwcFiles = new File[]{swcFile1, swcFile2, swcFile3};
+
+        List<Skeleton> skeletonList = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles, 3);
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, "test", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSkeletonNodes("test", skeletonList, timeStamp);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, "unwind", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSkeletonNodesUsingUnwind("unwind", skeletonList, timeStamp);
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void unwindShouldProduceSameSkelNodesAsPerStatementLoad() {
+
+        Map<String, Map<String, Object>> perStatementSkelNodes = getSkelNodeProperties("test");
+        Map<String, Map<String, Object>> unwindSkelNodes = getSkelNodeProperties("unwind");
+
+        Assert.assertEquals(50 + 29, perStatementSkelNodes.keySet().stream().filter(id -> id.startsWith("101:") || id.startsWith("102:")).count());
+        Assert.assertEquals(perStatementSkelNodes, unwindSkelNodes);
+
+    }
+
+    @Test
+    public void unwindShouldProduceSameLinksAsPerStatementLoad() {
+
+        Set<String> perStatementLinks = getLinks("test");
+        Set<String> unwindLinks = getLinks("unwind");
+
+        Assert.assertFalse(perStatementLinks.isEmpty());
+        Assert.assertEquals(perStatementLinks, unwindLinks);
+
+    }
+
+    @Test
+    public void unwindShouldConnectSegmentsSkeletonsAndSkelNodes() {
+
+        Session session = driver.session();
+
+        Long skeleton101ContainedByBodyId = session.run("MATCH (n:Skeleton:unwind:`unwind-Skeleton`{skeletonId:\"unwind:101\"})<-[:Contains]-(s:Segment:`unwind-Segment`) RETURN s.bodyId").single().get(0).asLong();
+        Assert.assertEquals(new Long(101), skeleton101ContainedByBodyId);
+
+        Integer skeleton102Degree = session.run("MATCH (n:Skeleton:`unwind-Skeleton`{skeletonId:\"unwind:102\"}) WITH n, size((n)-[:Contains]->(:SkelNode:unwind)) as degree RETURN degree").single().get(0).asInt();
+        Assert.assertEquals(new Integer(29), skeleton102Degree);
+
+        Integer skelNode101NumberOfRoots = session.run("MATCH (n:Skeleton:`unwind-Skeleton`{skeletonId:\"unwind:101\"})-[:Contains]->(s:SkelNode:`unwind-SkelNode`) WHERE NOT (s)<-[:LinksTo]-() RETURN count(s) ").single().get(0).asInt();
+        Assert.assertEquals(new Integer(4), skelNode101NumberOfRoots);
+
+    }
+
+    private static Map<String, Map<String, Object>> getSkelNodeProperties(String dataset) {
+        Session session = driver.session();
+        Map<String, Map<String, Object>> skelNodePropertiesById = new HashMap<>();
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (s:`" + dataset + "-SkelNode`) RETURN s")).list()) {
+            Map<String, Object> properties = new HashMap<>(record.get(0).asNode().asMap());
+            // skelNodeIds are prefixed with the dataset name
+            String skelNodeId = ((String) properties.remove("skelNodeId")).substring(dataset.length() + 1);
+            skelNodePropertiesById.put(skelNodeId, properties);
+        }
+        return skelNodePropertiesById;
+    }
+
+    private static Set<String> getLinks(String dataset) {
+        Session session = driver.session();
+        Set<String> links = new HashSet<>();
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (p:`" + dataset + "-SkelNode`)-[:LinksTo]->(c) RETURN p.skelNodeId, c.skelNodeId")).list()) {
+            links.add(record.get(0).asString().substring(dataset.length() + 1) + "->" + record.get(1).asString().substring(dataset.length() + 1));
+        }
+        return links;
+    }
+
+}
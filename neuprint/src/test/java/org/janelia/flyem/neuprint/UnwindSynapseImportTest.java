@@ -0,0 +1,146 @@
+package org.janelia.flyem.neuprint;
+
+import apoc.convert.Json;
+import apoc.create.Create;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprintloadprocedures.procedures.LoadingProcedures;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.neo4j.driver.v1.Config;
+import org.neo4j.driver.v1.Driver;
+import org.neo4j.driver.v1.GraphDatabase;
+import org.neo4j.driver.v1.Record;
+import org.neo4j.driver.v1.Session;
+import org.neo4j.driver.v1.types.Node;
+import org.neo4j.harness.junit.Neo4jRule;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tests that {@link Neo4jImporter#addSynapsesWithRoisUsingUnwind} produces the same graph as {@link Neo4jImporter#addSynapsesWithRois}.
+ */
+public class UnwindSynapseImportTest {
+
+    @ClassRule
+    public static Neo4jRule neo4j;
+    private static Driver driver;
+    private static String reloadedRoiInfoBeforeRecompute;
+
+    static {
+        neo4j = new Neo4jRule()
+                .withFunction(Json.class)
+                .withProcedure(LoadingProcedures.class)
+                .withProcedure(Create.class);
+    }
+
+    @BeforeClass
+    public static void before() {
+
+        final LocalDateTime timeStamp = LocalDateTime.now().truncatedTo(ChronoUnit.SECONDS);
+
+        String synapseJsonPath = "src/test/resources/synapseList.json";
+        List<Synapse> synapseList = NeuPrintMain.readSynapsesJson(synapseJsonPath);
+
+        driver = GraphDatabase.driver(neo4j.boltURI(), Config.build().withoutEncryption().toConfig());
+
+        Neo4jImporter neo4jImporter = new Neo4jImporter(driver);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, "test", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRois("test", synapseList, timeStamp);
+
+        NeuPrintMain.initializeDatabase(neo4jImporter, "unwind", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRoisUsingUnwind("unwind", synapseList, timeStamp);
+
+        // loading the same synapses twice re-MERGEs existing nodes, so the batch roiInfo counts are inflated until recomputed
+        NeuPrintMain.initializeDatabase(neo4jImporter, "reloaded", 1.0F, .2D, .8D, true, true, timeStamp);
+        neo4jImporter.addSynapsesWithRoisUsingUnwind("reloaded", synapseList, timeStamp);
+        neo4jImporter.addSynapsesWithRoisUsingUnwind("reloaded", synapseList, timeStamp);
+        reloadedRoiInfoBeforeRecompute = getMetaNodeRoiInfo("reloaded");
+        neo4jImporter.recomputeMetaNodeSynapseCounts("reloaded");
+
+    }
+
+    @AfterClass
+    public static void after() {
+        driver.close();
+    }
+
+    @Test
+    public void unwindShouldProduceSameSynapsesAsPerStatementLoad() {
+
+        Map<Object, Map<String, Object>> perStatementSynapses = getSynapsePropertiesByLocation("test");
+        Map<Object, Map<String, Object>> unwindSynapses = getSynapsePropertiesByLocation("unwind");
+
+        Assert.assertEquals(perStatementSynapses.size(), unwindSynapses.size());
+        Assert.assertEquals(perStatementSynapses, unwindSynapses);
+
+    }
+
+    @Test
+    public void unwindShouldProduceSameLabelsAsPerStatementLoad() {
+
+        Session session = driver.session();
+
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (s:`unwind-Synapse`) RETURN s")).list()) {
+            Node synapse = record.get(0).asNode();
+            Set<String> labels = new HashSet<>();
+            synapse.labels().forEach(labels::add);
+            Assert.assertTrue(labels.contains("Synapse"));
+            Assert.assertTrue(labels.contains("unwind"));
+            if (synapse.get("type").asString().equals("pre")) {
+                Assert.assertTrue(labels.contains("PreSyn") && labels.contains("unwind-PreSyn"));
+            } else {
+                Assert.assertTrue(labels.contains("PostSyn") && labels.contains("unwind-PostSyn"));
+            }
+        }
+
+    }
+
+    @Test
+    public void unwindShouldProduceSameMetaNodeCounts() {
+
+        Session session = driver.session();
+
+        Node perStatementMeta = session.run("MATCH (n:Meta:test) RETURN n").single().get(0).asNode();
+        Node unwindMeta = session.run("MATCH (n:Meta:unwind) RETURN n").single().get(0).asNode();
+
+        Assert.assertEquals(perStatementMeta.asMap().get("totalPreCount"), unwindMeta.asMap().get("totalPreCount"));
+        Assert.assertEquals(perStatementMeta.asMap().get("totalPostCount"), unwindMeta.asMap().get("totalPostCount"));
+        Assert.assertEquals(perStatementMeta.asMap().get("roiInfo"), unwindMeta.asMap().get("roiInfo"));
+        Assert.assertEquals(new HashSet<>((List) perStatementMeta.asMap().get("superLevelRois")), new HashSet<>((List) unwindMeta.asMap().get("superLevelRois")));
+
+    }
+
+    @Test
+    public void recomputeShouldCorrectRoiCountsOfReloadedSynapses() {
+
+        Assert.assertNotEquals(getMetaNodeRoiInfo("test"), reloadedRoiInfoBeforeRecompute);
+        Assert.assertEquals(getMetaNodeRoiInfo("test"), getMetaNodeRoiInfo("reloaded"));
+
+    }
+
+    private static String getMetaNodeRoiInfo(String dataset) {
+        Session session = driver.session();
+        return session.readTransaction(tx -> tx.run("MATCH (n:Meta:`" + dataset + "`) RETURN n.roiInfo")).single().get(0).asString();
+    }
+
+    private static Map<Object, Map<String, Object>> getSynapsePropertiesByLocation(String dataset) {
+        Session session = driver.session();
+        Map<Object, Map<String, Object>> synapsePropertiesByLocation = new HashMap<>();
+        for (Record record : session.readTransaction(tx -> tx.run("MATCH (s:`" + dataset + "-Synapse`) RETURN s")).list()) {
+            Node synapse = record.get(0).asNode();
+            synapsePropertiesByLocation.put(synapse.get("location").asPoint(), synapse.asMap());
+        }
+        return synapsePropertiesByLocation;
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.janelia.flyem.neuprint.binary;
+
+import org.janelia.flyem.neuprint.ConnectionInfoBuilder;
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the {@link BinaryInputWriter} and {@link BinaryInputFile} classes.
+ */
+public class BinaryInputFileTest {
+
+    private static final String SYNAPSE_JSON = "src/test/resources/synapseList.json";
+    private static final String CONNECTION_JSON = "src/test/resources/connectionsList.json";
+    private static final String NEURON_JSON = "src/test/resources/neuronList.json";
+
+    @Test
+    public void shouldReadSameRecordsAsJson() throws IOException {
+
+        File binaryFile = File.createTempFile("neuprint", ".bin");
+        binaryFile.deleteOnExit();
+        BinaryInputWriter.convert(SYNAPSE_JSON, CONNECTION_JSON, NEURON_JSON, binaryFile);
+
+        List<Synapse> jsonSynapses = NeuPrintMain.readSynapsesJson(SYNAPSE_JSON);
+        List<SynapticConnection> jsonConnections = NeuPrintMain.readConnectionsJson(CONNECTION_JSON);
+        List<Neuron> jsonNeurons = NeuPrintMain.readNeuronsJson(NEURON_JSON);
+
+        try (BinaryInputFile binaryInputFile = BinaryInputFile.open(binaryFile)) {
+
+            Assert.assertEquals(jsonSynapses.size(), binaryInputFile.getSynapseCount());
+            // decode in more regions than there are threads to exercise region boundaries
+            List<Synapse> binarySynapses = binaryInputFile.readSynapses(0, binaryInputFile.getSynapseCount(), 7);
+            for (int i = 0; i < jsonSynapses.size(); i++) {
+                Assert.assertEquals(jsonSynapses.get(i), binarySynapses.get(i));
+                Assert.assertEquals(jsonSynapses.get(i).getConfidence(), binarySynapses.get(i).getConfidence(), 0);
+                Assert.assertEquals(new ArrayList<>(jsonSynapses.get(i).getRois()), new ArrayList<>(binarySynapses.get(i).getRois()));
+            }
+
+            Assert.assertEquals(jsonConnections, binaryInputFile.readConnections(0, binaryInputFile.getConnectionCount()));
+            Assert.assertEquals(jsonConnections.subList(2, 5), binaryInputFile.readConnections(2, 5));
+
+            Assert.assertEquals(jsonNeurons.size(), binaryInputFile.getNeuronCount());
+            BinaryInputFile.NeuronCursor neurons = binaryInputFile.neurons(0, binaryInputFile.getNeuronCount());
+            for (Neuron neuron : jsonNeurons) {
+                Assert.assertTrue(neurons.next());
+                Assert.assertEquals(neuron.getId().longValue(), neurons.getBodyId());
+                Assert.assertEquals(neuron.getSynapseLocationSet() == null ? 0 : neuron.getSynapseLocationSet().size(), neurons.getSynapseCount());
+            }
+            Assert.assertFalse(neurons.next());
+        }
+
+    }
+
+    @Test
+    public void shouldComputeSameConnectionInfoAsJson() throws IOException {
+
+        File binaryFile = File.createTempFile("neuprint", ".bin");
+        binaryFile.deleteOnExit();
+        BinaryInputWriter.convert(SYNAPSE_JSON, CONNECTION_JSON, NEURON_JSON, binaryFile);
+
+        ConnectionInfoBuilder fromJson = NeuPrintMain.buildConnectionInfo(SYNAPSE_JSON, CONNECTION_JSON, NEURON_JSON, .2, .0, 1, true, true);
+        ConnectionInfoBuilder fromBinary;
+        try (BinaryInputFile binaryInputFile = BinaryInputFile.open(binaryFile)) {
+            fromBinary = NeuPrintMain.buildConnectionInfo(binaryInputFile, null, .2, .0, 1, true, true);
+        }
+
+        Assert.assertEquals(fromJson.getSynapseCount(), fromBinary.getSynapseCount());
+        Assert.assertEquals(fromJson.getDatasetRoiInfo().getAsJsonString(), fromBinary.getDatasetRoiInfo().getAsJsonString());
+        Assert.assertEquals(fromJson.getSuperLevelRois(), fromBinary.getSuperLevelRois());
+
+        List<ConnectionInfoBuilder.SegmentInfo> jsonSegments = fromJson.getSegmentInfos();
+        List<ConnectionInfoBuilder.SegmentInfo> binarySegments = fromBinary.getSegmentInfos();
+        Assert.assertEquals(jsonSegments.size(), binarySegments.size());
+        for (int i = 0; i < jsonSegments.size(); i++) {
+            Assert.assertEquals(jsonSegments.get(i).getBodyId(), binarySegments.get(i).getBodyId());
+            Assert.assertEquals(jsonSegments.get(i).getPre(), binarySegments.get(i).getPre());
+            Assert.assertEquals(jsonSegments.get(i).getPost(), binarySegments.get(i).getPost());
+            Assert.assertEquals(jsonSegments.get(i).getRoiInfo().getAsJsonString(), binarySegments.get(i).getRoiInfo().getAsJsonString());
+            Assert.assertArrayEquals(jsonSegments.get(i).getRoiInfoBinary(), binarySegments.get(i).getRoiInfoBinary());
+            Assert.assertEquals(jsonSegments.get(i).getClusterName(), binarySegments.get(i).getClusterName());
+        }
+
+        Assert.assertEquals(fromJson.getConnectionSets().size(), fromBinary.getConnectionSets().size());
+        for (ConnectionInfoBuilder.ConnectionSetInfo connectionSet : fromJson.getConnectionSets()) {
+            ConnectionInfoBuilder.ConnectionSetInfo binaryConnectionSet = fromBinary.getConnectionSet(connectionSet.getPreBodyId(), connectionSet.getPostBodyId());
+            Assert.assertEquals(connectionSet.getWeight(), binaryConnectionSet.getWeight());
+            Assert.assertEquals(connectionSet.getWeightHP(), binaryConnectionSet.getWeightHP());
+            Assert.assertEquals(connectionSet.getRoiInfo(), binaryConnectionSet.getRoiInfo());
+        }
+
+    }
+
+    @Test
+    public void shouldSplitIntoContiguousRegions() {
+        Assert.assertArrayEquals(new long[]{0, 3, 6, 10}, BinaryInputFile.split(10, 3));
+        Assert.assertArrayEquals(new long[]{0, 1, 2}, BinaryInputFile.split(2, 8));
+        Assert.assertArrayEquals(new long[]{0, 0}, BinaryInputFile.split(0, 4));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorOnUnsupportedVersion() throws IOException {
+
+        File binaryFile = File.createTempFile("neuprint", ".bin");
+        binaryFile.deleteOnExit();
+        BinaryInputWriter.convert(SYNAPSE_JSON, null, null, binaryFile);
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(binaryFile, "rw")) {
+            randomAccessFile.seek(8);
+            randomAccessFile.write(99);
+        }
+
+        BinaryInputFile.open(binaryFile).close();
+
+    }
+
+}
@@ -0,0 +1,53 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests the {@link AdaptiveBatchSize} class.
+ */
+public class AdaptiveBatchSizeTest {
+
+    @Test
+    public void shouldGrowAdditivelyWhenFullBatchesCommitWithinTarget() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize("test", 100, 1, 1000, 1000);
+        batchSize.onCommit(100, 10);
+        Assert.assertEquals(110, batchSize.get());
+        batchSize.onCommit(110, 10);
+        Assert.assertEquals(120, batchSize.get());
+    }
+
+    @Test
+    public void shouldNotGrowWhenBatchWasNotFull() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize("test", 100, 1, 1000, 1000);
+        batchSize.onCommit(30, 10);
+        Assert.assertEquals(100, batchSize.get());
+    }
+
+    @Test
+    public void shouldHalveWhenCommitIsSlowOrFails() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize("test", 100, 1, 1000, 1000);
+        batchSize.onCommit(100, 5000);
+        Assert.assertEquals(50, batchSize.get());
+        batchSize.onFailure(50, new RuntimeException("out of memory"));
+        Assert.assertEquals(25, batchSize.get());
+    }
+
+    @Test
+    public void shouldStayWithinBounds() {
+        AdaptiveBatchSize batchSize = new AdaptiveBatchSize("test", 10, 4, 11, 1000);
+        batchSize.onCommit(10, 1);
+        batchSize.onCommit(11, 1);
+        Assert.assertEquals(11, batchSize.get());
+        for (int i = 0; i < 5; i++) {
+            batchSize.onFailure(batchSize.get(), new RuntimeException("transient"));
+        }
+        Assert.assertEquals(4, batchSize.get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidRange() {
+        new AdaptiveBatchSize("test", 10, 0, 11, 1000);
+    }
+
+}
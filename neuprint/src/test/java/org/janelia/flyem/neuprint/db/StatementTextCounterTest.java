@@ -0,0 +1,54 @@
+package org.janelia.flyem.neuprint.db;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.neo4j.driver.v1.Statement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tests the {@link StatementTextCounter} and {@link CountingTransactionBatch} classes.
+ */
+public class StatementTextCounterTest {
+
+    @Test
+    public void shouldCountDistinctStatementTextsPerPhase() {
+
+        StatementTextCounter statementTextCounter = new StatementTextCounter();
+        List<Statement> passedOn = new ArrayList<>();
+        TransactionBatch recordingBatch = new TransactionBatch() {
+            @Override
+            public void addStatement(Statement statement) {
+                passedOn.add(statement);
+            }
+
+            @Override
+            public void writeTransaction() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+
+        try (TransactionBatch batch = new CountingTransactionBatch(recordingBatch, "addSynapses", statementTextCounter)) {
+            for (int i = 0; i < 10; i++) {
+                batch.addStatement(new Statement("MERGE (s:Synapse{location:$location}) SET s += $roiProps"), i);
+                batch.addStatement(new Statement("MERGE (s:PreSyn{location:$location})"));
+            }
+        }
+        try (TransactionBatch batch = new CountingTransactionBatch(recordingBatch, "addSegments", statementTextCounter)) {
+            batch.addStatement(new Statement("MERGE (n:Segment{bodyId:$bodyId}) SET n.`roiA` = TRUE"));
+            batch.addStatement(new Statement("MERGE (n:Segment{bodyId:$bodyId}) SET n.`roiB` = TRUE"));
+        }
+
+        Assert.assertEquals(22, passedOn.size());
+        Assert.assertEquals(2, statementTextCounter.getDistinctStatementTextCount("addSynapses"));
+        Assert.assertEquals(20, statementTextCounter.getStatementCount("addSynapses"));
+        Assert.assertEquals(2, statementTextCounter.getDistinctStatementTextCount("addSegments"));
+        Assert.assertEquals(0, statementTextCounter.getDistinctStatementTextCount("addSkeletonNodes"));
+
+    }
+
+}
@@ -0,0 +1,162 @@
+package org.janelia.flyem.neuprint.io;
+
+import org.janelia.flyem.neuprint.NeuPrintMain;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Tests the {@link CompressedInput} class.
+ */
+public class CompressedInputTest {
+
+    private static final String SYNAPSE_JSON = "src/test/resources/synapseList.json";
+
+    @Test
+    public void shouldReadUncompressedGzipAndBgzfFilesTheSame() throws IOException {
+
+        byte[] data = Files.readAllBytes(Paths.get(SYNAPSE_JSON));
+
+        File gzipFile = writeGzip(data, 1);
+        File multiMemberGzipFile = writeGzip(data, 3);
+        File bgzfFile = writeBgzf(data, 1000);
+
+        Assert.assertFalse(CompressedInput.isBgzf(gzipFile));
+        Assert.assertTrue(CompressedInput.isBgzf(bgzfFile));
+
+        Assert.assertArrayEquals(data, readAll(new File(SYNAPSE_JSON), 4));
+        Assert.assertArrayEquals(data, readAll(gzipFile, 4));
+        Assert.assertArrayEquals(data, readAll(multiMemberGzipFile, 4));
+        Assert.assertArrayEquals(data, readAll(bgzfFile, 1));
+        Assert.assertArrayEquals(data, readAll(bgzfFile, 4));
+
+        List<Synapse> synapses = NeuPrintMain.readSynapsesJson(SYNAPSE_JSON);
+        Assert.assertEquals(synapses, NeuPrintMain.readSynapsesJson(multiMemberGzipFile.getAbsolutePath()));
+        Assert.assertEquals(synapses, NeuPrintMain.readSynapsesJson(bgzfFile.getAbsolutePath()));
+
+    }
+
+    @Test
+    public void shouldDecompressLargeFilesOnSeparateThreads() throws IOException {
+
+        // incompressible data so that the gzip file is larger than a chunk and is decompressed on its own thread
+        byte[] data = new byte[3 * CompressedInput.CHUNK_SIZE + 12345];
+        new Random(7).nextBytes(data);
+
+        Assert.assertArrayEquals(data, readAll(writeGzip(data, 2), 4));
+        Assert.assertArrayEquals(data, readAll(writeBgzf(data, 60000), 4));
+
+        // closing before the end of the file stops decompression
+        try (InputStream inputStream = CompressedInput.open(writeGzip(data, 1), 4)) {
+            Assert.assertEquals(data[0] & 0xff, inputStream.read());
+        }
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorOnCorruptBgzfBlock() throws IOException {
+
+        byte[] data = Files.readAllBytes(Paths.get(SYNAPSE_JSON));
+        File bgzfFile = writeBgzf(data, 1000);
+        int firstBlockLength;
+        try (InputStream inputStream = Files.newInputStream(bgzfFile.toPath())) {
+            firstBlockLength = CompressedInput.readBgzfBlock(inputStream).length;
+        }
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(bgzfFile, "rw")) {
+            // flip a byte of the crc of the first block
+            randomAccessFile.seek(firstBlockLength - 8);
+            int crcByte = randomAccessFile.read();
+            randomAccessFile.seek(randomAccessFile.getFilePointer() - 1);
+            randomAccessFile.write(crcByte ^ 0xff);
+        }
+
+        readAll(bgzfFile, 4);
+
+    }
+
+    private static byte[] readAll(File file, int threads) throws IOException {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        try (InputStream inputStream = CompressedInput.open(file, threads)) {
+            byte[] buffer = new byte[8191];
+            int length;
+            while ((length = inputStream.read(buffer)) != -1) {
+                outputStream.write(buffer, 0, length);
+            }
+        }
+        return outputStream.toByteArray();
+    }
+
+    private static File writeGzip(byte[] data, int members) throws IOException {
+        File file = File.createTempFile("neuprint", ".gz");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            int memberSize = data.length / members + 1;
+            for (int start = 0; start < data.length; start += memberSize) {
+                GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream);
+                gzipOutputStream.write(data, start, Math.min(memberSize, data.length - start));
+                gzipOutputStream.finish();
+            }
+        }
+        return file;
+    }
+
+    private static File writeBgzf(byte[] data, int blockSize) throws IOException {
+        File file = File.createTempFile("neuprint", ".bgz");
+        file.deleteOnExit();
+        try (OutputStream outputStream = new FileOutputStream(file)) {
+            for (int start = 0; start < data.length; start += blockSize) {
+                outputStream.write(bgzfBlock(Arrays.copyOfRange(data, start, Math.min(start + blockSize, data.length))));
+            }
+            // empty end of file block
+            outputStream.write(bgzfBlock(new byte[0]));
+        }
+        return file;
+    }
+
+    private static byte[] bgzfBlock(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(data);
+        deflater.finish();
+        byte[] compressed = new byte[data.length + 1024];
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+        deflater.end();
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+        int blockSize = 18 + compressedLength + 8;
+
+        ByteArrayOutputStream block = new ByteArrayOutputStream(blockSize);
+        block.write(new byte[]{0x1f, (byte) 0x8b, 8, 4, 0, 0, 0, 0, 0, (byte) 0xff, 6, 0, 'B', 'C', 2, 0}, 0, 16);
+        writeLittleEndian(block, blockSize - 1, 2);
+        block.write(compressed, 0, compressedLength);
+        writeLittleEndian(block, crc.getValue(), 4);
+        writeLittleEndian(block, data.length, 4);
+        return block.toByteArray();
+    }
+
+    private static void writeLittleEndian(ByteArrayOutputStream outputStream, long value, int bytes) {
+        for (int i = 0; i < bytes; i++) {
+            outputStream.write((int) (value >>> (8 * i)) & 0xff);
+        }
+    }
+
+}
@@ -0,0 +1,174 @@
+package org.janelia.flyem.neuprint.json;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import org.janelia.flyem.neuprint.model.Neuron;
+import org.janelia.flyem.neuprint.model.Synapse;
+import org.janelia.flyem.neuprint.model.SynapticConnection;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.janelia.flyem.neuprint.json.JsonUtils.GSON;
+
+/**
+ * Checks that {@link StreamingJsonDecoder} produces the same objects as the Gson adapters.
+ */
+public class StreamingJsonDecoderTest {
+
+    @Test
+    public void shouldDecodeSynapsesLikeGson() throws IOException {
+
+        final List<Synapse> expected = Synapse.fromJson(new BufferedReader(new FileReader("src/test/resources/synapseList.json")));
+
+        final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+        final List<Synapse> actual = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader("src/test/resources/synapseList.json"))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                actual.add(decoder.nextSynapse(reader));
+            }
+            reader.endArray();
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(GSON.toJson(expected.get(i)), GSON.toJson(actual.get(i)));
+        }
+
+    }
+
+    @Test
+    public void shouldDecodeConnectionsLikeGson() throws IOException {
+
+        final List<SynapticConnection> expected = SynapticConnection.fromJson(new BufferedReader(new FileReader("src/test/resources/connectionsList.json")));
+
+        final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+        final List<SynapticConnection> actual = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader("src/test/resources/connectionsList.json"))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                actual.add(decoder.nextSynapticConnection(reader));
+            }
+            reader.endArray();
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(GSON.toJson(expected.get(i)), GSON.toJson(actual.get(i)));
+        }
+
+    }
+
+    @Test
+    public void shouldDecodeNeuronsLikeGson() throws IOException {
+
+        final List<Neuron> expected = Neuron.fromJson(new BufferedReader(new FileReader("src/test/resources/neuronList.json")));
+
+        final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+        final List<Neuron> actual = new ArrayList<>();
+        try (JsonReader reader = new JsonReader(new FileReader("src/test/resources/neuronList.json"))) {
+            reader.beginArray();
+            while (reader.hasNext()) {
+                actual.add(decoder.nextNeuron(reader));
+            }
+            reader.endArray();
+        }
+
+        Assert.assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(expected.get(i).getSynapseLocationSet(), actual.get(i).getSynapseLocationSet());
+            Assert.assertEquals(withoutSynapseSet(expected.get(i)), withoutSynapseSet(actual.get(i)));
+        }
+
+    }
+
+    @Test
+    public void shouldReuseRecordAndSkipUnknownProperties() throws IOException {
+
+        final StreamingJsonDecoder decoder = new StreamingJsonDecoder();
+        final SynapseRecord record = new SynapseRecord();
+        final JsonReader reader = new JsonReader(new StringReader("[" +
+                "{\"type\": \"pre\", \"confidence\": 0.5, \"location\": [5,6,7], \"extra\": {\"a\": [1, 2]}, \"rois\": [\"seven_column_roi\",\"roiA\",\"roiB\",\"roiA\"]}," +
+                "{\"type\": \"post\", \"location\": [8.0,\"9\",10]}" +
+                "]"));
+        reader.beginArray();
+
+        decoder.readSynapse(reader, record);
+        Assert.assertEquals("pre", record.getType());
+        Assert.assertEquals(0.5, record.getConfidence(), .001);
+        Assert.assertEquals(2, record.getRoiCount());
+        Assert.assertEquals("roiA", record.getRoi(0));
+        Assert.assertEquals("roiB", record.getRoi(1));
+
+        decoder.readSynapse(reader, record);
+        Assert.assertEquals("post", record.getType());
+        Assert.assertEquals(0.0, record.getConfidence(), .001);
+        Assert.assertEquals(8L, record.getX());
+        Assert.assertEquals(9L, record.getY());
+        Assert.assertEquals(10L, record.getZ());
+        Assert.assertEquals(0, record.getRoiCount());
+
+    }
+
+    @Test
+    public void shouldRejectInvalidObjectsWithAdapterMessages() {
+
+        assertSynapseError("{\"type\": \"sjdfka\", \"location\": [5,6,7]}", "Synapse type must be 'pre' or 'post'.");
+        assertSynapseError("{\"confidence\": 0.5, \"location\": [5,6,7]}", "Synapse type property missing.");
+        assertSynapseError("{\"type\": \"pre\", \"confidence\": 5, \"location\": [5,6,7]}", "Synapse confidence must be between 0.0 and 1.0.");
+        assertSynapseError("{\"type\": \"pre\"}", "Synapse location property missing.");
+        assertSynapseError("{\"type\": \"pre\", \"location\": [5,6]}", "Location must be three-dimensional.");
+        assertSynapseError("{\"type\": \"pre\", \"location\": [5,6.5,7]}", "Location coordinates must be integer values.");
+        assertSynapseError("{\"type\": \"pre\", \"location\": [5,\"a\",7]}", "Location coordinates must be a number.");
+
+        assertNeuronError("{\"status\": \"Traced\"}", "Neuron must have 'id' property.");
+        assertNeuronError("{\"id\": 1.5}", "Neuron ID must be integer value.");
+        assertNeuronError("{\"id\": 1, \"soma\": {\"location\": [1,2,3]}}", "Soma must have 'radius' property.");
+
+    }
+
+    private static JsonObject withoutSynapseSet(final Neuron neuron) {
+        final JsonObject jsonObject = GSON.toJsonTree(neuron).getAsJsonObject();
+        jsonObject.remove("synapseSet");
+        return jsonObject;
+    }
+
+    private static void assertSynapseError(final String json, final String message) {
+        try {
+            new StreamingJsonDecoder().nextSynapse(new JsonReader(new StringReader(json)));
+            Assert.fail("expected error for " + json);
+        } catch (JsonParseException | IOException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+        try {
+            GSON.fromJson(json, Synapse.class);
+            Assert.fail("expected adapter error for " + json);
+        } catch (JsonParseException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+    private static void assertNeuronError(final String json, final String message) {
+        try {
+            new StreamingJsonDecoder().nextNeuron(new JsonReader(new StringReader(json)));
+            Assert.fail("expected error for " + json);
+        } catch (JsonParseException | IOException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+        try {
+            GSON.fromJson(json, Neuron.class);
+            Assert.fail("expected adapter error for " + json);
+        } catch (JsonParseException e) {
+            Assert.assertEquals(message, e.getMessage());
+        }
+    }
+
+}
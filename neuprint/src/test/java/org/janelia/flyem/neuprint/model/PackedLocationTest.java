@@ -0,0 +1,94 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.HashSet;
+import java.util.PrimitiveIterator;
+import java.util.Random;
+import java.util.Set;
+
+public class PackedLocationTest {
+
+    @Test
+    public void shouldPackAndUnpackLocations() {
+
+        final long max = PackedLocation.MAX_COORDINATE;
+        final Location[] locations = new Location[]{
+                new Location(0L, 0L, 0L),
+                new Location(1L, 2L, 3L),
+                new Location(max, 0L, max),
+                new Location(max, max, max),
+                new Location(4523L, 1293847L, 23L)
+        };
+        final Set<Long> packedLocations = new HashSet<>();
+        for (final Location location : locations) {
+            final long packedLocation = PackedLocation.pack(location);
+            Assert.assertEquals(location, PackedLocation.toLocation(packedLocation));
+            Assert.assertEquals(location.getAsPoint(), PackedLocation.toPoint(packedLocation));
+            packedLocations.add(packedLocation);
+        }
+        Assert.assertEquals(locations.length, packedLocations.size());
+
+        Assert.assertFalse(PackedLocation.fits(max + 1, 0, 0));
+        Assert.assertFalse(PackedLocation.fits(0, -1, 0));
+        Assert.assertFalse(PackedLocation.fits(new Location(0L, 0L, null)));
+
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldErrorIfCoordinateCannotBePacked() {
+        PackedLocation.pack(new Location(1L, 2L, PackedLocation.MAX_COORDINATE + 1));
+    }
+
+    @Test
+    public void longHashSetAndMapShouldMatchJavaCollections() {
+
+        final Random random = new Random(12);
+        final LongHashSet set = new LongHashSet();
+        final LongIntHashMap map = new LongIntHashMap();
+        final Set<Long> expectedSet = new HashSet<>();
+
+        for (int i = 0; i < 20000; i++) {
+            // include 0 and repeated values
+            final long value = i % 1000 == 0 ? 0 : PackedLocation.pack(random.nextInt(50), random.nextInt(50), random.nextInt(50));
+            Assert.assertEquals(expectedSet.add(value), set.add(value));
+            if (map.putIfAbsent(value, i)) {
+                Assert.assertEquals(i, map.get(value, -1));
+            }
+        }
+
+        Assert.assertEquals(expectedSet.size(), set.size());
+        Assert.assertEquals(expectedSet.size(), map.size());
+        Assert.assertEquals(-1, map.get(PackedLocation.pack(60, 60, 60), -1));
+        Assert.assertFalse(set.contains(PackedLocation.pack(60, 60, 60)));
+
+        final Set<Long> iterated = new HashSet<>();
+        final PrimitiveIterator.OfLong iterator = set.iterator();
+        while (iterator.hasNext()) {
+            final long value = iterator.nextLong();
+            Assert.assertTrue(map.containsKey(value));
+            iterated.add(value);
+        }
+        Assert.assertEquals(expectedSet, iterated);
+
+    }
+
+    @Test
+    public void packedLocationSetShouldBehaveLikeHashSet() {
+
+        final Set<Location> expected = new HashSet<>();
+        final PackedLocationSet packedLocationSet = new PackedLocationSet();
+        for (long i = 0; i < 100; i++) {
+            final Location location = new Location(i % 7, i % 11, i % 13);
+            Assert.assertEquals(expected.add(location), packedLocationSet.add(location));
+        }
+
+        Assert.assertEquals(expected, packedLocationSet);
+        Assert.assertEquals(expected.hashCode(), packedLocationSet.hashCode());
+        Assert.assertTrue(packedLocationSet.contains(new Location(1L, 1L, 1L)));
+        Assert.assertFalse(packedLocationSet.contains(new Location(-1L, 1L, 1L)));
+
+    }
+
+}
@@ -0,0 +1,127 @@
+package org.janelia.flyem.neuprint.model;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Tests the {@link SkeletonColumns} class.
+ */
+public class SkeletonColumnsTest {
+
+    @Test
+    public void shouldMatchLineSplittingParserOnSwcFiles() throws IOException {
+
+        String[] filepaths = new String[]{
+                "src/test/resources/exampleSwc.swc",
+                "src/test/resources/multipleRootsSkeleton.swc",
+                "src/test/resources/831744.swc",
+                "src/test/resources/101.swc"};
+
+        for (String filepath : filepaths) {
+            SkeletonColumns columns;
+            try (InputStream inputStream = new FileInputStream(filepath)) {
+                columns = SkeletonColumns.fromSwc(inputStream);
+            }
+            List<String> lines = Files.readAllLines(Paths.get(filepath));
+            int i = 0;
+            for (String line : lines) {
+                if (line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(" ");
+                Assert.assertEquals(Integer.parseInt(fields[0]), columns.getRowNumber(i));
+                Assert.assertEquals(Integer.parseInt(fields[1]), columns.getType(i));
+                Assert.assertEquals(Math.round(Float.parseFloat(fields[2])), columns.getX(i));
+                Assert.assertEquals(Math.round(Float.parseFloat(fields[3])), columns.getY(i));
+                Assert.assertEquals(Math.round(Float.parseFloat(fields[4])), columns.getZ(i));
+                Assert.assertEquals(Double.parseDouble(fields[5]), columns.getRadius(i), 0);
+                Assert.assertEquals(Integer.parseInt(fields[6]) == -1 ? -1 : Integer.parseInt(fields[6]) - 1, columns.getParent(i));
+                i++;
+            }
+            Assert.assertEquals(i, columns.size());
+        }
+
+        try (InputStream inputStream = new FileInputStream("src/test/resources/831744.swc")) {
+            Assert.assertEquals(new Long(1002248266L), SkeletonColumns.fromSwc(inputStream).getMutationId());
+        }
+
+    }
+
+    @Test
+    public void shouldHandleTabsMultipleSpacesAndFloats() throws IOException {
+
+        String swc = "# comment\r\n" +
+                "1\t0\t10.5\t20.4\t30.6\t1.1\t-1\r\n" +
+                "\r\n" +
+                "  2  3  -4.5   16777217  2.5e2 0.1   1  \n" +
+                "3 0 1 2 3 123456789.123456789 2";
+
+        SkeletonColumns columns = SkeletonColumns.fromSwc(new ByteArrayInputStream(swc.getBytes(StandardCharsets.US_ASCII)));
+
+        Assert.assertEquals(3, columns.size());
+        Assert.assertNull(columns.getMutationId());
+
+        Assert.assertEquals(Math.round(10.5f), columns.getX(0));
+        Assert.assertEquals(20, columns.getY(0));
+        Assert.assertEquals(31, columns.getZ(0));
+        Assert.assertEquals(1.1, columns.getRadius(0), 0);
+        Assert.assertEquals(-1, columns.getParent(0));
+
+        Assert.assertEquals(2, columns.getRowNumber(1));
+        Assert.assertEquals(3, columns.getType(1));
+        Assert.assertEquals(Math.round(-4.5f), columns.getX(1));
+        Assert.assertEquals(16777217, columns.getY(1));
+        Assert.assertEquals(250, columns.getZ(1));
+        Assert.assertEquals(0.1, columns.getRadius(1), 0);
+        Assert.assertEquals(0, columns.getParent(1));
+
+        Assert.assertEquals(123456789.123456789, columns.getRadius(2), 0);
+        Assert.assertEquals(1, columns.getParent(2));
+        Assert.assertEquals("test:5:1:2:3:3", columns.getSkelNodeId("test", 5L, 2));
+
+        // same result from a reader
+        SkeletonColumns fromReader = SkeletonColumns.fromSwc(new StringReader(swc));
+        for (int i = 0; i < columns.size(); i++) {
+            Assert.assertEquals(columns.getSkelNodeId("test", 5L, i), fromReader.getSkelNodeId("test", 5L, i));
+            Assert.assertEquals(columns.getRadius(i), fromReader.getRadius(i), 0);
+        }
+
+    }
+
+    @Test
+    public void shouldCreateLinkedSkelNodes() throws IOException {
+
+        String swc = "1 0 1 1 1 1 -1\n2 0 2 2 2 1 1\n3 0 3 3 3 1 1\n4 0 4 4 4 1 -1\n";
+        SkelNode[] skelNodes = SkeletonColumns.fromSwc(new ByteArrayInputStream(swc.getBytes(StandardCharsets.US_ASCII))).toSkelNodes(7L);
+
+        Assert.assertEquals(4, skelNodes.length);
+        Assert.assertNull(skelNodes[0].getParent());
+        Assert.assertEquals(skelNodes[0], skelNodes[2].getParent());
+        Assert.assertEquals(2, skelNodes[0].getChildren().size());
+        Assert.assertEquals(skelNodes[1], skelNodes[0].getChildren().get(0));
+        Assert.assertEquals("test:7:3:3:3:3", skelNodes[2].getSkelNodeId("test"));
+        Assert.assertTrue(skelNodes[3].getChildren().isEmpty());
+
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorOnParentThatDoesNotPrecedeNode() throws IOException {
+        SkeletonColumns.fromSwc(new StringReader("1 0 1 1 1 1 2\n2 0 2 2 2 1 -1\n"));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldErrorOnMissingFields() throws IOException {
+        SkeletonColumns.fromSwc(new StringReader("1 0 1 1 1 1\n"));
+    }
+
+}
@@ -1,5 +1,6 @@
 package org.janelia.flyem.neuprint.model;
 
+import org.janelia.flyem.neuprint.NeuPrintMain;
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -65,4 +66,22 @@ public class SkeletonTest {
 
     }
 
+    @Test
+    public void parallelSwcParsingShouldMatchSequentialParsing() {
+
+        File[] arrayOfSwcFiles = new File[]{
+                new File("src/test/resources/101.swc"),
+                new File("src/test/resources/102.swc"),
+                new File("src/test/resources/831744.swc")};
+
+        List<Skeleton> sequentialSkeletons = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles);
+        List<Skeleton> parallelSkeletons = NeuPrintMain.createSkeletonListFromSwcFileArray(arrayOfSwcFiles, 3);
+
+        Assert.assertEquals(3, parallelSkeletons.size());
+        for (int i = 0; i < sequentialSkeletons.size(); i++) {
+            Assert.assertEquals(sequentialSkeletons.get(i).getAssociatedBodyId(), parallelSkeletons.get(i).getAssociatedBodyId());
+            Assert.assertEquals(sequentialSkeletons.get(i).getSkelNodeList(), parallelSkeletons.get(i).getSkelNodeList());
+        }
+    }
+
 }